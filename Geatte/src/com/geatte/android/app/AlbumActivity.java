@@ -1,9 +1,6 @@
 package com.geatte.android.app;
 
 import android.app.Activity;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.drawable.BitmapDrawable;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
@@ -55,22 +52,15 @@ public class AlbumActivity extends Activity {
 	    Log.d(Config.LOGTAG, " " +  AlbumActivity.CLASSTAG + " GOT mImagePath = " + mImagePath + ", populate the image view");
 	}
 
-	int sampleSize = CommonUtils.getResizeRatio(mImagePath, 1500, 8);
-	if(Config.LOG_DEBUG_ENABLED) {
-	    Log.d(Config.LOGTAG, " AlbumActivity:onResume() resize image with sampleSize = " + sampleSize);
-	}
-
-	BitmapFactory.Options bitmapOptions = new BitmapFactory.Options();
-	bitmapOptions.inSampleSize = sampleSize;
-	Bitmap imgBitmap = BitmapFactory.decodeFile(mImagePath, bitmapOptions);
-
-	if (imgBitmap == null) {
-	    mImageView.setImageResource(R.drawable.empty_list);
-	    Toast.makeText(getApplicationContext(), "Image is deleted or missing!", Toast.LENGTH_LONG).show();
-	    Log.w(Config.LOGTAG, "file not exist or file is null");
-	} else {
-	    mImageView.setImageBitmap(imgBitmap);
-	}
+	GeatteImageLoader.get(this).bindFile(mImageView, mImagePath, Config.DETAIL_MAX_DIMENSION,
+		R.drawable.empty_list, new GeatteImageLoader.Callback() {
+		    public void onImageShown(ImageView view, boolean found) {
+			if (!found) {
+			    Toast.makeText(getApplicationContext(), "Image is deleted or missing!", Toast.LENGTH_LONG).show();
+			    Log.w(Config.LOGTAG, "file not exist or file is null");
+			}
+		    }
+		});
 
 	if(Config.LOG_DEBUG_ENABLED) {
 	    Log.d(Config.LOGTAG, "AlbumActivity:onResume() onResume END");
@@ -80,11 +70,7 @@ public class AlbumActivity extends Activity {
     @Override
     public void onPause() {
 	super.onPause();
-	if (mImageView.getDrawable() != null) {
-	    BitmapDrawable drawable = (BitmapDrawable) mImageView.getDrawable();
-	    drawable.getBitmap().recycle();
-	}
-	mImageView.setImageBitmap(null);
+	GeatteImageLoader.get(this).unbind(mImageView);
     }
 
     @Override
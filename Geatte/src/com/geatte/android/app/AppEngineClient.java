@@ -9,11 +9,13 @@ import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.params.HttpClientParams;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpParams;
 
@@ -24,16 +26,33 @@ import android.accounts.AuthenticatorException;
 import android.accounts.OperationCanceledException;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.util.Log;
 
 /**
  * AppEngine client. Handles auth.
+ *
+ * The ACSID cookie from /_ah/login is cached with its expiry in memory and
+ * preferences, requests only sign in again when it expires or the server
+ * turns it down.
  */
 public class AppEngineClient {
 
     private static final String AUTH_URL = Config.BASE_URL + "/_ah/login";
     private static final String AUTH_TOKEN_TYPE = "ah";
+    // lifetime of an ACSID cookie sent without expires
+    private static final long ACSID_DEFAULT_LIFETIME_MILLIS = 24 * 60 * 60 * 1000L;
+    // cookies are renewed this long before they expire
+    private static final long ACSID_EXPIRY_MARGIN_MILLIS = 5 * 60 * 1000L;
+    private static final String[] COOKIE_DATE_PATTERNS = {
+	"EEE, dd-MMM-yyyy HH:mm:ss z", "EEE, dd MMM yyyy HH:mm:ss z", "EEE, dd-MMM-yy HH:mm:ss z" };
+
+    // ACSID cookie shared by all clients of the process, also kept in preferences
+    private static String sAcsidCookie;
+    private static String sAcsidAccount;
+    private static long sAcsidExpires;
+    private static boolean sAcsidLoaded;
 
     private final Context mContext;
     private final String mUserEmail;
@@ -43,34 +62,87 @@ public class AppEngineClient {
 	this.mUserEmail = accountName;
     }
 
-    public HttpResponse makeRequestNoAuth(String urlPath, List<NameValuePair> params) throws Exception {
-	HttpResponse res = makeRequestNoRetryNoAuth(urlPath, params);
-	if (res.getStatusLine().getStatusCode() == 500) {
-	    res = makeRequestNoRetryNoAuth(urlPath, params);
-	}
-	return res;
+    public HttpResponse makeRequestNoAuth(final String urlPath, final List<NameValuePair> params) throws Exception {
+	return makeRequestWithBackoff(urlPath, new Attempt() {
+	    public HttpResponse execute(boolean renewToken) throws Exception {
+		return makeRequestNoRetryNoAuth(urlPath, params);
+	    }
+	});
     }
 
-    public HttpResponse makeRequestWithParams(String urlPath, List<NameValuePair> params) throws Exception {
-	HttpResponse res = makeRequestNoRetryWithParams(urlPath, params, false);
-	if (res.getStatusLine().getStatusCode() == 500) {
-	    res = makeRequestNoRetryWithParams(urlPath, params, true);
-	}
-	return res;
+    public HttpResponse makeRequestWithParams(final String urlPath, final List<NameValuePair> params) throws Exception {
+	return makeRequestWithBackoff(urlPath, new Attempt() {
+	    public HttpResponse execute(boolean renewToken) throws Exception {
+		return makeRequestNoRetryWithParams(urlPath, params, renewToken);
+	    }
+	});
     }
 
-    public HttpResponse makeRequestWithEntity(String urlPath,  HttpEntity httpEntity) throws Exception {
-	HttpResponse res = makeRequestNoRetryWithEntity(urlPath, httpEntity, false);
-	if (res.getStatusLine().getStatusCode() == 500) {
-	    res = makeRequestNoRetryWithEntity(urlPath, httpEntity, true);
-	}
-	return res;
+    public HttpResponse makeRequestWithEntity(final String urlPath, final HttpEntity httpEntity) throws Exception {
+	return makeRequestWithBackoff(urlPath, new Attempt() {
+	    public HttpResponse execute(boolean renewToken) throws Exception {
+		return makeRequestNoRetryWithEntity(urlPath, httpEntity, renewToken);
+	    }
+	});
+    }
+
+    public HttpResponse makeRequestWithJSONStringEntity(final String urlPath, final HttpEntity httpEntity)
+    throws Exception {
+	return makeRequestWithBackoff(urlPath, new Attempt() {
+	    public HttpResponse execute(boolean renewToken) throws Exception {
+		return makeRequestNoRetryWithJSONStringEntity(urlPath, httpEntity, renewToken);
+	    }
+	});
+    }
+
+    /**
+     * One try of a request.
+     */
+    private interface Attempt {
+	HttpResponse execute(boolean renewToken) throws Exception;
     }
 
-    public HttpResponse makeRequestWithJSONStringEntity(String urlPath,  HttpEntity httpEntity) throws Exception {
-	HttpResponse res = makeRequestNoRetryWithJSONStringEntity(urlPath, httpEntity, false);
-	if (res.getStatusLine().getStatusCode() == 500) {
-	    res = makeRequestNoRetryWithJSONStringEntity(urlPath, httpEntity, true);
+    /**
+     * Run a request, retrying a 503 after the Retry-After of the server and a
+     * 500 once with a renewed auth token, both after a jittered backoff. A
+     * 401, or 302 to the login page, means the cached cookie is no longer
+     * good, the request is sent once more with a new one. The last response is
+     * returned when retries run out.
+     */
+    private HttpResponse makeRequestWithBackoff(String urlPath, Attempt attempt) throws Exception {
+	HttpResponse res = attempt.execute(false);
+	int authStatus = res.getStatusLine().getStatusCode();
+	if (authStatus == 401 || authStatus == 302) {
+	    Log.i(Config.LOGTAG, "AppEngineClient:makeRequestWithBackoff() : got status " + authStatus + " from "
+		    + urlPath + ", get a new ACSID cookie");
+	    if (res.getEntity() != null) {
+		res.getEntity().consumeContent();
+	    }
+	    clearAscidCookie();
+	    res = attempt.execute(false);
+	}
+	boolean renewed = false;
+	for (int retry = 0; retry < Config.REQUEST_MAX_RETRIES; retry++) {
+	    int status = res.getStatusLine().getStatusCode();
+	    boolean busy = status == 503;
+	    if (!busy && (status != 500 || renewed)) {
+		return res;
+	    }
+	    long retryAfter = busy ? RetryBackoff.retryAfterMillis(res) : -1;
+	    if (retryAfter > Config.REQUEST_RETRY_MAX_MILLIS) {
+		// server wants a longer wait than a caller should block, let it reschedule
+		return res;
+	    }
+	    long delay = RetryBackoff.delayMillis(retry, Config.REQUEST_RETRY_BASE_MILLIS,
+		    Config.REQUEST_RETRY_MAX_MILLIS, retryAfter);
+	    Log.i(Config.LOGTAG, "AppEngineClient:makeRequestWithBackoff() : got status " + status + " from "
+		    + urlPath + ", retry in " + delay + " ms");
+	    if (res.getEntity() != null) {
+		res.getEntity().consumeContent();
+	    }
+	    Thread.sleep(delay);
+	    renewed = renewed || !busy;
+	    res = attempt.execute(!busy);
 	}
 	return res;
     }
@@ -78,7 +150,7 @@ public class AppEngineClient {
     private HttpResponse makeRequestNoRetryNoAuth(String urlPath, List<NameValuePair> params) throws Exception {
 
 	// Make POST request
-	DefaultHttpClient client = new DefaultHttpClient();
+	HttpClient client = GeatteHttpClient.get();
 	URI uri = new URI(Config.BASE_URL + urlPath);
 	HttpPost post = new HttpPost(uri);
 	UrlEncodedFormEntity entity = new UrlEncodedFormEntity(params, "UTF-8");
@@ -112,7 +184,7 @@ public class AppEngineClient {
 	Log.d(Config.LOGTAG, "AppEngineClient:makeRequestNoRetryWihtParams() : make post request to uri = "
 		+ uri.toString());
 
-	DefaultHttpClient client = new DefaultHttpClient();
+	HttpClient client = GeatteHttpClient.get();
 	res = client.execute(post);
 	return res;
     }
@@ -140,7 +212,7 @@ public class AppEngineClient {
 	Log.d(Config.LOGTAG, "AppEngineClient:makeRequestNoRetryWithEntity() : make post request to uri = "
 		+ uri.toString());
 
-	DefaultHttpClient client = new DefaultHttpClient();
+	HttpClient client = GeatteHttpClient.get();
 	res = client.execute(post);
 	return res;
     }
@@ -161,7 +233,8 @@ public class AppEngineClient {
 	// Make POST request
 	URI uri = new URI(Config.BASE_URL + urlPath);
 	HttpPost post = new HttpPost(uri);
-	post.setEntity(httpEntity);
+	// contact lists compress well, the server filter inflates them
+	post.setEntity(GeatteHttpClient.gzipEntity(httpEntity));
 	post.setHeader("Cookie", ascidCookie.toString());
 	post.setHeader("X-Same-Domain", "1"); // XSRF
 	post.setHeader("Accept", "application/json");
@@ -170,12 +243,26 @@ public class AppEngineClient {
 	Log.d(Config.LOGTAG, "AppEngineClient:makeRequestNoRetryWithJSONStringEntity() : make post request to uri = "
 		+ uri.toString());
 
-	DefaultHttpClient client = new DefaultHttpClient();
+	HttpClient client = GeatteHttpClient.get();
 	res = client.execute(post);
 	return res;
     }
 
+    /**
+     * Get the ACSID cookie for requests, from the cache while it is good,
+     * otherwise by signing in to /_ah/login with an auth token.
+     *
+     * @return null with the cookie appended, or the failed login response
+     */
     private HttpResponse getServerAscidCookie(boolean renewToken, StringBuilder cookie) throws Exception {
+	if (!renewToken) {
+	    String cached = getCachedAscidCookie();
+	    if (cached != null) {
+		cookie.append(cached);
+		return null;
+	    }
+	}
+
 	// Get auth token for account
 	Account account = new Account(mUserEmail, "com.google");
 	String authToken = getAuthToken(mContext, account);
@@ -191,7 +278,7 @@ public class AppEngineClient {
 	}
 
 	// Get ACSID cookie
-	DefaultHttpClient client = new DefaultHttpClient();
+	HttpClient client = GeatteHttpClient.get();
 	String continueURL = Config.BASE_URL;
 	URI uri = new URI(AUTH_URL + "?continue=" + URLEncoder.encode(continueURL, "UTF-8") + "&auth=" + authToken);
 	if(Config.LOG_DEBUG_ENABLED) {
@@ -215,18 +302,80 @@ public class AppEngineClient {
 	}
 
 	String ascidCookie = null;
+	long expires = System.currentTimeMillis() + ACSID_DEFAULT_LIFETIME_MILLIS;
 	for (Header header : headers) {
 	    if (header.getValue().indexOf("ACSID=") >= 0) {
 		// let's parse it
 		String value = header.getValue();
 		String[] pairs = value.split(";");
 		ascidCookie = pairs[0];
+		for (int i = 1; i < pairs.length; i++) {
+		    String pair = pairs[i].trim();
+		    if (pair.regionMatches(true, 0, "expires=", 0, "expires=".length())) {
+			expires = parseCookieExpires(pair.substring("expires=".length()), expires);
+		    }
+		}
 	    }
 	}
 	cookie.append(ascidCookie);
+	if (ascidCookie != null) {
+	    putCachedAscidCookie(ascidCookie, expires);
+	}
 	return null;
     }
 
+    private static long parseCookieExpires(String value, long defaultExpires) {
+	try {
+	    return DateUtils.parseDate(value, COOKIE_DATE_PATTERNS).getTime();
+	} catch (DateParseException e) {
+	    Log.w(Config.LOGTAG, "AppEngineClient:parseCookieExpires() : can not parse expires = " + value);
+	    return defaultExpires;
+	}
+    }
+
+    /**
+     * @return cached cookie of this account, or null if there is none or it
+     *         is about to expire
+     */
+    private String getCachedAscidCookie() {
+	synchronized (AppEngineClient.class) {
+	    if (!sAcsidLoaded) {
+		SharedPreferences prefs = mContext.getSharedPreferences(Config.PREFERENCE_KEY, Context.MODE_PRIVATE);
+		sAcsidCookie = prefs.getString(Config.PREF_ACSID_COOKIE, null);
+		sAcsidAccount = prefs.getString(Config.PREF_ACSID_ACCOUNT, null);
+		sAcsidExpires = prefs.getLong(Config.PREF_ACSID_EXPIRES, 0);
+		sAcsidLoaded = true;
+	    }
+	    if (sAcsidCookie == null || mUserEmail == null || !mUserEmail.equals(sAcsidAccount)
+		    || System.currentTimeMillis() + ACSID_EXPIRY_MARGIN_MILLIS > sAcsidExpires) {
+		return null;
+	    }
+	    return sAcsidCookie;
+	}
+    }
+
+    private void putCachedAscidCookie(String ascidCookie, long expires) {
+	synchronized (AppEngineClient.class) {
+	    sAcsidCookie = ascidCookie;
+	    sAcsidAccount = mUserEmail;
+	    sAcsidExpires = expires;
+	    sAcsidLoaded = true;
+	    SharedPreferences prefs = mContext.getSharedPreferences(Config.PREFERENCE_KEY, Context.MODE_PRIVATE);
+	    prefs.edit().putString(Config.PREF_ACSID_COOKIE, ascidCookie).putString(Config.PREF_ACSID_ACCOUNT,
+		    mUserEmail).putLong(Config.PREF_ACSID_EXPIRES, expires).commit();
+	}
+    }
+
+    private void clearAscidCookie() {
+	synchronized (AppEngineClient.class) {
+	    sAcsidCookie = null;
+	    sAcsidExpires = 0;
+	    sAcsidLoaded = true;
+	    SharedPreferences prefs = mContext.getSharedPreferences(Config.PREFERENCE_KEY, Context.MODE_PRIVATE);
+	    prefs.edit().remove(Config.PREF_ACSID_COOKIE).remove(Config.PREF_ACSID_EXPIRES).commit();
+	}
+    }
+
     private String getAuthToken(Context context, Account account) {
 	String authToken = null;
 	AccountManager accountManager = AccountManager.get(context);
@@ -1,6 +1,8 @@
 package com.geatte.android.app;
 
 import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -56,6 +58,23 @@ public class CommonUtils {
 
     }
 
+    /**
+     * @return hex md5 of the string, a hex hash code when md5 is missing
+     */
+    public static String md5Hex(String value) {
+	try {
+	    MessageDigest md5 = MessageDigest.getInstance("MD5");
+	    byte[] digest = md5.digest(value.getBytes());
+	    StringBuilder hex = new StringBuilder();
+	    for (byte b : digest) {
+		hex.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+	    }
+	    return hex.toString();
+	} catch (NoSuchAlgorithmException e) {
+	    return Integer.toHexString(value.hashCode());
+	}
+    }
+
     public static String convertUTCToLocal(String utcDateStr) {
 	if (utcDateStr == null) {
 	    return null;
@@ -7,7 +7,31 @@ public class Config {
 
     public static final String ENCODE_UTF8 = "UTF-8";
 
-    public static final Long IMAGE_BLOB_UPLOAD_BACKOFF = 300L;
+    // first delay of image upload retries, doubled per retry
+    public static final Long IMAGE_BLOB_UPLOAD_BACKOFF = 5000L;
+    // server encodes uploads again, quality 100 only costs upload time
+    public static final int IMAGE_UPLOAD_JPEG_QUALITY = 85;
+    public static final int IMAGE_DOWNLOAD_ATTEMPTS = 3;
+    // decoded images may use 1/8 of the heap
+    public static final int IMAGE_CACHE_MEMORY_FRACTION = 8;
+    // longest side of list and grid images, and of detail images
+    public static final int THUMBNAIL_MAX_DIMENSION = 200;
+    public static final int DETAIL_MAX_DIMENSION = 800;
+    public static final int THUMBNAIL_JPEG_QUALITY = 80;
+    // background threads decoding images for the screens
+    public static final int IMAGE_DECODE_THREADS = 2;
+    // longest side of cached contact photos, and how many of them are kept
+    public static final int CONTACT_PHOTO_MAX_DIMENSION = 64;
+    public static final int CONTACT_PHOTO_CACHE_SIZE = 64;
+    // retries of a request while the caller waits
+    public static final int REQUEST_MAX_RETRIES = 2;
+    public static final long REQUEST_RETRY_BASE_MILLIS = 1000L;
+    public static final long REQUEST_RETRY_MAX_MILLIS = 30 * 1000L;
+    // retries of an image upload scheduled with the alarm manager
+    public static final int IMAGE_UPLOAD_MAX_RETRIES = 6;
+    public static final long IMAGE_UPLOAD_RETRY_MAX_MILLIS = 30 * 60 * 1000L;
+    // unchanged contacts are checked again for new geatte users this often
+    public static final long CONTACTS_FULL_SYNC_INTERVAL_MILLIS = 7 * 24 * 60 * 60 * 1000L;
 
     public static enum LIKE {
 	YES, NO, MAYBE
@@ -77,6 +101,20 @@ public class Config {
     public static final String C2DM_MESSAGE_GEATTE_VOTER = "geatte_voter";
     public static final String C2DM_MESSAGE_GEATTE_VOTE_RESP = "geatte_vote_resp";
     public static final String C2DM_MESSAGE_GEATTE_VOTE_FEEDBACK = "geatte_vote_feedback";
+    public static final String C2DM_MESSAGE_GEATTE_TITLE = "geatte_title";
+    public static final String C2DM_MESSAGE_GEATTE_DESC = "geatte_desc";
+    public static final String C2DM_MESSAGE_GEATTE_FROM = "geatte_from";
+    public static final String C2DM_MESSAGE_GEATTE_CREATED = "geatte_created";
+    public static final String C2DM_MESSAGE_GEATTE_IMG_HASH = "geatte_img_hash";
+    public static final String C2DM_MESSAGE_GEATTE_TRUNCATED = "geatte_truncated";
+    public static final String C2DM_MESSAGE_GEATTEID_VOTE_DIGEST = "geatteid_vote_digest";
+    public static final String C2DM_MESSAGE_GEATTE_VOTE_DIGEST = "geatte_vote_digest";
+    public static final String C2DM_MESSAGE_GEATTE_VOTE_COUNT = "geatte_vote_count";
+    public static final String C2DM_MESSAGE_GEATTE_VOTE_MORE = "geatte_vote_more";
+    public static final String C2DM_MESSAGE_GEATTE_VOTE_SEQ = "geatte_vote_seq";
+    public static final String C2DM_MESSAGE_GEATTE_VOTE_PREV_SEQ = "geatte_vote_prev";
+    public static final String C2DM_MESSAGE_GEATTE_VOTE_BATCH = "geatte_vote_batch";
+    public static final String C2DM_MESSAGE_GEATTE_VOTE_PREV_BATCH = "geatte_vote_prev_batch";
 
     // prefs
     public static final String PREFERENCE_KEY = "com.geatte.android.app";
@@ -88,11 +126,19 @@ public class Config {
     public static final String PREF_SEND_CAPTION = "sendCaption";
     public static final String PREF_SEND_DESC = "sendDesc";
     public static final String PREF_PHONE_NUMBER = "myPhoneNumber";
+    public static final String PREF_VOTE_DIGEST_SEQ = "voteDigestSeq";
+    public static final String PREF_VOTE_DIGEST_PENDING = "voteDigestPending";
+    public static final String PREF_VOTE_DIGEST_APPLIED = "voteDigestApplied";
+    public static final String PREF_ACSID_COOKIE = "acsidCookie";
+    public static final String PREF_ACSID_ACCOUNT = "acsidAccount";
+    public static final String PREF_ACSID_EXPIRES = "acsidExpires";
+    public static final String PREF_CONTACTS_FULL_SYNC_TIME = "contactsFullSyncTime";
 
     // app server
     public static final String BASE_SERVER = "geatte.appspot.com";
     public static final String BASE_URL = "https://geatte.appspot.com";
     public static final String GEATTE_INFO_GET_URL = "/geatteinfoget";
+    public static final String GEATTE_ALL_GET_URL = "/geatteallget";
     public static final String GEATTE_IMAGE_GET_URL = "/geatteimageget";
     public static final String GEATTE_REG_CHECK_URL = "/geatteregidcheck";
     public static final String GEATTE_IMAGE_BLOB_UPLOAD_URL = "/geatteimageblobupload";
@@ -123,6 +169,12 @@ public class Config {
     public static final String FRIEND_GEATTE_VOTE_RESP = "friendGeatteVoteResp";
     public static final String FRIEND_GEATTE_FEEDBACK = "friendGeatteFeedback";
 
+    public static final String QUERY_REQ_TYPE_PARAM = "reqType";
+    public static final String QUERY_SINCE_SEQ_PARAM = "sinceSeq";
+    public static final String VOTE_VOTER = "voter";
+    public static final String VOTE_RESP = "voteResp";
+    public static final String VOTE_FEEDBACK = "voteFeedback";
+
     public static final String GEATTE_IMAGE_RANDOM_ID_PARAM = "random_id";
     public static final String GEATTE_IMAGE_BLOB_PARAM = "image_blob";
     public static final String GEATTE_IMAGE_BLOB_RESP = "image_blob_resp";
@@ -27,9 +27,6 @@ import android.graphics.Path;
 import android.graphics.Paint.Style;
 import android.os.Bundle;
 import android.os.Handler;
-import android.provider.ContactsContract.Contacts;
-import android.provider.ContactsContract.Data;
-import android.provider.ContactsContract.CommonDataKinds.Photo;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -126,7 +123,7 @@ public class GeatteAllFeedbackXActivity extends GDListActivity {
 	Cursor feedbackCur = null;
 	try {
 	    mDbHelper.open();
-	    feedbackCur = mDbHelper.fetchAllMyInterestFeedback(20, 1);
+	    feedbackCur = mDbHelper.fetchAllMyInterestFeedbackWithDetails(20, 1);
 	    feedbackCur.moveToFirst();
 
 	    int counter = 0;
@@ -136,36 +133,24 @@ public class GeatteAllFeedbackXActivity extends GDListActivity {
 		    Log.d(Config.LOGTAG, "Process feedback = " + counter);
 		}
 
-		String geatteId = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_GEATTE_ID));
 		String vote = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_VOTE));
-		String voter = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_VOTER));
 		String comment = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_COMMENT));
 		// get contact name for this voter
-		String voterName = mDbHelper.fetchContactFirstName(voter);
+		String voterName = GeatteDBAdapter.toFirstName(feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_CONTACT_NAME)));
 		// get voter contact thumbnail
-		Integer contactId = mDbHelper.fetchContactId(voter);
-		Bitmap contactBitmap = queryPhotoForContact(contactId);
-
-		//String interestTitle = null;
-		String interestImagePath = null;
-		byte[] interestImageThumbnail = null;
-		Cursor myInterestCur = mDbHelper.fetchMyInterestWithBlob(geatteId);
-		try {
-		    //interestTitle = myInterestCur.getString(myInterestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_INTEREST_TITLE));
-		    interestImagePath = myInterestCur.getString(myInterestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_PATH));
-		    interestImageThumbnail = myInterestCur.getBlob(myInterestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_THUMBNAIL));
-		} catch (Exception ex) {
-		    Log.e(Config.LOGTAG, "GeatteAllFeedbackXActivity:getAllFeedbackItems() error to fetch interest geatteId = " + geatteId, ex);
-		} finally{
-		    myInterestCur.close();
-		}
+		int contactIdIndex = feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_CONTACT_ID);
+		Integer contactId = feedbackCur.isNull(contactIdIndex) ? -1 : feedbackCur.getInt(contactIdIndex);
+		Bitmap contactBitmap = GeatteContactCache.get(this).getPhoto(contactId);
+
+		String interestImagePath = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_PATH));
+		String interestThumbnailPath = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_THUMBNAIL_PATH));
 
 		StringBuilder sb = new StringBuilder(voterName).append(" said ").append(vote);
 
 		if (contactBitmap != null) {
-		    items.add(new GeatteFeedbackItem(sb.toString(), comment, contactBitmap, interestImagePath, interestImageThumbnail));
+		    items.add(new GeatteFeedbackItem(sb.toString(), comment, contactBitmap, interestImagePath, interestThumbnailPath));
 		} else {
-		    items.add(new GeatteFeedbackItem(sb.toString(), comment, R.drawable.profile, interestImagePath, interestImageThumbnail));
+		    items.add(new GeatteFeedbackItem(sb.toString(), comment, R.drawable.profile, interestImagePath, interestThumbnailPath));
 		}
 
 		feedbackCur.moveToNext();
@@ -182,52 +167,6 @@ public class GeatteAllFeedbackXActivity extends GDListActivity {
 	return items;
     }
 
-    private Bitmap queryPhotoForContact(int contactId) {
-	final String[] projection = new String[] {
-		//Contacts.DISPLAY_NAME,// the name of the contact
-		Contacts.PHOTO_ID// the id of the column in the data table for the image
-	};
-
-	final Cursor contact = managedQuery(
-		Contacts.CONTENT_URI,
-		projection,
-		Contacts._ID + "=?",// filter entries on the basis of the contact id
-		new String[]{String.valueOf(contactId)},// the parameter to which the contact id column is compared to
-		null);
-
-	if(contact.moveToFirst()) {
-	    //	    final String name = contact.getString(
-	    //		    contact.getColumnIndex(Contacts.DISPLAY_NAME));
-	    final String photoId = contact.getString(
-		    contact.getColumnIndex(Contacts.PHOTO_ID));
-	    final Bitmap photo;
-	    if(photoId != null) {
-		photo = queryContactBitmap(photoId);
-	    } else {
-		photo = null;
-	    }
-	    contact.close();
-	    return photo;
-	}
-	contact.close();
-	return null;
-    }
-
-    private Bitmap queryContactBitmap(String photoId) {
-	Cursor photo = getContentResolver().query(Data.CONTENT_URI, new String[] { Photo.PHOTO },
-		Data._ID + "=?", new String[] { photoId }, null);
-
-	final Bitmap photoBitmap;
-	if (photo.moveToFirst()) {
-	    byte[] photoBlob = photo.getBlob(photo.getColumnIndex(Photo.PHOTO));
-	    photoBitmap = BitmapFactory.decodeByteArray(photoBlob, 0, photoBlob.length);
-	} else {
-	    photoBitmap = null;
-	}
-	photo.close();
-	return photoBitmap;
-    }
-
     /**
      * A GeatteFeedbackItemAdapter is an extension of an ItemAdapter for
      * ThumbnailBitmapItem, SeparatorThumbnailItem, GeatteThumbnailItem
@@ -286,10 +225,8 @@ public class GeatteAllFeedbackXActivity extends GDListActivity {
 		holder.textViewSubTitle.setText(tItem.subtitle);
 		//setTag(item.id);
 
-		if(Config.LOG_DEBUG_ENABLED) {
-		    Log.d(Config.LOGTAG, "GeatteAllFeedbackXActivity:getView() : async image set to bytearray for length= " + tItem.interestThumbnail.length);
-		}
-		holder.interestImageView.setImageBitmap(BitmapFactory.decodeByteArray(tItem.interestThumbnail, 0, tItem.interestThumbnail.length));
+		GeatteImageLoader.get(mContext).bindFile(holder.interestImageView, tItem.interestThumbnailPath,
+			Config.THUMBNAIL_MAX_DIMENSION, R.drawable.invalid);
 
 		if (tItem.contactBitmap != null && !tItem.contactBitmap.isRecycled()) {
 		    holder.contactImageView.setImageBitmap(tItem.contactBitmap);
@@ -0,0 +1,246 @@
+package com.geatte.android.app;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.Data;
+import android.provider.ContactsContract.CommonDataKinds.Photo;
+import android.telephony.PhoneNumberUtils;
+import android.util.Log;
+
+/**
+ * Names, contact ids and photos of the contacts, shared by all screens.
+ *
+ * The contacts table is read once into memory, keyed by the phone number
+ * without separators. Photos are read from the contacts provider the first
+ * time a contact is shown, scaled down and kept in a small LRU. Screens must
+ * not recycle the photos, they are shared.
+ *
+ * Everything is dropped when the contacts provider changes or the contacts
+ * table is rebuilt, and read again on the next lookup.
+ */
+public class GeatteContactCache {
+    private static final String TAG = "GeatteContactCache";
+
+    private static GeatteContactCache sCache;
+
+    private final Context mContext;
+
+    // null until the contacts table is read
+    private Map<String, Contact> mContacts;
+    // bumped by invalidate(), a photo read before that is not kept
+    private int mGeneration = 0;
+    private final LinkedHashMap<Integer, Bitmap> mPhotos = new LinkedHashMap<Integer, Bitmap>(16, 0.75f, true) {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<Integer, Bitmap> eldest) {
+	    // not recycled, a list may still show it
+	    return size() > Config.CONTACT_PHOTO_CACHE_SIZE;
+	}
+    };
+
+    private static class Contact {
+	final int contactId;
+	final String name;
+
+	Contact(int contactId, String name) {
+	    this.contactId = contactId;
+	    this.name = name;
+	}
+    }
+
+    private GeatteContactCache(Context context) {
+	mContext = context;
+	context.getContentResolver().registerContentObserver(Contacts.CONTENT_URI, true, new ContentObserver(null) {
+	    @Override
+	    public void onChange(boolean selfChange) {
+		if (Config.LOG_DEBUG_ENABLED) {
+		    Log.d(Config.LOGTAG, TAG + " : contacts changed, invalidate");
+		}
+		invalidate();
+	    }
+	});
+    }
+
+    public static synchronized GeatteContactCache get(Context context) {
+	if (sCache == null) {
+	    sCache = new GeatteContactCache(context.getApplicationContext());
+	}
+	return sCache;
+    }
+
+    /**
+     * @param unknownName returned if the number is not a contact
+     * @return the contact name
+     */
+    public synchronized String getName(String phoneNumber, String unknownName) {
+	Contact contact = lookup(phoneNumber);
+	return contact != null ? contact.name : unknownName;
+    }
+
+    /**
+     * @return the first name as list screens show it
+     */
+    public String getFirstName(String phoneNumber) {
+	return GeatteDBAdapter.toFirstName(getName(phoneNumber, null));
+    }
+
+    /**
+     * @return the id in the contacts provider, -1 if the number is not a contact
+     */
+    public synchronized int getContactId(String phoneNumber) {
+	Contact contact = lookup(phoneNumber);
+	return contact != null ? contact.contactId : -1;
+    }
+
+    /**
+     * @return the scaled down photo of the contact, null if it has none
+     */
+    public Bitmap getPhoto(int contactId) {
+	if (contactId < 0) {
+	    return null;
+	}
+	Integer key = Integer.valueOf(contactId);
+	int generation;
+	synchronized (this) {
+	    if (mPhotos.containsKey(key)) {
+		return mPhotos.get(key);
+	    }
+	    generation = mGeneration;
+	}
+	// provider queries run outside the lock
+	Bitmap photo = queryPhoto(contactId);
+	synchronized (this) {
+	    if (generation == mGeneration) {
+		mPhotos.put(key, photo);
+	    }
+	}
+	return photo;
+    }
+
+    /**
+     * Drop all names and photos, for example after the contacts table is rebuilt.
+     */
+    public synchronized void invalidate() {
+	mContacts = null;
+	mPhotos.clear();
+	++mGeneration;
+    }
+
+    private Contact lookup(String phoneNumber) {
+	if (phoneNumber == null) {
+	    return null;
+	}
+	if (mContacts == null) {
+	    mContacts = loadContacts();
+	}
+	return mContacts.get(normalize(phoneNumber));
+    }
+
+    private static String normalize(String phoneNumber) {
+	return PhoneNumberUtils.stripSeparators(phoneNumber);
+    }
+
+    private Map<String, Contact> loadContacts() {
+	Map<String, Contact> contacts = new HashMap<String, Contact>();
+	GeatteDBAdapter dbHelper = new GeatteDBAdapter(mContext);
+	Cursor cursor = null;
+	try {
+	    dbHelper.open();
+	    cursor = dbHelper.fetchAllContacts();
+	    if (cursor != null) {
+		int phoneIndex = cursor.getColumnIndexOrThrow(GeatteDBAdapter.KEY_CONTACT_PHONE_NUMBER);
+		int idIndex = cursor.getColumnIndexOrThrow(GeatteDBAdapter.KEY_CONTACT_ID);
+		int nameIndex = cursor.getColumnIndexOrThrow(GeatteDBAdapter.KEY_CONTACT_NAME);
+		while (cursor.moveToNext()) {
+		    contacts.put(normalize(cursor.getString(phoneIndex)),
+			    new Contact(cursor.getInt(idIndex), cursor.getString(nameIndex)));
+		}
+	    }
+	} catch (Exception ex) {
+	    Log.e(Config.LOGTAG, TAG + " : ERROR to load contacts", ex);
+	} finally {
+	    if (cursor != null) {
+		cursor.close();
+	    }
+	    dbHelper.close();
+	}
+	if (Config.LOG_DEBUG_ENABLED) {
+	    Log.d(Config.LOGTAG, TAG + " : loaded " + contacts.size() + " contacts");
+	}
+	return contacts;
+    }
+
+    private Bitmap queryPhoto(int contactId) {
+	String photoId = null;
+	Cursor contact = mContext.getContentResolver().query(Contacts.CONTENT_URI, new String[] { Contacts.PHOTO_ID },
+		Contacts._ID + "=?", new String[] { String.valueOf(contactId) }, null);
+	if (contact != null) {
+	    try {
+		if (contact.moveToFirst()) {
+		    photoId = contact.getString(0);
+		}
+	    } finally {
+		contact.close();
+	    }
+	}
+	if (photoId == null) {
+	    return null;
+	}
+
+	byte[] photoBlob = null;
+	Cursor photo = mContext.getContentResolver().query(Data.CONTENT_URI, new String[] { Photo.PHOTO },
+		Data._ID + "=?", new String[] { photoId }, null);
+	if (photo != null) {
+	    try {
+		if (photo.moveToFirst()) {
+		    photoBlob = photo.getBlob(0);
+		}
+	    } finally {
+		photo.close();
+	    }
+	}
+	if (photoBlob == null) {
+	    return null;
+	}
+	return decodeScaled(photoBlob, Config.CONTACT_PHOTO_MAX_DIMENSION);
+    }
+
+    private static Bitmap decodeScaled(byte[] data, int maxDimension) {
+	BitmapFactory.Options bounds = new BitmapFactory.Options();
+	bounds.inJustDecodeBounds = true;
+	BitmapFactory.decodeByteArray(data, 0, data.length, bounds);
+	if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+	    return null;
+	}
+	int sampleSize = 1;
+	while (Math.max(bounds.outWidth, bounds.outHeight) / (sampleSize * 2) >= maxDimension) {
+	    sampleSize *= 2;
+	}
+	BitmapFactory.Options options = new BitmapFactory.Options();
+	options.inSampleSize = sampleSize;
+	Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+	if (bitmap == null) {
+	    return null;
+	}
+	int largest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+	if (largest > maxDimension) {
+	    Bitmap scaled = Bitmap.createScaledBitmap(bitmap, bitmap.getWidth() * maxDimension / largest,
+		    bitmap.getHeight() * maxDimension / largest, true);
+	    if (scaled != bitmap) {
+		bitmap.recycle();
+		bitmap = scaled;
+	    }
+	}
+	return bitmap;
+    }
+
+}
@@ -17,9 +17,6 @@ import com.geatte.android.view.GeatteThumbnailItem;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
-import android.provider.ContactsContract.Contacts;
-import android.provider.ContactsContract.Data;
-import android.provider.ContactsContract.CommonDataKinds.Photo;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -32,7 +29,6 @@ import android.widget.ListView;
 import android.content.*;
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 
 @Deprecated
 public class GeatteContactSelectActivity extends GDListActivity {
@@ -147,7 +143,7 @@ public class GeatteContactSelectActivity extends GDListActivity {
 		String contactId = contactCur.getString(contactCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_CONTACT_ID));
 		String contactName = contactCur.getString(contactCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_CONTACT_NAME));
 		int contactIdInt = Integer.parseInt(contactId);
-		Bitmap contactBitmap = queryPhotoForContact(contactIdInt);
+		Bitmap contactBitmap = GeatteContactCache.get(this).getPhoto(contactIdInt);
 
 		if(Config.LOG_DEBUG_ENABLED) {
 		    Log.d(Config.LOGTAG, "GeatteContactSelectActivity:getContacts() : add one GeatteThumbnailCheckbox, contactPhone = " + contactPhone
@@ -177,52 +173,6 @@ public class GeatteContactSelectActivity extends GDListActivity {
 	return items;
     }
 
-    private Bitmap queryPhotoForContact(int contactId) {
-	final String[] projection = new String[] {
-		//Contacts.DISPLAY_NAME,// the name of the contact
-		Contacts.PHOTO_ID// the id of the column in the data table for the image
-	};
-
-	final Cursor contact = managedQuery(
-		Contacts.CONTENT_URI,
-		projection,
-		Contacts._ID + "=?",// filter entries on the basis of the contact id
-		new String[]{String.valueOf(contactId)},// the parameter to which the contact id column is compared to
-		null);
-
-	if(contact.moveToFirst()) {
-	    //	    final String name = contact.getString(
-	    //		    contact.getColumnIndex(Contacts.DISPLAY_NAME));
-	    final String photoId = contact.getString(
-		    contact.getColumnIndex(Contacts.PHOTO_ID));
-	    final Bitmap photo;
-	    if(photoId != null) {
-		photo = queryContactBitmap(photoId);
-	    } else {
-		photo = null;
-	    }
-	    contact.close();
-	    return photo;
-	}
-	contact.close();
-	return null;
-    }
-
-    private Bitmap queryContactBitmap(String photoId) {
-	Cursor photo = getContentResolver().query(Data.CONTENT_URI, new String[] { Photo.PHOTO },
-		Data._ID + "=?", new String[] { photoId }, null);
-
-	final Bitmap photoBitmap;
-	if (photo.moveToFirst()) {
-	    byte[] photoBlob = photo.getBlob(photo.getColumnIndex(Photo.PHOTO));
-	    photoBitmap = BitmapFactory.decodeByteArray(photoBlob, 0, photoBlob.length);
-	} else {
-	    photoBitmap = null;
-	}
-	photo.close();
-	return photoBitmap;
-    }
-
     private void clearSelections() {
 	for (int i = 0; i < this.mListView.getCount(); i++) {
 	    GeatteThumbnailCheckboxView checkboxView = (GeatteThumbnailCheckboxView) this.mListView.getChildAt(i);
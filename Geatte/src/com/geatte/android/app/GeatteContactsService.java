@@ -3,6 +3,12 @@ package com.geatte.android.app;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.entity.StringEntity;
@@ -21,15 +27,13 @@ import android.os.Binder;
 import android.os.IBinder;
 import android.os.Parcel;
 import android.os.RemoteException;
-import android.provider.ContactsContract.Contacts;
-import android.provider.ContactsContract.Data;
-import android.provider.ContactsContract.RawContacts;
 import android.provider.ContactsContract.CommonDataKinds.Phone;
 import android.util.Log;
 
 /**
  * A service activity to get all contacts' phone numbers and send to server for filter.
- * Then store to db for future use of geatte contact list view.
+ * Then store to db for future use of geatte contact list view. Only the
+ * contacts added or changed since the last run are sent, see syncContacts().
  *
  */
 public class GeatteContactsService extends Service {
@@ -53,42 +57,72 @@ public class GeatteContactsService extends Service {
     }
 
 
-    private JSONObject queryAllRawContacts() {
-	Log.d(Config.LOGTAG, "GeatteContactsService:queryAllRawContacts() START");
-	final String[] projection = new String[] { RawContacts.CONTACT_ID,
-		// the contact id column
-		RawContacts.DELETED // column if this contact is deleted
-	};
 
-	Cursor rawContacts = getContentResolver().query(RawContacts.CONTENT_URI, projection, null, null, null);
-
-	final int contactIdColumnIndex = rawContacts.getColumnIndex(RawContacts.CONTACT_ID);
-	final int deletedColumnIndex = rawContacts.getColumnIndex(RawContacts.DELETED);
+    /**
+     * Name and phone numbers of a contact, as the phone has them now
+     */
+    private static class PhoneContact {
+	final String name;
+	final List<String> numbers = new ArrayList<String>();
 
+	PhoneContact(String name) {
+	    this.name = name;
+	}
 
-	JSONObject json = new JSONObject();
-	JSONArray jsonArray = new JSONArray();
-	if (rawContacts.moveToFirst()) { // move the cursor to the first entry
-	    while (!rawContacts.isAfterLast()) { // still a valid entry left?
-		final int contactId = rawContacts.getInt(contactIdColumnIndex);
-		final boolean deleted = (rawContacts.getInt(deletedColumnIndex) == 1);
-		if (!deleted) {
-		    queryAllPhoneNumbersForContact(jsonArray, String.valueOf(contactId));
-		}
-		rawContacts.moveToNext(); // move to the next entry
+	/**
+	 * @return hash of what the contacts table keeps of the contact, the
+	 * order of the numbers does not matter
+	 */
+	String hash() {
+	    List<String> sorted = new ArrayList<String>(numbers);
+	    Collections.sort(sorted);
+	    StringBuilder value = new StringBuilder(name != null ? name : "");
+	    for (String number : sorted) {
+		value.append('\n').append(number);
 	    }
+	    return CommonUtils.md5Hex(value.toString());
 	}
+    }
+
+    /**
+     * Read the name and numbers of all contacts with one query. The phone
+     * data does not have the deleted raw contacts.
+     *
+     * @return contacts by contact id, null if the contacts provider is not there
+     */
+    private Map<Integer, PhoneContact> queryAllPhoneContacts() {
+	final String[] projection = new String[] { Phone.CONTACT_ID, Phone.NUMBER, Phone.DISPLAY_NAME };
 
-	rawContacts.close();
+	Cursor phone = getContentResolver().query(Phone.CONTENT_URI, projection, null, null, null);
+	if (phone == null) {
+	    return null;
+	}
 
+	Map<Integer, PhoneContact> contacts = new HashMap<Integer, PhoneContact>();
 	try {
-	    json.put(Config.CONTACT_LIST, jsonArray);
-	} catch (JSONException ex) {
-	    Log.e(Config.LOGTAG,
-		    "GeatteContactsService:queryAllRawContacts: json exception", ex);
+	    final int contactIdColumnIndex = phone.getColumnIndex(Phone.CONTACT_ID);
+	    final int contactNumberColumnIndex = phone.getColumnIndex(Phone.NUMBER);
+	    final int contactNameColumnIndex = phone.getColumnIndex(Phone.DISPLAY_NAME);
+	    while (phone.moveToNext()) {
+		final String number = phone.getString(contactNumberColumnIndex);
+		if (number == null) {
+		    continue;
+		}
+		final Integer contactId = phone.getInt(contactIdColumnIndex);
+		PhoneContact contact = contacts.get(contactId);
+		if (contact == null) {
+		    contact = new PhoneContact(phone.getString(contactNameColumnIndex));
+		    contacts.put(contactId, contact);
+		}
+		contact.numbers.add(number);
+	    }
+	} finally {
+	    phone.close();
 	}
-	Log.d(Config.LOGTAG, "GeatteContactsService:queryAllRawContacts() END");
-	return json;
+	if(Config.LOG_DEBUG_ENABLED) {
+	    Log.d(Config.LOGTAG, "GeatteContactsService:queryAllPhoneContacts() read " + contacts.size() + " contacts");
+	}
+	return contacts;
     }
 
     /**
@@ -97,144 +131,192 @@ public class GeatteContactsService extends Service {
     Runnable mTask = new Runnable() {
 	public void run() {
 
-	    JSONObject allContactsJson = queryAllRawContacts();
-
-	    //get default country code from the phone
-	    String countryCode = DeviceRegistrar.getPhoneConuntryCode(getApplicationContext());
-	    try {
-		allContactsJson.put(Config.CONTACT_DEFAULT_COUNTRY_CODE, countryCode);
-	    } catch (JSONException jsonEx) {
-		Log.e(Config.LOGTAG, "GeatteContactsActivity:sendJson() Error: ", jsonEx);
+	    Map<Integer, PhoneContact> phoneContacts = queryAllPhoneContacts();
+	    if (phoneContacts == null) {
+		Log.w(Config.LOGTAG, "GeatteContactsService:Runnable unable to query contacts");
+		GeatteContactsService.this.stopSelf();
+		return;
 	    }
 
-	    if(Config.LOG_DEBUG_ENABLED) {
-		Log.d(Config.LOGTAG, "GeatteContactsService:Runnable Attemp to send json to contacts servlet: " + allContactsJson);
+	    final GeatteDBAdapter dbHelper = new GeatteDBAdapter(getApplicationContext());
+	    try {
+		dbHelper.open();
+		syncContacts(dbHelper, phoneContacts);
+	    } catch (Exception ex) {
+		Log.e(Config.LOGTAG, "GeatteContactsService:Runnable Error: ", ex);
+	    } finally {
+		dbHelper.close();
 	    }
 
-	    final SharedPreferences prefs = getApplicationContext().getSharedPreferences(Config.PREFERENCE_KEY,
-		    Context.MODE_PRIVATE);
-	    String accountName = prefs.getString(Config.PREF_USER_EMAIL, null);
-
-	    //	    HttpClient client = new DefaultHttpClient();
-	    //	    HttpConnectionParams.setConnectionTimeout(client.getParams(), 10000);
-	    //	    HttpResponse response;
-	    try {
-		//		HttpPost post = new HttpPost(Config.BASE_URL + GET_CONTACTS_PATH);
-		StringEntity se = new StringEntity(allContactsJson.toString());
-		se.setContentEncoding(new BasicHeader(HTTP.CONTENT_TYPE, "application/json"));
-		//		post.setEntity(se);
+	    // Done with our work... stop the service!
+	    GeatteContactsService.this.stopSelf();
+	}
+    };
 
-		AppEngineClient client = new AppEngineClient(getApplicationContext(), accountName);
-		HttpResponse response = client.makeRequestWithJSONStringEntity(GET_CONTACTS_PATH, se);
+    /**
+     * Upload only the contacts added or changed since the last sync and apply
+     * what the server sends back in one transaction. Once in a while all
+     * contacts are uploaded again, an unchanged contact may have become a
+     * geatte user since.
+     */
+    private void syncContacts(GeatteDBAdapter dbHelper, Map<Integer, PhoneContact> phoneContacts)
+    throws Exception {
+	final SharedPreferences prefs = getApplicationContext().getSharedPreferences(Config.PREFERENCE_KEY,
+		Context.MODE_PRIVATE);
+	long now = System.currentTimeMillis();
+	long lastFullSync = prefs.getLong(Config.PREF_CONTACTS_FULL_SYNC_TIME, 0);
+	// a clock set back also syncs everything
+	boolean fullSync = now - lastFullSync >= Config.CONTACTS_FULL_SYNC_INTERVAL_MILLIS || now < lastFullSync;
+
+	Map<Integer, String> syncedVersions = dbHelper.fetchContactVersions();
+	Map<Integer, String> changedVersions = new HashMap<Integer, String>();
+	for (Map.Entry<Integer, PhoneContact> contact : phoneContacts.entrySet()) {
+	    String hash = contact.getValue().hash();
+	    if (fullSync || !hash.equals(syncedVersions.get(contact.getKey()))) {
+		changedVersions.put(contact.getKey(), hash);
+	    }
+	}
+	List<Integer> removedContactIds = new ArrayList<Integer>();
+	for (Integer contactId : syncedVersions.keySet()) {
+	    if (!phoneContacts.containsKey(contactId)) {
+		removedContactIds.add(contactId);
+	    }
+	}
 
-		//		response = client.execute(post);
+	if (changedVersions.isEmpty() && removedContactIds.isEmpty()) {
+	    if(Config.LOG_DEBUG_ENABLED) {
+		Log.d(Config.LOGTAG, "GeatteContactsService:syncContacts() no contact changed, nothing to sync");
+	    }
+	    return;
+	}
+	Log.i(Config.LOGTAG, "GeatteContactsService:syncContacts() fullSync = " + fullSync + ", changed = "
+		+ changedVersions.size() + ", removed = " + removedContactIds.size() + " of "
+		+ phoneContacts.size() + " contacts");
+
+	List<String[]> matches = new ArrayList<String[]>();
+	if (!changedVersions.isEmpty()) {
+	    JSONObject jResponse = uploadContacts(phoneContacts, changedVersions.keySet());
+	    if (jResponse == null) {
+		// the versions are not saved, the next run uploads the same contacts
+		return;
+	    }
+	    processJsonResponse(jResponse, phoneContacts, matches);
+	}
+	if (fullSync) {
+	    // TODO remove default contact
+	    matches.add(new String[] { "+15103978860", String.valueOf(Integer.MAX_VALUE), "Geatte Team" });
+	}
 
-		if (response.getStatusLine().getStatusCode() == 400 || response.getStatusLine().getStatusCode() == 500) {
-		    Log.e(Config.LOGTAG, "GeatteContactsService Error: " + response.getStatusLine().getStatusCode()
-			    + " " + response.getEntity().getContent());
-		}
+	int inserted = dbHelper.applyContactSync(fullSync, changedVersions, removedContactIds, matches);
+	if(Config.LOG_DEBUG_ENABLED) {
+	    Log.d(Config.LOGTAG, " GeatteContactsService:syncContacts: saved contacts total [" + inserted
+		    + "] DB SUCCESSUL!");
+	}
+	if (fullSync) {
+	    prefs.edit().putLong(Config.PREF_CONTACTS_FULL_SYNC_TIME, now).commit();
+	}
+	GeatteContactCache.get(getApplicationContext()).invalidate();
 
-		if (response.getEntity() != null) {
-
-		    JSONObject jResponse = null;
-		    BufferedReader reader = new BufferedReader(new InputStreamReader(response.getEntity().getContent(),
-		    "UTF-8"));
-
-		    char[] tmp = new char[2048];
-		    StringBuffer body = new StringBuffer();
-		    while (true) {
-			int cnt = reader.read(tmp);
-			if (cnt <= 0) {
-			    break;
-			}
-			body.append(tmp, 0, cnt);
-		    }
-		    try {
-			jResponse = new JSONObject(URLDecoder.decode((body.toString()==null ? "" : body.toString()), Config.ENCODE_UTF8));
-		    } catch (JSONException e) {
-			Log.e(Config.LOGTAG,
-				"GeatteContactsService:Runnable: unable to read response after send contacts to server", e);
-		    }
-
-		    if(Config.LOG_DEBUG_ENABLED) {
-			Log.d(Config.LOGTAG, "GeatteContactsService:Runnable Response: " + jResponse);
-		    }
-
-		    // process json
-		    processJsonResponse(jResponse);
-
-		    // send intent for broadcase receiver in GeatteContactSelectActivity
-		    Intent updateContactsIntent = new Intent(Config.INTENT_ACTION_UPDATE_CONTACTS);
-		    getApplicationContext().sendBroadcast(updateContactsIntent);
-		}
+	// send intent for broadcase receiver in GeatteContactSelectActivity
+	Intent updateContactsIntent = new Intent(Config.INTENT_ACTION_UPDATE_CONTACTS);
+	getApplicationContext().sendBroadcast(updateContactsIntent);
+    }
 
-	    } catch (Exception ex) {
-		Log.e(Config.LOGTAG, "GeatteContactsActivity:sendJson() Error: ", ex);
+    /**
+     * Send the numbers of the given contacts to the server for filter.
+     *
+     * @return the geatte users among them, null if the server could not answer
+     */
+    private JSONObject uploadContacts(Map<Integer, PhoneContact> phoneContacts, Collection<Integer> contactIds)
+    throws Exception {
+	JSONObject contactsJson = new JSONObject();
+	JSONArray jsonArray = new JSONArray();
+	for (Integer contactId : contactIds) {
+	    for (String number : phoneContacts.get(contactId).numbers) {
+		JSONObject json = new JSONObject();
+		json.put(Config.CONTACT_PHONE_NUMBER, number);
+		json.put(Config.CONTACT_ID, String.valueOf(contactId));
+		jsonArray.put(json);
 	    }
+	}
+	contactsJson.put(Config.CONTACT_LIST, jsonArray);
 
-	    // Done with our work... stop the service!
-	    GeatteContactsService.this.stopSelf();
+	//get default country code from the phone
+	String countryCode = DeviceRegistrar.getPhoneConuntryCode(getApplicationContext());
+	contactsJson.put(Config.CONTACT_DEFAULT_COUNTRY_CODE, countryCode);
+
+	if(Config.LOG_DEBUG_ENABLED) {
+	    Log.d(Config.LOGTAG, "GeatteContactsService:uploadContacts Attemp to send json to contacts servlet: " + contactsJson);
 	}
-    };
 
-    private void processJsonResponse(JSONObject jResponse) {
-	JSONArray contactArray;
+	final SharedPreferences prefs = getApplicationContext().getSharedPreferences(Config.PREFERENCE_KEY,
+		Context.MODE_PRIVATE);
+	String accountName = prefs.getString(Config.PREF_USER_EMAIL, null);
 
-	final GeatteDBAdapter dbHelper = new GeatteDBAdapter(this);
+	StringEntity se = new StringEntity(contactsJson.toString());
+	se.setContentEncoding(new BasicHeader(HTTP.CONTENT_TYPE, "application/json"));
 
-	try {
+	AppEngineClient client = new AppEngineClient(getApplicationContext(), accountName);
+	HttpResponse response = client.makeRequestWithJSONStringEntity(GET_CONTACTS_PATH, se);
+
+	int respStatusCode = response.getStatusLine().getStatusCode();
+	if (respStatusCode == 400 || respStatusCode == 500 || respStatusCode == 503) {
+	    Log.e(Config.LOGTAG, "GeatteContactsService Error: " + respStatusCode);
+	    return null;
+	}
+	if (response.getEntity() == null) {
+	    return null;
+	}
 
-	    dbHelper.open();
+	JSONObject jResponse = null;
+	BufferedReader reader = new BufferedReader(new InputStreamReader(response.getEntity().getContent(),
+	"UTF-8"));
 
-	    contactArray = jResponse.getJSONArray(Config.CONTACT_LIST);
-	    if (contactArray.length() > 0) {
-		//recreate all contacts
-		int retDel = dbHelper.deleteAllContacts();
-		if(Config.LOG_DEBUG_ENABLED) {
-		    Log.d(Config.LOGTAG, " GeatteContactsService:processJsonResponse: deleted contacts total [" + retDel + "] DB SUCCESSUL!");
-		}
+	char[] tmp = new char[2048];
+	StringBuffer body = new StringBuffer();
+	while (true) {
+	    int cnt = reader.read(tmp);
+	    if (cnt <= 0) {
+		break;
 	    }
+	    body.append(tmp, 0, cnt);
+	}
+	try {
+	    jResponse = new JSONObject(URLDecoder.decode((body.toString()==null ? "" : body.toString()), Config.ENCODE_UTF8));
+	} catch (JSONException e) {
+	    Log.e(Config.LOGTAG,
+		    "GeatteContactsService:uploadContacts: unable to read response after send contacts to server", e);
+	}
 
-	    for (int i = 0; i < contactArray.length(); i++) {
-		try {
-		    String phone = contactArray.getJSONObject(i).getString(Config.CONTACT_PHONE_NUMBER).toString();
-		    String contactIdStr = contactArray.getJSONObject(i).getString(Config.CONTACT_ID).toString();
-		    int contactId = Integer.parseInt(contactIdStr);
-		    String name = queryNameForContact(contactId);
-
-		    //long ret = dbHelper.insertOrUpdateContact(phone, contactId, name);
-		    long ret = dbHelper.insertContact(phone, contactId, name);
-
-		    if (ret >= 0) {
-			if(Config.LOG_DEBUG_ENABLED) {
-			    Log.d(Config.LOGTAG, " GeatteContactsService:processJsonResponse: saved contact for phone = " + phone
-				    + ", contactId = " + contactId + ", name = " + name + " to DB SUCCESSUL!");
-			}
-		    } else {
-			Log.w(Config.LOGTAG, " GeatteContactsService:processJsonResponse: saved contact for phone = " + phone
-				+ ", contactId = " + contactId + ", name = " + name + " to DB FAILED!");
-		    }
-		} catch (Exception e) {
-		    Log.e(Config.LOGTAG, "GeatteContactsService:processJsonResponse: exception", e);
-		}
-	    }
+	if(Config.LOG_DEBUG_ENABLED) {
+	    Log.d(Config.LOGTAG, "GeatteContactsService:uploadContacts Response: " + jResponse);
+	}
+	return jResponse;
+    }
 
-	    // TODO remove default contact
-	    long ret = dbHelper.insertContact("+15103978860", Integer.MAX_VALUE, "Geatte Team");
-	    if (ret >= 0) {
-		if(Config.LOG_DEBUG_ENABLED) {
-		    Log.d(Config.LOGTAG, " GeatteContactsService:processJsonResponse: saved geatte team contact to DB SUCCESSUL!");
+    /**
+     * Collect the matched numbers as {phoneNumber, contactId, name}, the
+     * name comes from the contacts read for the upload.
+     */
+    private void processJsonResponse(JSONObject jResponse, Map<Integer, PhoneContact> phoneContacts,
+	    List<String[]> matches) throws JSONException {
+	JSONArray contactArray = jResponse.getJSONArray(Config.CONTACT_LIST);
+	for (int i = 0; i < contactArray.length(); i++) {
+	    try {
+		String phone = contactArray.getJSONObject(i).getString(Config.CONTACT_PHONE_NUMBER).toString();
+		String contactIdStr = contactArray.getJSONObject(i).getString(Config.CONTACT_ID).toString();
+		int contactId = Integer.parseInt(contactIdStr);
+		PhoneContact contact = phoneContacts.get(contactId);
+		if (contact == null || contact.name == null) {
+		    Log.w(Config.LOGTAG, " GeatteContactsService:processJsonResponse: no name for phone = " + phone
+			    + ", contactId = " + contactId);
+		    continue;
 		}
+		matches.add(new String[] { phone, String.valueOf(contactId), contact.name });
+	    } catch (Exception e) {
+		Log.e(Config.LOGTAG, "GeatteContactsService:processJsonResponse: exception", e);
 	    }
-
-	} catch (JSONException ex) {
-	    Log.e(Config.LOGTAG, "GeatteContactsService:processJsonResponse: json exception", ex);
-	} catch (Exception e) {
-	    Log.e(Config.LOGTAG, "GeatteContactsService:processJsonResponse: exception", e);
-	} finally {
-	    dbHelper.close();
 	}
-
     }
 
     //    private ContactEntry queryDetailsForContactSpinnerEntry(int contactId) {
@@ -310,52 +392,6 @@ public class GeatteContactsService extends Service {
     //	phone.close();
     //    }
 
-    private String queryNameForContact(int contactId) {
-	final String[] projection = new String[] {
-		Contacts.DISPLAY_NAME, // the name of the contact
-	};
-
-	Cursor contact = getContentResolver().query(Contacts.CONTENT_URI, projection, Contacts._ID + "=?", new String[] { String.valueOf(contactId) }, null);
-
-	if (contact.moveToFirst()) {
-	    final String name = contact.getString(contact.getColumnIndex(Contacts.DISPLAY_NAME));
-	    contact.close();
-	    return name;
-	}
-	contact.close();
-	return null;
-    }
-
-    public void queryAllPhoneNumbersForContact(JSONArray jsonArray, String contactId) {
-
-	final String[] projection = new String[] { Phone.NUMBER, Phone.TYPE};
-
-	Cursor phone = getContentResolver().query(Phone.CONTENT_URI, projection, Data.CONTACT_ID + "=?", new String[] { contactId }, null);
-
-	if (phone.moveToFirst()) {
-	    final int contactNumberColumnIndex = phone.getColumnIndex(Phone.NUMBER);
-	    final int contactTypeColumnIndex = phone.getColumnIndex(Phone.TYPE);
-
-	    while (!phone.isAfterLast()) {
-		final String number = phone.getString(contactNumberColumnIndex);
-		final int type = phone.getInt(contactTypeColumnIndex);
-		try {
-		    JSONObject json = new JSONObject();
-		    json.put(Config.CONTACT_PHONE_NUMBER, number);
-		    json.put(Config.CONTACT_ID, contactId);
-		    jsonArray.put(json);
-		} catch (JSONException ex) {
-		    Log.e(Config.LOGTAG,
-			    "GeatteContactsService:queryAllPhoneNumbersForContact: json exception", ex);
-		}
-		//content.add(new ListViewEntry(number, Phone.getTypeLabelResource(type), R.string.type_phone));
-		phone.moveToNext();
-	    }
-
-	}
-	phone.close();
-    }
-
     //    public void queryAllEmailAddressesForContact(int contactId, List<ListViewEntry> content) {
     //	final String[] projection = new String[] { Email.DATA,
     //		// use Email.ADDRESS for API-Level 11+
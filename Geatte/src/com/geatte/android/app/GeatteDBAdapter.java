@@ -1,8 +1,8 @@
 package com.geatte.android.app;
 
-import java.io.ByteArrayOutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -13,10 +13,9 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Bitmap.CompressFormat;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 /**
@@ -39,13 +38,16 @@ public class GeatteDBAdapter {
     public static final String KEY_FEEDBACK_VOTE = "vote";
     public static final String KEY_FEEDBACK_COMMENT = "feedback";
     public static final String KEY_FEEDBACK_UPDATED_DATE = "updated_date";
+    public static final String KEY_FEEDBACK_YES_COUNT = "yes_count";
+    public static final String KEY_FEEDBACK_MAYBE_COUNT = "maybe_count";
+    public static final String KEY_FEEDBACK_NO_COUNT = "no_count";
 
     //TABLE images
     public static final String KEY_IMAGE_ID = "_id";
     public static final String KEY_IMAGE_AS_ID = "image_id";
     public static final String KEY_IMAGE_INTEREST_ID = "interest";
     public static final String KEY_IMAGE_PATH = "image_path";
-    public static final String KEY_IMAGE_THUMBNAIL = "image_thumbnail";
+    public static final String KEY_IMAGE_THUMBNAIL_PATH = "image_thumbnail_path";
     //public static final String KEY_IMAGE_HASH = "hash";
 
     //TABLE contacts
@@ -53,6 +55,10 @@ public class GeatteDBAdapter {
     public static final String KEY_CONTACT_ID = "contact_id";
     public static final String KEY_CONTACT_NAME = "name";
 
+    //TABLE contact_versions, what the last contacts sync saw of each contact
+    public static final String KEY_CONTACT_VERSION_ID = "_id";
+    public static final String KEY_CONTACT_VERSION_HASH = "hash";
+
     //TABLE friend_interests
     public static final String KEY_FRIEND_INTEREST_ID = "_id";
     public static final String KEY_FRIEND_INTEREST_TITLE = "f_title";
@@ -65,7 +71,7 @@ public class GeatteDBAdapter {
     public static final String KEY_FI_IMAGE_AS_ID = "fi_image_id";
     public static final String KEY_FI_IMAGE_INTEREST_ID = "fi_interest";
     public static final String KEY_FI_IMAGE_PATH = "fi_image_path";
-    public static final String KEY_FI_IMAGE_THUMBNAIL = "fi_image_thumbnail";
+    public static final String KEY_FI_IMAGE_THUMBNAIL_PATH = "fi_image_thumbnail_path";
 
     //TABLE feedbacks to friend_interests
     public static final String KEY_FI_FEEDBACK_ID = "_id";
@@ -75,16 +81,21 @@ public class GeatteDBAdapter {
     public static final String KEY_FI_FEEDBACK_CREATED_DATE = "fi_created_date";
 
     private static final String DATABASE_NAME = "geattedb";
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 5;
     private static final int CURSOR_LIMIT = 8;
 
-    private static final String DB_TABLE_INTERESTS = "interests";
-    private static final String DB_TABLE_FEEDBACKS = "feedbacks";
-    private static final String DB_TABLE_IMAGES = "images";
-    private static final String DB_TABLE_CONTACTS = "contacts";
-    private static final String DB_TABLE_FRIEND_INTERESTS = "friend_interests";
-    private static final String DB_TABLE_FI_IMAGES = "fi_images";
-    private static final String DB_TABLE_FI_FEEDBACKS = "fi_feedbacks";
+    static final String DB_TABLE_INTERESTS = "interests";
+    static final String DB_TABLE_FEEDBACKS = "feedbacks";
+    static final String DB_TABLE_IMAGES = "images";
+    static final String DB_TABLE_CONTACTS = "contacts";
+    static final String DB_TABLE_FRIEND_INTERESTS = "friend_interests";
+    static final String DB_TABLE_FI_IMAGES = "fi_images";
+    static final String DB_TABLE_FI_FEEDBACKS = "fi_feedbacks";
+    static final String DB_TABLE_CONTACT_VERSIONS = "contact_versions";
+
+    // thumbnail blobs before version 3, the thumbnails are files now
+    private static final String KEY_IMAGE_THUMBNAIL = "image_thumbnail";
+    private static final String KEY_FI_IMAGE_THUMBNAIL = "fi_image_thumbnail";
 
     /**
      * Database creation sql statement
@@ -110,7 +121,7 @@ public class GeatteDBAdapter {
     private static final String DB_CREATE_IMAGES =
 	"CREATE TABLE " + DB_TABLE_IMAGES + " (" + KEY_IMAGE_ID +" INTEGER PRIMARY KEY AUTOINCREMENT," +
 	KEY_IMAGE_PATH +" TEXT NOT NULL," +
-	KEY_IMAGE_THUMBNAIL +" BLOB," +
+	KEY_IMAGE_THUMBNAIL_PATH +" TEXT," +
 	//KEY_IMAGE_HASH + " BLOB," +//TODO UNIQUE
 	KEY_IMAGE_INTEREST_ID + " INTEGER," +
 	"FOREIGN KEY (" + KEY_IMAGE_INTEREST_ID + ") REFERENCES " + DB_TABLE_INTERESTS + " (" + KEY_INTEREST_ID + ")" +
@@ -122,6 +133,11 @@ public class GeatteDBAdapter {
 	KEY_CONTACT_NAME + " TEXT NOT NULL" +
 	");";
 
+    private static final String DB_CREATE_CONTACT_VERSIONS =
+	"CREATE TABLE " + DB_TABLE_CONTACT_VERSIONS + " (" + KEY_CONTACT_VERSION_ID + " INTEGER PRIMARY KEY," +
+	KEY_CONTACT_VERSION_HASH + " TEXT NOT NULL" +
+	");";
+
     private static final String DB_CREATE_FRIEND_INTERESTS =
 	"CREATE TABLE " + DB_TABLE_FRIEND_INTERESTS + " (" + KEY_FRIEND_INTEREST_ID +" TEXT PRIMARY KEY," +
 	KEY_FRIEND_INTEREST_TITLE +" TEXT NOT NULL," +
@@ -133,7 +149,7 @@ public class GeatteDBAdapter {
     private static final String DB_CREATE_FI_IMAGES =
 	"CREATE TABLE " + DB_TABLE_FI_IMAGES + " (" + KEY_FI_IMAGE_ID +" INTEGER PRIMARY KEY AUTOINCREMENT," +
 	KEY_FI_IMAGE_PATH +" TEXT NOT NULL," +
-	KEY_FI_IMAGE_THUMBNAIL +" BLOB," +
+	KEY_FI_IMAGE_THUMBNAIL_PATH +" TEXT," +
 	//KEY_IMAGE_HASH + " BLOB," +//TODO UNIQUE
 	KEY_FI_IMAGE_INTEREST_ID + " TEXT," +
 	"FOREIGN KEY (" + KEY_FI_IMAGE_INTEREST_ID + ") REFERENCES " + DB_TABLE_FRIEND_INTERESTS + " (" + KEY_FRIEND_INTEREST_ID + ")" +
@@ -148,14 +164,44 @@ public class GeatteDBAdapter {
 	"FOREIGN KEY (" +KEY_FI_FEEDBACK_GEATTE_ID +") REFERENCES " + DB_TABLE_FRIEND_INTERESTS + " (" + KEY_FRIEND_INTEREST_ID + ")" +
 	");";
 
+    /**
+     * Indexes on the join and filter columns, since version 4
+     */
+    private static final String[] DB_CREATE_INDEXES = {
+	"CREATE INDEX IF NOT EXISTS " + DB_TABLE_INTERESTS + "_" + KEY_INTEREST_GEATTE_ID + " ON " +
+	DB_TABLE_INTERESTS + " (" + KEY_INTEREST_GEATTE_ID + ");",
+	"CREATE INDEX IF NOT EXISTS " + DB_TABLE_INTERESTS + "_" + KEY_INTEREST_CREATED_DATE + " ON " +
+	DB_TABLE_INTERESTS + " (" + KEY_INTEREST_CREATED_DATE + ");",
+	// covers the vote counters too
+	"CREATE INDEX IF NOT EXISTS " + DB_TABLE_FEEDBACKS + "_" + KEY_FEEDBACK_GEATTE_ID + "_" + KEY_FEEDBACK_VOTE +
+	" ON " + DB_TABLE_FEEDBACKS + " (" + KEY_FEEDBACK_GEATTE_ID + ", " + KEY_FEEDBACK_VOTE + ");",
+	"CREATE INDEX IF NOT EXISTS " + DB_TABLE_IMAGES + "_" + KEY_IMAGE_INTEREST_ID + " ON " +
+	DB_TABLE_IMAGES + " (" + KEY_IMAGE_INTEREST_ID + ");",
+	"CREATE INDEX IF NOT EXISTS " + DB_TABLE_FRIEND_INTERESTS + "_" + KEY_FRIEND_INTEREST_CREATED_DATE + " ON " +
+	DB_TABLE_FRIEND_INTERESTS + " (" + KEY_FRIEND_INTEREST_CREATED_DATE + ");",
+	"CREATE INDEX IF NOT EXISTS " + DB_TABLE_FI_IMAGES + "_" + KEY_FI_IMAGE_INTEREST_ID + " ON " +
+	DB_TABLE_FI_IMAGES + " (" + KEY_FI_IMAGE_INTEREST_ID + ");",
+	"CREATE INDEX IF NOT EXISTS " + DB_TABLE_FI_FEEDBACKS + "_" + KEY_FI_FEEDBACK_GEATTE_ID + " ON " +
+	DB_TABLE_FI_FEEDBACKS + " (" + KEY_FI_FEEDBACK_GEATTE_ID + ");"
+    };
+
     private DatabaseHelper mDbHelper;
     private SQLiteDatabase mDb;
     private final Context mCtx;
 
+    // compiled once per open adapter, like mDb they are used from one thread only
+    private SQLiteStatement mInsertFeedbackStmt;
+    private SQLiteStatement mInsertFIFeedbackStmt;
+    private SQLiteStatement mContactNameStmt;
+    private SQLiteStatement mInterestIdStmt;
+
     private static class DatabaseHelper extends SQLiteOpenHelper {
 
+	private final Context mContext;
+
 	DatabaseHelper(Context context) {
 	    super(context, DATABASE_NAME, null, DATABASE_VERSION);
+	    mContext = context;
 	}
 
 	@Override
@@ -167,6 +213,14 @@ public class GeatteDBAdapter {
 	    db.execSQL(DB_CREATE_FRIEND_INTERESTS);
 	    db.execSQL(DB_CREATE_FI_IMAGES);
 	    db.execSQL(DB_CREATE_FI_FEEDBACKS);
+	    db.execSQL(DB_CREATE_CONTACT_VERSIONS);
+	    createIndexes(db);
+	}
+
+	private void createIndexes(SQLiteDatabase db) {
+	    for (String createIndex : DB_CREATE_INDEXES) {
+		db.execSQL(createIndex);
+	    }
 	}
 
 	/*	private void processDelete(long rowId) {
@@ -178,8 +232,40 @@ public class GeatteDBAdapter {
 	    cur.requery();
 	}*/
 
+	/**
+	 * Upgrade one version at a time, keeping the data. Add a case for each
+	 * new DATABASE_VERSION. SQLiteOpenHelper runs this in a transaction, a
+	 * failed step leaves the db at oldVersion.
+	 */
 	@Override
 	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+	    if (oldVersion < 2) {
+		// the version 1 schema is gone, start over
+		Log.w(Config.LOGTAG, "GeatteDBAdapter:onUpgrade() : drop db version " + oldVersion);
+		dropTables(db);
+		onCreate(db);
+		return;
+	    }
+	    for (int version = oldVersion + 1; version <= newVersion; version++) {
+		switch (version) {
+		case 3:
+		    upgradeToVersion3(db);
+		    break;
+		case 4:
+		    createIndexes(db);
+		    break;
+		case 5:
+		    // empty, the next contacts sync is a full one
+		    db.execSQL(DB_CREATE_CONTACT_VERSIONS);
+		    break;
+		default:
+		    throw new IllegalStateException("no upgrade to db version " + version);
+		}
+		Log.i(Config.LOGTAG, "GeatteDBAdapter:onUpgrade() : upgraded db to version " + version);
+	    }
+	}
+
+	private void dropTables(SQLiteDatabase db) {
 	    db.execSQL("DROP TABLE IF EXISTS "+DB_TABLE_INTERESTS);
 	    db.execSQL("DROP TABLE IF EXISTS "+DB_TABLE_FEEDBACKS);
 	    db.execSQL("DROP TABLE IF EXISTS "+DB_TABLE_IMAGES);
@@ -187,7 +273,66 @@ public class GeatteDBAdapter {
 	    db.execSQL("DROP TABLE IF EXISTS "+DB_TABLE_FRIEND_INTERESTS);
 	    db.execSQL("DROP TABLE IF EXISTS "+DB_TABLE_FI_IMAGES);
 	    db.execSQL("DROP TABLE IF EXISTS "+DB_TABLE_FI_FEEDBACKS);
-	    onCreate(db);
+	    db.execSQL("DROP TABLE IF EXISTS "+DB_TABLE_CONTACT_VERSIONS);
+	}
+
+	/**
+	 * Move the thumbnail blobs to files. SQLite can not drop the blob
+	 * columns, they are cleared instead.
+	 */
+	private void upgradeToVersion3(SQLiteDatabase db) {
+	    db.execSQL("ALTER TABLE " + DB_TABLE_IMAGES + " ADD COLUMN " + KEY_IMAGE_THUMBNAIL_PATH + " TEXT");
+	    db.execSQL("ALTER TABLE " + DB_TABLE_FI_IMAGES + " ADD COLUMN " + KEY_FI_IMAGE_THUMBNAIL_PATH + " TEXT");
+	    int moved = moveThumbnails(db, DB_TABLE_IMAGES, KEY_IMAGE_ID, KEY_IMAGE_INTEREST_ID, KEY_IMAGE_PATH,
+		    KEY_IMAGE_THUMBNAIL, KEY_IMAGE_THUMBNAIL_PATH, GeatteThumbnailStore.PREFIX_IMAGE);
+	    moved += moveThumbnails(db, DB_TABLE_FI_IMAGES, KEY_FI_IMAGE_ID, KEY_FI_IMAGE_INTEREST_ID,
+		    KEY_FI_IMAGE_PATH, KEY_FI_IMAGE_THUMBNAIL, KEY_FI_IMAGE_THUMBNAIL_PATH,
+		    GeatteThumbnailStore.PREFIX_FI_IMAGE);
+	    Log.i(Config.LOGTAG, "GeatteDBAdapter:upgradeToVersion3() : moved " + moved + " thumbnails to files");
+	}
+
+	/**
+	 * Read the blobs one row at a time, a cursor over all of them would
+	 * not fit the cursor window.
+	 */
+	private int moveThumbnails(SQLiteDatabase db, String table, String idColumn, String ownerColumn,
+		String pathColumn, String blobColumn, String thumbnailPathColumn, String prefix) {
+	    List<String[]> rows = new ArrayList<String[]>();
+	    Cursor cursor = db.query(table, new String[] { idColumn, ownerColumn, pathColumn }, blobColumn
+		    + " IS NOT NULL", null, null, null, null);
+	    try {
+		while (cursor.moveToNext()) {
+		    rows.add(new String[] { cursor.getString(0), cursor.getString(1), cursor.getString(2) });
+		}
+	    } finally {
+		cursor.close();
+	    }
+
+	    int moved = 0;
+	    for (String[] row : rows) {
+		byte[] thumbnail = null;
+		cursor = db.query(table, new String[] { blobColumn }, idColumn + "=?", new String[] { row[0] },
+			null, null, null);
+		try {
+		    if (cursor.moveToFirst()) {
+			thumbnail = cursor.getBlob(0);
+		    }
+		} finally {
+		    cursor.close();
+		}
+
+		ContentValues values = new ContentValues();
+		if (thumbnail != null && thumbnail.length > 0) {
+		    String thumbnailPath = GeatteThumbnailStore.write(mContext, prefix, row[1], row[2], thumbnail);
+		    if (thumbnailPath != null) {
+			values.put(thumbnailPathColumn, thumbnailPath);
+			++moved;
+		    }
+		}
+		values.putNull(blobColumn);
+		db.update(table, values, idColumn + "=?", new String[] { row[0] });
+	    }
+	    return moved;
 	}
 
     }
@@ -218,9 +363,38 @@ public class GeatteDBAdapter {
     }
 
     public void close() {
+	closeStatement(mInsertFeedbackStmt);
+	closeStatement(mInsertFIFeedbackStmt);
+	closeStatement(mContactNameStmt);
+	closeStatement(mInterestIdStmt);
+	mInsertFeedbackStmt = null;
+	mInsertFIFeedbackStmt = null;
+	mContactNameStmt = null;
+	mInterestIdStmt = null;
 	mDbHelper.close();
     }
 
+    /**
+     * The database the adapter works on, for GeatteDBBenchmark
+     */
+    SQLiteDatabase getDatabase() {
+	return mDb;
+    }
+
+    private static void closeStatement(SQLiteStatement stmt) {
+	if (stmt != null) {
+	    stmt.close();
+	}
+    }
+
+    private static void bindStringOrNull(SQLiteStatement stmt, int index, String value) {
+	if (value == null) {
+	    stmt.bindNull(index);
+	} else {
+	    stmt.bindString(index, value);
+	}
+    }
+
 
     /**
      * Create a new interest using the title and desc provided. If the interest is
@@ -265,17 +439,48 @@ public class GeatteDBAdapter {
     }
 
     public long insertFeedback(String geatteId, String voter, String vote, String comment) {
-	ContentValues initialValues = new ContentValues();
-	initialValues.put(KEY_FEEDBACK_GEATTE_ID, geatteId);
-	initialValues.put(KEY_FEEDBACK_VOTER, voter);
-	initialValues.put(KEY_FEEDBACK_VOTE, vote);
-	initialValues.put(KEY_FEEDBACK_COMMENT, comment);
+	if (mInsertFeedbackStmt == null) {
+	    mInsertFeedbackStmt = mDb.compileStatement("INSERT INTO " + DB_TABLE_FEEDBACKS + " (" +
+		    KEY_FEEDBACK_GEATTE_ID + ", " + KEY_FEEDBACK_VOTER + ", " + KEY_FEEDBACK_VOTE + ", " +
+		    KEY_FEEDBACK_COMMENT + ", " + KEY_FEEDBACK_UPDATED_DATE + ") VALUES (?, ?, ?, ?, ?)");
+	}
+	bindStringOrNull(mInsertFeedbackStmt, 1, geatteId);
+	bindStringOrNull(mInsertFeedbackStmt, 2, voter);
+	bindStringOrNull(mInsertFeedbackStmt, 3, vote);
+	bindStringOrNull(mInsertFeedbackStmt, 4, comment);
 	// set the format to sql date time
 	// TODO this should be from server and change to received_date
 	SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-	initialValues.put(KEY_FEEDBACK_UPDATED_DATE, dateFormat.format(new Date()));
+	mInsertFeedbackStmt.bindString(5, dateFormat.format(new Date()));
+
+	try {
+	    return mInsertFeedbackStmt.executeInsert();
+	} catch (SQLException ex) {
+	    Log.e(Config.LOGTAG, "ERROR to insert feedback for geatteId = " + geatteId, ex);
+	    return -1;
+	}
+    }
 
-	return mDb.insert(DB_TABLE_FEEDBACKS, null, initialValues);
+    /**
+     * Insert a batch of feedbacks in one transaction.
+     *
+     * @param feedbacks list of {geatteId, voter, vote, comment}
+     * @return number of inserted feedbacks
+     */
+    public int insertFeedbacks(List<String[]> feedbacks) {
+	int inserted = 0;
+	mDb.beginTransaction();
+	try {
+	    for (String[] feedback : feedbacks) {
+		if (insertFeedback(feedback[0], feedback[1], feedback[2], feedback[3]) != -1) {
+		    inserted++;
+		}
+	    }
+	    mDb.setTransactionSuccessful();
+	} finally {
+	    mDb.endTransaction();
+	}
+	return inserted;
     }
 
     public long insertImage(long interestId, String imagePath) {
@@ -284,19 +489,8 @@ public class GeatteDBAdapter {
 	if (imagePath != null) {
 	    initialValues.put(KEY_IMAGE_PATH, imagePath);
 	    //initialValues.put(KEY_IMAGE_HASH, getHashFromByteArray(byteArray));
-
-	    int sampleSize = CommonUtils.getResizeRatio(imagePath, 1500, 30);
-	    if(Config.LOG_DEBUG_ENABLED) {
-		Log.d(Config.LOGTAG, " GeatteDBAdapter:insertImage() resize image with sampleSize = " + sampleSize);
-	    }
-	    BitmapFactory.Options bitmapOptions = new BitmapFactory.Options();
-	    bitmapOptions.inSampleSize = sampleSize;
-	    Bitmap imgBitmap = BitmapFactory.decodeFile(imagePath, bitmapOptions);
-	    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-	    imgBitmap.compress(CompressFormat.JPEG, 100, bos);
-	    byte[] data = bos.toByteArray();
-
-	    initialValues.put(KEY_IMAGE_THUMBNAIL, data);
+	    initialValues.put(KEY_IMAGE_THUMBNAIL_PATH, GeatteThumbnailStore.create(mCtx,
+		    GeatteThumbnailStore.PREFIX_IMAGE, Long.toString(interestId), imagePath));
 	    return mDb.insert(DB_TABLE_IMAGES, null, initialValues);
 	} else {
 	    return -1;
@@ -316,6 +510,92 @@ public class GeatteDBAdapter {
 	return mDb.insert(DB_TABLE_CONTACTS, null, initialValues);
     }
 
+    /**
+     * @return the hash of every contact seen by the last contacts sync, by contact id
+     */
+    public Map<Integer, String> fetchContactVersions() {
+	Map<Integer, String> versions = new HashMap<Integer, String>();
+	Cursor cursor = mDb.query(DB_TABLE_CONTACT_VERSIONS, new String[] { KEY_CONTACT_VERSION_ID,
+		KEY_CONTACT_VERSION_HASH }, null, null, null, null, null);
+	try {
+	    while (cursor.moveToNext()) {
+		versions.put(cursor.getInt(0), cursor.getString(1));
+	    }
+	} finally {
+	    cursor.close();
+	}
+	return versions;
+    }
+
+    /**
+     * Apply a contacts sync in one transaction. The contacts rows of the
+     * changed and removed contacts are replaced by the matches, and their
+     * versions are saved, so a failed sync leaves both tables as they were.
+     *
+     * @param replaceAll true to drop all contacts first, for a full sync
+     * @param changedVersions new hash of each uploaded contact, by contact id
+     * @param removedContactIds contacts that are gone from the phone
+     * @param matches list of {phoneNumber, contactId, name} the server knows
+     * @return number of inserted contacts
+     */
+    public int applyContactSync(boolean replaceAll, Map<Integer, String> changedVersions,
+	    Collection<Integer> removedContactIds, List<String[]> matches) {
+	int inserted = 0;
+	SQLiteStatement deleteContact = null;
+	SQLiteStatement insertContact = null;
+	SQLiteStatement saveVersion = null;
+	SQLiteStatement deleteVersion = null;
+	mDb.beginTransaction();
+	try {
+	    deleteContact = mDb.compileStatement("DELETE FROM " + DB_TABLE_CONTACTS + " WHERE " +
+		    KEY_CONTACT_ID + "=?");
+	    deleteVersion = mDb.compileStatement("DELETE FROM " + DB_TABLE_CONTACT_VERSIONS + " WHERE " +
+		    KEY_CONTACT_VERSION_ID + "=?");
+	    if (replaceAll) {
+		mDb.delete(DB_TABLE_CONTACTS, null, null);
+	    } else {
+		for (Integer contactId : changedVersions.keySet()) {
+		    deleteContact.bindLong(1, contactId);
+		    deleteContact.execute();
+		}
+	    }
+	    for (Integer contactId : removedContactIds) {
+		deleteContact.bindLong(1, contactId);
+		deleteContact.execute();
+		deleteVersion.bindLong(1, contactId);
+		deleteVersion.execute();
+	    }
+
+	    // a number shared by two contacts is kept once, like the primary key wants
+	    insertContact = mDb.compileStatement("INSERT OR REPLACE INTO " + DB_TABLE_CONTACTS + " (" +
+		    KEY_CONTACT_PHONE_NUMBER + ", " + KEY_CONTACT_ID + ", " + KEY_CONTACT_NAME + ") VALUES (?, ?, ?)");
+	    for (String[] match : matches) {
+		insertContact.bindString(1, match[0]);
+		insertContact.bindLong(2, Integer.parseInt(match[1]));
+		insertContact.bindString(3, match[2] != null ? match[2] : "");
+		if (insertContact.executeInsert() != -1) {
+		    inserted++;
+		}
+	    }
+
+	    saveVersion = mDb.compileStatement("INSERT OR REPLACE INTO " + DB_TABLE_CONTACT_VERSIONS + " (" +
+		    KEY_CONTACT_VERSION_ID + ", " + KEY_CONTACT_VERSION_HASH + ") VALUES (?, ?)");
+	    for (Map.Entry<Integer, String> version : changedVersions.entrySet()) {
+		saveVersion.bindLong(1, version.getKey());
+		saveVersion.bindString(2, version.getValue());
+		saveVersion.execute();
+	    }
+	    mDb.setTransactionSuccessful();
+	} finally {
+	    mDb.endTransaction();
+	    closeStatement(deleteContact);
+	    closeStatement(insertContact);
+	    closeStatement(saveVersion);
+	    closeStatement(deleteVersion);
+	}
+	return inserted;
+    }
+
     public long insertOrUpdateContact(String phoneNum, int contactId, String name) {
 	// only first time contacts have mostly insert, later mostly are update
 	if (!updateContact(phoneNum, contactId, name)) {
@@ -335,7 +615,7 @@ public class GeatteDBAdapter {
 	initialValues.put(KEY_CONTACT_ID, contactId);
 	initialValues.put(KEY_CONTACT_NAME, name);
 
-	return mDb.update(DB_TABLE_CONTACTS, initialValues, KEY_CONTACT_PHONE_NUMBER + "='" + phoneNum + "'", null) > 0;
+	return mDb.update(DB_TABLE_CONTACTS, initialValues, KEY_CONTACT_PHONE_NUMBER + "=?", new String[] { phoneNum }) > 0;
     }
 
     /**
@@ -345,7 +625,7 @@ public class GeatteDBAdapter {
      * @return true if deleted, false otherwise
      */
     public boolean deleteContact(String phoneNum) {
-	return mDb.delete(DB_TABLE_CONTACTS, KEY_CONTACT_PHONE_NUMBER + "=" + phoneNum, null) > 0;
+	return mDb.delete(DB_TABLE_CONTACTS, KEY_CONTACT_PHONE_NUMBER + "=?", new String[] { phoneNum }) > 0;
     }
 
     /**
@@ -384,29 +664,30 @@ public class GeatteDBAdapter {
 	ContentValues initialValues = new ContentValues();
 	initialValues.put(KEY_FI_IMAGE_INTEREST_ID, geatteId);
 	initialValues.put(KEY_FI_IMAGE_PATH, imagePath);
-
-	BitmapFactory.Options bitmapOptions = new BitmapFactory.Options();
-	int sampleSize = CommonUtils.getResizeRatio(imagePath, 250, 12);
-	bitmapOptions.inSampleSize = sampleSize;
-	Bitmap imgBitmap = BitmapFactory.decodeFile(imagePath, bitmapOptions);
-	ByteArrayOutputStream bos = new ByteArrayOutputStream();
-	imgBitmap.compress(CompressFormat.JPEG, 100, bos);
-	byte[] data = bos.toByteArray();
-
-	initialValues.put(KEY_FI_IMAGE_THUMBNAIL, data);
+	initialValues.put(KEY_FI_IMAGE_THUMBNAIL_PATH, GeatteThumbnailStore.create(mCtx,
+		GeatteThumbnailStore.PREFIX_FI_IMAGE, geatteId, imagePath));
 	return mDb.insert(DB_TABLE_FI_IMAGES, null, initialValues);
     }
 
     public long insertFIFeedback(String geatteId, String vote, String comment) {
-	ContentValues initialValues = new ContentValues();
-	initialValues.put(KEY_FI_FEEDBACK_GEATTE_ID, geatteId);
-	initialValues.put(KEY_FI_FEEDBACK_VOTE, vote);
-	initialValues.put(KEY_FI_FEEDBACK_COMMENT, comment);
+	if (mInsertFIFeedbackStmt == null) {
+	    mInsertFIFeedbackStmt = mDb.compileStatement("INSERT INTO " + DB_TABLE_FI_FEEDBACKS + " (" +
+		    KEY_FI_FEEDBACK_GEATTE_ID + ", " + KEY_FI_FEEDBACK_VOTE + ", " + KEY_FI_FEEDBACK_COMMENT + ", " +
+		    KEY_FI_FEEDBACK_CREATED_DATE + ") VALUES (?, ?, ?, ?)");
+	}
+	bindStringOrNull(mInsertFIFeedbackStmt, 1, geatteId);
+	bindStringOrNull(mInsertFIFeedbackStmt, 2, vote);
+	bindStringOrNull(mInsertFIFeedbackStmt, 3, comment);
 	// set the format to sql date time
 	SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-	initialValues.put(KEY_FI_FEEDBACK_CREATED_DATE, dateFormat.format(new Date()));
+	mInsertFIFeedbackStmt.bindString(4, dateFormat.format(new Date()));
 
-	return mDb.insert(DB_TABLE_FI_FEEDBACKS, null, initialValues);
+	try {
+	    return mInsertFIFeedbackStmt.executeInsert();
+	} catch (SQLException ex) {
+	    Log.e(Config.LOGTAG, "ERROR to insert friend's interest feedback for geatteId = " + geatteId, ex);
+	    return -1;
+	}
     }
 
     /**
@@ -418,10 +699,23 @@ public class GeatteDBAdapter {
     public boolean deleteInterest(long rowId) {
 	String geatteId = getGeatteIdFromInterestId((int)rowId);
 	if (geatteId != null) {
-	    mDb.delete(DB_TABLE_FEEDBACKS, KEY_FEEDBACK_GEATTE_ID + "=" + geatteId, null);
+	    mDb.delete(DB_TABLE_FEEDBACKS, KEY_FEEDBACK_GEATTE_ID + "=?", new String[] { geatteId });
 	}
-	mDb.delete(DB_TABLE_IMAGES, KEY_IMAGE_INTEREST_ID + "=" + rowId, null);
-	return mDb.delete(DB_TABLE_INTERESTS, KEY_INTEREST_ID + "=" + rowId, null) > 0;
+	List<String> thumbnailPaths = new ArrayList<String>();
+	Cursor cursor = mDb.query(DB_TABLE_IMAGES, new String[] { KEY_IMAGE_THUMBNAIL_PATH },
+		KEY_IMAGE_INTEREST_ID + "=?", new String[] { Long.toString(rowId) }, null, null, null);
+	try {
+	    while (cursor.moveToNext()) {
+		thumbnailPaths.add(cursor.getString(0));
+	    }
+	} finally {
+	    cursor.close();
+	}
+	mDb.delete(DB_TABLE_IMAGES, KEY_IMAGE_INTEREST_ID + "=?", new String[] { Long.toString(rowId) });
+	for (String thumbnailPath : thumbnailPaths) {
+	    GeatteThumbnailStore.delete(thumbnailPath);
+	}
+	return mDb.delete(DB_TABLE_INTERESTS, KEY_INTEREST_ID + "=?", new String[] { Long.toString(rowId) }) > 0;
     }
 
     /**
@@ -465,14 +759,14 @@ public class GeatteDBAdapter {
 	DB_TABLE_CONTACTS + "." + KEY_CONTACT_ID + ", " +
 	DB_TABLE_CONTACTS + "." + KEY_CONTACT_NAME + " " +
 	"FROM " + DB_TABLE_CONTACTS +
-	" WHERE " + DB_TABLE_CONTACTS + "." + KEY_CONTACT_PHONE_NUMBER + "='" + phoneNumber + "'";
+	" WHERE " + DB_TABLE_CONTACTS + "." + KEY_CONTACT_PHONE_NUMBER + "=?";
 
 	if(Config.LOG_DEBUG_ENABLED) {
 	    Log.d(Config.LOGTAG, "fetch contact query string = " + query);
 	}
 
 	try {
-	    Cursor cursor = mDb.rawQuery(query, null);
+	    Cursor cursor = mDb.rawQuery(query, new String[] { phoneNumber });
 
 	    if (cursor != null) {
 		cursor.moveToFirst();
@@ -488,23 +782,33 @@ public class GeatteDBAdapter {
     }
 
     public String fetchContactName(String phoneNumber) {
-	String contactName = null;
-	Cursor contactCur = null;
+	String contactName = queryContactName(phoneNumber);
+	return contactName == null ? "" : contactName;
+    }
+
+    /**
+     * Look up a contact name with the compiled statement
+     * 
+     * @param phoneNumber phone number
+     * @return contact name, or null if the contact is not found
+     */
+    private String queryContactName(String phoneNumber) {
+	if (phoneNumber == null) {
+	    return null;
+	}
 	try {
-	    contactCur = fetchContactFromPhone(phoneNumber);
-	    if (contactCur == null || contactCur.isAfterLast()) {
-		contactName = "";
-	    } else {
-		contactName = contactCur.getString(contactCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_CONTACT_NAME));
+	    if (mContactNameStmt == null) {
+		mContactNameStmt = mDb.compileStatement("SELECT " + KEY_CONTACT_NAME + " FROM " + DB_TABLE_CONTACTS +
+			" WHERE " + KEY_CONTACT_PHONE_NUMBER + "=?");
 	    }
+	    mContactNameStmt.bindString(1, phoneNumber);
+	    return mContactNameStmt.simpleQueryForString();
+	} catch (SQLiteDoneException ex) {
+	    // no such contact
 	} catch (Exception ex) {
-	    Log.e(Config.LOGTAG, "ERROR to fetch fetchContactName()", ex);
-	} finally {
-	    if (contactCur != null) {
-		contactCur.close();
-	    }
+	    Log.e(Config.LOGTAG, "ERROR to fetch queryContactName()", ex);
 	}
-	return contactName;
+	return null;
     }
 
     public Map<String, Object> fetchContactIdAndName(String phoneNumber) {
@@ -534,23 +838,20 @@ public class GeatteDBAdapter {
     }
 
     public String fetchContactFirstName(String phoneNumber) {
-	String contactName = null;
-	Cursor contactCur = null;
-	try {
-	    contactCur = fetchContactFromPhone(phoneNumber);
-	    if (contactCur == null || contactCur.isAfterLast()) {
-		contactName = "A Friend";
-	    } else {
-		contactName = contactCur.getString(contactCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_CONTACT_NAME));
-	    }
-	} catch (Exception ex) {
-	    Log.e(Config.LOGTAG, "ERROR to fetch fetchContactFirstName()", ex);
-	} finally {
-	    if (contactCur != null) {
-		contactCur.close();
-	    }
-	}
+	return GeatteContactCache.get(mCtx).getFirstName(phoneNumber);
+    }
 
+    /**
+     * Shorten a contact name the way list screens show it, the first word
+     * cut to 9 chars. A null name means the contact is not known.
+     * 
+     * @param contactName contact name, or null
+     * @return first name to display
+     */
+    public static String toFirstName(String contactName) {
+	if (contactName == null) {
+	    contactName = "A Friend";
+	}
 	String[] names = contactName.trim().split(" ");
 	if (names != null) {
 	    contactName = names[0];
@@ -602,8 +903,7 @@ public class GeatteDBAdapter {
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + "=" +
 	DB_TABLE_IMAGES + "." + KEY_IMAGE_INTEREST_ID +
 	" ORDER BY " + DB_TABLE_INTERESTS + "." + KEY_INTEREST_CREATED_DATE + " DESC" +
-	" LIMIT " + limit +
-	" OFFSET " + offset;
+	" LIMIT ? OFFSET ?";
 
 	/*	String query = "SELECT " +
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + ", " +
@@ -614,7 +914,7 @@ public class GeatteDBAdapter {
 
 	Log.i(Config.LOGTAG, "fetch my interests query string = " + query);
 
-	Cursor cursor = mDb.rawQuery(query, null);
+	Cursor cursor = mDb.rawQuery(query, new String[] { Integer.toString(limit), Integer.toString(offset) });
 	return cursor;
     }
 
@@ -644,11 +944,11 @@ public class GeatteDBAdapter {
     }
 
     /**
-     * Return a Cursor over the list of my interests in the database with image thumbnail
+     * Return a Cursor over the list of my interests in the database with the thumbnail path
      * 
      * @return Cursor over all my interests
      */
-    public Cursor fetchAllMyInterestsWithBlob() {
+    public Cursor fetchAllMyInterestsWithThumbnail() {
 	String query = "SELECT " +
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + ", " +
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_GEATTE_ID + ", " +
@@ -657,7 +957,7 @@ public class GeatteDBAdapter {
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_CREATED_DATE + ", " +
 	DB_TABLE_IMAGES + "." + KEY_IMAGE_ID + " AS " + KEY_IMAGE_AS_ID + ", " +
 	DB_TABLE_IMAGES + "." + KEY_IMAGE_PATH + ", " +
-	DB_TABLE_IMAGES + "." + KEY_IMAGE_THUMBNAIL + " " +
+	DB_TABLE_IMAGES + "." + KEY_IMAGE_THUMBNAIL_PATH + " " +
 	" FROM " +
 	DB_TABLE_INTERESTS + " JOIN " + DB_TABLE_IMAGES + " ON " +
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + "=" +
@@ -670,6 +970,61 @@ public class GeatteDBAdapter {
 	return cursor;
     }
 
+    /**
+     * Return a Cursor over the list of my interests with the thumbnail path and
+     * the YES, MAYBE and NO feedback counters of each interest
+     * 
+     * @return Cursor over all my interests
+     */
+    public Cursor fetchAllMyInterestsWithCounters() {
+	String query = "SELECT " +
+	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + ", " +
+	DB_TABLE_INTERESTS + "." + KEY_INTEREST_GEATTE_ID + ", " +
+	DB_TABLE_INTERESTS + "." + KEY_INTEREST_TITLE + ", " +
+	DB_TABLE_INTERESTS + "." + KEY_INTEREST_DESC + ", " +
+	DB_TABLE_INTERESTS + "." + KEY_INTEREST_CREATED_DATE + ", " +
+	DB_TABLE_IMAGES + "." + KEY_IMAGE_ID + " AS " + KEY_IMAGE_AS_ID + ", " +
+	DB_TABLE_IMAGES + "." + KEY_IMAGE_PATH + ", " +
+	DB_TABLE_IMAGES + "." + KEY_IMAGE_THUMBNAIL_PATH + ", " +
+	countVote(Config.LIKE.YES) + " AS " + KEY_FEEDBACK_YES_COUNT + ", " +
+	countVote(Config.LIKE.MAYBE) + " AS " + KEY_FEEDBACK_MAYBE_COUNT + ", " +
+	countVote(Config.LIKE.NO) + " AS " + KEY_FEEDBACK_NO_COUNT +
+	" FROM " +
+	DB_TABLE_INTERESTS + " JOIN " + DB_TABLE_IMAGES + " ON " +
+	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + "=" +
+	DB_TABLE_IMAGES + "." + KEY_IMAGE_INTEREST_ID +
+	" LEFT JOIN " + DB_TABLE_FEEDBACKS + " ON " +
+	DB_TABLE_INTERESTS + "." + KEY_INTEREST_GEATTE_ID + "=" +
+	DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_GEATTE_ID +
+	" GROUP BY " + DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + ", " + DB_TABLE_IMAGES + "." + KEY_IMAGE_ID +
+	" ORDER BY " + DB_TABLE_INTERESTS + "." + KEY_INTEREST_CREATED_DATE + " DESC";
+
+	Log.i(Config.LOGTAG, "fetch all my interests with counters query string = " + query);
+
+	Cursor cursor = mDb.rawQuery(query, null);
+	return cursor;
+    }
+
+    private static String countVote(Config.LIKE vote) {
+	return "SUM(CASE WHEN " + DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_VOTE + "='" + vote.toString() +
+	"' THEN 1 ELSE 0 END)";
+    }
+
+    /**
+     * Read the YES, MAYBE and NO counters of the current row of a cursor from
+     * fetchAllMyInterestsWithCounters()
+     * 
+     * @param cursor cursor positioned at an interest
+     * @return counters in the same order as fetchMyInterestFeedbackCounters()
+     */
+    public static int[] getFeedbackCounters(Cursor cursor) {
+	int [] counters = new int[3];
+	counters[0] = cursor.getInt(cursor.getColumnIndexOrThrow(KEY_FEEDBACK_YES_COUNT));
+	counters[1] = cursor.getInt(cursor.getColumnIndexOrThrow(KEY_FEEDBACK_MAYBE_COUNT));
+	counters[2] = cursor.getInt(cursor.getColumnIndexOrThrow(KEY_FEEDBACK_NO_COUNT));
+	return counters;
+    }
+
     /**
      * Return a Cursor positioned at the interest that matches the given rowId
      * 
@@ -688,7 +1043,7 @@ public class GeatteDBAdapter {
 	DB_TABLE_INTERESTS + " JOIN " + DB_TABLE_IMAGES + " ON " +
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + "=" +
 	DB_TABLE_IMAGES + "." + KEY_IMAGE_INTEREST_ID +
-	" WHERE " + DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + "=" + rowId;
+	" WHERE " + DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + "=?";
 
 	/*	String query = "SELECT " +
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + ", " +
@@ -700,7 +1055,7 @@ public class GeatteDBAdapter {
 
 	Log.i(Config.LOGTAG, "fetch interest query string = " + query);
 
-	Cursor cursor = mDb.rawQuery(query, null);
+	Cursor cursor = mDb.rawQuery(query, new String[] { Long.toString(rowId) });
 
 	if (cursor != null) {
 	    cursor.moveToFirst();
@@ -721,25 +1076,25 @@ public class GeatteDBAdapter {
     }
 
     /**
-     * Return a Cursor positioned at the interest that matches the given rowId with blob
+     * Return a Cursor positioned at the interest that matches the given rowId with the thumbnail path
      * 
      * @param rowId id of my interest to retrieve
      * @return Cursor positioned to matching interest, if found
      * @throws SQLException if note could not be found/retrieved
      */
-    public Cursor fetchMyInterestWithBlob(long rowId) throws SQLException {
+    public Cursor fetchMyInterestWithThumbnail(long rowId) throws SQLException {
 	String query = "SELECT " +
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + ", " +
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_TITLE + ", " +
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_DESC + ", " +
 	DB_TABLE_IMAGES + "." + KEY_IMAGE_ID + " AS " + KEY_IMAGE_AS_ID + ", " +
 	DB_TABLE_IMAGES + "." + KEY_IMAGE_PATH + ", " +
-	DB_TABLE_IMAGES + "." + KEY_IMAGE_THUMBNAIL + " " +
+	DB_TABLE_IMAGES + "." + KEY_IMAGE_THUMBNAIL_PATH + " " +
 	"FROM " +
 	DB_TABLE_INTERESTS + " JOIN " + DB_TABLE_IMAGES + " ON " +
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + "=" +
 	DB_TABLE_IMAGES + "." + KEY_IMAGE_INTEREST_ID +
-	" WHERE " + DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + "=" + rowId;
+	" WHERE " + DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + "=?";
 
 	/*	String query = "SELECT " +
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + ", " +
@@ -751,7 +1106,7 @@ public class GeatteDBAdapter {
 
 	Log.i(Config.LOGTAG, "fetch interest query string = " + query);
 
-	Cursor cursor = mDb.rawQuery(query, null);
+	Cursor cursor = mDb.rawQuery(query, new String[] { Long.toString(rowId) });
 
 	if (cursor != null) {
 	    cursor.moveToFirst();
@@ -760,15 +1115,15 @@ public class GeatteDBAdapter {
     }
 
     /**
-     * Return a Cursor positioned at the interest that matches the given geatteId with blob
+     * Return a Cursor positioned at the interest that matches the given geatteId with the thumbnail path
      * 
      * @param geatteId geatteId
      * @return Cursor positioned to matching interest, if found
      * @throws SQLException if note could not be found/retrieved
      */
-    public Cursor fetchMyInterestWithBlob(String geatteId) throws SQLException {
+    public Cursor fetchMyInterestWithThumbnail(String geatteId) throws SQLException {
 	long interestId = this.getInterestIdFromGeatteId(geatteId);
-	return fetchMyInterestWithBlob(interestId);
+	return fetchMyInterestWithThumbnail(interestId);
     }
 
     /**
@@ -787,11 +1142,11 @@ public class GeatteDBAdapter {
 	DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_UPDATED_DATE + " " +
 	"FROM " +
 	DB_TABLE_FEEDBACKS +
-	" WHERE " + DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_GEATTE_ID + "=\"" + geatteId + "\"";
+	" WHERE " + DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_GEATTE_ID + "=?";
 
 	Log.i(Config.LOGTAG, "fetch feedbacks query string = " + query);
 
-	Cursor cursor = mDb.rawQuery(query, null);
+	Cursor cursor = mDb.rawQuery(query, new String[] { geatteId });
 	return cursor;
     }
 
@@ -807,12 +1162,12 @@ public class GeatteDBAdapter {
 	    "COUNT(*) AS NUM " +
 	    "FROM " +
 	    DB_TABLE_FEEDBACKS +
-	    " WHERE " + DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_GEATTE_ID + "=\"" + geatteId + "\"" +
+	    " WHERE " + DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_GEATTE_ID + "=?" +
 	    " GROUP BY " + DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_VOTE;
 
 	    Log.i(Config.LOGTAG, "fetch feedbacks counters query string = " + query);
 
-	    cursor = mDb.rawQuery(query, null);
+	    cursor = mDb.rawQuery(query, new String[] { geatteId });
 	    cursor.moveToFirst();
 
 	    while (cursor.isAfterLast() == false) {
@@ -860,15 +1215,14 @@ public class GeatteDBAdapter {
 	DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_UPDATED_DATE + " " +
 	"FROM " + DB_TABLE_FEEDBACKS +
 	" ORDER BY " + DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_UPDATED_DATE + " DESC" +
-	" LIMIT " + limit +
-	" OFFSET " + offset;
+	" LIMIT ? OFFSET ?";
 
 	if (Config.LOG_DEBUG_ENABLED) {
 	    Log.d(Config.LOGTAG, "fetch all feedbacks query string = " + query);
 	}
 
 	try {
-	    Cursor cursor = mDb.rawQuery(query, null);
+	    Cursor cursor = mDb.rawQuery(query, new String[] { Integer.toString(limit), Integer.toString(offset) });
 	    return cursor;
 	} catch (Exception ex) {
 	    Log.e(Config.LOGTAG, "ERROR to fetch all feedbacks ", ex);
@@ -876,6 +1230,53 @@ public class GeatteDBAdapter {
 	return null;
     }
 
+    /**
+     * Return a Cursor for all feedbacks, joined with the voter contact and the
+     * image of the interest voted on
+     * 
+     * @param limit query limit
+     * @param startFrom query startFrom, 1 to n, inclusive
+     * @return Cursor over feedbacks, contact and image columns are null when not found
+     * @throws SQLException if note could not be found/retrieved
+     */
+    public Cursor fetchAllMyInterestFeedbackWithDetails(int limit, int startFrom) throws SQLException {
+	int offset = startFrom - 1;
+	String query = "SELECT " +
+	DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_GEATTE_ID + ", " +
+	DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_VOTER + ", " +
+	DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_VOTE + ", " +
+	DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_COMMENT + ", " +
+	DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_UPDATED_DATE + ", " +
+	DB_TABLE_CONTACTS + "." + KEY_CONTACT_ID + ", " +
+	DB_TABLE_CONTACTS + "." + KEY_CONTACT_NAME + ", " +
+	DB_TABLE_IMAGES + "." + KEY_IMAGE_PATH + ", " +
+	DB_TABLE_IMAGES + "." + KEY_IMAGE_THUMBNAIL_PATH + " " +
+	"FROM " + DB_TABLE_FEEDBACKS +
+	" LEFT JOIN " + DB_TABLE_CONTACTS + " ON " +
+	DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_VOTER + "=" +
+	DB_TABLE_CONTACTS + "." + KEY_CONTACT_PHONE_NUMBER +
+	" LEFT JOIN " + DB_TABLE_INTERESTS + " ON " +
+	DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_GEATTE_ID + "=" +
+	DB_TABLE_INTERESTS + "." + KEY_INTEREST_GEATTE_ID +
+	" LEFT JOIN " + DB_TABLE_IMAGES + " ON " +
+	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + "=" +
+	DB_TABLE_IMAGES + "." + KEY_IMAGE_INTEREST_ID +
+	" ORDER BY " + DB_TABLE_FEEDBACKS + "." + KEY_FEEDBACK_UPDATED_DATE + " DESC" +
+	" LIMIT ? OFFSET ?";
+
+	if (Config.LOG_DEBUG_ENABLED) {
+	    Log.d(Config.LOGTAG, "fetch all feedbacks with details query string = " + query);
+	}
+
+	try {
+	    Cursor cursor = mDb.rawQuery(query, new String[] { Integer.toString(limit), Integer.toString(offset) });
+	    return cursor;
+	} catch (Exception ex) {
+	    Log.e(Config.LOGTAG, "ERROR to fetch all feedbacks with details ", ex);
+	}
+	return null;
+    }
+
     /**
      * Return a Cursor over the list of friends' interests in the database given limit and offset
      * 
@@ -898,22 +1299,21 @@ public class GeatteDBAdapter {
 	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_ID + "=" +
 	DB_TABLE_FI_IMAGES + "." + KEY_FI_IMAGE_INTEREST_ID +
 	" ORDER BY " + DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_CREATED_DATE + " DESC" +
-	" LIMIT " + limit +
-	" OFFSET " + offset;
+	" LIMIT ? OFFSET ?";
 
 	Log.i(Config.LOGTAG, "fetch friend's interest query string = " + query);
 
-	Cursor cursor = mDb.rawQuery(query, null);
+	Cursor cursor = mDb.rawQuery(query, new String[] { Integer.toString(limit), Integer.toString(offset) });
 
 	return cursor;
     }
 
     /**
-     * Return a Cursor over the list of friends' interests in the database with blob image
+     * Return a Cursor over the list of friends' interests in the database with the thumbnail path
      * 
      * @return Cursor over friends' interests
      */
-    public Cursor fetchAllFriendInterestsWithBlob() throws SQLException {
+    public Cursor fetchAllFriendInterestsWithThumbnail() throws SQLException {
 	String query = "SELECT " +
 	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_ID + ", " +
 	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_TITLE + ", " +
@@ -922,7 +1322,7 @@ public class GeatteDBAdapter {
 	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_CREATED_DATE + ", " +
 	DB_TABLE_FI_IMAGES + "." + KEY_FI_IMAGE_ID + " AS " + KEY_FI_IMAGE_AS_ID + ", " +
 	DB_TABLE_FI_IMAGES + "." + KEY_FI_IMAGE_PATH + ", " +
-	DB_TABLE_FI_IMAGES + "." + KEY_FI_IMAGE_THUMBNAIL + " " +
+	DB_TABLE_FI_IMAGES + "." + KEY_FI_IMAGE_THUMBNAIL_PATH + " " +
 	"FROM " +
 	DB_TABLE_FRIEND_INTERESTS + " JOIN " + DB_TABLE_FI_IMAGES + " ON " +
 	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_ID + "=" +
@@ -935,6 +1335,49 @@ public class GeatteDBAdapter {
 	return cursor;
     }
 
+    /**
+     * Return a Cursor over the list of friends' interests with the thumbnail path,
+     * the sender contact name, the latest vote and the latest comment
+     * 
+     * @return Cursor over all friends' interests
+     */
+    public Cursor fetchAllFriendInterestsWithFeedback() throws SQLException {
+	// fi_geatte_id is TEXT, compare it as TEXT so its index is used
+	String fiFeedbackOf = " FROM " + DB_TABLE_FI_FEEDBACKS +
+	" WHERE " + DB_TABLE_FI_FEEDBACKS + "." + KEY_FI_FEEDBACK_GEATTE_ID + "=CAST(" +
+	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_ID + " AS TEXT)";
+	String latestFirst = " ORDER BY " + DB_TABLE_FI_FEEDBACKS + "." + KEY_FI_FEEDBACK_CREATED_DATE + " DESC LIMIT 1";
+
+	String query = "SELECT " +
+	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_ID + ", " +
+	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_TITLE + ", " +
+	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_DESC + ", " +
+	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_FROM + ", " +
+	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_CREATED_DATE + ", " +
+	DB_TABLE_FI_IMAGES + "." + KEY_FI_IMAGE_ID + " AS " + KEY_FI_IMAGE_AS_ID + ", " +
+	DB_TABLE_FI_IMAGES + "." + KEY_FI_IMAGE_PATH + ", " +
+	DB_TABLE_FI_IMAGES + "." + KEY_FI_IMAGE_THUMBNAIL_PATH + ", " +
+	DB_TABLE_CONTACTS + "." + KEY_CONTACT_NAME + ", " +
+	"(SELECT " + DB_TABLE_FI_FEEDBACKS + "." + KEY_FI_FEEDBACK_VOTE + fiFeedbackOf +
+	" AND " + DB_TABLE_FI_FEEDBACKS + "." + KEY_FI_FEEDBACK_VOTE + " IS NOT NULL" + latestFirst + ") AS " +
+	KEY_FI_FEEDBACK_VOTE + ", " +
+	"(SELECT " + DB_TABLE_FI_FEEDBACKS + "." + KEY_FI_FEEDBACK_COMMENT + fiFeedbackOf + latestFirst + ") AS " +
+	KEY_FI_FEEDBACK_COMMENT + " " +
+	"FROM " +
+	DB_TABLE_FRIEND_INTERESTS + " JOIN " + DB_TABLE_FI_IMAGES + " ON " +
+	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_ID + "=" +
+	DB_TABLE_FI_IMAGES + "." + KEY_FI_IMAGE_INTEREST_ID +
+	" LEFT JOIN " + DB_TABLE_CONTACTS + " ON " +
+	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_FROM + "=" +
+	DB_TABLE_CONTACTS + "." + KEY_CONTACT_PHONE_NUMBER +
+	" ORDER BY " + DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_CREATED_DATE + " DESC";
+
+	Log.i(Config.LOGTAG, "fetch all friend's interest with feedback query string = " + query);
+
+	Cursor cursor = mDb.rawQuery(query, null);
+	return cursor;
+    }
+
     public Cursor fetchFriendInterest(String geatteId) throws SQLException {
 	String query = "SELECT " +
 	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_ID + ", " +
@@ -948,7 +1391,7 @@ public class GeatteDBAdapter {
 	DB_TABLE_FRIEND_INTERESTS + " JOIN " + DB_TABLE_FI_IMAGES + " ON " +
 	DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_ID + "=" +
 	DB_TABLE_FI_IMAGES + "." + KEY_FI_IMAGE_INTEREST_ID +
-	" WHERE " + DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_ID + "=\"" + geatteId + "\"";
+	" WHERE " + DB_TABLE_FRIEND_INTERESTS + "." + KEY_FRIEND_INTEREST_ID + "=?";
 
 	/*	String query = "SELECT " +
 	DB_TABLE_INTERESTS + "." + KEY_INTEREST_ID + ", " +
@@ -960,7 +1403,7 @@ public class GeatteDBAdapter {
 
 	Log.i(Config.LOGTAG, "fetch friend's interest query string = " + query);
 
-	Cursor cursor = mDb.rawQuery(query, null);
+	Cursor cursor = mDb.rawQuery(query, new String[] { geatteId });
 
 	if (cursor != null) {
 	    cursor.moveToFirst();
@@ -983,7 +1426,7 @@ public class GeatteDBAdapter {
 	DB_TABLE_FI_FEEDBACKS + "." + KEY_FI_FEEDBACK_CREATED_DATE + " " +
 	"FROM " +
 	DB_TABLE_FI_FEEDBACKS +
-	" WHERE " + DB_TABLE_FI_FEEDBACKS + "." + KEY_FI_FEEDBACK_GEATTE_ID + "=\"" + geatteId + "\"" +
+	" WHERE " + DB_TABLE_FI_FEEDBACKS + "." + KEY_FI_FEEDBACK_GEATTE_ID + "=?" +
 	" ORDER BY " + DB_TABLE_FI_FEEDBACKS + "." + KEY_FI_FEEDBACK_CREATED_DATE + " DESC";
 
 	Log.i(Config.LOGTAG, "fetch friend's interest feedbacks query string = " + query);
@@ -991,7 +1434,7 @@ public class GeatteDBAdapter {
 	List<String> ret = new ArrayList<String>();
 	Cursor cursor = null;
 	try {
-	    cursor = mDb.rawQuery(query, null);
+	    cursor = mDb.rawQuery(query, new String[] { geatteId });
 	    cursor.moveToFirst();
 	    String vote = null;
 
@@ -1035,7 +1478,7 @@ public class GeatteDBAdapter {
 	SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 	args.put(KEY_INTEREST_CREATED_DATE, dateFormat.format(new Date()));
 
-	return mDb.update(DB_TABLE_INTERESTS, args, KEY_INTEREST_ID + "=" + rowId, null) > 0;
+	return mDb.update(DB_TABLE_INTERESTS, args, KEY_INTEREST_ID + "=?", new String[] { Long.toString(rowId) }) > 0;
     }
 
     /**
@@ -1059,35 +1502,64 @@ public class GeatteDBAdapter {
 	SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 	args.put(KEY_INTEREST_CREATED_DATE, dateFormat.format(new Date()));
 
-	return mDb.update(DB_TABLE_INTERESTS, args, KEY_INTEREST_ID + "=" + rowId, null) > 0;
+	return mDb.update(DB_TABLE_INTERESTS, args, KEY_INTEREST_ID + "=?", new String[] { Long.toString(rowId) }) > 0;
     }
 
     public boolean updateInterestGeatteId(long rowId, String geatteId) {
 	ContentValues initialValues = new ContentValues();
 	initialValues.put(KEY_INTEREST_GEATTE_ID, geatteId);
 
-	return mDb.update(DB_TABLE_INTERESTS, initialValues, KEY_INTEREST_ID + "=" + rowId, null) > 0;
+	return mDb.update(DB_TABLE_INTERESTS, initialValues, KEY_INTEREST_ID + "=?", new String[] { Long.toString(rowId) }) > 0;
     }
 
     public boolean updateImage(long imageId, String imagePath) {
 	ContentValues args = new ContentValues();
 	if (imagePath != null) {
+	    String interestId = null;
+	    String oldThumbnailPath = null;
+	    Cursor cursor = mDb.query(DB_TABLE_IMAGES, new String[] { KEY_IMAGE_INTEREST_ID, KEY_IMAGE_THUMBNAIL_PATH },
+		    KEY_IMAGE_ID + "=?", new String[] { Long.toString(imageId) }, null, null, null);
+	    try {
+		if (cursor.moveToFirst()) {
+		    interestId = cursor.getString(0);
+		    oldThumbnailPath = cursor.getString(1);
+		}
+	    } finally {
+		cursor.close();
+	    }
+	    if (interestId == null) {
+		return false;
+	    }
+
 	    args.put(KEY_IMAGE_PATH, imagePath);
 	    //args.put(KEY_IMAGE_HASH, getHashFromByteArray(byteArray));
-
-	    return mDb.update(DB_TABLE_IMAGES, args, KEY_IMAGE_ID + "=" + imageId, null) > 0;
+	    String thumbnailPath = GeatteThumbnailStore.create(mCtx, GeatteThumbnailStore.PREFIX_IMAGE, interestId,
+		    imagePath);
+	    args.put(KEY_IMAGE_THUMBNAIL_PATH, thumbnailPath);
+
+	    boolean updated = mDb.update(DB_TABLE_IMAGES, args, KEY_IMAGE_ID + "=?",
+		    new String[] { Long.toString(imageId) }) > 0;
+	    if (updated && oldThumbnailPath != null && !oldThumbnailPath.equals(thumbnailPath)) {
+		GeatteThumbnailStore.delete(oldThumbnailPath);
+	    }
+	    return updated;
 	} else {
 	    return false;
 	}
     }
 
     public String getGeatteIdFromInterestId(long interestId){
-	Cursor cursor = mDb.query(DB_TABLE_INTERESTS, new String []{KEY_INTEREST_GEATTE_ID}, KEY_INTEREST_ID + "=" + interestId, null, null, null, null);
+	Cursor cursor = mDb.query(DB_TABLE_INTERESTS, new String []{KEY_INTEREST_GEATTE_ID}, KEY_INTEREST_ID + "=?",
+		new String[] { Long.toString(interestId) }, null, null, null);
 
 	String geatteId = null;
 	if (cursor != null) {
-	    if(cursor.moveToFirst()) {
-		geatteId = cursor.getString(cursor.getColumnIndexOrThrow(KEY_INTEREST_GEATTE_ID));
+	    try {
+		if(cursor.moveToFirst()) {
+		    geatteId = cursor.getString(cursor.getColumnIndexOrThrow(KEY_INTEREST_GEATTE_ID));
+		}
+	    } finally {
+		cursor.close();
 	    }
 	}
 
@@ -1103,13 +1575,17 @@ public class GeatteDBAdapter {
 	if (geatteId == null) {
 	    return -1;
 	}
-	Cursor cursor = mDb.query(DB_TABLE_INTERESTS, new String []{KEY_INTEREST_ID}, KEY_INTEREST_GEATTE_ID + "='" + geatteId +"'", null, null, null, null);
+	if (mInterestIdStmt == null) {
+	    mInterestIdStmt = mDb.compileStatement("SELECT " + KEY_INTEREST_ID + " FROM " + DB_TABLE_INTERESTS +
+		    " WHERE " + KEY_INTEREST_GEATTE_ID + "=? LIMIT 1");
+	}
+	mInterestIdStmt.bindString(1, geatteId);
 
 	long interestId = -1;
-	if (cursor != null) {
-	    if (cursor.moveToFirst()) {
-		interestId = cursor.getInt(cursor.getColumnIndexOrThrow(KEY_INTEREST_ID));
-	    }
+	try {
+	    interestId = mInterestIdStmt.simpleQueryForLong();
+	} catch (SQLiteDoneException ex) {
+	    // no such interest
 	}
 
 	if (interestId == -1) {
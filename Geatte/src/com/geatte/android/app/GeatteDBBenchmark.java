@@ -0,0 +1,204 @@
+package com.geatte.android.app;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+/**
+ * Micro benchmark of the hot GeatteDBAdapter calls against the way they used
+ * to be written, inserts through ContentValues and lookups with the value
+ * inlined in the sql, so every call was parsed and planned again.
+ *
+ * Both variants of a call are warmed up and then timed in alternating
+ * rounds, so the order does not favour one of them. Runs inside a
+ * transaction that is rolled back, the db is left as it was.
+ * It blocks, call it off the ui thread, e.g. GeatteDBBenchmark.run(context, 500).
+ */
+public class GeatteDBBenchmark {
+    private static final String TAG = "GeatteDBBenchmark";
+
+    // every lookup uses another key, as the app does, so inlined sql is never the same string twice
+    private static final String GEATTE_ID = "benchmark-geatte-";
+    private static final String VOTER = "000000";
+    // warm-up calls per case are iterations / WARMUP_FRACTION, timed calls are split in ROUNDS
+    private static final int WARMUP_FRACTION = 10;
+    private static final int ROUNDS = 4;
+
+    /**
+     * @param context context to open the db with
+     * @param iterations calls per case
+     * @return one line per case with the micro seconds per call, before and after
+     */
+    public static String run(Context context, int iterations) {
+	StringBuilder report = new StringBuilder();
+	final GeatteDBAdapter dbAdapter = new GeatteDBAdapter(context);
+	try {
+	    dbAdapter.open();
+	    final SQLiteDatabase db = dbAdapter.getDatabase();
+	    db.beginTransaction();
+	    try {
+		for (int i = 0; i < iterations; i++) {
+		    dbAdapter.insertInterest(TAG, null, GEATTE_ID + i);
+		    dbAdapter.insertContact(VOTER + i, -1, TAG);
+		}
+
+		Case[] cases = {
+			new Case("insertFeedback") {
+			    void inlined(int i) {
+				insertFeedbackInlined(db, GEATTE_ID + i, VOTER + i, Config.LIKE.YES.toString(), "comment " + i);
+			    }
+			    void compiled(int i) {
+				dbAdapter.insertFeedback(GEATTE_ID + i, VOTER + i, Config.LIKE.YES.toString(), "comment " + i);
+			    }
+			},
+			new Case("insertFIFeedback") {
+			    void inlined(int i) {
+				insertFIFeedbackInlined(db, GEATTE_ID + i, Config.LIKE.NO.toString(), "comment " + i);
+			    }
+			    void compiled(int i) {
+				dbAdapter.insertFIFeedback(GEATTE_ID + i, Config.LIKE.NO.toString(), "comment " + i);
+			    }
+			},
+			new Case("fetchContactName") {
+			    void inlined(int i) {
+				fetchContactNameInlined(db, VOTER + i);
+			    }
+			    void compiled(int i) {
+				dbAdapter.fetchContactName(VOTER + i);
+			    }
+			},
+			new Case("getInterestIdFromGeatteId") {
+			    void inlined(int i) {
+				getInterestIdFromGeatteIdInlined(db, GEATTE_ID + i);
+			    }
+			    void compiled(int i) {
+				dbAdapter.getInterestIdFromGeatteId(GEATTE_ID + i);
+			    }
+			}
+		};
+		for (Case c : cases) {
+		    c.run(report, iterations);
+		}
+	    } finally {
+		// never setTransactionSuccessful(), roll back the benchmark rows
+		db.endTransaction();
+	    }
+	} catch (Exception ex) {
+	    Log.e(Config.LOGTAG, TAG + " : ERROR", ex);
+	} finally {
+	    dbAdapter.close();
+	}
+	return report.toString();
+    }
+
+    /**
+     * One call written both ways. Both are warmed up first, so neither pays
+     * for a cold page cache, then they take turns going first in each round.
+     */
+    private static abstract class Case {
+	final String name;
+
+	Case(String name) {
+	    this.name = name;
+	}
+
+	abstract void inlined(int i);
+
+	abstract void compiled(int i);
+
+	void run(StringBuilder report, int iterations) {
+	    int warmup = Math.max(1, iterations / WARMUP_FRACTION);
+	    for (int i = 0; i < warmup; i++) {
+		inlined(i);
+		compiled(i);
+	    }
+
+	    long inlinedNanos = 0;
+	    long compiledNanos = 0;
+	    int perRound = Math.max(1, iterations / ROUNDS);
+	    for (int round = 0, done = 0; done < iterations; round++, done += perRound) {
+		int count = Math.min(perRound, iterations - done);
+		if (round % 2 == 0) {
+		    inlinedNanos += timeInlined(done, count);
+		    compiledNanos += timeCompiled(done, count);
+		} else {
+		    compiledNanos += timeCompiled(done, count);
+		    inlinedNanos += timeInlined(done, count);
+		}
+	    }
+	    report(report, name, iterations, inlinedNanos, compiledNanos);
+	}
+
+	private long timeInlined(int from, int count) {
+	    long start = System.nanoTime();
+	    for (int i = from; i < from + count; i++) {
+		inlined(i);
+	    }
+	    return System.nanoTime() - start;
+	}
+
+	private long timeCompiled(int from, int count) {
+	    long start = System.nanoTime();
+	    for (int i = from; i < from + count; i++) {
+		compiled(i);
+	    }
+	    return System.nanoTime() - start;
+	}
+    }
+
+    private static void report(StringBuilder report, String name, int iterations, long inlinedNanos, long boundNanos) {
+	String line = name + " : " + (inlinedNanos / 1000 / iterations) + " us/call inlined, " +
+	(boundNanos / 1000 / iterations) + " us/call compiled";
+	Log.i(Config.LOGTAG, TAG + " : " + line);
+	report.append(line).append('\n');
+    }
+
+    private static long insertFeedbackInlined(SQLiteDatabase db, String geatteId, String voter, String vote,
+	    String comment) {
+	ContentValues initialValues = new ContentValues();
+	initialValues.put(GeatteDBAdapter.KEY_FEEDBACK_GEATTE_ID, geatteId);
+	initialValues.put(GeatteDBAdapter.KEY_FEEDBACK_VOTER, voter);
+	initialValues.put(GeatteDBAdapter.KEY_FEEDBACK_VOTE, vote);
+	initialValues.put(GeatteDBAdapter.KEY_FEEDBACK_COMMENT, comment);
+	SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+	initialValues.put(GeatteDBAdapter.KEY_FEEDBACK_UPDATED_DATE, dateFormat.format(new Date()));
+	return db.insert(GeatteDBAdapter.DB_TABLE_FEEDBACKS, null, initialValues);
+    }
+
+    private static long insertFIFeedbackInlined(SQLiteDatabase db, String geatteId, String vote, String comment) {
+	ContentValues initialValues = new ContentValues();
+	initialValues.put(GeatteDBAdapter.KEY_FI_FEEDBACK_GEATTE_ID, geatteId);
+	initialValues.put(GeatteDBAdapter.KEY_FI_FEEDBACK_VOTE, vote);
+	initialValues.put(GeatteDBAdapter.KEY_FI_FEEDBACK_COMMENT, comment);
+	SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+	initialValues.put(GeatteDBAdapter.KEY_FI_FEEDBACK_CREATED_DATE, dateFormat.format(new Date()));
+	return db.insert(GeatteDBAdapter.DB_TABLE_FI_FEEDBACKS, null, initialValues);
+    }
+
+    private static String fetchContactNameInlined(SQLiteDatabase db, String phoneNumber) {
+	Cursor cursor = db.rawQuery("SELECT " + GeatteDBAdapter.KEY_CONTACT_NAME + " FROM " +
+		GeatteDBAdapter.DB_TABLE_CONTACTS + " WHERE " + GeatteDBAdapter.KEY_CONTACT_PHONE_NUMBER + "='" +
+		phoneNumber + "'", null);
+	try {
+	    return cursor.moveToFirst() ? cursor.getString(0) : "";
+	} finally {
+	    cursor.close();
+	}
+    }
+
+    private static long getInterestIdFromGeatteIdInlined(SQLiteDatabase db, String geatteId) {
+	Cursor cursor = db.query(GeatteDBAdapter.DB_TABLE_INTERESTS, new String[] { GeatteDBAdapter.KEY_INTEREST_ID },
+		GeatteDBAdapter.KEY_INTEREST_GEATTE_ID + "='" + geatteId + "'", null, null, null, null);
+	try {
+	    return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+	} finally {
+	    cursor.close();
+	}
+    }
+
+}
@@ -95,7 +95,8 @@ public class GeatteDetail extends Activity {
 
 	    String savedImagePath = cursor.getString(
 		    cursor.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_PATH));
-	    mInterestImage.setImageBitmap(BitmapFactory.decodeFile(savedImagePath));
+	    GeatteImageLoader.get(this).bindFile(mInterestImage, savedImagePath, Config.DETAIL_MAX_DIMENSION,
+		    R.drawable.thumb_missing);
 
 	}
     }
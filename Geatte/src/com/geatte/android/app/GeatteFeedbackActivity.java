@@ -18,9 +18,6 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.os.Handler;
-import android.provider.ContactsContract.Contacts;
-import android.provider.ContactsContract.Data;
-import android.provider.ContactsContract.CommonDataKinds.Photo;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
@@ -123,6 +120,7 @@ public class GeatteFeedbackActivity extends GDListActivity {
 		List<Item> noItems = new ArrayList<Item>();
 		List<Item> maybeItems = new ArrayList<Item>();
 
+		final GeatteContactCache contactCache = GeatteContactCache.get(this);
 		feedbackCur = mDbHelper.fetchMyInterestFeedback(geatteId);
 		feedbackCur.moveToFirst();
 
@@ -135,10 +133,9 @@ public class GeatteFeedbackActivity extends GDListActivity {
 			}
 			String voter = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_VOTER));
 			// get contact name for this voter
-			String voterName = mDbHelper.fetchContactName(voter);
+			String voterName = contactCache.getName(voter, "");
 			// get voter contact thumbnail
-			Integer contactId = mDbHelper.fetchContactId(voter);
-			Bitmap contactBitmap = queryPhotoForContact(contactId);
+			Bitmap contactBitmap = contactCache.getPhoto(contactCache.getContactId(voter));
 
 			String text = new StringBuilder(voterName).append(" LOVE it!").toString();
 			String comment = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_COMMENT));
@@ -157,10 +154,9 @@ public class GeatteFeedbackActivity extends GDListActivity {
 			}
 			String voter = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_VOTER));
 			// get contact name for this voter
-			String voterName = mDbHelper.fetchContactName(voter);
+			String voterName = contactCache.getName(voter, "");
 			// get voter contact thumbnail
-			Integer contactId = mDbHelper.fetchContactId(voter);
-			Bitmap contactBitmap = queryPhotoForContact(contactId);
+			Bitmap contactBitmap = contactCache.getPhoto(contactCache.getContactId(voter));
 
 			String text = new StringBuilder(voterName).append(" said NO!").toString();
 			String comment = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_COMMENT));
@@ -179,10 +175,9 @@ public class GeatteFeedbackActivity extends GDListActivity {
 			}
 			String voter = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_VOTER));
 			// get contact name for this voter
-			String voterName = mDbHelper.fetchContactName(voter);
+			String voterName = contactCache.getName(voter, "");
 			// get voter contact thumbnail
-			Integer contactId = mDbHelper.fetchContactId(voter);
-			Bitmap contactBitmap = queryPhotoForContact(contactId);
+			Bitmap contactBitmap = contactCache.getPhoto(contactCache.getContactId(voter));
 
 			String text = new StringBuilder(voterName).append(" said MAYBE!").toString();
 			String comment = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_COMMENT));
@@ -264,52 +259,6 @@ public class GeatteFeedbackActivity extends GDListActivity {
 
     }
 
-    private Bitmap queryPhotoForContact(int contactId) {
-	final String[] projection = new String[] {
-		//Contacts.DISPLAY_NAME,// the name of the contact
-		Contacts.PHOTO_ID// the id of the column in the data table for the image
-	};
-
-	final Cursor contact = managedQuery(
-		Contacts.CONTENT_URI,
-		projection,
-		Contacts._ID + "=?",// filter entries on the basis of the contact id
-		new String[]{String.valueOf(contactId)},// the parameter to which the contact id column is compared to
-		null);
-
-	if(contact.moveToFirst()) {
-	    //	    final String name = contact.getString(
-	    //		    contact.getColumnIndex(Contacts.DISPLAY_NAME));
-	    final String photoId = contact.getString(
-		    contact.getColumnIndex(Contacts.PHOTO_ID));
-	    final Bitmap photo;
-	    if(photoId != null) {
-		photo = queryContactBitmap(photoId);
-	    } else {
-		photo = null;
-	    }
-	    contact.close();
-	    return photo;
-	}
-	contact.close();
-	return null;
-    }
-
-    private Bitmap queryContactBitmap(String photoId) {
-	Cursor photo = getContentResolver().query(Data.CONTENT_URI, new String[] { Photo.PHOTO },
-		Data._ID + "=?", new String[] { photoId }, null);
-
-	final Bitmap photoBitmap;
-	if (photo.moveToFirst()) {
-	    byte[] photoBlob = photo.getBlob(photo.getColumnIndex(Photo.PHOTO));
-	    photoBitmap = BitmapFactory.decodeByteArray(photoBlob, 0, photoBlob.length);
-	} else {
-	    photoBitmap = null;
-	}
-	photo.close();
-	return photoBitmap;
-    }
-
     @Override
     public int createLayout() {
 	return R.layout.geatte_feedback_list_content;
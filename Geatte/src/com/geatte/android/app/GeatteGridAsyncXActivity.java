@@ -11,7 +11,6 @@ import greendroid.widget.item.Item;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.os.Handler;
 import android.util.Log;
@@ -82,7 +81,7 @@ public class GeatteGridAsyncXActivity extends GridActionBarActivity {
 	Cursor interestCur = null;
 	try {
 	    mDbHelper.open();
-	    interestCur = mDbHelper.fetchAllMyInterestsWithBlob();
+	    interestCur = mDbHelper.fetchAllMyInterestsWithThumbnail();
 
 	    interestCur.moveToFirst();
 	    int counter = 0;
@@ -94,12 +93,12 @@ public class GeatteGridAsyncXActivity extends GridActionBarActivity {
 
 		int interestId = interestCur.getInt(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_INTEREST_ID));
 		String imagePath = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_PATH));
-		byte[] imageThumbnail = interestCur.getBlob(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_THUMBNAIL));
+		String thumbnailPath = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_THUMBNAIL_PATH));
 
 		Log.i(Config.LOGTAG, "GeatteGridAsyncXActivity:getMyGeatteItems() : add one ThumbnailAsyncBitmapItem, " +
-			"interestId = " + interestId + ", imageThumbnail.length = " + imageThumbnail.length);
+			"interestId = " + interestId + ", thumbnailPath = " + thumbnailPath);
 
-		items.add(new GridBitmapItem(interestId, imagePath, imageThumbnail));
+		items.add(new GridBitmapItem(interestId, imagePath, thumbnailPath));
 
 		interestCur.moveToNext();
 
@@ -154,15 +153,9 @@ public class GeatteGridAsyncXActivity extends GridActionBarActivity {
 
 		GridBitmapItem tItem = (GridBitmapItem) item;
 
-		if(Config.LOG_DEBUG_ENABLED) {
-		    Log.d(Config.LOGTAG, "GeatteGridAsyncXActivity:ImageAdapter:getView() : image set to bytearray for length = " + tItem.thumbnail.length);
-		}
 
-		if (tItem.thumbnail == null || tItem.thumbnail.length <= 0) {
-		    holder.imageView.setImageResource(R.drawable.thumb_missing);
-		} else {
-		    holder.imageView.setImageBitmap(BitmapFactory.decodeByteArray(tItem.thumbnail, 0, tItem.thumbnail.length));
-		}
+		GeatteImageLoader.get(mContext).bindFile(holder.imageView, tItem.thumbnailPath, Config.THUMBNAIL_MAX_DIMENSION,
+			R.drawable.thumb_missing);
 
 		return convertView;
 	    }
@@ -11,7 +11,6 @@ import greendroid.widget.item.Item;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.os.Handler;
 import android.util.Log;
@@ -83,7 +82,7 @@ public class GeatteGridFIAsyncXActivity extends GridActionBarActivity {
 	Cursor fiCur = null;
 	try {
 	    mDbHelper.open();
-	    fiCur = mDbHelper.fetchAllFriendInterestsWithBlob();
+	    fiCur = mDbHelper.fetchAllFriendInterestsWithThumbnail();
 
 	    fiCur.moveToFirst();
 	    int counter = 0;
@@ -95,12 +94,12 @@ public class GeatteGridFIAsyncXActivity extends GridActionBarActivity {
 
 		long fInterestId = fiCur.getLong(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FRIEND_INTEREST_ID));
 		String fImagePath = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_IMAGE_PATH));
-		byte[] fImageThumbnail = fiCur.getBlob(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_IMAGE_THUMBNAIL));
+		String fThumbnailPath = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_IMAGE_THUMBNAIL_PATH));
 
 		Log.i(Config.LOGTAG, "GeatteGridFIAsyncXActivity:getFIGeatteItems() : add one ThumbnailAsyncBitmapItem, " +
-			"fInterestId = " + fInterestId + ", imageThumbnail.length = " + fImageThumbnail.length);
+			"fInterestId = " + fInterestId + ", thumbnailPath = " + fThumbnailPath);
 
-		items.add(new GridBitmapItem(fInterestId, fImagePath, fImageThumbnail));
+		items.add(new GridBitmapItem(fInterestId, fImagePath, fThumbnailPath));
 
 		fiCur.moveToNext();
 
@@ -155,15 +154,9 @@ public class GeatteGridFIAsyncXActivity extends GridActionBarActivity {
 
 		GridBitmapItem tItem = (GridBitmapItem) item;
 
-		if(Config.LOG_DEBUG_ENABLED) {
-		    Log.d(Config.LOGTAG, "GeatteGridFIAsyncXActivity:ImageAdapter:getView() : image set to bytearray for length = " + tItem.thumbnail.length);
-		}
 
-		if (tItem.thumbnail == null || tItem.thumbnail.length <= 0) {
-		    holder.imageView.setImageResource(R.drawable.thumb_missing);
-		} else {
-		    holder.imageView.setImageBitmap(BitmapFactory.decodeByteArray(tItem.thumbnail, 0, tItem.thumbnail.length));
-		}
+		GeatteImageLoader.get(mContext).bindFile(holder.imageView, tItem.thumbnailPath, Config.THUMBNAIL_MAX_DIMENSION,
+			R.drawable.thumb_missing);
 
 		return convertView;
 	    }
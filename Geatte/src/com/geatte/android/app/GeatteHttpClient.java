@@ -0,0 +1,163 @@
+package com.geatte.android.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.client.params.CookiePolicy;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * The HTTP client of the app, shared by all requests.
+ *
+ * Connections are pooled and kept alive between requests. Responses are
+ * asked for gzip, App Engine only compresses for user agents that say gzip.
+ * Responses other than images are read into memory when they arrive, so the
+ * connection goes back to the pool even if the caller does not read the body
+ * to the end. Image responses stay streaming, callers close their stream.
+ *
+ * Cookies are not kept, requests set the ACSID cookie themselves.
+ */
+public class GeatteHttpClient {
+    private static final String USER_AGENT = "Geatte/1.0 (Android; gzip)";
+    private static final int CONNECTION_TIMEOUT_MILLIS = 15 * 1000;
+    private static final int SOCKET_TIMEOUT_MILLIS = 30 * 1000;
+    private static final long POOL_TIMEOUT_MILLIS = 10 * 1000;
+    private static final int MAX_CONNECTIONS = 10;
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 6;
+    private static final int SOCKET_BUFFER_SIZE = 8192;
+    // smaller request bodies are not worth compressing
+    private static final int GZIP_MIN_REQUEST_BYTES = 1024;
+
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String ENCODING_GZIP = "gzip";
+
+    private static DefaultHttpClient sClient;
+
+    public static synchronized HttpClient get() {
+	if (sClient == null) {
+	    sClient = create();
+	}
+	return sClient;
+    }
+
+    /**
+     * Compress a request body, small bodies are returned as they are.
+     */
+    public static HttpEntity gzipEntity(HttpEntity entity) throws IOException {
+	if (entity == null || entity.getContentLength() < GZIP_MIN_REQUEST_BYTES) {
+	    return entity;
+	}
+	ByteArrayOutputStream bos = new ByteArrayOutputStream();
+	GZIPOutputStream gzip = new GZIPOutputStream(bos);
+	try {
+	    entity.writeTo(gzip);
+	} finally {
+	    gzip.close();
+	}
+	ByteArrayEntity compressed = new ByteArrayEntity(bos.toByteArray());
+	compressed.setContentType(entity.getContentType());
+	compressed.setContentEncoding(ENCODING_GZIP);
+	return compressed;
+    }
+
+    private static DefaultHttpClient create() {
+	HttpParams params = new BasicHttpParams();
+	HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+	HttpProtocolParams.setContentCharset(params, Config.ENCODE_UTF8);
+	HttpProtocolParams.setUserAgent(params, USER_AGENT);
+	HttpConnectionParams.setConnectionTimeout(params, CONNECTION_TIMEOUT_MILLIS);
+	HttpConnectionParams.setSoTimeout(params, SOCKET_TIMEOUT_MILLIS);
+	HttpConnectionParams.setSocketBufferSize(params, SOCKET_BUFFER_SIZE);
+	HttpConnectionParams.setStaleCheckingEnabled(params, true);
+	ConnManagerParams.setTimeout(params, POOL_TIMEOUT_MILLIS);
+	ConnManagerParams.setMaxTotalConnections(params, MAX_CONNECTIONS);
+	ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_ROUTE));
+	params.setParameter(ClientPNames.COOKIE_POLICY, CookiePolicy.IGNORE_COOKIES);
+
+	SchemeRegistry schemes = new SchemeRegistry();
+	schemes.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+	schemes.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+
+	DefaultHttpClient client = new DefaultHttpClient(new ThreadSafeClientConnManager(params, schemes), params);
+	client.addRequestInterceptor(new HttpRequestInterceptor() {
+	    public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+		if (!request.containsHeader(HEADER_ACCEPT_ENCODING)) {
+		    request.addHeader(HEADER_ACCEPT_ENCODING, ENCODING_GZIP);
+		}
+	    }
+	});
+	client.addResponseInterceptor(new HttpResponseInterceptor() {
+	    public void process(HttpResponse response, HttpContext context) throws HttpException, IOException {
+		HttpEntity entity = response.getEntity();
+		if (entity == null) {
+		    return;
+		}
+		Header encoding = entity.getContentEncoding();
+		if (encoding != null && ENCODING_GZIP.equalsIgnoreCase(encoding.getValue())) {
+		    entity = new GzipDecompressingEntity(entity);
+		    response.setEntity(entity);
+		}
+		Header type = entity.getContentType();
+		if (type == null || !type.getValue().startsWith("image/")) {
+		    response.setEntity(new BufferedHttpEntity(entity));
+		    entity.consumeContent();
+		}
+	    }
+	});
+	return client;
+    }
+
+    /**
+     * Body of a gzip response, read uncompressed.
+     */
+    private static class GzipDecompressingEntity extends HttpEntityWrapper {
+
+	GzipDecompressingEntity(HttpEntity entity) {
+	    super(entity);
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+	    return new GZIPInputStream(wrappedEntity.getContent());
+	}
+
+	@Override
+	public long getContentLength() {
+	    return -1;
+	}
+
+	@Override
+	public Header getContentEncoding() {
+	    return null;
+	}
+    }
+}
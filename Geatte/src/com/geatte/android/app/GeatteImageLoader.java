@@ -0,0 +1,469 @@
+package com.geatte.android.app;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.widget.ImageView;
+
+/**
+ * Decoded images for list, grid and detail screens.
+ *
+ * Bitmaps are kept in a memory LRU bounded by bytes. Images from files are
+ * scaled to the size they are shown at, and the scaled copy is kept in a disk
+ * cache so the next decode reads a small file instead of the camera image.
+ *
+ * Each bitmap counts the views showing it. A bitmap is recycled once it has
+ * left the LRU and no view shows it any more, screens do not recycle bitmaps
+ * themselves. A view keeps its bitmap until it is bound again or unbound.
+ *
+ * Images not in memory are decoded on a few background threads while the
+ * view shows a placeholder. Binding a view again, as adapters do with
+ * recycled rows, cancels its decode, so a late result never lands on a row
+ * that shows another item by now. Bind and unbind on the ui thread.
+ */
+public class GeatteImageLoader {
+    private static final String TAG = "GeatteImageLoader";
+
+    private static final String DISK_DIR = "thumbs";
+    private static final long DISK_MAX_BYTES = 20 * 1024 * 1024;
+    private static final int DISK_TRIM_EVERY_WRITES = 20;
+    private static final int DISK_JPEG_QUALITY = 85;
+
+    // shown while the image is decoded
+    private static final int PLACEHOLDER_RES_ID = R.drawable.empty;
+
+    private static GeatteImageLoader sLoader;
+
+    private final File mDiskDir;
+    private final long mMaxBytes;
+    private long mBytes = 0;
+    private int mDiskWrites = 0;
+
+    private final LinkedHashMap<String, CachedBitmap> mCache = new LinkedHashMap<String, CachedBitmap>(32, 0.75f,
+	    true);
+    private final WeakHashMap<ImageView, CachedBitmap> mBound = new WeakHashMap<ImageView, CachedBitmap>();
+    // decodes not shown yet, only used on the ui thread
+    private final WeakHashMap<ImageView, DecodeRequest> mPending = new WeakHashMap<ImageView, DecodeRequest>();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor mExecutor = new ThreadPoolExecutor(Config.IMAGE_DECODE_THREADS,
+	    Config.IMAGE_DECODE_THREADS, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+	    new ThreadFactory() {
+		private final AtomicInteger mCount = new AtomicInteger();
+
+		public Thread newThread(final Runnable r) {
+		    return new Thread(new Runnable() {
+			public void run() {
+			    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			    r.run();
+			}
+		    }, "GeatteImageDecode #" + mCount.incrementAndGet());
+		}
+	    });
+
+    private GeatteImageLoader(Context context) {
+	mDiskDir = new File(context.getCacheDir(), DISK_DIR);
+	if (!mDiskDir.isDirectory() && !mDiskDir.mkdirs()) {
+	    Log.w(Config.LOGTAG, TAG + " : can not create disk cache " + mDiskDir);
+	}
+	mMaxBytes = Runtime.getRuntime().maxMemory() / Config.IMAGE_CACHE_MEMORY_FRACTION;
+    }
+
+    public static synchronized GeatteImageLoader get(Context context) {
+	if (sLoader == null) {
+	    sLoader = new GeatteImageLoader(context.getApplicationContext());
+	}
+	return sLoader;
+    }
+
+    /**
+     * Show an image file scaled to fit maxDimension.
+     *
+     * @param missingResId shown when the file can not be decoded
+     */
+    public void bindFile(ImageView view, String path, int maxDimension, int missingResId) {
+	bindFile(view, path, maxDimension, missingResId, null);
+    }
+
+    /**
+     * Show an image file scaled to fit maxDimension, and tell the callback
+     * once the image or missingResId is shown.
+     */
+    public void bindFile(ImageView view, final String path, final int maxDimension, int missingResId,
+	    Callback callback) {
+	if (path == null) {
+	    showMissing(view, missingResId, callback);
+	    return;
+	}
+	request(view, "file:" + maxDimension + ":" + path, missingResId, callback, new Decoder() {
+	    public Bitmap decode() {
+		return decodeFile(path, maxDimension);
+	    }
+	});
+    }
+
+    /**
+     * Stop showing the image of a view, lets its bitmap be recycled.
+     */
+    public void unbind(ImageView view) {
+	cancel(view);
+	CachedBitmap old;
+	synchronized (this) {
+	    old = mBound.remove(view);
+	}
+	view.setImageDrawable(null);
+	release(old);
+    }
+
+    /**
+     * Drop all cached bitmaps, shown ones are recycled when their views let go.
+     */
+    public synchronized void clearMemory() {
+	for (CachedBitmap cached : mCache.values()) {
+	    cached.mInCache = false;
+	    recycleIfUnused(cached);
+	}
+	mCache.clear();
+	mBytes = 0;
+    }
+
+    /**
+     * Show a cached image right away, or the placeholder while the image is
+     * decoded on the decode threads. A decode still running for the view is
+     * cancelled, the view is bound to another row now.
+     */
+    private void request(ImageView view, String key, int missingResId, Callback callback, Decoder decoder) {
+	if (showCached(view, key, callback)) {
+	    return;
+	}
+	DecodeRequest pending = mPending.get(view);
+	if (pending != null && key.equals(pending.mKey)) {
+	    // same row bound again, its decode is on the way
+	    return;
+	}
+	cancel(view);
+	bind(view, null, PLACEHOLDER_RES_ID);
+	DecodeRequest decodeRequest = new DecodeRequest(view, key, missingResId, callback, decoder);
+	mPending.put(view, decodeRequest);
+	mExecutor.execute(decodeRequest);
+    }
+
+    private boolean showCached(ImageView view, String key, Callback callback) {
+	CachedBitmap cached = acquire(key);
+	if (cached == null) {
+	    return false;
+	}
+	cancel(view);
+	bind(view, cached, 0);
+	if (callback != null) {
+	    callback.onImageShown(view, true);
+	}
+	return true;
+    }
+
+    private void showMissing(ImageView view, int missingResId, Callback callback) {
+	cancel(view);
+	bind(view, null, missingResId);
+	if (callback != null) {
+	    callback.onImageShown(view, false);
+	}
+    }
+
+    private void cancel(ImageView view) {
+	DecodeRequest pending = mPending.remove(view);
+	if (pending != null) {
+	    pending.mCancelled = true;
+	    mExecutor.remove(pending);
+	}
+    }
+
+    private void bind(ImageView view, CachedBitmap cached, int missingResId) {
+	if (cached != null) {
+	    view.setImageBitmap(cached.mBitmap);
+	} else {
+	    view.setImageResource(missingResId);
+	}
+	CachedBitmap old;
+	synchronized (this) {
+	    old = cached != null ? mBound.put(view, cached) : mBound.remove(view);
+	}
+	// the view shows the new image before the old one can be recycled
+	release(old);
+    }
+
+    /**
+     * @return cached bitmap counted as shown once more, or null
+     */
+    private synchronized CachedBitmap acquire(String key) {
+	CachedBitmap cached = mCache.get(key);
+	if (cached != null) {
+	    cached.mRefs++;
+	}
+	return cached;
+    }
+
+    private synchronized CachedBitmap put(String key, Bitmap bitmap) {
+	CachedBitmap cached = new CachedBitmap(bitmap);
+	cached.mRefs = 1;
+	CachedBitmap old = mCache.put(key, cached);
+	if (old != null) {
+	    mBytes -= old.mBytes;
+	    old.mInCache = false;
+	    recycleIfUnused(old);
+	}
+	mBytes += cached.mBytes;
+	// least recently used first
+	Iterator<CachedBitmap> it = mCache.values().iterator();
+	while (mBytes > mMaxBytes && it.hasNext()) {
+	    CachedBitmap eldest = it.next();
+	    if (eldest == cached) {
+		continue;
+	    }
+	    it.remove();
+	    mBytes -= eldest.mBytes;
+	    eldest.mInCache = false;
+	    recycleIfUnused(eldest);
+	}
+	return cached;
+    }
+
+    private synchronized void release(CachedBitmap cached) {
+	if (cached == null) {
+	    return;
+	}
+	cached.mRefs--;
+	recycleIfUnused(cached);
+    }
+
+    // caller holds this
+    private void recycleIfUnused(CachedBitmap cached) {
+	if (cached.mRefs <= 0 && !cached.mInCache && !cached.mBitmap.isRecycled()) {
+	    cached.mBitmap.recycle();
+	}
+    }
+
+    /**
+     * Decode a file to fit maxDimension, from the disk cache when it was
+     * scaled before.
+     */
+    private Bitmap decodeFile(String path, int maxDimension) {
+	File source = new File(path);
+	if (!source.isFile()) {
+	    return null;
+	}
+	File thumbFile = new File(mDiskDir, diskName(source, maxDimension));
+	if (thumbFile.isFile()) {
+	    Bitmap thumb = BitmapFactory.decodeFile(thumbFile.getAbsolutePath());
+	    if (thumb != null) {
+		thumbFile.setLastModified(System.currentTimeMillis());
+		return thumb;
+	    }
+	    thumbFile.delete();
+	}
+
+	BitmapFactory.Options bounds = new BitmapFactory.Options();
+	Bitmap bitmap = decodeScaled(path, maxDimension, bounds);
+	if (bitmap != null && bitmap.getWidth() < bounds.outWidth) {
+	    writeDisk(thumbFile, bitmap);
+	}
+	return bitmap;
+    }
+
+    /**
+     * Decode an image file scaled to fit maxDimension.
+     *
+     * @param bounds set to the size of the file
+     * @return null when the file can not be decoded
+     */
+    static Bitmap decodeScaled(String path, int maxDimension, BitmapFactory.Options bounds) {
+	bounds.inJustDecodeBounds = true;
+	BitmapFactory.decodeFile(path, bounds);
+	if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+	    return null;
+	}
+	int sampleSize = 1;
+	while (Math.max(bounds.outWidth, bounds.outHeight) / (sampleSize * 2) >= maxDimension) {
+	    sampleSize *= 2;
+	}
+	BitmapFactory.Options options = new BitmapFactory.Options();
+	options.inSampleSize = sampleSize;
+	Bitmap bitmap = BitmapFactory.decodeFile(path, options);
+	if (bitmap == null) {
+	    return null;
+	}
+	int largest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+	if (largest > maxDimension) {
+	    Bitmap scaled = Bitmap.createScaledBitmap(bitmap, bitmap.getWidth() * maxDimension / largest,
+		    bitmap.getHeight() * maxDimension / largest, true);
+	    if (scaled != bitmap) {
+		bitmap.recycle();
+		bitmap = scaled;
+	    }
+	}
+	return bitmap;
+    }
+
+    private void writeDisk(File thumbFile, Bitmap bitmap) {
+	try {
+	    File tmp = new File(thumbFile.getAbsolutePath() + ".tmp");
+	    FileOutputStream out = new FileOutputStream(tmp);
+	    try {
+		bitmap.compress(Bitmap.CompressFormat.JPEG, DISK_JPEG_QUALITY, out);
+	    } finally {
+		out.close();
+	    }
+	    if (!tmp.renameTo(thumbFile)) {
+		tmp.delete();
+	    }
+	} catch (IOException e) {
+	    Log.w(Config.LOGTAG, TAG + " : can not write thumbnail " + thumbFile, e);
+	    return;
+	}
+	synchronized (this) {
+	    if (++mDiskWrites % DISK_TRIM_EVERY_WRITES != 0) {
+		return;
+	    }
+	}
+	trimDisk();
+    }
+
+    /**
+     * Delete the least recently used thumbnails over DISK_MAX_BYTES.
+     */
+    private void trimDisk() {
+	File[] files = mDiskDir.listFiles();
+	if (files == null) {
+	    return;
+	}
+	long total = 0;
+	for (File file : files) {
+	    total += file.length();
+	}
+	if (total <= DISK_MAX_BYTES) {
+	    return;
+	}
+	Arrays.sort(files, new Comparator<File>() {
+	    public int compare(File a, File b) {
+		long diff = a.lastModified() - b.lastModified();
+		return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+	    }
+	});
+	for (int i = 0; i < files.length && total > DISK_MAX_BYTES; i++) {
+	    long length = files[i].length();
+	    if (files[i].delete()) {
+		total -= length;
+	    }
+	}
+	if (Config.LOG_DEBUG_ENABLED) {
+	    Log.d(Config.LOGTAG, TAG + " : trimmed disk cache to " + total + " bytes");
+	}
+    }
+
+    /**
+     * Name of the scaled copy, a changed source file gets a new name.
+     */
+    private static String diskName(File source, int maxDimension) {
+	return CommonUtils.md5Hex(source.getAbsolutePath() + ":" + source.lastModified() + ":" + source.length() + ":"
+		+ maxDimension) + ".jpg";
+    }
+
+    public interface Callback {
+	/**
+	 * Called on the ui thread once the view shows the image, or the
+	 * missing image when found is false.
+	 */
+	void onImageShown(ImageView view, boolean found);
+    }
+
+    private interface Decoder {
+	Bitmap decode();
+    }
+
+    private class DecodeRequest implements Runnable {
+	private final ImageView mView;
+	private final String mKey;
+	private final int mMissingResId;
+	private final Callback mCallback;
+	private final Decoder mDecoder;
+	private volatile boolean mCancelled = false;
+
+	DecodeRequest(ImageView view, String key, int missingResId, Callback callback, Decoder decoder) {
+	    mView = view;
+	    mKey = key;
+	    mMissingResId = missingResId;
+	    mCallback = callback;
+	    mDecoder = decoder;
+	}
+
+	public void run() {
+	    if (mCancelled) {
+		return;
+	    }
+	    // another row may have decoded the same image meanwhile
+	    CachedBitmap cached = acquire(mKey);
+	    if (cached == null) {
+		Bitmap bitmap = null;
+		try {
+		    bitmap = mDecoder.decode();
+		} catch (OutOfMemoryError e) {
+		    Log.w(Config.LOGTAG, TAG + " : out of memory decoding " + mKey, e);
+		    clearMemory();
+		}
+		if (bitmap == null) {
+		    Log.w(Config.LOGTAG, TAG + " : can not decode " + mKey);
+		} else {
+		    cached = put(mKey, bitmap);
+		}
+	    }
+	    final CachedBitmap result = cached;
+	    mHandler.post(new Runnable() {
+		public void run() {
+		    deliver(result);
+		}
+	    });
+	}
+
+	private void deliver(CachedBitmap result) {
+	    if (mCancelled || mPending.get(mView) != this) {
+		release(result);
+		return;
+	    }
+	    mPending.remove(mView);
+	    bind(mView, result, mMissingResId);
+	    if (mCallback != null) {
+		mCallback.onImageShown(mView, result != null);
+	    }
+	}
+    }
+
+    private static class CachedBitmap {
+	private final Bitmap mBitmap;
+	private final long mBytes;
+	// views showing the bitmap
+	private int mRefs;
+	private boolean mInCache = true;
+
+	CachedBitmap(Bitmap bitmap) {
+	    mBitmap = bitmap;
+	    mBytes = (long) bitmap.getRowBytes() * bitmap.getHeight();
+	}
+    }
+}
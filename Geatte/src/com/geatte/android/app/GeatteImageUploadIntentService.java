@@ -26,6 +26,7 @@ import android.graphics.BitmapFactory;
 import android.graphics.Bitmap.CompressFormat;
 import android.os.Bundle;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
 
 /**
@@ -34,6 +35,8 @@ import android.util.Log;
 public class GeatteImageUploadIntentService extends IntentService {
     public static final String IMAGE_UPLOAD_ACTION = "com.geatte.android.app.IMAGE_UPLOAD";
 
+    private static final String EXTRA_RETRY = "image_upload_retry";
+
     // wakelock
     private static final String WAKELOCK_KEY = "GEATTE_IMAGE";
 
@@ -119,7 +122,7 @@ public class GeatteImageUploadIntentService extends IntentService {
 	    MultipartEntity entity = new MultipartEntity(HttpMultipartMode.BROWSER_COMPATIBLE);
 
 	    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-	    bitmap.compress(CompressFormat.JPEG, 100, bos);
+	    bitmap.compress(CompressFormat.JPEG, Config.IMAGE_UPLOAD_JPEG_QUALITY, bos);
 	    byte[] data = bos.toByteArray();
 
 	    entity.addPart(Config.GEATTE_IMAGE_RANDOM_ID_PARAM, new StringBody(imageRandomId));
@@ -131,15 +134,9 @@ public class GeatteImageUploadIntentService extends IntentService {
 	    AppEngineClient client = new AppEngineClient(getApplicationContext(), accountName);
 	    HttpResponse response = client.makeRequestWithEntity(Config.GEATTE_IMAGE_BLOB_UPLOAD_URL, entity);
 	    int respStatusCode = response.getStatusLine().getStatusCode();
-	    if (respStatusCode == 400 || respStatusCode == 500) {
-		// RETRY
-		Log.i(Config.LOGTAG, "Got Error status code = " + respStatusCode + ", scheduling image blob upload " +
-			"retry, backoff = " + Config.IMAGE_BLOB_UPLOAD_BACKOFF);
-		Intent retryIntent = new Intent(IMAGE_UPLOAD_ACTION);
-		PendingIntent retryPIntent = PendingIntent.getBroadcast(context, 0 /* requestCode */, retryIntent, 0 /* flags */);
-
-		AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-		am.set(AlarmManager.ELAPSED_REALTIME, Config.IMAGE_BLOB_UPLOAD_BACKOFF, retryPIntent);
+	    if (respStatusCode == 400 || respStatusCode == 500 || respStatusCode == 503) {
+		Log.i(Config.LOGTAG, "Got Error status code = " + respStatusCode + ", scheduling image blob upload retry");
+		scheduleRetry(context, intent, RetryBackoff.retryAfterMillis(response));
 		return;
 	    }
 
@@ -179,15 +176,7 @@ public class GeatteImageUploadIntentService extends IntentService {
 		}
 
 		if (jResponse == null || resp == null || !resp.equals("OK")) {
-		    // RETRY
-		    if(Config.LOG_DEBUG_ENABLED) {
-			Log.d(Config.LOGTAG, "Scheduling image blob upload retry, backoff = " + Config.IMAGE_BLOB_UPLOAD_BACKOFF);
-		    }
-		    Intent retryIntent = new Intent(IMAGE_UPLOAD_ACTION);
-		    PendingIntent retryPIntent = PendingIntent.getBroadcast(context, 0 /* requestCode */, retryIntent, 0 /* flags */);
-
-		    AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-		    am.set(AlarmManager.ELAPSED_REALTIME, Config.IMAGE_BLOB_UPLOAD_BACKOFF, retryPIntent);
+		    scheduleRetry(context, intent, -1);
 		}
 
 	    }
@@ -196,4 +185,35 @@ public class GeatteImageUploadIntentService extends IntentService {
 	}
     }
 
+    /**
+     * Upload the same image again later, with a jittered exponential backoff
+     * that is never shorter than the Retry-After of the server.
+     */
+    private void scheduleRetry(Context context, Intent intent, long retryAfterMillis) {
+	int retry = intent.getIntExtra(EXTRA_RETRY, 0);
+	if (retry >= Config.IMAGE_UPLOAD_MAX_RETRIES) {
+	    Log.w(Config.LOGTAG, "GeatteImageUploadIntentService:scheduleRetry() : give up image blob upload after "
+		    + retry + " retries");
+	    return;
+	}
+	long delay = RetryBackoff.delayMillis(retry, Config.IMAGE_BLOB_UPLOAD_BACKOFF,
+		Config.IMAGE_UPLOAD_RETRY_MAX_MILLIS, retryAfterMillis);
+	if(Config.LOG_DEBUG_ENABLED) {
+	    Log.d(Config.LOGTAG, "Scheduling image blob upload retry " + (retry + 1) + ", backoff = " + delay);
+	}
+
+	// the retry carries the image, one pending retry per image
+	Intent retryIntent = new Intent(IMAGE_UPLOAD_ACTION);
+	retryIntent.setClass(context, GeatteImageUploadReceiver.class);
+	retryIntent.putExtra(Config.EXTRA_IMAGE_PATH, intent.getStringExtra(Config.EXTRA_IMAGE_PATH));
+	String imageRandomId = intent.getStringExtra(Config.EXTRA_IMAGE_RANDOM_ID);
+	retryIntent.putExtra(Config.EXTRA_IMAGE_RANDOM_ID, imageRandomId);
+	retryIntent.putExtra(EXTRA_RETRY, retry + 1);
+	PendingIntent retryPIntent = PendingIntent.getBroadcast(context,
+		imageRandomId != null ? imageRandomId.hashCode() : 0, retryIntent, PendingIntent.FLAG_UPDATE_CURRENT);
+
+	AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+	am.set(AlarmManager.ELAPSED_REALTIME_WAKEUP, SystemClock.elapsedRealtime() + delay, retryPIntent);
+    }
+
 }
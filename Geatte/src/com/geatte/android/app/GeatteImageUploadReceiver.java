@@ -0,0 +1,17 @@
+package com.geatte.android.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Start a scheduled image upload retry in GeatteImageUploadIntentService,
+ * which holds a wake lock while it runs.
+ */
+public class GeatteImageUploadReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+	GeatteImageUploadIntentService.runIntentInService(context, intent);
+    }
+}
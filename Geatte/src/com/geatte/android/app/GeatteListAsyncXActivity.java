@@ -21,7 +21,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -120,7 +119,7 @@ public class GeatteListAsyncXActivity extends GDListActivity {
 	Cursor interestCur = null;
 	try {
 	    mDbHelper.open();
-	    interestCur = mDbHelper.fetchAllMyInterestsWithBlob();
+	    interestCur = mDbHelper.fetchAllMyInterestsWithThumbnail();
 
 	    interestCur.moveToFirst();
 	    int counter = 0;
@@ -132,7 +131,7 @@ public class GeatteListAsyncXActivity extends GDListActivity {
 
 		int interestId = interestCur.getInt(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_INTEREST_ID));
 		String imagePath = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_PATH));
-		byte[] imageThumbnail = interestCur.getBlob(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_THUMBNAIL));
+		String thumbnailPath = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_THUMBNAIL_PATH));
 		String interestTitle = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_INTEREST_TITLE));
 		String interestDesc = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_INTEREST_DESC));
 
@@ -141,7 +140,7 @@ public class GeatteListAsyncXActivity extends GDListActivity {
 			interestTitle + ", interestDesc = " + interestDesc);
 
 		//items.add(new ThumbnailAsyncBitmapItem(interestId, interestTitle, interestDesc, imagePath));
-		items.add(new ThumbnailAsyncBitmapItem(interestId, interestTitle, interestDesc, imagePath, imageThumbnail));
+		items.add(new ThumbnailAsyncBitmapItem(interestId, interestTitle, interestDesc, imagePath, thumbnailPath));
 
 		interestCur.moveToNext();
 
@@ -221,14 +220,8 @@ public class GeatteListAsyncXActivity extends GDListActivity {
 		holder.textViewSubTitle.setText(tItem.subtitle);
 		//setTag(item.id);
 
-		if(Config.LOG_DEBUG_ENABLED) {
-		    Log.d(Config.LOGTAG, "GeatteListAsyncXActivity:getView() : async image set to bytearray for length= " + tItem.thumbnail.length);
-		}
-		if (tItem.thumbnail == null || tItem.thumbnail.length <= 0) {
-		    holder.imageView.setImageResource(R.drawable.thumb_missing);
-		} else {
-		    holder.imageView.setImageBitmap(BitmapFactory.decodeByteArray(tItem.thumbnail, 0, tItem.thumbnail.length));
-		}
+		GeatteImageLoader.get(mContext).bindFile(holder.imageView, tItem.thumbnailPath, Config.THUMBNAIL_MAX_DIMENSION,
+			R.drawable.thumb_missing);
 		//String uri = Uri.fromFile(new File(tItem.imagePath)).toString();
 		//Log.d(Config.LOGTAG, "GeatteListAsyncActivity:getView() : async image request to = " + uri);
 		//holder.imageView.setUrl(Uri.fromFile(new File(tItem.imagePath)).toString());
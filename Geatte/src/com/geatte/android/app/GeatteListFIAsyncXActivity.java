@@ -20,7 +20,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -119,7 +118,7 @@ public class GeatteListFIAsyncXActivity extends GDListActivity {
 	Cursor fiCur = null;
 	try {
 	    mDbHelper.open();
-	    fiCur = mDbHelper.fetchAllFriendInterestsWithBlob();
+	    fiCur = mDbHelper.fetchAllFriendInterestsWithThumbnail();
 
 	    fiCur.moveToFirst();
 	    int counter = 0;
@@ -131,7 +130,7 @@ public class GeatteListFIAsyncXActivity extends GDListActivity {
 
 		long fInterestId = fiCur.getLong(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FRIEND_INTEREST_ID));
 		String fImagePath = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_IMAGE_PATH));
-		byte[] fImageThumbnail = fiCur.getBlob(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_IMAGE_THUMBNAIL));
+		String fThumbnailPath = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_IMAGE_THUMBNAIL_PATH));
 		String fInterestTitle = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FRIEND_INTEREST_TITLE));
 		String fInterestDesc = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FRIEND_INTEREST_DESC));
 
@@ -141,7 +140,7 @@ public class GeatteListFIAsyncXActivity extends GDListActivity {
 
 		if (fImagePath != null) {
 		    //items.add(new ThumbnailAsyncBitmapItem(interestId, interestTitle, interestDesc, imagePath));
-		    items.add(new ThumbnailAsyncBitmapItem(fInterestId, fInterestTitle, fInterestDesc, fImagePath, fImageThumbnail));
+		    items.add(new ThumbnailAsyncBitmapItem(fInterestId, fInterestTitle, fInterestDesc, fImagePath, fThumbnailPath));
 		}
 
 		fiCur.moveToNext();
@@ -208,15 +207,9 @@ public class GeatteListFIAsyncXActivity extends GDListActivity {
 		holder.textViewTitle.setText(tItem.text);
 		holder.textViewSubTitle.setText(tItem.subtitle);
 
-		if(Config.LOG_DEBUG_ENABLED) {
-		    Log.d(Config.LOGTAG, "GeatteListFIAsyncXActivity:getView() : async image set to bytearray for length= " + tItem.thumbnail.length);
-		}
 
-		if (tItem.thumbnail == null || tItem.thumbnail.length <= 0) {
-		    holder.imageView.setImageResource(R.drawable.thumb_missing);
-		} else {
-		    holder.imageView.setImageBitmap(BitmapFactory.decodeByteArray(tItem.thumbnail, 0, tItem.thumbnail.length));
-		}
+		GeatteImageLoader.get(mContext).bindFile(holder.imageView, tItem.thumbnailPath, Config.THUMBNAIL_MAX_DIMENSION,
+			R.drawable.thumb_missing);
 
 		return convertView;
 	    } else {
@@ -0,0 +1,91 @@
+package com.geatte.android.app;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Bitmap.CompressFormat;
+import android.util.Log;
+
+/**
+ * Thumbnail files of the images in the db. The db only keeps the path of a
+ * thumbnail, so list cursors stay small however many items there are.
+ *
+ * A thumbnail is named by a hash of its owner row and image path, a new image
+ * gets a new file.
+ */
+public class GeatteThumbnailStore {
+    private static final String TAG = "GeatteThumbnailStore";
+
+    private static final String DIR = "thumbnails";
+
+    // file name prefix per table
+    public static final String PREFIX_IMAGE = "i-";
+    public static final String PREFIX_FI_IMAGE = "fi-";
+
+    /**
+     * Scale an image file down to a thumbnail file.
+     *
+     * @return path of the thumbnail, null when the image can not be decoded
+     */
+    public static String create(Context context, String prefix, String ownerId, String imagePath) {
+	Bitmap bitmap = GeatteImageLoader.decodeScaled(imagePath, Config.THUMBNAIL_MAX_DIMENSION,
+		new BitmapFactory.Options());
+	if (bitmap == null) {
+	    Log.w(Config.LOGTAG, TAG + " : can not decode " + imagePath);
+	    return null;
+	}
+	File file = file(context, prefix, ownerId, imagePath);
+	try {
+	    FileOutputStream out = new FileOutputStream(file);
+	    try {
+		bitmap.compress(CompressFormat.JPEG, Config.THUMBNAIL_JPEG_QUALITY, out);
+	    } finally {
+		out.close();
+	    }
+	    return file.getAbsolutePath();
+	} catch (IOException e) {
+	    Log.w(Config.LOGTAG, TAG + " : can not write " + file, e);
+	    file.delete();
+	    return null;
+	} finally {
+	    bitmap.recycle();
+	}
+    }
+
+    /**
+     * Write an encoded thumbnail, for thumbnails that used to live in the db.
+     *
+     * @return path of the thumbnail, null when it can not be written
+     */
+    public static String write(Context context, String prefix, String ownerId, String imagePath, byte[] jpeg) {
+	File file = file(context, prefix, ownerId, imagePath);
+	try {
+	    FileOutputStream out = new FileOutputStream(file);
+	    try {
+		out.write(jpeg);
+	    } finally {
+		out.close();
+	    }
+	    return file.getAbsolutePath();
+	} catch (IOException e) {
+	    Log.w(Config.LOGTAG, TAG + " : can not write " + file, e);
+	    file.delete();
+	    return null;
+	}
+    }
+
+    public static void delete(String thumbnailPath) {
+	if (thumbnailPath != null && !new File(thumbnailPath).delete()) {
+	    Log.w(Config.LOGTAG, TAG + " : can not delete " + thumbnailPath);
+	}
+    }
+
+    private static File file(Context context, String prefix, String ownerId, String imagePath) {
+	File dir = context.getDir(DIR, Context.MODE_PRIVATE);
+	return new File(dir, prefix + CommonUtils.md5Hex(ownerId + ":" + imagePath) + ".jpg");
+    }
+}
@@ -156,10 +156,8 @@ public class GeatteVoteActivity extends Activity {
 		if (savedFIImagePath == null) {
 		    Log.e(Config.LOGTAG, " " + GeatteVoteActivity.CLASSTAG + " savedFIImagePath is null ");
 		}
-		if (BitmapFactory.decodeFile(savedFIImagePath) == null) {
-		    Log.e(Config.LOGTAG, " " + GeatteVoteActivity.CLASSTAG + " BitmapFactory.decodeFile(savedFIImagePath) is null ");
-		}
-		mGeatteVoteImage.setImageBitmap(BitmapFactory.decodeFile(savedFIImagePath));
+		GeatteImageLoader.get(this).bindFile(mGeatteVoteImage, savedFIImagePath, Config.DETAIL_MAX_DIMENSION,
+			R.drawable.thumb_missing);
 	    } catch (Exception ex) {
 		Log.e(Config.LOGTAG, " " + GeatteVoteActivity.CLASSTAG + " ERROR ", ex);
 	    }
@@ -16,7 +16,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.database.Cursor;
-import android.graphics.BitmapFactory;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
@@ -112,10 +111,8 @@ public class GeatteVotingActivity extends GDActivity {
 		if (savedFIImagePath == null) {
 		    Log.e(Config.LOGTAG, " " + GeatteVotingActivity.CLASSTAG + " savedFIImagePath is null ");
 		}
-		if (BitmapFactory.decodeFile(savedFIImagePath) == null) {
-		    Log.e(Config.LOGTAG, " " + GeatteVotingActivity.CLASSTAG + " BitmapFactory.decodeFile(savedFIImagePath) is null ");
-		}
-		mGeatteVoteImage.setImageBitmap(BitmapFactory.decodeFile(savedFIImagePath));
+		GeatteImageLoader.get(this).bindFile(mGeatteVoteImage, savedFIImagePath, Config.DETAIL_MAX_DIMENSION,
+			R.drawable.thumb_missing);
 		if (savedFITitle != null) {
 		    setTitle(savedFITitle);
 		} else {
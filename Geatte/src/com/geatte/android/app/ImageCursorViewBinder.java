@@ -1,8 +1,6 @@
 package com.geatte.android.app;
 
 import android.database.Cursor;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.SimpleCursorAdapter.ViewBinder;
@@ -18,10 +16,8 @@ public class ImageCursorViewBinder implements ViewBinder {
 	    String savedImagePath = cursor.getString(
 		    cursor.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_PATH));
 
-	    BitmapFactory.Options bitmapOptions = new BitmapFactory.Options();
-	    bitmapOptions.inSampleSize = 16;
-	    Bitmap imgBitmap = BitmapFactory.decodeFile(savedImagePath, bitmapOptions);
-	    imageView.setImageBitmap(imgBitmap);
+	    GeatteImageLoader.get(view.getContext()).bindFile(imageView, savedImagePath,
+		    Config.THUMBNAIL_MAX_DIMENSION, R.drawable.thumb_missing);
 	    return true;
 	}
 	return false;
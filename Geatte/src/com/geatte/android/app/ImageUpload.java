@@ -12,7 +12,6 @@ import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntity;
 import org.apache.http.entity.mime.content.ByteArrayBody;
 import org.apache.http.entity.mime.content.StringBody;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.json.JSONObject;
@@ -139,7 +138,7 @@ public class ImageUpload extends Activity {
 	@Override
 	protected String doInBackground(Void... unsued) {
 	    try {
-		HttpClient httpClient = new DefaultHttpClient();
+		HttpClient httpClient = GeatteHttpClient.get();
 		HttpContext localContext = new BasicHttpContext();
 		HttpPost httpPost = new HttpPost(/*getString(R.string.WebServiceURL)
 			+ */"/cfc/iphonewebservice.cfc?method=uploadPhoto");
@@ -147,7 +146,7 @@ public class ImageUpload extends Activity {
 		MultipartEntity entity = new MultipartEntity(HttpMultipartMode.BROWSER_COMPATIBLE);
 
 		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		bitmap.compress(CompressFormat.JPEG, 100, bos);
+		bitmap.compress(CompressFormat.JPEG, Config.IMAGE_UPLOAD_JPEG_QUALITY, bos);
 		byte[] data = bos.toByteArray();
 		entity.addPart("photoId", new StringBody(getIntent().getStringExtra("photoId")));
 		entity.addPart("returnformat", new StringBody("json"));
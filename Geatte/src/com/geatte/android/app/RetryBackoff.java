@@ -0,0 +1,52 @@
+package com.geatte.android.app;
+
+import java.util.Random;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+
+/**
+ * Delays of retries after the server failed or asked to wait.
+ *
+ * The delay doubles per attempt from a base and is spread by +-50% so
+ * clients that failed together do not come back together. A Retry-After of
+ * the server is a floor, the spread is only added on top of it.
+ */
+public class RetryBackoff {
+    private static final Random sRandom = new Random();
+
+    /**
+     * @param attempt retries made so far, 0 for the first retry
+     * @param baseMillis delay of the first retry
+     * @param maxMillis longest delay without a Retry-After
+     * @param retryAfterMillis wait asked by the server, or -1
+     * @return millis to wait before the retry
+     */
+    public static long delayMillis(int attempt, long baseMillis, long maxMillis, long retryAfterMillis) {
+	long delay = Math.min(baseMillis << Math.min(attempt, 16), maxMillis);
+	if (retryAfterMillis > 0) {
+	    // not capped, the caller decides if a long Retry-After is worth waiting for
+	    long wait = Math.max(delay, retryAfterMillis);
+	    return wait + (long) (sRandom.nextDouble() * wait / 2);
+	}
+	double jitter = 0.5 + sRandom.nextDouble();
+	return (long) (delay * jitter);
+    }
+
+    /**
+     * Get the Retry-After of a response in seconds.
+     *
+     * @return millis, or -1 if the header is missing or an HTTP date
+     */
+    public static long retryAfterMillis(HttpResponse res) {
+	Header header = res.getFirstHeader("Retry-After");
+	if (header == null) {
+	    return -1;
+	}
+	try {
+	    return Long.parseLong(header.getValue().trim()) * 1000;
+	} catch (NumberFormatException e) {
+	    return -1;
+	}
+    }
+}
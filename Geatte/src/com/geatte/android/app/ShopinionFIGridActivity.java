@@ -15,8 +15,6 @@ import android.app.ProgressDialog;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
-import android.graphics.BitmapFactory;
-import android.graphics.drawable.BitmapDrawable;
 import android.os.Bundle;
 import android.os.Handler;
 import android.util.Log;
@@ -75,22 +73,6 @@ public class ShopinionFIGridActivity extends GridActionBarFooterActivity {
 	}
     }
 
-    @Override
-    public void onPause() {
-	super.onPause();
-	if (getListAdapter() != null) {
-	    if(Config.LOG_DEBUG_ENABLED) {
-		Log.d(Config.LOGTAG, "ShopinionFIGridActivity:onPause(): execute gc");
-	    }
-	    for (int i = 0; i < getListAdapter().getCount(); i++) {
-		if (getListAdapter().getItem(i) instanceof GridBitmapItem) {
-		    GridBitmapItem item = (GridBitmapItem) getListAdapter().getItem(i);
-		    item.thumbnail = null;
-		}
-	    }
-	}
-    }
-
     private void fillList() {
 	try {
 	    List<Item> items = getFIGeatteItems();
@@ -131,7 +113,7 @@ public class ShopinionFIGridActivity extends GridActionBarFooterActivity {
 	Cursor fiCur = null;
 	try {
 	    mDbHelper.open();
-	    fiCur = mDbHelper.fetchAllFriendInterestsWithBlob();
+	    fiCur = mDbHelper.fetchAllFriendInterestsWithThumbnail();
 
 	    fiCur.moveToFirst();
 	    int counter = 0;
@@ -143,12 +125,12 @@ public class ShopinionFIGridActivity extends GridActionBarFooterActivity {
 
 		long fInterestId = fiCur.getLong(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FRIEND_INTEREST_ID));
 		String fImagePath = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_IMAGE_PATH));
-		byte[] fImageThumbnail = fiCur.getBlob(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_IMAGE_THUMBNAIL));
+		String fThumbnailPath = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_IMAGE_THUMBNAIL_PATH));
 
 		Log.i(Config.LOGTAG, "ShopinionFIGridActivity:getFIGeatteItems() : add one ThumbnailAsyncBitmapItem, " +
-			"fInterestId = " + fInterestId + ", imageThumbnail.length = " + fImageThumbnail.length);
+			"fInterestId = " + fInterestId + ", thumbnailPath = " + fThumbnailPath);
 
-		items.add(new GridBitmapItem(fInterestId, fImagePath, fImageThumbnail));
+		items.add(new GridBitmapItem(fInterestId, fImagePath, fThumbnailPath));
 
 		fiCur.moveToNext();
 
@@ -199,24 +181,13 @@ public class ShopinionFIGridActivity extends GridActionBarFooterActivity {
 		    convertView.setTag(holder);
 		} else {
 		    holder = (ViewHolder) convertView.getTag();
-		    if (holder.imageView.getDrawable() != null) {
-			BitmapDrawable drawable = (BitmapDrawable) holder.imageView.getDrawable();
-			drawable.getBitmap().recycle();
-		    }
-		    holder.imageView.setImageBitmap(null);
 		}
 
 		GridBitmapItem tItem = (GridBitmapItem) item;
 
-		if(Config.LOG_DEBUG_ENABLED) {
-		    Log.d(Config.LOGTAG, "ShopinionFIGridActivity:ImageAdapter:getView() : image set to bytearray for length = " + tItem.thumbnail.length);
-		}
 
-		if (tItem.thumbnail == null || tItem.thumbnail.length <= 0) {
-		    holder.imageView.setImageResource(R.drawable.thumb_missing);
-		} else {
-		    holder.imageView.setImageBitmap(BitmapFactory.decodeByteArray(tItem.thumbnail, 0, tItem.thumbnail.length));
-		}
+		GeatteImageLoader.get(mContext).bindFile(holder.imageView, tItem.thumbnailPath, Config.THUMBNAIL_MAX_DIMENSION,
+			R.drawable.thumb_missing);
 
 		return convertView;
 	    }
@@ -21,13 +21,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.Paint.Style;
-import android.graphics.drawable.BitmapDrawable;
 import android.os.Bundle;
 import android.os.Handler;
 import android.util.Log;
@@ -95,15 +93,6 @@ public class ShopinionFIListActivity extends ListActionBarActivity {
     public void onPause() {
 	super.onPause();
 	if (getListAdapter() != null) {
-	    if(Config.LOG_DEBUG_ENABLED) {
-		Log.d(Config.LOGTAG, "ShopinionFIListActivity:onPause(): execute gc");
-	    }
-	    for (int i = 0; i < getListAdapter().getCount(); i++) {
-		if (getListAdapter().getItem(i) instanceof InterestFriendThumbnailItem) {
-		    InterestFriendThumbnailItem item = (InterestFriendThumbnailItem) getListAdapter().getItem(i);
-		    item.thumbnail = null;
-		}
-	    }
 	    if (mListContainer != null) {
 		mListContainer.setVisibility(View.INVISIBLE);
 	    }
@@ -156,7 +145,7 @@ public class ShopinionFIListActivity extends ListActionBarActivity {
 	Cursor fiCur = null;
 	try {
 	    mDbHelper.open();
-	    fiCur = mDbHelper.fetchAllFriendInterestsWithBlob();
+	    fiCur = mDbHelper.fetchAllFriendInterestsWithFeedback();
 
 	    fiCur.moveToFirst();
 	    int counter = 0;
@@ -168,37 +157,37 @@ public class ShopinionFIListActivity extends ListActionBarActivity {
 
 		long fInterestId = fiCur.getLong(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FRIEND_INTEREST_ID));
 		String fImagePath = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_IMAGE_PATH));
-		byte[] fImageThumbnail = fiCur.getBlob(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_IMAGE_THUMBNAIL));
+		String fThumbnailPath = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_IMAGE_THUMBNAIL_PATH));
 		String fInterestTitle = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FRIEND_INTEREST_TITLE));
 		String fInterestDesc = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FRIEND_INTEREST_DESC));
 		String fInterestSentOn = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FRIEND_INTEREST_CREATED_DATE));
-		String fInterestSentFrom = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FRIEND_INTEREST_FROM));
+		String fInterestSentFromName = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_CONTACT_NAME));
+		String lastVote = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_FEEDBACK_VOTE));
+		String lastComment = fiCur.getString(fiCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FI_FEEDBACK_COMMENT));
 
 		fInterestSentOn = CommonUtils.convertUTCToLocal(fInterestSentOn);
 
-		List<String> comments = mDbHelper.fetchFIFeedback(Long.toString(fInterestId));
-
 		if (Config.LOG_DEBUG_ENABLED) {
 		    Log.i(Config.LOGTAG, "ShopinionFIListActivity:getFIGeatteItems() : add one ThumbnailAsyncBitmapItem, " +
 			    "fInterestId = " + fInterestId + ", fImagePath = " + fImagePath + ", fInterestTitle = " +
-			    fInterestTitle + ", fInterestDesc = " + fInterestDesc + ", comments = " + comments.toString() +
+			    fInterestTitle + ", fInterestDesc = " + fInterestDesc + ", lastVote = " + lastVote + ", lastComment = " + lastComment +
 			    ", fInterestSentOn = " + fInterestSentOn);
 		}
 
-		String sendByText = "@" + mDbHelper.fetchContactFirstName(fInterestSentFrom);
+		String sendByText = "@" + GeatteDBAdapter.toFirstName(fInterestSentFromName);
 		String sendOnText = "by " + fInterestSentOn;
 		String voteText = "NA";
 		String voteFeedbackText = "";
-		if (comments.get(0) != null) {
-		    voteText = comments.get(0);
+		if (lastVote != null) {
+		    voteText = lastVote;
 		}
 		//TODO could output all comments
-		if (comments.size() > 1 && comments.get(1) != null) {
-		    voteFeedbackText = comments.get(1);
+		if (lastComment != null) {
+		    voteFeedbackText = lastComment;
 		}
 
 		items.add(new InterestFriendThumbnailItem(fInterestId, fInterestTitle, fInterestDesc,
-			fImagePath, fImageThumbnail, sendByText, sendOnText, voteText, voteFeedbackText));
+			fImagePath, fThumbnailPath, sendByText, sendOnText, voteText, voteFeedbackText));
 
 		fiCur.moveToNext();
 
@@ -267,11 +256,6 @@ public class ShopinionFIListActivity extends ListActionBarActivity {
 		    convertView.setTag(holder);
 		} else {
 		    holder = (ViewHolder) convertView.getTag();
-		    if (holder.imageBtn.getDrawable() != null) {
-			BitmapDrawable drawable = (BitmapDrawable) holder.imageBtn.getDrawable();
-			drawable.getBitmap().recycle();
-		    }
-		    holder.imageBtn.setImageBitmap(null);
 		}
 
 		InterestFriendThumbnailItem tItem = (InterestFriendThumbnailItem) item;
@@ -309,14 +293,8 @@ public class ShopinionFIListActivity extends ListActionBarActivity {
 		    holder.btnVoteImage.setImageResource(R.drawable.ct_maybe);
 		}
 
-		if(Config.LOG_DEBUG_ENABLED) {
-		    Log.d(Config.LOGTAG, "ShopinionFIListActivity:getView() : async image set to bytearray for length= " + tItem.thumbnail.length);
-		}
-		if (tItem.thumbnail == null || tItem.thumbnail.length <= 0) {
-		    holder.imageBtn.setImageResource(R.drawable.thumb_missing);
-		} else {
-		    holder.imageBtn.setImageBitmap(BitmapFactory.decodeByteArray(tItem.thumbnail, 0, tItem.thumbnail.length));
-		}
+		GeatteImageLoader.get(mContext).bindFile(holder.imageBtn, tItem.thumbnailPath, Config.THUMBNAIL_MAX_DIMENSION,
+			R.drawable.thumb_missing);
 
 		holder.imageBtn.setOnClickListener(new OnClickListener() {
 		    @Override
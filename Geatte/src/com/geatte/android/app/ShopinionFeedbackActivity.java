@@ -10,7 +10,6 @@ import greendroid.widget.itemview.ItemView;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import com.geatte.android.view.GeatteThumbnailItem;
 import com.geatte.android.view.ListActionBarActivity;
@@ -22,12 +21,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.os.Handler;
-import android.provider.ContactsContract.Contacts;
-import android.provider.ContactsContract.Data;
-import android.provider.ContactsContract.CommonDataKinds.Photo;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
@@ -103,9 +98,6 @@ public class ShopinionFeedbackActivity extends ListActionBarActivity {
 	    for (int i = 0; i < getListAdapter().getCount(); i++) {
 		if (getListAdapter().getItem(i) instanceof GeatteThumbnailItem) {
 		    GeatteThumbnailItem item = (GeatteThumbnailItem) getListAdapter().getItem(i);
-		    if (item.bitmap != null) {
-			item.bitmap.recycle();
-		    }
 		    item.bitmap = null;
 		}
 	    }
@@ -221,6 +213,7 @@ public class ShopinionFeedbackActivity extends ListActionBarActivity {
 		noItems.add(new SeparatorThumbnailItem("Don't Get It", R.drawable.ct_no));
 		maybeItems.add(new SeparatorThumbnailItem("Think Twice", R.drawable.ct_maybe));
 
+		final GeatteContactCache contactCache = GeatteContactCache.get(this);
 		feedbackCur = mDbHelper.fetchMyInterestFeedback(geatteId);
 		feedbackCur.moveToFirst();
 
@@ -229,13 +222,10 @@ public class ShopinionFeedbackActivity extends ListActionBarActivity {
 		    if (vote.equals(Config.LIKE.YES.toString())) {
 			String voter = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_VOTER));
 
-			Map<String, Object> map = mDbHelper.fetchContactIdAndName(voter);
 			// get contact name for this voter
-			String voterName = (String)map.get(GeatteDBAdapter.KEY_CONTACT_NAME);
+			String voterName = contactCache.getName(voter, "");
 			// get voter contact thumbnail
-			Integer contactId = (Integer)map.get(GeatteDBAdapter.KEY_CONTACT_ID);
-
-			Bitmap contactBitmap = queryPhotoForContact(contactId);
+			Bitmap contactBitmap = contactCache.getPhoto(contactCache.getContactId(voter));
 
 			String text = new StringBuilder(voterName).append(" LOVE it!").toString();
 			String comment = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_COMMENT));
@@ -250,13 +240,10 @@ public class ShopinionFeedbackActivity extends ListActionBarActivity {
 		    if (vote.equals(Config.LIKE.NO.toString())) {
 			String voter = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_VOTER));
 
-			Map<String, Object> map = mDbHelper.fetchContactIdAndName(voter);
 			// get contact name for this voter
-			String voterName = (String)map.get(GeatteDBAdapter.KEY_CONTACT_NAME);
+			String voterName = contactCache.getName(voter, "");
 			// get voter contact thumbnail
-			Integer contactId = (Integer)map.get(GeatteDBAdapter.KEY_CONTACT_ID);
-
-			Bitmap contactBitmap = queryPhotoForContact(contactId);
+			Bitmap contactBitmap = contactCache.getPhoto(contactCache.getContactId(voter));
 
 			String text = new StringBuilder(voterName).append(" said NO!").toString();
 			String comment = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_COMMENT));
@@ -271,13 +258,10 @@ public class ShopinionFeedbackActivity extends ListActionBarActivity {
 		    if (vote.equals(Config.LIKE.MAYBE.toString())) {
 			String voter = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_VOTER));
 
-			Map<String, Object> map = mDbHelper.fetchContactIdAndName(voter);
 			// get contact name for this voter
-			String voterName = (String)map.get(GeatteDBAdapter.KEY_CONTACT_NAME);
+			String voterName = contactCache.getName(voter, "");
 			// get voter contact thumbnail
-			Integer contactId = (Integer)map.get(GeatteDBAdapter.KEY_CONTACT_ID);
-
-			Bitmap contactBitmap = queryPhotoForContact(contactId);
+			Bitmap contactBitmap = contactCache.getPhoto(contactCache.getContactId(voter));
 
 			String text = new StringBuilder(voterName).append(" said MAYBE!").toString();
 			String comment = feedbackCur.getString(feedbackCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_FEEDBACK_COMMENT));
@@ -369,52 +353,6 @@ public class ShopinionFeedbackActivity extends ListActionBarActivity {
 
     }
 
-    private Bitmap queryPhotoForContact(int contactId) {
-	final String[] projection = new String[] {
-		//Contacts.DISPLAY_NAME,// the name of the contact
-		Contacts.PHOTO_ID// the id of the column in the data table for the image
-	};
-
-	final Cursor contact = managedQuery(
-		Contacts.CONTENT_URI,
-		projection,
-		Contacts._ID + "=?",// filter entries on the basis of the contact id
-		new String[]{String.valueOf(contactId)},// the parameter to which the contact id column is compared to
-		null);
-
-	if(contact.moveToFirst()) {
-	    //	    final String name = contact.getString(
-	    //		    contact.getColumnIndex(Contacts.DISPLAY_NAME));
-	    final String photoId = contact.getString(
-		    contact.getColumnIndex(Contacts.PHOTO_ID));
-	    final Bitmap photo;
-	    if(photoId != null) {
-		photo = queryContactBitmap(photoId);
-	    } else {
-		photo = null;
-	    }
-	    contact.close();
-	    return photo;
-	}
-	contact.close();
-	return null;
-    }
-
-    private Bitmap queryContactBitmap(String photoId) {
-	Cursor photo = getContentResolver().query(Data.CONTENT_URI, new String[] { Photo.PHOTO },
-		Data._ID + "=?", new String[] { photoId }, null);
-
-	final Bitmap photoBitmap;
-	if (photo.moveToFirst()) {
-	    byte[] photoBlob = photo.getBlob(photo.getColumnIndex(Photo.PHOTO));
-	    photoBitmap = BitmapFactory.decodeByteArray(photoBlob, 0, photoBlob.length);
-	} else {
-	    photoBitmap = null;
-	}
-	photo.close();
-	return photoBitmap;
-    }
-
     @Override
     public int createLayout() {
 	if (mIsHomeBar == Config.BACK_STYLE.LIST) {
@@ -15,8 +15,6 @@ import android.app.ProgressDialog;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
-import android.graphics.BitmapFactory;
-import android.graphics.drawable.BitmapDrawable;
 import android.os.Bundle;
 import android.os.Handler;
 import android.util.Log;
@@ -75,22 +73,6 @@ public class ShopinionGridActivity extends GridActionBarFooterActivity {
 	}
     }
 
-    @Override
-    public void onPause() {
-	super.onPause();
-	if (getListAdapter() != null) {
-	    if(Config.LOG_DEBUG_ENABLED) {
-		Log.d(Config.LOGTAG, "ShopinionGridActivity:onPause(): execute gc");
-	    }
-	    for (int i = 0; i < getListAdapter().getCount(); i++) {
-		if (getListAdapter().getItem(i) instanceof GridBitmapItem) {
-		    GridBitmapItem item = (GridBitmapItem) getListAdapter().getItem(i);
-		    item.thumbnail = null;
-		}
-	    }
-	}
-    }
-
     private void fillList() {
 	try {
 	    List<Item> items = getMyGeatteItems();
@@ -131,7 +113,7 @@ public class ShopinionGridActivity extends GridActionBarFooterActivity {
 	Cursor interestCur = null;
 	try {
 	    mDbHelper.open();
-	    interestCur = mDbHelper.fetchAllMyInterestsWithBlob();
+	    interestCur = mDbHelper.fetchAllMyInterestsWithThumbnail();
 
 	    interestCur.moveToFirst();
 	    int counter = 0;
@@ -143,12 +125,12 @@ public class ShopinionGridActivity extends GridActionBarFooterActivity {
 
 		int interestId = interestCur.getInt(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_INTEREST_ID));
 		String imagePath = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_PATH));
-		byte[] imageThumbnail = interestCur.getBlob(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_THUMBNAIL));
+		String thumbnailPath = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_THUMBNAIL_PATH));
 
 		Log.i(Config.LOGTAG, "ShopinionGridActivity:getMyGeatteItems() : add one ThumbnailAsyncBitmapItem, " +
-			"interestId = " + interestId + ", imageThumbnail.length = " + imageThumbnail.length);
+			"interestId = " + interestId + ", thumbnailPath = " + thumbnailPath);
 
-		items.add(new GridBitmapItem(interestId, imagePath, imageThumbnail));
+		items.add(new GridBitmapItem(interestId, imagePath, thumbnailPath));
 
 		interestCur.moveToNext();
 
@@ -199,24 +181,13 @@ public class ShopinionGridActivity extends GridActionBarFooterActivity {
 		    convertView.setTag(holder);
 		} else {
 		    holder = (ViewHolder) convertView.getTag();
-		    if (holder.imageView.getDrawable() != null) {
-			BitmapDrawable drawable = (BitmapDrawable) holder.imageView.getDrawable();
-			drawable.getBitmap().recycle();
-		    }
-		    holder.imageView.setImageBitmap(null);
 		}
 
 		GridBitmapItem tItem = (GridBitmapItem) item;
 
-		if(Config.LOG_DEBUG_ENABLED) {
-		    Log.d(Config.LOGTAG, "ShopinionGridActivity:ImageAdapter:getView() : image set to bytearray for length = " + tItem.thumbnail.length);
-		}
 
-		if (tItem.thumbnail == null || tItem.thumbnail.length <= 0) {
-		    holder.imageView.setImageResource(R.drawable.thumb_missing);
-		} else {
-		    holder.imageView.setImageBitmap(BitmapFactory.decodeByteArray(tItem.thumbnail, 0, tItem.thumbnail.length));
-		}
+		GeatteImageLoader.get(mContext).bindFile(holder.imageView, tItem.thumbnailPath, Config.THUMBNAIL_MAX_DIMENSION,
+			R.drawable.thumb_missing);
 
 		return convertView;
 	    }
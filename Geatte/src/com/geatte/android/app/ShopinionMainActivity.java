@@ -21,10 +21,10 @@ import java.util.List;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIUtils;
 import org.apache.http.client.utils.URLEncodedUtils;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.message.BasicNameValuePair;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -37,13 +37,11 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.Paint.Style;
-import android.graphics.drawable.BitmapDrawable;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.os.Bundle;
@@ -139,15 +137,6 @@ public class ShopinionMainActivity extends ListActionBarActivity {
     public void onPause() {
 	super.onPause();
 	if (getListAdapter() != null) {
-	    if(Config.LOG_DEBUG_ENABLED) {
-		Log.d(Config.LOGTAG, "ShopinionMainActivity:onPause(): execute gc");
-	    }
-	    for (int i = 0; i < getListAdapter().getCount(); i++) {
-		if (getListAdapter().getItem(i) instanceof InterestThumbnailItem) {
-		    InterestThumbnailItem item = (InterestThumbnailItem) getListAdapter().getItem(i);
-		    item.thumbnail = null;
-		}
-	    }
 	    if (mListContainer != null) {
 		mListContainer.setVisibility(View.INVISIBLE);
 	    }
@@ -160,6 +149,12 @@ public class ShopinionMainActivity extends ListActionBarActivity {
 	unScheduleContactService();
     }
 
+    @Override
+    public void onLowMemory() {
+	super.onLowMemory();
+	GeatteImageLoader.get(this).clearMemory();
+    }
+
     private void fillList() {
 	try {
 	    List<Item> items = getMyGeatteItems();
@@ -206,7 +201,7 @@ public class ShopinionMainActivity extends ListActionBarActivity {
 	Cursor interestCur = null;
 	try {
 	    mDbHelper.open();
-	    interestCur = mDbHelper.fetchAllMyInterestsWithBlob();
+	    interestCur = mDbHelper.fetchAllMyInterestsWithCounters();
 
 	    interestCur.moveToFirst();
 	    int counter = 0;
@@ -217,13 +212,12 @@ public class ShopinionMainActivity extends ListActionBarActivity {
 		}
 
 		int interestId = interestCur.getInt(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_INTEREST_ID));
-		String geatteId = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_INTEREST_GEATTE_ID));
 		String imagePath = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_PATH));
-		byte[] imageThumbnail = interestCur.getBlob(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_THUMBNAIL));
+		String thumbnailPath = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_IMAGE_THUMBNAIL_PATH));
 		String interestTitle = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_INTEREST_TITLE));
 		String interestDesc = interestCur.getString(interestCur.getColumnIndexOrThrow(GeatteDBAdapter.KEY_INTEREST_DESC));
 
-		int [] counters = mDbHelper.fetchMyInterestFeedbackCounters(geatteId);
+		int [] counters = GeatteDBAdapter.getFeedbackCounters(interestCur);
 
 		if (Config.LOG_DEBUG_ENABLED) {
 		    Log.d(Config.LOGTAG, "ShopinionMainActivity:getMyGeatteItems() : add one InterestThumbnailItem, " +
@@ -231,7 +225,7 @@ public class ShopinionMainActivity extends ListActionBarActivity {
 			    interestTitle + ", interestDesc = " + interestDesc + ", counters = " + Arrays.toString(counters));
 		}
 
-		items.add(new InterestThumbnailItem(interestId, interestTitle, interestDesc, imagePath, imageThumbnail, counters));
+		items.add(new InterestThumbnailItem(interestId, interestTitle, interestDesc, imagePath, thumbnailPath, counters));
 
 		interestCur.moveToNext();
 
@@ -303,11 +297,6 @@ public class ShopinionMainActivity extends ListActionBarActivity {
 		    convertView.setTag(holder);
 		} else {
 		    holder = (ViewHolder) convertView.getTag();
-		    if (holder.imageBtn.getDrawable() != null) {
-			BitmapDrawable drawable = (BitmapDrawable) holder.imageBtn.getDrawable();
-			drawable.getBitmap().recycle();
-		    }
-		    holder.imageBtn.setImageBitmap(null);
 		}
 
 		InterestThumbnailItem tItem = (InterestThumbnailItem) item;
@@ -355,14 +344,8 @@ public class ShopinionMainActivity extends ListActionBarActivity {
 		    }
 		});
 
-		if (tItem.thumbnail == null || tItem.thumbnail.length <= 0) {
-		    holder.imageBtn.setImageResource(R.drawable.thumb_missing);
-		} else {
-		    holder.imageBtn.setImageBitmap(BitmapFactory.decodeByteArray(tItem.thumbnail, 0, tItem.thumbnail.length));
-		    if(Config.LOG_DEBUG_ENABLED) {
-			Log.d(Config.LOGTAG, "ShopinionMainActivity:getView() : async image set to bytearray for length = " + tItem.thumbnail.length);
-		    }
-		}
+		GeatteImageLoader.get(mContext).bindFile(holder.imageBtn, tItem.thumbnailPath, Config.THUMBNAIL_MAX_DIMENSION,
+			R.drawable.thumb_missing);
 
 		holder.imageBtn.setOnClickListener(new OnClickListener() {
 		    @Override
@@ -486,7 +469,7 @@ public class ShopinionMainActivity extends ListActionBarActivity {
 
     public void onTestGetAllItems() {
 
-	DefaultHttpClient client = new DefaultHttpClient();
+	HttpClient client = GeatteHttpClient.get();
 
 	List<NameValuePair> qparams = new ArrayList<NameValuePair>();
 	qparams.add(new BasicNameValuePair(Config.DEV_PHONE_NUMBER_PARAM, "15103978860"));
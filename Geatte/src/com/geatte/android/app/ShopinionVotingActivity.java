@@ -18,8 +18,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.database.Cursor;
-import android.graphics.BitmapFactory;
-import android.graphics.drawable.BitmapDrawable;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
@@ -90,11 +88,7 @@ public class ShopinionVotingActivity extends GDActivity {
     @Override
     public void onPause() {
 	super.onPause();
-	if (mGeatteVoteImage.getDrawable() != null) {
-	    BitmapDrawable drawable = (BitmapDrawable) mGeatteVoteImage.getDrawable();
-	    drawable.getBitmap().recycle();
-	}
-	mGeatteVoteImage.setImageBitmap(null);
+	GeatteImageLoader.get(this).unbind(mGeatteVoteImage);
     }
 
     @Override
@@ -139,10 +133,8 @@ public class ShopinionVotingActivity extends GDActivity {
 		if (savedFIImagePath == null) {
 		    Log.e(Config.LOGTAG, " " + ShopinionVotingActivity.CLASSTAG + " savedFIImagePath is null ");
 		}
-		if (BitmapFactory.decodeFile(savedFIImagePath) == null) {
-		    Log.e(Config.LOGTAG, " " + ShopinionVotingActivity.CLASSTAG + " BitmapFactory.decodeFile(savedFIImagePath) is null ");
-		}
-		mGeatteVoteImage.setImageBitmap(BitmapFactory.decodeFile(savedFIImagePath));
+		GeatteImageLoader.get(this).bindFile(mGeatteVoteImage, savedFIImagePath, Config.DETAIL_MAX_DIMENSION,
+			R.drawable.thumb_missing);
 		if (savedFITitle != null && savedFITitle.length() > 0) {
 		    setTitle(savedFITitle);
 		} else {
@@ -4,35 +4,43 @@ import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
-import java.net.URLConnection;
 import java.net.URLDecoder;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIUtils;
 import org.apache.http.client.utils.URLEncodedUtils;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.message.BasicNameValuePair;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.geatte.android.app.Config;
 import com.geatte.android.app.DeviceRegistrar;
 import com.geatte.android.app.GeatteDBAdapter;
+import com.geatte.android.app.GeatteHttpClient;
 import com.geatte.android.app.R;
 import com.geatte.android.app.ShopinionFeedbackActivity;
 import com.geatte.android.app.ShopinionVotingActivity;
@@ -151,14 +159,18 @@ public class C2DMReceiver extends C2DMBaseReceiver {
 
 	    String geatteId = extras.getString(Config.C2DM_MESSAGE_GEATTE_ID);
 	    if (geatteId != null) {
-		processNewGeatte(context, geatteId);
+		processNewGeatte(context, geatteId, extras);
 	    }
 
+	    String digestGeatteId = extras.getString(Config.C2DM_MESSAGE_GEATTEID_VOTE_DIGEST);
 	    String voteGeatteId = extras.getString(Config.C2DM_MESSAGE_GEATTEID_VOTE);
 	    String voter = extras.getString(Config.C2DM_MESSAGE_GEATTE_VOTER);
 	    String voteResp = extras.getString(Config.C2DM_MESSAGE_GEATTE_VOTE_RESP);
 	    String voteFeedback = extras.getString(Config.C2DM_MESSAGE_GEATTE_VOTE_FEEDBACK);
-	    if (voteGeatteId != null && voter != null && voteResp != null) {
+	    if (digestGeatteId != null) {
+		// digest also carries the latest vote in the single vote keys for older clients
+		processGeatteVoteDigest(context, digestGeatteId, extras);
+	    } else if (voteGeatteId != null && voter != null && voteResp != null) {
 		processNewGeatteFeedback(context, voteGeatteId, voter, voteResp, voteFeedback);
 	    }
 
@@ -191,7 +203,7 @@ public class C2DMReceiver extends C2DMBaseReceiver {
 	}
     }
 
-    private void processNewGeatte(Context context, String geatteid) {
+    private void processNewGeatte(Context context, String geatteid, Bundle extras) {
 	//showNotification("Got new geatte message : " + geatteMessage);
 	Log.d(Config.LOGTAG_C2DM, "Messaging request received for geatteid " + geatteid);
 
@@ -201,46 +213,15 @@ public class C2DMReceiver extends C2DMBaseReceiver {
 	    Log.e(Config.LOGTAG, " " + TAG, e);
 	}
 
-	//fetch coming message
-	DefaultHttpClient client = new DefaultHttpClient();
-	//		HttpGet get = new HttpGet(Config.BASE_URL + Config.GEATTE_INFO_GET_URL);
-
-	//		final HttpParams getParams = new BasicHttpParams();
-	//		getParams.setParameter(Config.GEATTE_ID_PARAM, geatteid);
-	//		get.setParams(getParams);
-
-	//		get.getParams().setParameter(Config.GEATTE_ID_PARAM, geatteid);
-
-	List<NameValuePair> qparams = new ArrayList<NameValuePair>();
-	qparams.add(new BasicNameValuePair(Config.GEATTE_ID_PARAM, geatteid));
 	final GeatteDBAdapter dbHelper = new GeatteDBAdapter(this);
 
 	try {
-
-	    URI uri = URIUtils.createURI("https", Config.BASE_SERVER, -1, Config.GEATTE_INFO_GET_URL,
-		    URLEncodedUtils.format(qparams, "UTF-8"), null);
-	    Log.d(Config.LOGTAG_C2DM, "Sending request to geatte info to url = " + uri.toString());
-	    HttpGet httpget = new HttpGet(uri);
-	    HttpResponse response = client.execute(httpget);
-
-	    JSONObject jResponse = null;
-	    BufferedReader reader = new BufferedReader(
-		    new InputStreamReader(
-			    response.getEntity().getContent(), "UTF-8"));
-
-	    char[] tmp = new char[2048];
-	    StringBuffer body = new StringBuffer();
-	    while (true) {
-		int cnt = reader.read(tmp);
-		if (cnt <= 0) {
-		    break;
-		}
-		body.append(tmp, 0, cnt);
-	    }
-	    try {
-		jResponse = new JSONObject(URLDecoder.decode((body.toString()==null ? "" : body.toString()), Config.ENCODE_UTF8));
-	    } catch (JSONException e) {
-		Log.e(Config.LOGTAG, " " + TAG, e);
+	    // new servers send the item in the push, only fetch it when it is missing or cut
+	    JSONObject jResponse = getGeatteInfoFromPayload(geatteid, extras);
+	    if (jResponse == null) {
+		jResponse = fetchGeatteInfo(geatteid);
+	    } else if (Config.LOG_DEBUG_ENABLED) {
+		Log.d(Config.LOGTAG, " " + TAG + " geatte info for geatteid " + geatteid + " taken from push payload");
 	    }
 
 	    dbHelper.open();
@@ -252,6 +233,7 @@ public class C2DMReceiver extends C2DMBaseReceiver {
 		String title = jResponse.getString(Config.GEATTE_TITLE_PARAM);
 		String desc = jResponse.getString(Config.GEATTE_DESC_PARAM);
 		String createdDate = jResponse.getString(Config.GEATTE_CREATED_DATE_PARAM);
+		String imageHash = decodeExtra(extras, Config.C2DM_MESSAGE_GEATTE_IMG_HASH);
 
 		if (Config.LOG_DEBUG_ENABLED) {
 		    Log.d(Config.LOGTAG, " " + TAG + " GOT geatteId = " + geatteId);
@@ -277,13 +259,17 @@ public class C2DMReceiver extends C2DMBaseReceiver {
 
 		if (geatteId != null && !geatteId.equals("")) {
 		    try {
-			Bitmap bm = downloadImg(geatteId);
-			//retry once
-			if (bm == null) {
-			    bm = downloadImg(geatteId);
+			String imagePath = null;
+			File hashedFile = getImageFileForHash(imageHash);
+			if (hashedFile != null && hashedFile.exists()) {
+			    // same image was received before, no need to download again
+			    imagePath = hashedFile.getAbsolutePath();
+			} else {
+			    // retries resume from the bytes already received
+			    Bitmap bm = downloadImg(geatteId);
+			    imagePath = saveToFile(bm, imageHash);
 			}
 
-			String imagePath = saveToFile(bm);
 			if (imagePath != null) {
 			    Log.d(Config.LOGTAG, " " + TAG + "GOT image from server imagePath = " + imagePath);
 			    dbHelper.insertFIImage(geatteId, imagePath);
@@ -336,14 +322,214 @@ public class C2DMReceiver extends C2DMBaseReceiver {
 	}
     }
 
-    private Bitmap downloadImg(String geatteId) throws MalformedURLException, IOException {
-	URL url = new URL(Config.BASE_URL + Config.GEATTE_IMAGE_GET_URL + "?" + Config.GEATTE_ID_PARAM + "=" + geatteId);
-	URLConnection conn = url.openConnection();
-	conn.connect();
-	BufferedInputStream bis = new BufferedInputStream(conn.getInputStream());
-	Bitmap bm = BitmapFactory.decodeStream(bis);
-	bis.close();
-	return bm;
+    /**
+     * Build geatte info from the push payload.
+     * 
+     * @return geatte info in the same form as /geatteinfoget returns, or null
+     *         if the payload does not carry the full item
+     */
+    private JSONObject getGeatteInfoFromPayload(String geatteid, Bundle extras) throws JSONException {
+	String fromNumber = decodeExtra(extras, Config.C2DM_MESSAGE_GEATTE_FROM);
+	String title = decodeExtra(extras, Config.C2DM_MESSAGE_GEATTE_TITLE);
+	String createdDate = decodeExtra(extras, Config.C2DM_MESSAGE_GEATTE_CREATED);
+	if (fromNumber == null || title == null || createdDate == null
+		|| extras.getString(Config.C2DM_MESSAGE_GEATTE_TRUNCATED) != null) {
+	    return null;
+	}
+	String desc = decodeExtra(extras, Config.C2DM_MESSAGE_GEATTE_DESC);
+
+	JSONObject geatteInfo = new JSONObject();
+	geatteInfo.put(Config.GEATTE_ID_PARAM, geatteid);
+	geatteInfo.put(Config.GEATTE_FROM_NUMBER_PARAM, fromNumber);
+	geatteInfo.put(Config.GEATTE_TITLE_PARAM, title);
+	geatteInfo.put(Config.GEATTE_DESC_PARAM, (desc == null ? "" : desc));
+	geatteInfo.put(Config.GEATTE_CREATED_DATE_PARAM, createdDate);
+	return geatteInfo;
+    }
+
+    private JSONObject fetchGeatteInfo(String geatteid) throws URISyntaxException, ClientProtocolException, IOException {
+	//fetch coming message
+	HttpClient client = GeatteHttpClient.get();
+	//		HttpGet get = new HttpGet(Config.BASE_URL + Config.GEATTE_INFO_GET_URL);
+
+	//		final HttpParams getParams = new BasicHttpParams();
+	//		getParams.setParameter(Config.GEATTE_ID_PARAM, geatteid);
+	//		get.setParams(getParams);
+
+	//		get.getParams().setParameter(Config.GEATTE_ID_PARAM, geatteid);
+
+	List<NameValuePair> qparams = new ArrayList<NameValuePair>();
+	qparams.add(new BasicNameValuePair(Config.GEATTE_ID_PARAM, geatteid));
+
+	URI uri = URIUtils.createURI("https", Config.BASE_SERVER, -1, Config.GEATTE_INFO_GET_URL,
+		URLEncodedUtils.format(qparams, "UTF-8"), null);
+	Log.d(Config.LOGTAG_C2DM, "Sending request to geatte info to url = " + uri.toString());
+	HttpGet httpget = new HttpGet(uri);
+	HttpResponse response = client.execute(httpget);
+
+	JSONObject jResponse = null;
+	BufferedReader reader = new BufferedReader(
+		new InputStreamReader(
+			response.getEntity().getContent(), "UTF-8"));
+
+	char[] tmp = new char[2048];
+	StringBuffer body = new StringBuffer();
+	while (true) {
+	    int cnt = reader.read(tmp);
+	    if (cnt <= 0) {
+		break;
+	    }
+	    body.append(tmp, 0, cnt);
+	}
+	try {
+	    jResponse = new JSONObject(URLDecoder.decode((body.toString()==null ? "" : body.toString()), Config.ENCODE_UTF8));
+	} catch (JSONException e) {
+	    Log.e(Config.LOGTAG, " " + TAG, e);
+	}
+	return jResponse;
+    }
+
+    private static String decodeExtra(Bundle extras, String key) {
+	String value = extras.getString(key);
+	if (value == null) {
+	    return null;
+	}
+	try {
+	    return URLDecoder.decode(value, Config.ENCODE_UTF8);
+	} catch (UnsupportedEncodingException e) {
+	    Log.e(Config.LOGTAG, " " + TAG, e);
+	}
+	return value;
+    }
+
+    /**
+     * Download the image of an item into a partial file of the cache dir.
+     *
+     * A dropped connection keeps the bytes received so far, the next attempt
+     * asks for the rest with Range and If-Range on the ETag of the first
+     * response. The server sends the whole image again when it changed.
+     *
+     * @return image, or null if it could not be downloaded
+     */
+    private Bitmap downloadImg(String geatteId) throws IOException {
+	File partFile = new File(getCacheDir(), "geatte_img_" + geatteId + ".part");
+	File etagFile = new File(getCacheDir(), "geatte_img_" + geatteId + ".etag");
+	IOException lastError = null;
+
+	for (int attempt = 0; attempt < Config.IMAGE_DOWNLOAD_ATTEMPTS; attempt++) {
+	    try {
+		if (downloadPart(geatteId, partFile, etagFile)) {
+		    Bitmap bm = BitmapFactory.decodeFile(partFile.getAbsolutePath());
+		    partFile.delete();
+		    etagFile.delete();
+		    return bm;
+		}
+	    } catch (IOException e) {
+		lastError = e;
+		Log.w(Config.LOGTAG, " " + TAG + "download of image " + geatteId + " stopped at " + partFile.length()
+			+ " bytes, attempt " + (attempt + 1), e);
+	    }
+	}
+	if (lastError != null) {
+	    throw lastError;
+	}
+	return null;
+    }
+
+    /**
+     * Get the bytes of an image not yet in the partial file.
+     *
+     * @return true if the partial file has the whole image
+     */
+    private boolean downloadPart(String geatteId, File partFile, File etagFile) throws IOException {
+	HttpGet get = new HttpGet(Config.BASE_URL + Config.GEATTE_IMAGE_GET_URL + "?" + Config.GEATTE_ID_PARAM + "="
+		+ geatteId);
+	long have = partFile.exists() ? partFile.length() : 0;
+	String etag = readEtag(etagFile);
+	if (have > 0 && etag != null) {
+	    get.setHeader("Range", "bytes=" + have + "-");
+	    get.setHeader("If-Range", etag);
+	} else {
+	    have = 0;
+	}
+	HttpResponse response = GeatteHttpClient.get().execute(get);
+	HttpEntity entity = response.getEntity();
+	try {
+	    int status = response.getStatusLine().getStatusCode();
+	    boolean append;
+	    if (status == HttpStatus.SC_PARTIAL_CONTENT) {
+		append = true;
+	    } else if (status == HttpStatus.SC_OK) {
+		append = false;
+	    } else if (status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+		// partial file is stale or already complete, start over
+		partFile.delete();
+		etagFile.delete();
+		return false;
+	    } else {
+		Log.w(Config.LOGTAG, " " + TAG + "download of image " + geatteId + " got status " + status);
+		return false;
+	    }
+	    Header etagHeader = response.getFirstHeader("ETag");
+	    writeEtag(etagFile, etagHeader != null ? etagHeader.getValue() : null);
+
+	    long expected = entity != null ? entity.getContentLength() : 0;
+	    long received = 0;
+	    if (entity != null) {
+		BufferedInputStream in = new BufferedInputStream(entity.getContent());
+		FileOutputStream out = new FileOutputStream(partFile, append);
+		try {
+		    byte[] buffer = new byte[8192];
+		    int read;
+		    while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+			received += read;
+		    }
+		} finally {
+		    out.close();
+		    in.close();
+		}
+	    }
+	    if (Config.LOG_DEBUG_ENABLED) {
+		Log.d(Config.LOGTAG, " " + TAG + "image " + geatteId + " got " + received + " bytes"
+			+ (append ? " after " + have : ""));
+	    }
+	    return expected < 0 || received >= expected;
+	} finally {
+	    if (entity != null) {
+		// gives the connection back to the pool, or closes it after a failed read
+		entity.consumeContent();
+	    }
+	}
+    }
+
+    private static String readEtag(File etagFile) {
+	if (!etagFile.exists()) {
+	    return null;
+	}
+	try {
+	    BufferedReader reader = new BufferedReader(new FileReader(etagFile));
+	    try {
+		return reader.readLine();
+	    } finally {
+		reader.close();
+	    }
+	} catch (IOException e) {
+	    return null;
+	}
+    }
+
+    private static void writeEtag(File etagFile, String etag) throws IOException {
+	if (etag == null) {
+	    etagFile.delete();
+	    return;
+	}
+	FileWriter writer = new FileWriter(etagFile);
+	try {
+	    writer.write(etag);
+	} finally {
+	    writer.close();
+	}
     }
 
 
@@ -391,6 +577,259 @@ public class C2DMReceiver extends C2DMBaseReceiver {
 	}
     }
 
+    /**
+     * Apply a vote digest of one item.
+     *
+     * Server sends the votes of a window as one push per item, all carrying
+     * the same seq and the seq of the digest before it. Inline votes are only
+     * applied when the digest follows the last applied one, otherwise a digest
+     * was lost or collapsed and the votes since the last applied seq are
+     * fetched from /geatteallget.
+     */
+    private void processGeatteVoteDigest(Context context, String digestGeatteId, Bundle extras) {
+	String geatteId = decodeExtra(extras, Config.C2DM_MESSAGE_GEATTEID_VOTE_DIGEST);
+	long seq = parseLongExtra(extras, Config.C2DM_MESSAGE_GEATTE_VOTE_SEQ);
+	long prevSeq = parseLongExtra(extras, Config.C2DM_MESSAGE_GEATTE_VOTE_PREV_SEQ);
+	long batch = parseLongExtra(extras, Config.C2DM_MESSAGE_GEATTE_VOTE_BATCH);
+	boolean more = extras.getString(Config.C2DM_MESSAGE_GEATTE_VOTE_MORE) != null;
+	Log.d(Config.LOGTAG_C2DM, "Messaging request received for geatte vote digest id = " + geatteId + ", seq = " + seq);
+
+	final SharedPreferences prefs = context.getSharedPreferences(Config.PREFERENCE_KEY, Context.MODE_PRIVATE);
+	long appliedSeq = prefs.getLong(Config.PREF_VOTE_DIGEST_SEQ, -1);
+	long pendingSeq = prefs.getLong(Config.PREF_VOTE_DIGEST_PENDING, -1);
+	Map<String, Integer> appliedItems = parseAppliedItems(prefs.getString(Config.PREF_VOTE_DIGEST_APPLIED, null));
+	if (appliedSeq < 0) {
+	    // first digest on this device, nothing before it to catch up with
+	    appliedSeq = prevSeq;
+	}
+
+	if (seq < 0 || seq <= appliedSeq) {
+	    if (Config.LOG_DEBUG_ENABLED) {
+		Log.d(Config.LOGTAG, " " + TAG + " vote digest seq = " + seq + " already applied, IGNORED");
+	    }
+	    return;
+	}
+	if (seq == pendingSeq && appliedItems.containsKey(geatteId)) {
+	    return;
+	}
+	boolean inOrder = (seq == pendingSeq) || (prevSeq == appliedSeq && pendingSeq < 0);
+
+	final GeatteDBAdapter dbHelper = new GeatteDBAdapter(this);
+	try {
+	    dbHelper.open();
+	    List<String[]> feedbacks = null;
+	    if (inOrder && !more) {
+		feedbacks = getVoteDigestFromPayload(geatteId, extras);
+	    }
+
+	    SharedPreferences.Editor editor = prefs.edit();
+	    if (feedbacks != null) {
+		dbHelper.insertFeedbacks(feedbacks);
+		appliedItems.put(geatteId, feedbacks.size());
+		if (appliedItems.size() >= batch) {
+		    editor.putLong(Config.PREF_VOTE_DIGEST_SEQ, seq);
+		    editor.remove(Config.PREF_VOTE_DIGEST_PENDING);
+		    editor.remove(Config.PREF_VOTE_DIGEST_APPLIED);
+		} else {
+		    editor.putLong(Config.PREF_VOTE_DIGEST_SEQ, appliedSeq);
+		    editor.putLong(Config.PREF_VOTE_DIGEST_PENDING, seq);
+		    editor.putString(Config.PREF_VOTE_DIGEST_APPLIED, formatAppliedItems(appliedItems));
+		}
+	    } else {
+		Log.i(Config.LOGTAG, " " + TAG + " vote digest seq = " + seq + ", prev = " + prevSeq
+			+ " does not follow applied seq = " + appliedSeq + " or is not complete, fetch votes");
+		// votes of a partly applied digest are already saved, skip them in the fetch
+		Map<String, Integer> skipItems = (pendingSeq >= 0 ? appliedItems : new HashMap<String, Integer>());
+		feedbacks = new ArrayList<String[]>();
+		long syncSeq = fetchFriendVotesSince(context, appliedSeq, skipItems, feedbacks);
+		if (syncSeq < 0) {
+		    return;
+		}
+		dbHelper.insertFeedbacks(feedbacks);
+		editor.putLong(Config.PREF_VOTE_DIGEST_SEQ, Math.max(seq, syncSeq));
+		editor.remove(Config.PREF_VOTE_DIGEST_PENDING);
+		editor.remove(Config.PREF_VOTE_DIGEST_APPLIED);
+	    }
+	    editor.commit();
+
+	    if (feedbacks.isEmpty()) {
+		return;
+	    }
+	    // one notification per digest, showing the latest vote
+	    String[] latest = feedbacks.get(feedbacks.size() - 1);
+	    String contactName = dbHelper.fetchContactName(latest[1]);
+	    Intent intentNotify = new Intent(this, ShopinionFeedbackActivity.class);
+	    intentNotify.setAction(Config.ACTION_FEEDBACK + System.currentTimeMillis());
+	    intentNotify.putExtra(Config.GEATTE_ID_PARAM, latest[0]);
+	    intentNotify.putExtra(Config.FRIEND_GEATTE_VOTER, latest[1]);
+	    intentNotify.putExtra(Config.FRIEND_GEATTE_VOTE_RESP, latest[2]);
+	    intentNotify.putExtra(Config.FRIEND_GEATTE_FEEDBACK, latest[3]);
+	    String from = (contactName == null || contactName.equals("") ? latest[1] : contactName);
+	    if (feedbacks.size() == 1) {
+		C2DMReceiver.generateNotification(context, "Got a Geatte feedback from " + from, "Got feedback", intentNotify);
+	    } else {
+		C2DMReceiver.generateNotification(context, "Got " + feedbacks.size() + " Geatte feedbacks, latest from "
+			+ from, "Got feedback", intentNotify);
+	    }
+	} catch (Exception e) {
+	    Log.e(Config.LOGTAG, " " + TAG, e);
+	} finally {
+	    dbHelper.close();
+	}
+    }
+
+    /**
+     * Read the votes inlined in a vote digest push.
+     * 
+     * @return list of {geatteId, voter, vote, comment}, oldest first, or null
+     *         if the payload does not carry them
+     */
+    private List<String[]> getVoteDigestFromPayload(String geatteId, Bundle extras) throws JSONException {
+	String digest = decodeExtra(extras, Config.C2DM_MESSAGE_GEATTE_VOTE_DIGEST);
+	if (digest == null) {
+	    return null;
+	}
+	JSONArray entries = new JSONArray(digest);
+	List<String[]> feedbacks = new ArrayList<String[]>();
+	for (int i = 0; i < entries.length(); i++) {
+	    JSONArray entry = entries.getJSONArray(i);
+	    feedbacks.add(new String[]{geatteId, entry.getString(0), entry.getString(1), entry.optString(2, "")});
+	}
+	return feedbacks;
+    }
+
+    /**
+     * Fetch friend votes on my items after the given seq, following has_more.
+     * 
+     * @param sinceSeq last applied seq
+     * @param skipItems per item, number of oldest votes already saved
+     * @param result gets {geatteId, voter, vote, comment} of fetched votes, oldest first
+     * @return seq the fetch is complete up to, or -1 on error
+     */
+    private long fetchFriendVotesSince(Context context, long sinceSeq, Map<String, Integer> skipItems,
+	    List<String[]> result) {
+	List<String[]> feedbacks = new ArrayList<String[]>();
+	List<String> createdDates = new ArrayList<String>();
+	long syncSeq = sinceSeq;
+	boolean hasMore = true;
+	try {
+	    while (hasMore) {
+		HttpClient client = GeatteHttpClient.get();
+		List<NameValuePair> qparams = new ArrayList<NameValuePair>();
+		qparams.add(new BasicNameValuePair(Config.DEV_PHONE_NUMBER_PARAM, DeviceRegistrar.getPhoneNumber(context)));
+		qparams.add(new BasicNameValuePair(Config.DEV_PHONE_COUNTRY_ISO_PARAM, DeviceRegistrar.getPhoneConuntryCode(context)));
+		qparams.add(new BasicNameValuePair(Config.QUERY_REQ_TYPE_PARAM, "friend_votes"));
+		qparams.add(new BasicNameValuePair(Config.QUERY_SINCE_SEQ_PARAM, Long.toString(syncSeq)));
+
+		URI uri = URIUtils.createURI("https", Config.BASE_SERVER, -1, Config.GEATTE_ALL_GET_URL,
+			URLEncodedUtils.format(qparams, "UTF-8"), null);
+		Log.d(Config.LOGTAG_C2DM, "Sending request to geatte all get to url = " + uri.toString());
+		HttpResponse response = client.execute(new HttpGet(uri));
+		if (response.getStatusLine().getStatusCode() != 200) {
+		    Log.w(Config.LOGTAG, " " + TAG + " fetch votes since seq = " + syncSeq + " failed, status = "
+			    + response.getStatusLine().getStatusCode());
+		    return -1;
+		}
+
+		BufferedReader reader = new BufferedReader(
+			new InputStreamReader(
+				response.getEntity().getContent(), "UTF-8"));
+		char[] tmp = new char[2048];
+		StringBuffer body = new StringBuffer();
+		while (true) {
+		    int cnt = reader.read(tmp);
+		    if (cnt <= 0) {
+			break;
+		    }
+		    body.append(tmp, 0, cnt);
+		}
+		JSONObject jResponse = new JSONObject(URLDecoder.decode(body.toString(), Config.ENCODE_UTF8));
+
+		JSONArray votes = jResponse.optJSONArray("friend_votes");
+		if (votes != null) {
+		    for (int i = 0; i < votes.length(); i++) {
+			JSONObject vote = votes.getJSONObject(i);
+			feedbacks.add(new String[]{vote.getString(Config.GEATTE_ID_PARAM), vote.getString(Config.VOTE_VOTER),
+				vote.getString(Config.VOTE_RESP), vote.optString(Config.VOTE_FEEDBACK, "")});
+			createdDates.add(vote.optString(Config.GEATTE_CREATED_DATE_PARAM, ""));
+		    }
+		}
+		syncSeq = jResponse.optLong("sync_seq", syncSeq);
+		hasMore = jResponse.optBoolean("has_more", false);
+	    }
+	} catch (Exception e) {
+	    Log.e(Config.LOGTAG, " " + TAG, e);
+	    return -1;
+	}
+
+	// sort oldest first, dates are 'yyyy-MM-dd HH:mm:ss'
+	Integer[] order = new Integer[feedbacks.size()];
+	for (int i = 0; i < order.length; i++) {
+	    order[i] = i;
+	}
+	final List<String> dates = createdDates;
+	Arrays.sort(order, new Comparator<Integer>() {
+	    @Override
+	    public int compare(Integer i1, Integer i2) {
+		return dates.get(i1).compareTo(dates.get(i2));
+	    }
+	});
+	Map<String, Integer> skipped = new HashMap<String, Integer>();
+	for (Integer i : order) {
+	    String[] feedback = feedbacks.get(i);
+	    Integer toSkip = skipItems.get(feedback[0]);
+	    Integer done = skipped.get(feedback[0]);
+	    if (toSkip != null && (done == null ? 0 : done) < toSkip) {
+		skipped.put(feedback[0], (done == null ? 0 : done) + 1);
+		continue;
+	    }
+	    result.add(feedback);
+	}
+	return syncSeq;
+    }
+
+    private static long parseLongExtra(Bundle extras, String key) {
+	String value = decodeExtra(extras, key);
+	if (value == null) {
+	    return -1;
+	}
+	try {
+	    return Long.parseLong(value);
+	} catch (NumberFormatException e) {
+	    Log.w(Config.LOGTAG, " " + TAG + " wrong format of " + key + " = " + value);
+	}
+	return -1;
+    }
+
+    private static Map<String, Integer> parseAppliedItems(String value) {
+	Map<String, Integer> items = new HashMap<String, Integer>();
+	if (value == null || value.length() == 0) {
+	    return items;
+	}
+	for (String item : value.split(";")) {
+	    int sep = item.lastIndexOf(':');
+	    if (sep > 0) {
+		try {
+		    items.put(item.substring(0, sep), Integer.parseInt(item.substring(sep + 1)));
+		} catch (NumberFormatException e) {
+		    Log.w(Config.LOGTAG, " " + TAG + " wrong format of applied vote digest item = " + item);
+		}
+	    }
+	}
+	return items;
+    }
+
+    private static String formatAppliedItems(Map<String, Integer> items) {
+	StringBuilder value = new StringBuilder();
+	for (String geatteId : items.keySet()) {
+	    if (value.length() > 0) {
+		value.append(';');
+	    }
+	    value.append(geatteId).append(':').append(items.get(geatteId));
+	}
+	return value.toString();
+    }
+
     // Display the topbar notification
     //    private void showNotification(String text) {
     //	Notification n = new Notification();
@@ -450,6 +889,17 @@ public class C2DMReceiver extends C2DMBaseReceiver {
     }
 
     public String saveToFile(Bitmap bitmap) {
+	return saveToFile(bitmap, null);
+    }
+
+    /**
+     * Save the image to media folder.
+     * 
+     * @param bitmap image
+     * @param imageHash hash of the image sent by server, used as file name when given
+     * @return path of saved file
+     */
+    public String saveToFile(Bitmap bitmap, String imageHash) {
 	if (bitmap == null) {
 	    return null;
 	}
@@ -470,7 +920,7 @@ public class C2DMReceiver extends C2DMBaseReceiver {
 		    dir.mkdirs();
 		}
 
-		file = new File(dir, filename + ".jpg");
+		file = (imageHash != null ? getImageFileForHash(imageHash) : new File(dir, filename + ".jpg"));
 	    } else {
 		//no external storage available
 		file = File.createTempFile("geatte_fi_", ".jpg");
@@ -491,6 +941,20 @@ public class C2DMReceiver extends C2DMBaseReceiver {
 	return null;
     }
 
+    /**
+     * Get the media file of an image by the hash server sent in push.
+     * 
+     * @return file, or null if there is no hash or no external storage
+     */
+    private File getImageFileForHash(String imageHash) {
+	if (imageHash == null || imageHash.length() == 0
+		|| !android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED)) {
+	    return null;
+	}
+	File dir = new File(Environment.getExternalStorageDirectory().toString(), Config.MEDIA_FOLDER);
+	return new File(dir, "geatte_" + imageHash + ".jpg");
+    }
+
     /**
      * Register or unregister based on phone sync settings. Called on each
      * performSync by the SyncAdapter.
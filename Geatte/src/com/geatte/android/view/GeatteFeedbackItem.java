@@ -15,20 +15,20 @@ public class GeatteFeedbackItem extends SubtitleItem {
     public int contactDrawableId = -1;
     public Bitmap contactBitmap = null;
     public String interestImagePath = null;
-    public byte[] interestThumbnail = null;
+    public String interestThumbnailPath = null;
 
-    public GeatteFeedbackItem(String title, String subtitle, int drawableId,  String interestImagePath, byte[] interestThumbnail) {
+    public GeatteFeedbackItem(String title, String subtitle, int drawableId,  String interestImagePath, String interestThumbnailPath) {
 	super(title, subtitle);
 	this.contactDrawableId = drawableId;
 	this.interestImagePath = interestImagePath;
-	this.interestThumbnail = interestThumbnail;
+	this.interestThumbnailPath = interestThumbnailPath;
     }
 
-    public GeatteFeedbackItem(String title, String subtitle, Bitmap contactBitmap,  String interestImagePath, byte[] interestThumbnail) {
+    public GeatteFeedbackItem(String title, String subtitle, Bitmap contactBitmap,  String interestImagePath, String interestThumbnailPath) {
 	super(title, subtitle);
 	this.contactBitmap = contactBitmap;
 	this.interestImagePath = interestImagePath;
-	this.interestThumbnail = interestThumbnail;
+	this.interestThumbnailPath = interestThumbnailPath;
     }
 
     @Override
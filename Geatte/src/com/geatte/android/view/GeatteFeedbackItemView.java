@@ -1,16 +1,13 @@
 package com.geatte.android.view;
 
-import com.geatte.android.app.CommonUtils;
 import com.geatte.android.app.Config;
+import com.geatte.android.app.GeatteImageLoader;
 import com.geatte.android.app.R;
 
 import greendroid.widget.item.Item;
 import greendroid.widget.itemview.ItemView;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.widget.ImageView;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
@@ -51,19 +48,9 @@ public class GeatteFeedbackItemView extends RelativeLayout implements ItemView {
 	    mContactThumbnailView.setImageResource(item.contactDrawableId);
 	}
 
-	if (item.interestImagePath != null) {
-	    int sampleSize = CommonUtils.getResizeRatio(item.interestImagePath, 1500, 16);
-	    if(Config.LOG_DEBUG_ENABLED) {
-		Log.d(Config.LOGTAG, " GeatteFeedbackItemView:setObject() resize image with sampleSize = " + sampleSize);
-	    }
-	    BitmapFactory.Options bitmapOptions = new BitmapFactory.Options();
-	    bitmapOptions.inSampleSize = sampleSize;
-	    Bitmap imgBitmap = BitmapFactory.decodeFile(item.interestImagePath, bitmapOptions);
-	    mInterestThumbnailView.setImageBitmap(imgBitmap);
-	} else {
-	    // interest bitmap is gone
-	    mInterestThumbnailView.setImageResource(R.drawable.invalid);
-	}
+	GeatteImageLoader.get(getContext()).bindFile(mInterestThumbnailView,
+		item.interestThumbnailPath != null ? item.interestThumbnailPath : item.interestImagePath,
+		Config.THUMBNAIL_MAX_DIMENSION, R.drawable.invalid);
     }
 
 }
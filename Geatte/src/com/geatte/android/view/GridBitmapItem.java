@@ -14,7 +14,7 @@ public class GridBitmapItem extends Item {
     public long id;
     public String geatteId = null;
     public String imagePath = null;
-    public byte[] thumbnail = null;
+    public String thumbnailPath = null;
 
     public GridBitmapItem(long id, String imagePath) {
 	super();
@@ -22,11 +22,11 @@ public class GridBitmapItem extends Item {
 	this.imagePath = imagePath;
     }
 
-    public GridBitmapItem(long id, String imagePath, byte[] thumbnail) {
+    public GridBitmapItem(long id, String imagePath, String thumbnailPath) {
 	super();
 	this.id = id;
 	this.imagePath = imagePath;
-	this.thumbnail = thumbnail;
+	this.thumbnailPath = thumbnailPath;
     }
 
     @Override
@@ -14,7 +14,7 @@ public class InterestFriendThumbnailItem extends SubtextItem {
     public long id;
     public String geatteId = null;
     public String imagePath = null;
-    public byte[] thumbnail = null;
+    public String thumbnailPath = null;
     public String sendByText = null;
     public String sendOnText = null;
     public String voteText = null;
@@ -26,14 +26,14 @@ public class InterestFriendThumbnailItem extends SubtextItem {
 	this.imagePath = imagePath;
     }
 
-    public InterestFriendThumbnailItem(long id, String title, String desc, String imagePath, byte[] thumbnail) {
+    public InterestFriendThumbnailItem(long id, String title, String desc, String imagePath, String thumbnailPath) {
 	this(id, title, desc, imagePath);
-	this.thumbnail = thumbnail;
+	this.thumbnailPath = thumbnailPath;
     }
 
-    public InterestFriendThumbnailItem(long id, String title, String desc, String imagePath, byte[] thumbnail,
+    public InterestFriendThumbnailItem(long id, String title, String desc, String imagePath, String thumbnailPath,
 	    String sendByText, String sendOnText, String voteText, String voteFeedbackText) {
-	this(id, title, desc, imagePath, thumbnail);
+	this(id, title, desc, imagePath, thumbnailPath);
 	this.sendByText = sendByText;
 	this.sendOnText = sendOnText;
 	this.voteText = voteText;
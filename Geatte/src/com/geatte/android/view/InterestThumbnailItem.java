@@ -14,7 +14,7 @@ public class InterestThumbnailItem extends SubtextItem {
     public long id;
     public String geatteId = null;
     public String imagePath = null;
-    public byte[] thumbnail = null;
+    public String thumbnailPath = null;
     public int numOfYes = 0;
     public int numOfNo = 0;
     public int numOfMaybe = 0;
@@ -25,13 +25,13 @@ public class InterestThumbnailItem extends SubtextItem {
 	this.imagePath = imagePath;
     }
 
-    public InterestThumbnailItem(long id, String title, String desc, String imagePath, byte[] thumbnail) {
+    public InterestThumbnailItem(long id, String title, String desc, String imagePath, String thumbnailPath) {
 	this(id, title, desc, imagePath);
-	this.thumbnail = thumbnail;
+	this.thumbnailPath = thumbnailPath;
     }
 
-    public InterestThumbnailItem(long id, String title, String desc, String imagePath, byte[] thumbnail, int [] counters) {
-	this(id, title, desc, imagePath, thumbnail);
+    public InterestThumbnailItem(long id, String title, String desc, String imagePath, String thumbnailPath, int [] counters) {
+	this(id, title, desc, imagePath, thumbnailPath);
 	this.numOfYes = counters[0];
 	this.numOfMaybe = counters[1];
 	this.numOfNo = counters[2];
@@ -1,17 +1,14 @@
 package com.geatte.android.view;
 
-import com.geatte.android.app.CommonUtils;
 import com.geatte.android.app.Config;
+import com.geatte.android.app.GeatteImageLoader;
 import com.geatte.android.app.R;
 
 import greendroid.widget.AsyncImageView;
 import greendroid.widget.item.Item;
 import greendroid.widget.itemview.ItemView;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
@@ -53,18 +50,9 @@ public class InterestThumbnailItemView extends RelativeLayout implements ItemVie
 	mCTMaybeView.setText(item.numOfMaybe);
 	mCTNoView.setText(item.numOfNo);
 
-	int sampleSize = CommonUtils.getResizeRatio(item.imagePath, 1500, 16);
-	if(Config.LOG_DEBUG_ENABLED) {
-	    Log.d(Config.LOGTAG, " InterestThumbnailItemView:setObject() resize image with sampleSize = " + sampleSize);
-	}
-	BitmapFactory.Options bitmapOptions = new BitmapFactory.Options();
-	bitmapOptions.inSampleSize = sampleSize;
-	Bitmap imgBitmap = BitmapFactory.decodeFile(item.imagePath, bitmapOptions);
-	if (imgBitmap == null) {
-	    mThumbnailView.setImageResource(R.drawable.thumb_missing);
-	} else {
-	    mThumbnailView.setImageBitmap(imgBitmap);
-	}
+	GeatteImageLoader.get(getContext()).bindFile(mThumbnailView,
+		item.thumbnailPath != null ? item.thumbnailPath : item.imagePath, Config.THUMBNAIL_MAX_DIMENSION,
+		R.drawable.thumb_missing);
     }
 
 }
@@ -14,7 +14,7 @@ public class ThumbnailAsyncBitmapItem extends SubtitleItem {
     public long id;
     public String geatteId = null;
     public String imagePath = null;
-    public byte[] thumbnail = null;
+    public String thumbnailPath = null;
 
     public ThumbnailAsyncBitmapItem(long id, String title, String desc, String imagePath) {
 	super(title, desc);
@@ -22,11 +22,11 @@ public class ThumbnailAsyncBitmapItem extends SubtitleItem {
 	this.imagePath = imagePath;
     }
 
-    public ThumbnailAsyncBitmapItem(long id, String title, String desc, String imagePath, byte[] thumbnail) {
+    public ThumbnailAsyncBitmapItem(long id, String title, String desc, String imagePath, String thumbnailPath) {
 	super(title, desc);
 	this.id = id;
 	this.imagePath = imagePath;
-	this.thumbnail = thumbnail;
+	this.thumbnailPath = thumbnailPath;
     }
 
     @Override
@@ -19,6 +19,8 @@ import javax.servlet.http.HttpServletResponse;
 
 import com.geatte.app.server.Config;
 import com.geatte.app.server.DBHelper;
+import com.geatte.app.server.PushRateController;
+import com.geatte.app.server.PushRateController.Transport;
 import com.google.appengine.api.taskqueue.Queue;
 import com.google.appengine.api.taskqueue.QueueFactory;
 import com.google.appengine.api.taskqueue.TaskHandle;
@@ -73,6 +75,14 @@ public class C2DMessaging {
 	return serverConfig;
     }
 
+    /**
+     * Load the auth token and C2DM url, so the first send does not have to.
+     */
+    public void preloadConfig() {
+	serverConfig.getToken();
+	serverConfig.getC2DMUrl();
+    }
+
     public boolean sendNoRetry(String registrationId, String collapse, Map<String, String[]> params,
 	    boolean delayWhileIdle) throws IOException {
 
@@ -123,6 +133,14 @@ public class C2DMessaging {
 
 	int responseCode = conn.getResponseCode();
 
+	if (responseCode == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+	    // Slow down all sends of this instance, the task is sent again after Retry-After
+	    PushRateController.get().onThrottled(Transport.C2DM,
+		    PushRateController.parseRetryAfter(conn.getHeaderField("Retry-After")));
+	    log.warning("C2DMessaging.sendNoRetry() : Service unavailable, responseCode : " + responseCode);
+	    return false;
+	}
+
 	if (responseCode == HttpServletResponse.SC_UNAUTHORIZED || responseCode == HttpServletResponse.SC_FORBIDDEN) {
 	    // The token is too old - return false to retry later, will fetch the token
 	    // from DB. This happens if the password is changed or token expires. Either admin
@@ -165,6 +183,12 @@ public class C2DMessaging {
 
 	if (responseParts[0].equals("Error")) {
 	    String err = responseParts[1];
+	    if (err.equals("QuotaExceeded")) {
+		// sender quota, retriable once the rate goes down
+		PushRateController.get().onThrottled(Transport.C2DM, -1);
+		log.warning("C2DMessaging.sendNoRetry() : Got quota exceeded from Google datamessaging endpoint");
+		return false;
+	    }
 	    log.warning("Got error response from Google datamessaging endpoint: " + err);
 	    throw new IOException(err);
 	} else {
@@ -1,24 +1,21 @@
 package com.geatte.app.client;
 
-import com.geatte.app.shared.FieldVerifier;
+import java.util.Date;
+import java.util.List;
+
+import com.geatte.app.shared.MetricsSnapshot;
 import com.google.gwt.core.client.EntryPoint;
 import com.google.gwt.core.client.GWT;
-import com.google.gwt.event.dom.client.ClickEvent;
-import com.google.gwt.event.dom.client.ClickHandler;
-import com.google.gwt.event.dom.client.KeyCodes;
-import com.google.gwt.event.dom.client.KeyUpEvent;
-import com.google.gwt.event.dom.client.KeyUpHandler;
+import com.google.gwt.i18n.client.NumberFormat;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.rpc.AsyncCallback;
-import com.google.gwt.user.client.ui.Button;
-import com.google.gwt.user.client.ui.DialogBox;
-import com.google.gwt.user.client.ui.HTML;
+import com.google.gwt.user.client.ui.FlexTable;
 import com.google.gwt.user.client.ui.Label;
 import com.google.gwt.user.client.ui.RootPanel;
-import com.google.gwt.user.client.ui.TextBox;
-import com.google.gwt.user.client.ui.VerticalPanel;
 
 /**
- * Entry point classes define <code>onModuleLoad()</code>.
+ * Entry point of the admin console, polls the server metrics and shows them
+ * in tables.
  */
 public class GeatteServer implements EntryPoint {
     /**
@@ -28,119 +25,132 @@ public class GeatteServer implements EntryPoint {
     private static final String SERVER_ERROR = "An error occurred while "
 	+ "attempting to contact the server. Please check your network " + "connection and try again.";
 
+    private static final int POLL_MILLIS = 5000;
+
     /**
-     * Create a remote service proxy to talk to the server-side Greeting service.
+     * Create a remote service proxy to talk to the server-side metrics service.
      */
-    private final GreetingServiceAsync greetingService = GWT.create(GreetingService.class);
+    private final MetricsServiceAsync metricsService = GWT.create(MetricsService.class);
+
+    private final Label statusLabel = new Label();
+    private final FlexTable requestTable = new FlexTable();
+    private final FlexTable queueTable = new FlexTable();
+    private final FlexTable pushTable = new FlexTable();
+    private final FlexTable cacheTable = new FlexTable();
+
+    private final NumberFormat rateFormat = NumberFormat.getFormat("0.00");
+    private final NumberFormat percentFormat = NumberFormat.getFormat("0.0%");
 
     /**
      * This is the entry point method.
      */
     public void onModuleLoad() {
-	final Button sendButton = new Button("Send");
-	final TextBox nameField = new TextBox();
-	nameField.setText("GWT User");
-	final Label errorLabel = new Label();
-
-	// We can add style names to widgets
-	sendButton.addStyleName("sendButton");
-
-	// Add the nameField and sendButton to the RootPanel
-	// Use RootPanel.get() to get the entire body element
-	RootPanel.get("nameFieldContainer").add(nameField);
-	RootPanel.get("sendButtonContainer").add(sendButton);
-	RootPanel.get("errorLabelContainer").add(errorLabel);
-
-	// Focus the cursor on the name field when the app loads
-	nameField.setFocus(true);
-	nameField.selectAll();
-
-	// Create the popup dialog box
-	final DialogBox dialogBox = new DialogBox();
-	dialogBox.setText("Remote Procedure Call");
-	dialogBox.setAnimationEnabled(true);
-	final Button closeButton = new Button("Close");
-	// We can set the id of a widget by accessing its Element
-	closeButton.getElement().setId("closeButton");
-	final Label textToServerLabel = new Label();
-	final HTML serverResponseLabel = new HTML();
-	VerticalPanel dialogVPanel = new VerticalPanel();
-	dialogVPanel.addStyleName("dialogVPanel");
-	dialogVPanel.add(new HTML("<b>Sending name to the server:</b>"));
-	dialogVPanel.add(textToServerLabel);
-	dialogVPanel.add(new HTML("<br><b>Server replies:</b>"));
-	dialogVPanel.add(serverResponseLabel);
-	dialogVPanel.setHorizontalAlignment(VerticalPanel.ALIGN_RIGHT);
-	dialogVPanel.add(closeButton);
-	dialogBox.setWidget(dialogVPanel);
-
-	// Add a handler to close the DialogBox
-	closeButton.addClickHandler(new ClickHandler() {
-	    public void onClick(ClickEvent event) {
-		dialogBox.hide();
-		sendButton.setEnabled(true);
-		sendButton.setFocus(true);
-	    }
-	});
+	setHeader(requestTable, "Endpoint", "Req/s", "Errors", "p50 ms", "p90 ms", "p99 ms", "Datastore RPCs/req");
+	setHeader(queueTable, "Queue", "Depth", "Tasks", "Avg wait ms");
+	setHeader(pushTable, "Transport", "Sent", "Failed", "Success", "Rate limit/s");
+	setHeader(cacheTable, "Cache", "Hits", "Misses", "Hit ratio");
+
+	RootPanel.get("statusContainer").add(statusLabel);
+	RootPanel.get("requestsContainer").add(requestTable);
+	RootPanel.get("queuesContainer").add(queueTable);
+	RootPanel.get("pushesContainer").add(pushTable);
+	RootPanel.get("cachesContainer").add(cacheTable);
 
-	// Create a handler for the sendButton and nameField
-	class MyHandler implements ClickHandler, KeyUpHandler {
-	    /**
-	     * Fired when the user clicks on the sendButton.
-	     */
-	    public void onClick(ClickEvent event) {
-		sendNameToServer();
+	Timer pollTimer = new Timer() {
+	    @Override
+	    public void run() {
+		refresh();
 	    }
+	};
+	refresh();
+	pollTimer.scheduleRepeating(POLL_MILLIS);
+    }
 
-	    /**
-	     * Fired when the user types in the nameField.
-	     */
-	    public void onKeyUp(KeyUpEvent event) {
-		if (event.getNativeKeyCode() == KeyCodes.KEY_ENTER) {
-		    sendNameToServer();
-		}
+    private void refresh() {
+	metricsService.getMetrics(new AsyncCallback<MetricsSnapshot>() {
+	    public void onFailure(Throwable caught) {
+		statusLabel.addStyleName("serverResponseLabelError");
+		statusLabel.setText(SERVER_ERROR);
 	    }
 
-	    /**
-	     * Send the name from the nameField to the server and wait for a response.
-	     */
-	    private void sendNameToServer() {
-		// First, we validate the input.
-		errorLabel.setText("");
-		String textToServer = nameField.getText();
-		if (!FieldVerifier.isValidName(textToServer)) {
-		    errorLabel.setText("Please enter at least four characters");
-		    return;
-		}
-
-		// Then, we send the input to the server.
-		sendButton.setEnabled(false);
-		textToServerLabel.setText(textToServer);
-		serverResponseLabel.setText("");
-		greetingService.greetServer(textToServer, new AsyncCallback<String>() {
-		    public void onFailure(Throwable caught) {
-			// Show the RPC error message to the user
-			dialogBox.setText("Remote Procedure Call - Failure");
-			serverResponseLabel.addStyleName("serverResponseLabelError");
-			serverResponseLabel.setHTML(SERVER_ERROR);
-			dialogBox.center();
-			closeButton.setFocus(true);
-		    }
-
-		    public void onSuccess(String result) {
-			dialogBox.setText("Remote Procedure Call");
-			serverResponseLabel.removeStyleName("serverResponseLabelError");
-			serverResponseLabel.setHTML(result);
-			dialogBox.center();
-			closeButton.setFocus(true);
-		    }
-		});
+	    public void onSuccess(MetricsSnapshot result) {
+		statusLabel.removeStyleName("serverResponseLabelError");
+		show(result);
 	    }
+	});
+    }
+
+    private void show(MetricsSnapshot snapshot) {
+	double windowSeconds = snapshot.getWindowMillis() / 1000.0;
+	long upMinutes = (snapshot.getTime() - snapshot.getInstanceStartTime()) / 60000;
+	statusLabel.setText("Updated " + new Date(snapshot.getTime()) + ", instance up " + upMinutes
+		+ " min, last " + (long) windowSeconds + " s of this instance");
+
+	clearRows(requestTable);
+	int row = 1;
+	for (MetricsSnapshot.Endpoint endpoint : snapshot.getEndpoints()) {
+	    requestTable.setText(row, 0, endpoint.getName());
+	    requestTable.setText(row, 1, rateFormat.format(endpoint.getRequests() / windowSeconds));
+	    requestTable.setText(row, 2, Long.toString(endpoint.getErrors()));
+	    requestTable.setText(row, 3, Long.toString(endpoint.getP50Millis()));
+	    requestTable.setText(row, 4, Long.toString(endpoint.getP90Millis()));
+	    requestTable.setText(row, 5, Long.toString(endpoint.getP99Millis()));
+	    requestTable.setText(row, 6, rateFormat.format((double) endpoint.getDatastoreRpcs()
+		    / endpoint.getRequests()));
+	    row++;
+	}
+
+	clearRows(queueTable);
+	row = 1;
+	for (MetricsSnapshot.Queue queue : snapshot.getQueues()) {
+	    queueTable.setText(row, 0, queue.getName());
+	    queueTable.setText(row, 1, Long.toString(queue.getDepth()));
+	    queueTable.setText(row, 2, Long.toString(queue.getTasks()));
+	    queueTable.setText(row, 3, Long.toString(queue.getAvgWaitMillis()));
+	    row++;
 	}
 
-	// Add a handler to send the name to the server
-	MyHandler handler = new MyHandler();
-	sendButton.addClickHandler(handler);
-	nameField.addKeyUpHandler(handler);
+	clearRows(pushTable);
+	row = 1;
+	for (MetricsSnapshot.Ratio push : snapshot.getPushes()) {
+	    pushTable.setText(row, 0, push.getName());
+	    pushTable.setText(row, 1, Long.toString(push.getOk()));
+	    pushTable.setText(row, 2, Long.toString(push.getFailed()));
+	    pushTable.setText(row, 3, ratio(push.getOk(), push.getFailed()));
+	    pushTable.setText(row, 4, rateFormat.format(push.getRate()));
+	    row++;
+	}
+
+	showRatios(cacheTable, snapshot.getCaches());
+    }
+
+    private void showRatios(FlexTable table, List<MetricsSnapshot.Ratio> ratios) {
+	clearRows(table);
+	int row = 1;
+	for (MetricsSnapshot.Ratio ratio : ratios) {
+	    table.setText(row, 0, ratio.getName());
+	    table.setText(row, 1, Long.toString(ratio.getOk()));
+	    table.setText(row, 2, Long.toString(ratio.getFailed()));
+	    table.setText(row, 3, ratio(ratio.getOk(), ratio.getFailed()));
+	    row++;
+	}
+    }
+
+    private String ratio(long ok, long failed) {
+	return ok + failed > 0 ? percentFormat.format((double) ok / (ok + failed)) : "-";
+    }
+
+    private static void setHeader(FlexTable table, String... titles) {
+	table.addStyleName("metricsTable");
+	table.getRowFormatter().addStyleName(0, "metricsHeader");
+	for (int i = 0; i < titles.length; i++) {
+	    table.setText(0, i, titles[i]);
+	}
+    }
+
+    private static void clearRows(FlexTable table) {
+	while (table.getRowCount() > 1) {
+	    table.removeRow(table.getRowCount() - 1);
+	}
     }
 }
@@ -1,13 +0,0 @@
-package com.geatte.app.client;
-
-import com.google.gwt.user.client.rpc.RemoteService;
-import com.google.gwt.user.client.rpc.RemoteServiceRelativePath;
-
-/**
- * The client side stub for the RPC service.
- */
-@RemoteServiceRelativePath("greet")
-@Deprecated
-public interface GreetingService extends RemoteService {
-    String greetServer(String name) throws IllegalArgumentException;
-}
@@ -1,11 +0,0 @@
-package com.geatte.app.client;
-
-import com.google.gwt.user.client.rpc.AsyncCallback;
-
-/**
- * The async counterpart of <code>GreetingService</code>.
- */
-@Deprecated
-public interface GreetingServiceAsync {
-    void greetServer(String input, AsyncCallback<String> callback) throws IllegalArgumentException;
-}
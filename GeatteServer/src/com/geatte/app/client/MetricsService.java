@@ -0,0 +1,13 @@
+package com.geatte.app.client;
+
+import com.geatte.app.shared.MetricsSnapshot;
+import com.google.gwt.user.client.rpc.RemoteService;
+import com.google.gwt.user.client.rpc.RemoteServiceRelativePath;
+
+/**
+ * The client side stub for the admin console metrics.
+ */
+@RemoteServiceRelativePath("metrics")
+public interface MetricsService extends RemoteService {
+    MetricsSnapshot getMetrics();
+}
@@ -0,0 +1,11 @@
+package com.geatte.app.client;
+
+import com.geatte.app.shared.MetricsSnapshot;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+/**
+ * The async counterpart of <code>MetricsService</code>.
+ */
+public interface MetricsServiceAsync {
+    void getMetrics(AsyncCallback<MetricsSnapshot> callback);
+}
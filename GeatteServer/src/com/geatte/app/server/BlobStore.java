@@ -0,0 +1,112 @@
+package com.geatte.app.server;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Storage of image bytes by name, used by the upload, temp upload, purge and
+ * image get servlets.
+ *
+ * Which store is used is set by the Config.BLOBSTORE_MODE_PROPERTY system
+ * property in appengine-web.xml: MODE_DATASTORE in production, MODE_LOCAL to
+ * keep images in files under Config.BLOBSTORE_DIR_PROPERTY, for load tests of
+ * the image path on a plain box.
+ */
+public abstract class BlobStore {
+    private static final Logger log = Logger.getLogger(BlobStore.class.getName());
+
+    public static final String MODE_DATASTORE = "datastore";
+    public static final String MODE_LOCAL = "local";
+
+    private static final String ITEM_PREFIX = "item/";
+    private static final String TMP_PREFIX = "tmp/";
+
+    private static final BlobStore sStore = create();
+
+    public static BlobStore get() {
+	return sStore;
+    }
+
+    /**
+     * @return name of the image of an item
+     */
+    public static String itemImageName(Long geatteId) {
+	return ITEM_PREFIX + geatteId;
+    }
+
+    /**
+     * @return name of an image uploaded before its item
+     */
+    public static String tmpImageName(String imageId) {
+	try {
+	    // image ids come from clients
+	    return TMP_PREFIX + URLEncoder.encode(imageId, Config.ENCODE_UTF8);
+	} catch (UnsupportedEncodingException e) {
+	    throw new IllegalStateException(e);
+	}
+    }
+
+    /**
+     * Store bytes under a name, replacing what was there.
+     */
+    public abstract void put(String name, byte[] bytes) throws IOException;
+
+    /**
+     * @return bytes stored under a name, or null if there are none
+     */
+    public abstract byte[] get(String name) throws IOException;
+
+    /**
+     * Delete the bytes of a name, a missing name is ignored.
+     */
+    public abstract void delete(String name) throws IOException;
+
+    /**
+     * @return true if serve() streams bytes without loading them whole on the heap,
+     * callers should not cache them in memory then
+     */
+    public boolean isStreamed() {
+	return false;
+    }
+
+    /**
+     * @return a tag that changes when the bytes of a name are replaced, read
+     * without loading the bytes, or null if the store keeps none or there are
+     * no bytes for the name
+     */
+    public String version(String name) throws IOException {
+	return null;
+    }
+
+    /**
+     * Write the bytes of a name to a response, content type is set by the
+     * caller.
+     *
+     * @return false if there are no bytes for the name
+     */
+    public boolean serve(String name, HttpServletResponse res) throws IOException {
+	byte[] bytes = get(name);
+	if (bytes == null) {
+	    return false;
+	}
+	res.setContentLength(bytes.length);
+	res.getOutputStream().write(bytes);
+	return true;
+    }
+
+    private static BlobStore create() {
+	String mode = System.getProperty(Config.BLOBSTORE_MODE_PROPERTY, MODE_DATASTORE);
+	if (MODE_LOCAL.equalsIgnoreCase(mode)) {
+	    String dir = System.getProperty(Config.BLOBSTORE_DIR_PROPERTY, "blobs");
+	    log.log(Level.INFO, "BlobStore : images are stored in local files under " + dir);
+	    return new LocalFileBlobStore(dir);
+	}
+	log.log(Level.INFO, "BlobStore : images are stored in the datastore");
+	return new DatastoreBlobStore();
+    }
+}
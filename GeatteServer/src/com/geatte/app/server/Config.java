@@ -16,6 +16,7 @@ public class Config {
     public static final String GEATTE_FROM_NUMBER_PARAM = "fromNumber";
     public static final String GEATTE_COUNTRY_ISO_PARAM = "fromCountryCode";
     public static final String GEATTE_TO_NUMBER_PARAM = "toNumber";
+    public static final String GEATTE_TO_DEVICE_PARAM = "toDevice";
     public static final String GEATTE_TITLE_PARAM = "title";
     public static final String GEATTE_DESC_PARAM = "desc";
     public static final String GEATTE_IMAGE_PARAM = "image";
@@ -23,6 +24,22 @@ public class Config {
 
     public static final String QUERY_LAST_SYNC_DATE_PARAM = "lastSyncDate";
     public static final String QUERY_REQ_TYPE_PARAM = "reqType";
+    public static final String QUERY_SINCE_SEQ_PARAM = "sinceSeq";
+    public static final String QUERY_GEATTE_IDS_PARAM = "geatteIds";
+    public static final String QUERY_SINCE_PARAM = "since";
+    public static final String QUERY_SEARCH_PARAM = "q";
+    public static final String QUERY_OFFSET_PARAM = "offset";
+    public static final String QUERY_LIMIT_PARAM = "limit";
+
+    public static final String TASK_ENQUEUED_AT_PARAM = "enqueuedAt";
+    public static final String TASK_DEFER_COUNT_PARAM = "deferCount";
+
+    /**
+     * System property choosing the read layer, "jdo" or "lowlevel"
+     */
+    public static final String DATASTORE_MODE_PROPERTY = "geatte.datastore";
+    public static final String BLOBSTORE_MODE_PROPERTY = "geatte.blobstore";
+    public static final String BLOBSTORE_DIR_PROPERTY = "geatte.blobstore.dir";
 
     public static final String FRIEND_GEATTE_COUNTRY_ISO = "friendGeatteVoterCountryIso";
     public static final String FRIEND_GEATTE_VOTER = "friendGeatteVoter";
@@ -0,0 +1,45 @@
+package com.geatte.app.server;
+
+import com.google.appengine.api.datastore.Blob;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+
+/**
+ * Images in datastore entities of their own, the name is the key name.
+ *
+ * Keeping the bytes out of GeatteInfo means the item reads of the list and
+ * search paths do not load images. Entities are limited to 1MB, uploads are
+ * scaled down by GeatteImageCodec before they get here.
+ */
+public class DatastoreBlobStore extends BlobStore {
+    static final String KIND = "GeatteImageBlob";
+    private static final String BYTES_PROPERTY = "bytes";
+
+    @Override
+    public void put(String name, byte[] bytes) {
+	Entity entity = new Entity(createKey(name));
+	entity.setUnindexedProperty(BYTES_PROPERTY, new Blob(bytes));
+	GeatteDatastore.datastore().put(entity);
+    }
+
+    @Override
+    public byte[] get(String name) {
+	try {
+	    Blob blob = (Blob) GeatteDatastore.datastore().get(createKey(name)).getProperty(BYTES_PROPERTY);
+	    return blob != null ? blob.getBytes() : null;
+	} catch (EntityNotFoundException e) {
+	    return null;
+	}
+    }
+
+    @Override
+    public void delete(String name) {
+	GeatteDatastore.datastore().delete(createKey(name));
+    }
+
+    private static Key createKey(String name) {
+	return KeyFactory.createKey(KIND, name);
+    }
+}
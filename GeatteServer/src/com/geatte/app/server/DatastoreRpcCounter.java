@@ -0,0 +1,97 @@
+package com.geatte.app.server;
+
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import com.google.apphosting.api.ApiProxy;
+import com.google.apphosting.api.ApiProxy.ApiConfig;
+import com.google.apphosting.api.ApiProxy.Environment;
+
+/**
+ * API proxy delegate counting the datastore calls of each request thread.
+ *
+ * Wraps the delegate installed by the runtime, every call is passed on as is.
+ */
+public class DatastoreRpcCounter implements ApiProxy.Delegate<Environment> {
+    private static final Logger log = Logger.getLogger(DatastoreRpcCounter.class.getName());
+    private static final String DATASTORE_PACKAGE = "datastore_v3";
+
+    private static final ThreadLocal<int[]> sCount = new ThreadLocal<int[]>();
+    private static boolean sInstalled;
+
+    private final ApiProxy.Delegate<Environment> mDelegate;
+
+    private DatastoreRpcCounter(ApiProxy.Delegate<Environment> delegate) {
+	mDelegate = delegate;
+    }
+
+    /**
+     * Wrap the current delegate, only the first call does anything.
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized void install() {
+	if (sInstalled) {
+	    return;
+	}
+	ApiProxy.Delegate<Environment> delegate = ApiProxy.getDelegate();
+	if (delegate == null) {
+	    log.log(Level.WARNING, "DatastoreRpcCounter.install() : no API proxy delegate, datastore calls are not counted");
+	    return;
+	}
+	ApiProxy.setDelegate(new DatastoreRpcCounter(delegate));
+	sInstalled = true;
+    }
+
+    /**
+     * Start counting the calls of the current thread.
+     */
+    public static void start() {
+	sCount.set(new int[1]);
+    }
+
+    /**
+     * Stop counting the calls of the current thread.
+     *
+     * @return datastore calls since start
+     */
+    public static int stop() {
+	int[] count = sCount.get();
+	sCount.remove();
+	return count != null ? count[0] : 0;
+    }
+
+    private static void count(String packageName) {
+	if (DATASTORE_PACKAGE.equals(packageName)) {
+	    int[] count = sCount.get();
+	    if (count != null) {
+		count[0]++;
+	    }
+	}
+    }
+
+    public byte[] makeSyncCall(Environment environment, String packageName, String methodName, byte[] request) {
+	count(packageName);
+	return mDelegate.makeSyncCall(environment, packageName, methodName, request);
+    }
+
+    public Future<byte[]> makeAsyncCall(Environment environment, String packageName, String methodName,
+	    byte[] request, ApiConfig apiConfig) {
+	count(packageName);
+	return mDelegate.makeAsyncCall(environment, packageName, methodName, request, apiConfig);
+    }
+
+    public void log(Environment environment, LogRecord record) {
+	mDelegate.log(environment, record);
+    }
+
+    public void flushLogs(Environment environment) {
+	mDelegate.flushLogs(environment);
+    }
+
+    public List<Thread> getRequestThreads(Environment environment) {
+	return mDelegate.getRequestThreads(environment);
+    }
+}
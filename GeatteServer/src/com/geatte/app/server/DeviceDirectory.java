@@ -0,0 +1,285 @@
+package com.geatte.app.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jdo.PersistenceManager;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+
+/**
+ * Directory of devices by phone number, used to fan out pushes.
+ *
+ * A number as given by a sender maps to an alias entry holding the phone
+ * number the devices are saved under, and the devices are cached under that
+ * saved number. So a number given in any form, with any sender country, is
+ * invalidated by the saved number of its devices alone.
+ *
+ * Lookups go to a small per-instance LRU, then memcache, then one batch
+ * query for all numbers still missing. Numbers without devices are cached
+ * too, for a shorter time. RegisterServlet and UnregisterServlet invalidate
+ * the number they change, the instance LRU of other instances keeps the old
+ * list until it expires.
+ *
+ * Returned devices are detached or transient copies shared between requests,
+ * callers must not change them.
+ */
+public class DeviceDirectory {
+    private static final Logger log = Logger.getLogger(DeviceDirectory.class.getName());
+
+    private static final String ALIAS_PREFIX = "DeviceDirectory.alias.";
+    private static final String DEVICES_PREFIX = "DeviceDirectory.devices.";
+    /**
+     * Alias of a number without devices
+     */
+    private static final String NO_DEVICES = "";
+    private static final int MEMCACHE_SECONDS = 10 * 60;
+    private static final int MEMCACHE_EMPTY_SECONDS = 60;
+    private static final long LOCAL_MILLIS = 30 * 1000;
+    private static final int LOCAL_MAX_ENTRIES = 500;
+    private static final String LOCAL_CACHE_NAME = "devices.local";
+    private static final String MEMCACHE_NAME = "devices.memcache";
+
+    private static final DeviceDirectory sDirectory = new DeviceDirectory();
+
+    private final Map<String, LocalEntry> mLocal = new LinkedHashMap<String, LocalEntry>(16, 0.75f, true) {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<String, LocalEntry> eldest) {
+	    return size() > LOCAL_MAX_ENTRIES;
+	}
+    };
+
+    private DeviceDirectory() {
+    }
+
+    public static DeviceDirectory get() {
+	return sDirectory;
+    }
+
+    /**
+     * Get the devices of one number.
+     */
+    public List<DeviceInfo> resolve(PersistenceManager pm, String number, String defaultCountryCode) {
+	List<String> numbers = new ArrayList<String>();
+	numbers.add(number);
+	List<DeviceInfo> devices = resolve(pm, numbers, defaultCountryCode).get(number);
+	return devices != null ? devices : new ArrayList<DeviceInfo>();
+    }
+
+    /**
+     * Get the devices of all numbers, matched the same way as
+     * DeviceInfo.getDeviceInfoForNumber.
+     *
+     * @param pm persistence manager
+     * @param numbers phone numbers as given by the sender
+     * @param defaultCountryCode sender country code
+     * @return devices by given number, a number without devices maps to an empty list
+     */
+    public Map<String, List<DeviceInfo>> resolve(PersistenceManager pm, Collection<String> numbers,
+	    String defaultCountryCode) {
+	Map<String, List<DeviceInfo>> result = new LinkedHashMap<String, List<DeviceInfo>>();
+	// alias key -> given numbers, numbers in different forms can share a key
+	Map<String, List<String>> missing = new LinkedHashMap<String, List<String>>();
+	for (String number : numbers) {
+	    String aliasKey = aliasKey(number, defaultCountryCode);
+	    List<String> keyNumbers = missing.get(aliasKey);
+	    if (keyNumbers == null) {
+		keyNumbers = new ArrayList<String>();
+		missing.put(aliasKey, keyNumbers);
+	    }
+	    keyNumbers.add(number);
+	}
+
+	// alias key -> saved number, then saved number -> devices
+	Map<String, String> aliases = getCached(missing.keySet());
+	Map<String, String> devicesKeys = new HashMap<String, String>();
+	for (Map.Entry<String, String> alias : aliases.entrySet()) {
+	    if (!NO_DEVICES.equals(alias.getValue())) {
+		devicesKeys.put(alias.getKey(), DEVICES_PREFIX + alias.getValue());
+	    }
+	}
+	Map<String, List<DeviceInfo>> cachedDevices = getCached(devicesKeys.values());
+	for (Map.Entry<String, String> alias : aliases.entrySet()) {
+	    List<DeviceInfo> devices;
+	    if (NO_DEVICES.equals(alias.getValue())) {
+		devices = new ArrayList<DeviceInfo>();
+	    } else {
+		devices = cachedDevices.get(devicesKeys.get(alias.getKey()));
+		if (devices == null) {
+		    // devices of the saved number were invalidated, look the given number up again
+		    continue;
+		}
+	    }
+	    for (String number : missing.remove(alias.getKey())) {
+		result.put(number, devices);
+	    }
+	}
+	if (missing.isEmpty()) {
+	    return result;
+	}
+
+	// one batch query for every variant of every missing number
+	Map<String, List<String>> variantsByKey = new HashMap<String, List<String>>();
+	Set<String> allVariants = new LinkedHashSet<String>();
+	for (Map.Entry<String, List<String>> miss : missing.entrySet()) {
+	    List<String> variants = DeviceInfo.getNumberVariants(miss.getValue().get(0), defaultCountryCode);
+	    variantsByKey.put(miss.getKey(), variants);
+	    allVariants.addAll(variants);
+	}
+	Map<String, List<DeviceInfo>> devicesByPhone = new HashMap<String, List<DeviceInfo>>();
+	List<DeviceInfo> found = DeviceInfoRepository.getDeviceInfoForNumbers(pm, allVariants);
+	for (DeviceInfo device : found) {
+	    List<DeviceInfo> devices = devicesByPhone.get(device.getPhoneNumber());
+	    if (devices == null) {
+		devices = new ArrayList<DeviceInfo>();
+		devicesByPhone.put(device.getPhoneNumber(), devices);
+	    }
+	    devices.add(device);
+	}
+
+	Map<String, Object> toCache = new HashMap<String, Object>();
+	Map<String, Object> toCacheEmpty = new HashMap<String, Object>();
+	for (Map.Entry<String, List<String>> miss : missing.entrySet()) {
+	    // first variant with devices wins, as in getDeviceInfoForNumber
+	    List<DeviceInfo> devices = new ArrayList<DeviceInfo>();
+	    String savedNumber = NO_DEVICES;
+	    for (String variant : variantsByKey.get(miss.getKey())) {
+		List<DeviceInfo> variantDevices = devicesByPhone.get(variant);
+		if (variantDevices != null) {
+		    devices.addAll(variantDevices);
+		    savedNumber = variant;
+		    break;
+		}
+	    }
+	    for (String number : miss.getValue()) {
+		result.put(number, devices);
+	    }
+	    putLocal(miss.getKey(), savedNumber);
+	    if (devices.isEmpty()) {
+		toCacheEmpty.put(miss.getKey(), savedNumber);
+	    } else {
+		putLocal(DEVICES_PREFIX + savedNumber, devices);
+		toCache.put(miss.getKey(), savedNumber);
+		toCache.put(DEVICES_PREFIX + savedNumber, devices);
+	    }
+	}
+	try {
+	    MemcacheService cache = MemcacheServiceFactory.getMemcacheService();
+	    if (!toCache.isEmpty()) {
+		cache.putAll(toCache, Expiration.byDeltaSeconds(MEMCACHE_SECONDS));
+	    }
+	    if (!toCacheEmpty.isEmpty()) {
+		cache.putAll(toCacheEmpty, Expiration.byDeltaSeconds(MEMCACHE_EMPTY_SECONDS));
+	    }
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "DeviceDirectory.resolve() : memcache put failed", e);
+	}
+
+	log.log(Level.FINE, "DeviceDirectory.resolve() : numbers = " + numbers.size() + ", loaded = " + missing.size());
+	return result;
+    }
+
+    /**
+     * Drop the cached devices of a number, called when a device of the number
+     * is registered or removed.
+     *
+     * @param phoneNumber the number the devices are saved under
+     * @param countryCode country code of the device, drops the number given
+     *        in its canonical form when it had no devices
+     */
+    public void invalidate(String phoneNumber, String countryCode) {
+	if (phoneNumber == null) {
+	    return;
+	}
+	List<String> keys = new ArrayList<String>();
+	keys.add(DEVICES_PREFIX + phoneNumber);
+	keys.add(aliasKey(phoneNumber, countryCode));
+	synchronized (mLocal) {
+	    for (String key : keys) {
+		mLocal.remove(key);
+	    }
+	}
+	try {
+	    MemcacheServiceFactory.getMemcacheService().deleteAll(keys);
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "DeviceDirectory.invalidate() : memcache delete failed for " + phoneNumber, e);
+	}
+    }
+
+    /**
+     * Get entries from the instance LRU, then from memcache.
+     *
+     * @return values by key, keys not cached are left out
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Map<String, T> getCached(Collection<String> keys) {
+	Map<String, T> result = new HashMap<String, T>();
+	List<String> missing = new ArrayList<String>();
+	long now = System.currentTimeMillis();
+	synchronized (mLocal) {
+	    for (String key : keys) {
+		LocalEntry entry = mLocal.get(key);
+		if (entry != null && entry.mExpires > now) {
+		    result.put(key, (T) entry.mValue);
+		    InstanceMetrics.get().cacheHit(LOCAL_CACHE_NAME);
+		} else {
+		    InstanceMetrics.get().cacheMiss(LOCAL_CACHE_NAME);
+		    missing.add(key);
+		}
+	    }
+	}
+	if (missing.isEmpty()) {
+	    return result;
+	}
+
+	Map<String, Object> cached = null;
+	try {
+	    cached = MemcacheServiceFactory.getMemcacheService().getAll(missing);
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "DeviceDirectory.getCached() : memcache get failed", e);
+	}
+	if (cached != null) {
+	    for (Map.Entry<String, Object> hit : cached.entrySet()) {
+		result.put(hit.getKey(), (T) hit.getValue());
+		putLocal(hit.getKey(), hit.getValue());
+		InstanceMetrics.get().cacheHit(MEMCACHE_NAME);
+	    }
+	}
+	for (int i = (cached == null ? 0 : cached.size()); i < missing.size(); i++) {
+	    InstanceMetrics.get().cacheMiss(MEMCACHE_NAME);
+	}
+	return result;
+    }
+
+    private void putLocal(String cacheKey, Object value) {
+	synchronized (mLocal) {
+	    mLocal.put(cacheKey, new LocalEntry(value, System.currentTimeMillis() + LOCAL_MILLIS));
+	}
+    }
+
+    private static String aliasKey(String number, String countryCode) {
+	return ALIAS_PREFIX + DeviceInfo.canonicalNumber(number, countryCode);
+    }
+
+    private static class LocalEntry {
+	private final Object mValue;
+	private final long mExpires;
+
+	LocalEntry(Object value, long expires) {
+	    mValue = value;
+	    mExpires = expires;
+	}
+    }
+}
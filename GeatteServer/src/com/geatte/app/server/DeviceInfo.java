@@ -1,6 +1,8 @@
 package com.geatte.app.server;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
@@ -28,8 +30,10 @@ import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
  * registrations lists different phones registered to that account.
  */
 @PersistenceCapable(identityType = IdentityType.APPLICATION, detachable = "true")
-public class DeviceInfo {
+public class DeviceInfo implements Serializable {
+    private static final long serialVersionUID = 1L;
     private static final Logger log = Logger.getLogger(DeviceInfo.class.getName());
+    private static final int MAX_NUMBERS_PER_QUERY = 30;
     public static final String TYPE_AC2DM = "ac2dm";
     public static final String TYPE_IOS = "ios";
     public static final String TYPE_ANDROID = "android";
@@ -276,6 +280,59 @@ public class DeviceInfo {
 	return result;
     }
 
+    /**
+     * Get the numbers getDeviceInfoForNumber tries for a given number, in the
+     * order it tries them.
+     *
+     * @param number phone number
+     * @param defaultCountryCode default country code
+     * @return number as is, number with prefix +, and E164 number if valid
+     */
+    public static List<String> getNumberVariants(String number, String defaultCountryCode) {
+	// trim dash '-' '(' ')'from given number
+	number = number.replaceAll("-", "").replaceAll("\\(", "").replaceAll("\\)", "").trim();
+
+	List<String> variants = new ArrayList<String>();
+	variants.add(number);
+	variants.add("+" + number);
+	String formatNumber = canonicalNumber(number, defaultCountryCode);
+	if (!variants.contains(formatNumber)) {
+	    variants.add(formatNumber);
+	}
+	return variants;
+    }
+
+    /**
+     * Get the devices of any of the given phone numbers, compared as is.
+     *
+     * @param pm persistence manager
+     * @param numbers phone numbers
+     * @return list of devices
+     */
+    @SuppressWarnings("unchecked")
+    public static List<DeviceInfo> getDeviceInfoForNumbers(PersistenceManager pm, Collection<String> numbers) {
+	List<DeviceInfo> result = new ArrayList<DeviceInfo>();
+	if (numbers.size() == 0) {
+	    return result;
+	}
+
+	List<String> numberList = new ArrayList<String>(numbers);
+	Query query = pm.newQuery(DeviceInfo.class, ":p.contains(phoneNumber)");
+	for (int i = 0; i < numberList.size(); i += MAX_NUMBERS_PER_QUERY) {
+	    List<String> partialNumbers = numberList.subList(i, Math.min(i + MAX_NUMBERS_PER_QUERY, numberList.size()));
+	    List<DeviceInfo> qresult = (List<DeviceInfo>) query.execute(partialNumbers);
+	    // copy to array - we need to close the query
+	    for (DeviceInfo di : qresult) {
+		result.add(di);
+	    }
+	}
+	query.closeAll();
+
+	log.log(Level.FINER, "DeviceInfo.getDeviceInfoForNumbers(): number of numbers = " + numbers.size()
+		+ ", result size = " + result.size());
+	return result;
+    }
+
     public static boolean checkPhoneExistedHadDeviceInfo(PersistenceManager pm, String number, String defaultCountryCode, String [] retNum) {
 	Query query = pm.newQuery(DeviceInfo.class);
 
@@ -336,4 +393,32 @@ public class DeviceInfo {
 	return dInfo;
     }
 
+    /**
+     * Get the canonical form of a number, the same form as phone numbers are
+     * saved at registration and upload time.
+     *
+     * @param number phone number
+     * @param defaultCountryCode default country code
+     * @return E164 number if the number is valid, otherwise trimmed number
+     */
+    public static String canonicalNumber(String number, String defaultCountryCode) {
+	if (number == null) {
+	    return null;
+	}
+
+	// trim dash '-' '(' ')'from given number
+	number = number.replaceAll("-", "").replaceAll("\\(", "").replaceAll("\\)", "").trim();
+
+	PhoneNumberUtil phoneUtil = PhoneNumberUtil.getInstance();
+	try {
+	    PhoneNumber numberProto = phoneUtil.parse(number, defaultCountryCode);
+	    if (phoneUtil.isValidNumber(numberProto)) {
+		return phoneUtil.format(numberProto, PhoneNumberFormat.E164);
+	    }
+	} catch (NumberParseException npe) {
+	    log.log(Level.FINE, "DeviceInfo.canonicalNumber(): NumberParseException was thrown for number = " + number);
+	}
+	return number;
+    }
+
 }
@@ -0,0 +1,126 @@
+package com.geatte.app.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jdo.PersistenceManager;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+
+/**
+ * Reads of DeviceInfo through the low-level datastore API.
+ *
+ * Devices are returned as transient objects, they must not be handed to a
+ * PersistenceManager. Load devices through JDO to change them.
+ */
+public class DeviceInfoRepository {
+    private static final Logger log = Logger.getLogger(DeviceInfoRepository.class.getName());
+    private static final String KIND = DeviceInfo.class.getSimpleName();
+    private static final int MAX_NUMBERS_PER_QUERY = 30;
+
+    /**
+     * Get the devices of any of the given phone numbers through the read
+     * layer in use, compared as is.
+     *
+     * @return devices not attached to pm
+     */
+    public static List<DeviceInfo> getDeviceInfoForNumbers(PersistenceManager pm, Collection<String> numbers) {
+	if (!GeatteDatastore.isLowLevel()) {
+	    return new ArrayList<DeviceInfo>(pm.detachCopyAll(DeviceInfo.getDeviceInfoForNumbers(pm, numbers)));
+	}
+	return getDeviceInfoForNumbers(numbers);
+    }
+
+    /**
+     * Get the devices of any of the given phone numbers, compared as is. All
+     * chunk queries run at the same time.
+     */
+    public static List<DeviceInfo> getDeviceInfoForNumbers(Collection<String> numbers) {
+	List<DeviceInfo> result = new ArrayList<DeviceInfo>();
+	if (numbers.size() == 0) {
+	    return result;
+	}
+
+	AsyncDatastoreService datastore = GeatteDatastore.asyncDatastore();
+	List<String> numberList = new ArrayList<String>(numbers);
+	List<Iterable<Entity>> chunkResults = new ArrayList<Iterable<Entity>>();
+	for (int i = 0; i < numberList.size(); i += MAX_NUMBERS_PER_QUERY) {
+	    List<String> partialNumbers = new ArrayList<String>(
+		    numberList.subList(i, Math.min(i + MAX_NUMBERS_PER_QUERY, numberList.size())));
+	    Query query = new Query(KIND);
+	    query.addFilter("phoneNumber", FilterOperator.IN, partialNumbers);
+	    chunkResults.add(datastore.prepare(query).asList(FetchOptions.Builder.withDefaults()));
+	}
+	for (Iterable<Entity> entities : chunkResults) {
+	    for (Entity entity : entities) {
+		result.add(fromEntity(entity));
+	    }
+	}
+
+	log.log(Level.FINER, "DeviceInfoRepository.getDeviceInfoForNumbers(): number of numbers = " + numbers.size()
+		+ ", result size = " + result.size());
+	return result;
+    }
+
+    /**
+     * Check whether a number has a device through the read layer in use, as
+     * DeviceInfo.checkPhoneExistedHadDeviceInfo.
+     */
+    public static boolean checkPhoneExistedHadDeviceInfo(PersistenceManager pm, String number,
+	    String defaultCountryCode, String[] retNum) {
+	if (!GeatteDatastore.isLowLevel()) {
+	    return DeviceInfo.checkPhoneExistedHadDeviceInfo(pm, number, defaultCountryCode, retNum);
+	}
+	return checkPhoneExistedHadDeviceInfo(number, defaultCountryCode, retNum);
+    }
+
+    /**
+     * Check whether a number has a device, trying the number variants in the
+     * order of DeviceInfo.getNumberVariants. Runs one keys-only query of at
+     * most one result per variant, all at the same time.
+     *
+     * @param retNum gets the variant that has a device
+     * @return true if a variant has a device
+     */
+    public static boolean checkPhoneExistedHadDeviceInfo(String number, String defaultCountryCode, String[] retNum) {
+	AsyncDatastoreService datastore = GeatteDatastore.asyncDatastore();
+	List<String> variants = DeviceInfo.getNumberVariants(number, defaultCountryCode);
+	List<List<Entity>> variantResults = new ArrayList<List<Entity>>();
+	for (String variant : variants) {
+	    Query query = new Query(KIND).setKeysOnly();
+	    query.addFilter("phoneNumber", FilterOperator.EQUAL, variant);
+	    variantResults.add(datastore.prepare(query).asList(FetchOptions.Builder.withLimit(1)));
+	}
+	for (int i = 0; i < variants.size(); i++) {
+	    if (!variantResults.get(i).isEmpty()) {
+		retNum[0] = variants.get(i);
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    static DeviceInfo fromEntity(Entity entity) {
+	DeviceInfo device = new DeviceInfo(entity.getKey());
+	device.setPhoneNumber((String) entity.getProperty("phoneNumber"));
+	device.setCountryCode((String) entity.getProperty("countryCode"));
+	device.setDeviceRegistrationID((String) entity.getProperty("deviceRegistrationID"));
+	device.setUserEmail((String) entity.getProperty("userEmail"));
+	device.setType((String) entity.getProperty("type"));
+	device.setDeviceName((String) entity.getProperty("deviceName"));
+	device.setRegistrationTimestamp((Date) entity.getProperty("registrationTimestamp"));
+	Boolean debug = (Boolean) entity.getProperty("debug");
+	if (debug != null) {
+	    device.setDebug(debug);
+	}
+	return device;
+    }
+}
@@ -0,0 +1,132 @@
+package com.geatte.app.server;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheService.SetPolicy;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+
+/**
+ * Limit the requests in flight on the expensive endpoints across instances.
+ *
+ * A request over the limit of its endpoint gets 503 with Retry-After, clients
+ * wait that long with jitter instead of sending again at once. Instances serve
+ * one request at a time, so the in flight count is a memcache counter per
+ * endpoint. Counters start over each COUNTER_WINDOW_MILLIS, a count left by
+ * an instance that died in a request goes away with its window. Memcache
+ * errors let the request through.
+ */
+public class GeatteAdmissionFilter implements Filter {
+    private static final Logger log = Logger.getLogger(GeatteAdmissionFilter.class.getName());
+
+    private static final String KEY_PREFIX = "GeatteAdmissionFilter.";
+    private static final long COUNTER_WINDOW_MILLIS = 60 * 1000;
+    private static final int COUNTER_EXPIRATION_SECONDS = 3 * 60;
+    private static final int RETRY_AFTER_SECONDS = 2;
+    private static final int MAX_RETRY_AFTER_SECONDS = 30;
+
+    /**
+     * Requests in flight allowed per servlet path
+     */
+    private static final Map<String, Long> LIMITS = new HashMap<String, Long>();
+    static {
+	LIMITS.put("/geatteupload", 20L);
+	LIMITS.put("/geatteuploadtextonly", 20L);
+	LIMITS.put("/geatteimageblobupload", 20L);
+	LIMITS.put("/geattecontacts", 10L);
+	LIMITS.put("/geatteallget", 30L);
+    }
+
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+    ServletException {
+	if (!(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse)) {
+	    chain.doFilter(request, response);
+	    return;
+	}
+	HttpServletRequest req = (HttpServletRequest) request;
+	HttpServletResponse resp = (HttpServletResponse) response;
+	String path = req.getServletPath();
+	Long limit = LIMITS.get(path);
+	if (limit == null) {
+	    chain.doFilter(request, response);
+	    return;
+	}
+
+	String key = KEY_PREFIX + path + "." + (System.currentTimeMillis() / COUNTER_WINDOW_MILLIS);
+	MemcacheService cache = MemcacheServiceFactory.getMemcacheService();
+	Long inFlight = enter(cache, key);
+	if (inFlight != null && inFlight > limit) {
+	    leave(cache, key);
+	    int retryAfter = retryAfterSeconds(inFlight, limit);
+	    log.log(Level.WARNING, "GeatteAdmissionFilter.doFilter() : reject " + path + ", in flight = " + inFlight
+		    + ", limit = " + limit + ", retry after = " + retryAfter + "s");
+	    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+	    resp.setHeader("Retry-After", Integer.toString(retryAfter));
+	    return;
+	}
+
+	try {
+	    chain.doFilter(request, response);
+	} finally {
+	    if (inFlight != null) {
+		leave(cache, key);
+	    }
+	}
+    }
+
+    public void destroy() {
+    }
+
+    /**
+     * @return requests in flight with this one, null if memcache failed
+     */
+    private static Long enter(MemcacheService cache, String key) {
+	try {
+	    Long inFlight = cache.increment(key, 1);
+	    if (inFlight == null) {
+		// first request of the window, the counter gets an expiration
+		cache.put(key, 0L, Expiration.byDeltaSeconds(COUNTER_EXPIRATION_SECONDS),
+			SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+		inFlight = cache.increment(key, 1);
+	    }
+	    return inFlight;
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "GeatteAdmissionFilter.enter() : memcache failed, admit request", e);
+	    return null;
+	}
+    }
+
+    private static void leave(MemcacheService cache, String key) {
+	try {
+	    cache.increment(key, -1);
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "GeatteAdmissionFilter.leave() : memcache failed for " + key, e);
+	}
+    }
+
+    /**
+     * Wait longer the further over the limit the endpoint is.
+     */
+    private static int retryAfterSeconds(long inFlight, long limit) {
+	long over = inFlight - limit;
+	long seconds = RETRY_AFTER_SECONDS * (1 + over * 4 / limit);
+	return (int) Math.min(MAX_RETRY_AFTER_SECONDS, seconds);
+    }
+}
@@ -6,8 +6,11 @@ import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,13 +42,20 @@ import com.google.appengine.repackaged.org.json.JSONObject;
  * reqType* : type of data caller is interested to retrieve from server.
  *        Format : my_items my_votes friend_items friend_votes, separated by semicolon ';'.
  *        Sample : 'my_items;friend_items' gets caller's items and items sent to him/her.
+ * sinceSeq* : last sync_seq caller has applied. If given, lastSyncDate is ignored and caller gets
+ *        exactly the records changed after this sequence number, including updated items.
+ *        Sample : '0' gets every change.
  * 
  * '*' means parameter is optional.
+ * </p>
+ * Response always carries sync_seq, the high-water mark of caller's change sequence to pass as
+ * sinceSeq next time. With sinceSeq, has_more is true when caller should ask again right away.
  */
 @SuppressWarnings("serial")
 public class GeatteAllGetServlet extends HttpServlet {
     private static final Logger log = Logger.getLogger(GeatteAllGetServlet.class.getName());
     private static final String ERROR_STATUS = "ERROR";
+    private static final int MAX_CHANGES_PER_SYNC = 500;
     public static enum REQ_TYPE {MY_ITEMS, MY_VOTES, FRIEND_ITEMS, FRIEND_VOTES}
 
     /**
@@ -126,6 +136,19 @@ public class GeatteAllGetServlet extends HttpServlet {
 		lastSyncDate = (Date) dateFormat.parse("2011-01-01 01:00:00");
 	    }
 
+	    String sinceSeqStr = req.getParameter(Config.QUERY_SINCE_SEQ_PARAM);
+	    Long sinceSeq = null;
+	    if (sinceSeqStr != null && !sinceSeqStr.isEmpty()) {
+		try {
+		    sinceSeq = Long.parseLong(URLDecoder.decode(sinceSeqStr, Config.ENCODE_UTF8));
+		} catch (NumberFormatException nfe) {
+		    res.setStatus(400);
+		    res.getWriter().println(ERROR_STATUS + " (wrong format of " + Config.QUERY_SINCE_SEQ_PARAM + ")");
+		    log.warning("GeatteAllGetServlet.doGet() : wrong format of sinceSeq = " + sinceSeqStr);
+		    return;
+		}
+	    }
+
 	    log.log(Level.INFO, "GeatteAllGetServlet.doGet() : Try to retrieve object All Info for phoneNumber = "
 		    + phoneNumber);
 
@@ -134,15 +157,80 @@ public class GeatteAllGetServlet extends HttpServlet {
 	    List<GeatteInfo> allItemInfoFromMe = null;
 	    List<GeatteInfo> allItemInfoToMe = null;
 	    List<GeatteVote> allVoteFromMe = null;
+	    List<GeatteVote> allVoteToMe = null;
+	    String userNumber = DeviceInfo.canonicalNumber(phoneNumber, countryCode);
+	    long syncSeq = 0;
+	    boolean hasMore = false;
 	    try {
-		if (isMyItems) {
-		    allItemInfoFromMe = GeatteInfo.getAllItemInfoFromNumber(pm, phoneNumber, countryCode, lastSyncDate);
-		}
-		if (isFriendItems) {
-		    allItemInfoToMe = GeatteInfo.getAllItemInfoToNumber(pm, phoneNumber, countryCode, lastSyncDate);
-		}
-		if (isMyVotes) {
-		    allVoteFromMe = GeatteVote.getAllVoteFromMe(pm, phoneNumber, countryCode, lastSyncDate);
+		if (sinceSeq != null) {
+		    // changes of the types not asked for stay after the new mark
+		    List<REQ_TYPE> reqTypes = new ArrayList<REQ_TYPE>();
+		    if (isMyItems) {
+			reqTypes.add(REQ_TYPE.MY_ITEMS);
+		    }
+		    if (isFriendItems) {
+			reqTypes.add(REQ_TYPE.FRIEND_ITEMS);
+		    }
+		    if (isMyVotes) {
+			reqTypes.add(REQ_TYPE.MY_VOTES);
+		    }
+		    if (isFriendVotes) {
+			reqTypes.add(REQ_TYPE.FRIEND_VOTES);
+		    }
+		    List<GeatteChange> changes = GeatteChange.getChangesSince(userNumber, sinceSeq, reqTypes,
+			    MAX_CHANGES_PER_SYNC + 1);
+		    hasMore = changes.size() > MAX_CHANGES_PER_SYNC;
+		    if (hasMore) {
+			changes = changes.subList(0, MAX_CHANGES_PER_SYNC);
+		    }
+		    syncSeq = changes.isEmpty() ? sinceSeq : changes.get(changes.size() - 1).getSeq();
+
+		    // an id changed more than once in this window is returned only once
+		    Set<Long> myItemIds = new LinkedHashSet<Long>();
+		    Set<Long> friendItemIds = new LinkedHashSet<Long>();
+		    Set<Long> myVoteIds = new LinkedHashSet<Long>();
+		    Set<Long> friendVoteIds = new LinkedHashSet<Long>();
+		    for (GeatteChange change : changes) {
+			Long refId = Long.parseLong(change.getRefId());
+			if (isMyItems && REQ_TYPE.MY_ITEMS.toString().equals(change.getReqType())) {
+			    myItemIds.add(refId);
+			} else if (isFriendItems && REQ_TYPE.FRIEND_ITEMS.toString().equals(change.getReqType())) {
+			    friendItemIds.add(refId);
+			} else if (isMyVotes && REQ_TYPE.MY_VOTES.toString().equals(change.getReqType())) {
+			    myVoteIds.add(refId);
+			} else if (isFriendVotes && REQ_TYPE.FRIEND_VOTES.toString().equals(change.getReqType())) {
+			    friendVoteIds.add(refId);
+			}
+		    }
+
+		    if (isMyItems) {
+			allItemInfoFromMe = GeatteInfoRepository.getItemInfoForIds(pm, new ArrayList<Long>(myItemIds));
+		    }
+		    if (isFriendItems) {
+			allItemInfoToMe = GeatteInfoRepository.getItemInfoForIds(pm, new ArrayList<Long>(friendItemIds));
+		    }
+		    if (isMyVotes) {
+			allVoteFromMe = GeatteVoteRepository.getVotesForIds(pm, new ArrayList<Long>(myVoteIds));
+		    }
+		    if (isFriendVotes) {
+			allVoteToMe = GeatteVoteRepository.getVotesForIds(pm, new ArrayList<Long>(friendVoteIds));
+		    }
+		} else {
+		    // read the mark first, a change landing while we query is sent again next time
+		    syncSeq = GeatteChange.getLastSeq(pm, userNumber);
+
+		    if (isMyItems) {
+			allItemInfoFromMe = GeatteInfo.getAllItemInfoFromNumber(pm, phoneNumber, countryCode, lastSyncDate);
+		    }
+		    if (isFriendItems) {
+			allItemInfoToMe = GeatteInfo.getAllItemInfoToNumber(pm, phoneNumber, countryCode, lastSyncDate);
+		    }
+		    if (isMyVotes) {
+			allVoteFromMe = GeatteVote.getAllVoteFromMe(pm, phoneNumber, countryCode, lastSyncDate);
+		    }
+		    if (isFriendVotes) {
+			allVoteToMe = GeatteVote.getAllVoteToMe(pm, phoneNumber, countryCode, lastSyncDate);
+		    }
 		}
 	    } catch (JDOObjectNotFoundException ex) {
 		log.warning("GeatteAllGetServlet.doGet() : can not obtain geatte from db for phoneNumber = "
@@ -240,18 +328,6 @@ public class GeatteAllGetServlet extends HttpServlet {
 		retObject.put("my_votes", fromMeVoteArray);
 	    }
 
-	    pm = DBHelper.getPMF(getServletContext()).getPersistenceManager();
-	    List<GeatteVote> allVoteToMe = null;
-	    try {
-		if (isFriendVotes) {
-		    allVoteToMe = GeatteVote.getAllVoteToMe(pm, phoneNumber, countryCode, lastSyncDate);
-		}
-	    } catch (JDOObjectNotFoundException ex) {
-		log.warning("GeatteAllGetServlet.doGet() : can not obtain geatte votes from db for a list of item ids");
-	    } finally {
-		pm.close();
-	    }
-
 	    if (allVoteToMe != null) {
 		for (GeatteVote toMeVote : allVoteToMe) {
 		    JSONObject jObject = new JSONObject();
@@ -277,6 +353,11 @@ public class GeatteAllGetServlet extends HttpServlet {
 		retObject.put("friend_votes", toMeVoteArray);
 	    }
 
+	    retObject.put("sync_seq", syncSeq);
+	    if (sinceSeq != null) {
+		retObject.put("has_more", hasMore);
+	    }
+
 	    log.log(Level.INFO, "GeatteAllGetServlet.doGet() : Send back to client = " + retObject);
 
 	    PrintWriter out = res.getWriter();
@@ -0,0 +1,274 @@
+package com.geatte.app.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jdo.JDOException;
+import javax.jdo.JDOObjectNotFoundException;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Transaction;
+import javax.jdo.annotations.IdentityType;
+import javax.jdo.annotations.PersistenceCapable;
+import javax.jdo.annotations.Persistent;
+import javax.jdo.annotations.PrimaryKey;
+
+import com.geatte.app.server.GeatteAllGetServlet.REQ_TYPE;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.SortDirection;
+
+/**
+ * One entry of a user's change sequence.
+ *
+ * Every item or vote mutation a user can see appends an entry with the next
+ * sequence number of that user, so a client can ask for exactly the records
+ * changed after the last sequence number it has applied.
+ */
+@PersistenceCapable(identityType = IdentityType.APPLICATION, detachable = "true")
+public class GeatteChange {
+    private static final Logger log = Logger.getLogger(GeatteChange.class.getName());
+    private static final String KIND = GeatteChange.class.getSimpleName();
+    private static final int MAX_TXN_RETRIES = 3;
+
+    /**
+     * Child of the user's GeatteChangeCounter, id is the sequence number
+     */
+    @PrimaryKey
+    @Persistent
+    private Key key;
+
+    @Persistent
+    private String userNumber;
+
+    @Persistent
+    private Long seq;
+
+    /**
+     * One of GeatteAllGetServlet.REQ_TYPE
+     */
+    @Persistent
+    private String reqType;
+
+    /**
+     * Id of the changed GeatteInfo or GeatteVote
+     */
+    @Persistent
+    private String refId;
+
+    @Persistent
+    private Date createdDate = new Date();
+
+    public GeatteChange(String userNumber, long seq, String reqType, String refId) {
+	super();
+	this.key = KeyFactory.createKey(GeatteChangeCounter.createKey(userNumber), KIND, seq);
+	this.userNumber = userNumber;
+	this.seq = seq;
+	this.reqType = reqType;
+	this.refId = refId;
+    }
+
+    public Key getKey() {
+	return key;
+    }
+
+    public String getUserNumber() {
+	return userNumber;
+    }
+
+    public long getSeq() {
+	return seq != null ? seq.longValue() : 0L;
+    }
+
+    public String getReqType() {
+	return reqType;
+    }
+
+    public String getRefId() {
+	return refId;
+    }
+
+    public Date getCreatedDate() {
+	return createdDate;
+    }
+
+    /**
+     * Append a change for the given user.
+     *
+     * @param pm persistence manager
+     * @param userNumber canonical phone number of the user who sees the change
+     * @param reqType kind of record that changed
+     * @param refId id of the changed record
+     * @return the sequence number of the change, or -1 if it could not be saved
+     */
+    public static long appendChange(PersistenceManager pm, String userNumber, REQ_TYPE reqType, String refId) {
+	if (userNumber == null || userNumber.length() == 0 || refId == null) {
+	    return -1;
+	}
+
+	for (int retries = 0; retries < MAX_TXN_RETRIES; retries++) {
+	    Transaction tx = pm.currentTransaction();
+	    try {
+		tx.begin();
+		GeatteChangeCounter counter = null;
+		try {
+		    counter = pm.getObjectById(GeatteChangeCounter.class, GeatteChangeCounter.createKey(userNumber));
+		} catch (JDOObjectNotFoundException e) {
+		    counter = new GeatteChangeCounter(userNumber);
+		}
+		long seq = counter.nextSeq();
+		pm.makePersistent(counter);
+		pm.makePersistent(new GeatteChange(userNumber, seq, reqType.toString(), refId));
+		tx.commit();
+
+		log.log(Level.FINER, "GeatteChange.appendChange() : userNumber = " + userNumber + ", seq = " + seq
+			+ ", reqType = " + reqType + ", refId = " + refId);
+		return seq;
+	    } catch (JDOException e) {
+		log.log(Level.WARNING, "GeatteChange.appendChange() : failed to append change for userNumber = "
+			+ userNumber + ", retries = " + retries, e);
+	    } finally {
+		if (tx.isActive()) {
+		    tx.rollback();
+		}
+	    }
+	}
+
+	log.severe("GeatteChange.appendChange() : give up appending change for userNumber = " + userNumber
+		+ ", reqType = " + reqType + ", refId = " + refId);
+	return -1;
+    }
+
+    /**
+     * Append a change, or schedule a task appending it later when the
+     * counter can not be updated now. The caller has already saved the
+     * record, a change that is never appended is missed by every delta sync.
+     */
+    public static void appendChangeOrRetry(PersistenceManager pm, String userNumber, REQ_TYPE reqType, String refId) {
+	if (userNumber == null || userNumber.length() == 0 || refId == null) {
+	    return;
+	}
+	if (appendChange(pm, userNumber, reqType, refId) == -1) {
+	    GeatteChangeServlet.submitAppendChangeTask(userNumber, reqType, refId);
+	}
+    }
+
+    /**
+     * Append the same change for every given user, see appendChangeOrRetry().
+     */
+    public static void appendChanges(PersistenceManager pm, Collection<String> userNumbers, REQ_TYPE reqType, String refId) {
+	if (userNumbers == null) {
+	    return;
+	}
+	for (String userNumber : userNumbers) {
+	    appendChangeOrRetry(pm, userNumber, reqType, refId);
+	}
+    }
+
+    /**
+     * Get the high-water mark of the user's change sequence.
+     *
+     * @return last sequence number handed out, 0 if the user has no changes
+     */
+    public static long getLastSeq(PersistenceManager pm, String userNumber) {
+	try {
+	    GeatteChangeCounter counter = pm.getObjectById(GeatteChangeCounter.class,
+		    GeatteChangeCounter.createKey(userNumber));
+	    return counter.getLastSeq();
+	} catch (JDOObjectNotFoundException e) {
+	    return 0L;
+	}
+    }
+
+    /**
+     * Move the user's vote digest mark from prevSeq to seq.
+     *
+     * @return true if the mark was moved, false if it was not at prevSeq or
+     *         could not be saved
+     */
+    public static boolean markVoteDigest(PersistenceManager pm, String userNumber, long prevSeq, long seq, int items) {
+	for (int retries = 0; retries < MAX_TXN_RETRIES; retries++) {
+	    Transaction tx = pm.currentTransaction();
+	    try {
+		tx.begin();
+		GeatteChangeCounter counter = pm.getObjectById(GeatteChangeCounter.class,
+			GeatteChangeCounter.createKey(userNumber));
+		if (counter.getLastVoteDigestSeq() != prevSeq) {
+		    log.warning("GeatteChange.markVoteDigest() : digest mark moved by another task, userNumber = "
+			    + userNumber + ", expected = " + prevSeq + ", actual = " + counter.getLastVoteDigestSeq());
+		    return false;
+		}
+		counter.setLastVoteDigest(seq, items);
+		pm.makePersistent(counter);
+		tx.commit();
+		return true;
+	    } catch (JDOObjectNotFoundException e) {
+		log.warning("GeatteChange.markVoteDigest() : no change counter for userNumber = " + userNumber);
+		return false;
+	    } catch (JDOException e) {
+		log.log(Level.WARNING, "GeatteChange.markVoteDigest() : failed to mark digest for userNumber = "
+			+ userNumber + ", retries = " + retries, e);
+	    } finally {
+		if (tx.isActive()) {
+		    tx.rollback();
+		}
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Get the user's changes after the given sequence number, in sequence order.
+     *
+     * The query is an ancestor query on the user's GeatteChangeCounter, so it
+     * is strongly consistent. A non-ancestor query may return seq N+1 before
+     * seq N is visible, and the caller would move its mark past N for good.
+     *
+     * Only changes of the given types are returned, so the last seq returned
+     * never passes a change of a type the caller did not ask for.
+     *
+     * @param userNumber canonical phone number of the user
+     * @param sinceSeq last sequence number the caller has applied
+     * @param reqTypes types of changes to return, null for all types
+     * @param limit max number of changes to return
+     * @return list of changes, transient objects
+     */
+    public static List<GeatteChange> getChangesSince(String userNumber, long sinceSeq, Collection<REQ_TYPE> reqTypes,
+	    int limit) {
+	Query query = new Query(KIND, GeatteChangeCounter.createKey(userNumber));
+	if (reqTypes != null && reqTypes.size() < REQ_TYPE.values().length) {
+	    List<String> reqTypeNames = new ArrayList<String>();
+	    for (REQ_TYPE reqType : reqTypes) {
+		reqTypeNames.add(reqType.toString());
+	    }
+	    query.addFilter("reqType", FilterOperator.IN, reqTypeNames);
+	}
+	query.addFilter("seq", FilterOperator.GREATER_THAN, sinceSeq);
+	query.addSort("seq", SortDirection.ASCENDING);
+
+	List<GeatteChange> result = new ArrayList<GeatteChange>();
+	for (Entity entity : GeatteDatastore.datastore().prepare(query).asIterable(FetchOptions.Builder.withLimit(limit))) {
+	    result.add(fromEntity(entity));
+	}
+
+	log.log(Level.FINER, "GeatteChange.getChangesSince() : userNumber = " + userNumber + ", sinceSeq = " + sinceSeq
+		+ ", reqTypes = " + reqTypes + ", result size = " + result.size());
+	return result;
+    }
+
+    private static GeatteChange fromEntity(Entity entity) {
+	GeatteChange change = new GeatteChange((String) entity.getProperty("userNumber"),
+		((Long) entity.getProperty("seq")).longValue(), (String) entity.getProperty("reqType"),
+		(String) entity.getProperty("refId"));
+	change.createdDate = (Date) entity.getProperty("createdDate");
+	return change;
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.geatte.app.server;
+
+import java.util.Date;
+
+import javax.jdo.annotations.IdentityType;
+import javax.jdo.annotations.PersistenceCapable;
+import javax.jdo.annotations.Persistent;
+import javax.jdo.annotations.PrimaryKey;
+
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+
+/**
+ * Per-user head of the change sequence.
+ *
+ * The counter is the entity group root of all GeatteChange entries of
+ * one user, so a sequence number and its entry are written in the same
+ * transaction.
+ */
+@PersistenceCapable(identityType = IdentityType.APPLICATION, detachable = "true")
+public class GeatteChangeCounter {
+
+    /**
+     * The key name is the canonical phone number of the user
+     */
+    @PrimaryKey
+    @Persistent
+    private Key key;
+
+    @Persistent
+    private String userNumber;
+
+    /**
+     * The last sequence number handed out for this user
+     */
+    @Persistent
+    private Long lastSeq;
+
+    /**
+     * Last sequence number covered by a vote digest push to this user
+     */
+    @Persistent
+    private Long lastVoteDigestSeq;
+
+    /**
+     * Number of item pushes the last vote digest was split into
+     */
+    @Persistent
+    private Integer lastVoteDigestItems;
+
+    @Persistent
+    private Date updateDate;
+
+    public GeatteChangeCounter(String userNumber) {
+	super();
+	this.key = createKey(userNumber);
+	this.userNumber = userNumber;
+	this.lastSeq = 0L;
+    }
+
+    public static Key createKey(String userNumber) {
+	return KeyFactory.createKey(GeatteChangeCounter.class.getSimpleName(), userNumber);
+    }
+
+    public Key getKey() {
+	return key;
+    }
+
+    public String getUserNumber() {
+	return userNumber;
+    }
+
+    public long getLastSeq() {
+	return lastSeq != null ? lastSeq.longValue() : 0L;
+    }
+
+    /**
+     * Allocate the next sequence number, must be called inside a transaction.
+     */
+    public long nextSeq() {
+	lastSeq = getLastSeq() + 1;
+	updateDate = new Date();
+	return lastSeq;
+    }
+
+    public long getLastVoteDigestSeq() {
+	return lastVoteDigestSeq != null ? lastVoteDigestSeq.longValue() : 0L;
+    }
+
+    public int getLastVoteDigestItems() {
+	return lastVoteDigestItems != null ? lastVoteDigestItems.intValue() : 0;
+    }
+
+    public void setLastVoteDigest(long seq, int items) {
+	this.lastVoteDigestSeq = seq;
+	this.lastVoteDigestItems = items;
+	this.updateDate = new Date();
+    }
+
+    public Date getUpdateDate() {
+	return updateDate;
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.geatte.app.server;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jdo.PersistenceManager;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.geatte.app.server.GeatteAllGetServlet.REQ_TYPE;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+
+/**
+ * Task handler appending a change the request that saved the record could
+ * not append, see GeatteChange.appendChangeOrRetry().
+ *
+ * The task fails until the change is appended, so the queue keeps retrying
+ * it. A change appended twice is harmless, sync returns each id once. The
+ * tasks have their own queue, a backlog of them does not hold up indexing.
+ */
+@SuppressWarnings("serial")
+public class GeatteChangeServlet extends HttpServlet {
+    private static final Logger log = Logger.getLogger(GeatteChangeServlet.class.getName());
+    public static final String URI = "/tasks/geattechange";
+
+    private static final String USER_NUMBER_PARAM = "userNumber";
+    private static final String REQ_TYPE_PARAM = "reqType";
+    private static final String REF_ID_PARAM = "refId";
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	String queueName = GeatteMetrics.taskStarted(req);
+	String userNumber = req.getParameter(USER_NUMBER_PARAM);
+	String reqTypeStr = req.getParameter(REQ_TYPE_PARAM);
+	String refId = req.getParameter(REF_ID_PARAM);
+
+	REQ_TYPE reqType;
+	try {
+	    reqType = REQ_TYPE.valueOf(reqTypeStr);
+	} catch (Exception e) {
+	    // retrying does not help, drop the task
+	    log.severe("GeatteChangeServlet:doPost() : unknown reqType = " + reqTypeStr + ", drop change task");
+	    GeatteMetrics.taskFinished(queueName);
+	    resp.setStatus(200);
+	    return;
+	}
+
+	PersistenceManager pm = DBHelper.getPMF(getServletContext()).getPersistenceManager();
+	try {
+	    long seq = GeatteChange.appendChange(pm, userNumber, reqType, refId);
+	    if (seq == -1) {
+		log.warning("GeatteChangeServlet:doPost() : can not append change for userNumber = " + userNumber
+			+ ", reqType = " + reqType + ", refId = " + refId + ", will retry");
+		resp.setStatus(500);
+		return;
+	    }
+	    if (reqType == REQ_TYPE.FRIEND_VOTES) {
+		// the digest of the vote's window may have run without this change
+		GeatteVoteDigestServlet.submitGeatteVoteDigestTask(userNumber, null);
+	    }
+	    resp.setStatus(200);
+	    resp.getOutputStream().write("OK".getBytes());
+	    log.log(Level.INFO, "GeatteChangeServlet:doPost() : appended change for userNumber = " + userNumber
+		    + ", seq = " + seq);
+	} finally {
+	    pm.close();
+	    GeatteMetrics.taskAttempted(req, queueName);
+	}
+    }
+
+    /**
+     * Schedule appending a change for the user.
+     */
+    public static void submitAppendChangeTask(String userNumber, REQ_TYPE reqType, String refId) {
+	TaskOptions url = TaskOptions.Builder.withUrl(URI).param(USER_NUMBER_PARAM, userNumber)
+	.param(REQ_TYPE_PARAM, reqType.toString()).param(REF_ID_PARAM, refId);
+	try {
+	    GeatteMetrics.taskAdded(url, GeatteMetrics.QUEUE_CHANGE, null);
+	    QueueFactory.getQueue(GeatteMetrics.QUEUE_CHANGE).add(url);
+	    log.log(Level.INFO, "GeatteChangeServlet.submitAppendChangeTask() : scheduled change for userNumber = "
+		    + userNumber + ", reqType = " + reqType + ", refId = " + refId);
+	} catch (Exception e) {
+	    GeatteMetrics.taskFinished(GeatteMetrics.QUEUE_CHANGE);
+	    log.log(Level.SEVERE, "GeatteChangeServlet.submitAppendChangeTask() : can not schedule change for userNumber = "
+		    + userNumber + ", reqType = " + reqType + ", refId = " + refId, e);
+	}
+    }
+}
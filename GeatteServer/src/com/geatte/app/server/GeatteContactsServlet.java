@@ -77,7 +77,7 @@ public class GeatteContactsServlet extends HttpServlet {
 		String phone = jObject.getString(Config.CONTACT_PHONE_NUMBER).toString();
 		//String contactId = jObject.getString(Config.CONTACT_ID).toString();
 		String[] ret = new String[1];
-		boolean isGeatteDevice = DeviceInfo.checkPhoneExistedHadDeviceInfo(pm, phone, defaultCountryCode, ret);
+		boolean isGeatteDevice = DeviceInfoRepository.checkPhoneExistedHadDeviceInfo(pm, phone, defaultCountryCode, ret);
 		if (isGeatteDevice) {
 		    //put the contact back which is as same as the server device info
 		    if (ret[0] != null) {
@@ -0,0 +1,87 @@
+package com.geatte.app.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+
+/**
+ * Shared helpers of the low-level datastore repositories.
+ *
+ * The repositories read the same entities the JDO classes write, kinds are
+ * the simple class names and properties the field names. Which layer serves
+ * reads is set by the Config.DATASTORE_MODE_PROPERTY system property in
+ * appengine-web.xml, writes always go through JDO.
+ */
+public class GeatteDatastore {
+    private static final Logger log = Logger.getLogger(GeatteDatastore.class.getName());
+
+    public static final String MODE_JDO = "jdo";
+    public static final String MODE_LOW_LEVEL = "lowlevel";
+
+    private static final boolean sLowLevel = !MODE_JDO.equalsIgnoreCase(System.getProperty(
+	    Config.DATASTORE_MODE_PROPERTY, MODE_LOW_LEVEL));
+
+    static {
+	log.log(Level.INFO, "GeatteDatastore : reads use " + (sLowLevel ? MODE_LOW_LEVEL : MODE_JDO));
+    }
+
+    /**
+     * @return true if reads on hot paths go through the low-level repositories
+     */
+    public static boolean isLowLevel() {
+	return sLowLevel;
+    }
+
+    static DatastoreService datastore() {
+	return DatastoreServiceFactory.getDatastoreService();
+    }
+
+    static AsyncDatastoreService asyncDatastore() {
+	return DatastoreServiceFactory.getAsyncDatastoreService();
+    }
+
+    /**
+     * Get entities by numeric id in one batch get, missing ids are skipped.
+     *
+     * @param kind entity kind
+     * @param ids ids of entities
+     * @return entities in the order of ids
+     */
+    static List<Entity> getByIds(String kind, Collection<Long> ids) {
+	List<Key> keys = new ArrayList<Key>();
+	for (Long id : ids) {
+	    keys.add(KeyFactory.createKey(kind, id));
+	}
+	return getByKeys(keys);
+    }
+
+    /**
+     * Get entities by key in one batch get, missing keys are skipped.
+     *
+     * @return entities in the order of keys
+     */
+    static List<Entity> getByKeys(List<Key> keys) {
+	List<Entity> result = new ArrayList<Entity>();
+	if (keys.isEmpty()) {
+	    return result;
+	}
+	Map<Key, Entity> found = datastore().get(keys);
+	for (Key key : keys) {
+	    Entity entity = found.get(key);
+	    if (entity != null) {
+		result.add(entity);
+	    }
+	}
+	return result;
+    }
+}
@@ -0,0 +1,188 @@
+package com.geatte.app.server;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jdo.JDOObjectNotFoundException;
+import javax.jdo.PersistenceManager;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.repackaged.org.json.JSONException;
+import com.google.appengine.repackaged.org.json.JSONObject;
+
+/**
+ * Compare the JDO and the low-level read layers on the reads of the hot
+ * paths, admin only.
+ *
+ * Runs the same reads of the latest items and votes through both layers and
+ * reports the first run and the average of the other runs. The first run of
+ * a layer on a new instance includes its startup, the warmup report in
+ * /tasks/geattemetrics has the startup of each layer on its own.
+ */
+@SuppressWarnings("serial")
+public class GeatteDatastoreBenchServlet extends HttpServlet {
+    private static final Logger log = Logger.getLogger(GeatteDatastoreBenchServlet.class.getName());
+    public static final String URI = "/tasks/geattedatastorebench";
+
+    private static final String ITERATIONS_PARAM = "iterations";
+    private static final int DEFAULT_ITERATIONS = 10;
+    private static final int MAX_ITERATIONS = 100;
+    private static final int SAMPLE_SIZE = 20;
+
+    @Override
+    public void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	try {
+	    int iterations = DEFAULT_ITERATIONS;
+	    String iterationsStr = req.getParameter(ITERATIONS_PARAM);
+	    if (iterationsStr != null) {
+		try {
+		    iterations = Math.max(1, Math.min(MAX_ITERATIONS, Integer.parseInt(iterationsStr)));
+		} catch (NumberFormatException nfe) {
+		    log.warning("GeatteDatastoreBenchServlet.doGet() : wrong format of iterations = " + iterationsStr);
+		}
+	    }
+
+	    List<Long> itemIds = getLatestIds(GeatteInfo.class.getSimpleName());
+	    List<Long> voteIds = getLatestIds(GeatteVote.class.getSimpleName());
+	    Set<String> numbers = new LinkedHashSet<String>();
+	    for (GeatteInfo item : GeatteInfoRepository.getItemInfoForIds(itemIds)) {
+		if (item.getFromNumber() != null) {
+		    numbers.add(item.getFromNumber());
+		}
+	    }
+
+	    JSONObject report = new JSONObject();
+	    report.put("iterations", iterations);
+	    report.put("items", itemIds.size());
+	    report.put("votes", voteIds.size());
+	    report.put("numbers", numbers.size());
+	    report.put(GeatteDatastore.MODE_JDO, runJdo(iterations, itemIds, voteIds, numbers));
+	    report.put(GeatteDatastore.MODE_LOW_LEVEL, runLowLevel(iterations, itemIds, voteIds, numbers));
+	    report.put("readLayer", GeatteDatastore.isLowLevel() ? GeatteDatastore.MODE_LOW_LEVEL
+		    : GeatteDatastore.MODE_JDO);
+	    log.log(Level.INFO, "GeatteDatastoreBenchServlet.doGet() : report = " + report);
+
+	    resp.setContentType("application/json");
+	    PrintWriter out = resp.getWriter();
+	    report.write(out);
+	} catch (Exception ex) {
+	    throw new ServletException(ex);
+	}
+    }
+
+    private JSONObject runJdo(int iterations, List<Long> itemIds, List<Long> voteIds, Set<String> numbers)
+    throws JSONException {
+	Timings timings = new Timings();
+	for (int i = 0; i < iterations; i++) {
+	    // a new persistence manager each run, so its cache does not help
+	    PersistenceManager pm = DBHelper.getPMF(getServletContext()).getPersistenceManager();
+	    try {
+		long start = System.currentTimeMillis();
+		GeatteInfo.getItemInfoForIds(pm, itemIds);
+		long itemsDone = System.currentTimeMillis();
+		GeatteVote.getVotesForIds(pm, voteIds);
+		long votesDone = System.currentTimeMillis();
+		if (!itemIds.isEmpty()) {
+		    try {
+			pm.getObjectById(GeatteInfo.class, itemIds.get(0));
+		    } catch (JDOObjectNotFoundException e) {
+			// deleted since the sample was taken
+		    }
+		}
+		long itemDone = System.currentTimeMillis();
+		pm.detachCopyAll(DeviceInfo.getDeviceInfoForNumbers(pm, numbers));
+		long devicesDone = System.currentTimeMillis();
+		timings.add(i, itemsDone - start, votesDone - itemsDone, itemDone - votesDone, devicesDone - itemDone);
+	    } finally {
+		pm.close();
+	    }
+	}
+	return timings.toJson();
+    }
+
+    private JSONObject runLowLevel(int iterations, List<Long> itemIds, List<Long> voteIds, Set<String> numbers)
+    throws JSONException {
+	Timings timings = new Timings();
+	for (int i = 0; i < iterations; i++) {
+	    long start = System.currentTimeMillis();
+	    GeatteInfoRepository.getItemInfoForIds(itemIds);
+	    long itemsDone = System.currentTimeMillis();
+	    GeatteVoteRepository.getVotesForIds(voteIds);
+	    long votesDone = System.currentTimeMillis();
+	    if (!itemIds.isEmpty()) {
+		GeatteInfoRepository.getItemInfo(itemIds.get(0));
+	    }
+	    long itemDone = System.currentTimeMillis();
+	    DeviceInfoRepository.getDeviceInfoForNumbers(numbers);
+	    long devicesDone = System.currentTimeMillis();
+	    timings.add(i, itemsDone - start, votesDone - itemsDone, itemDone - votesDone, devicesDone - itemDone);
+	}
+	return timings.toJson();
+    }
+
+    /**
+     * Get ids of the latest entities of a kind with a keys-only query.
+     */
+    private static List<Long> getLatestIds(String kind) {
+	Query query = new Query(kind).setKeysOnly();
+	query.addSort("createdDate", SortDirection.DESCENDING);
+	List<Long> ids = new ArrayList<Long>();
+	for (Entity entity : GeatteDatastore.datastore().prepare(query).asIterable(
+		FetchOptions.Builder.withLimit(SAMPLE_SIZE))) {
+	    ids.add(entity.getKey().getId());
+	}
+	return ids;
+    }
+
+    private static class Timings {
+	private static final String[] STEPS = {"itemsByIds", "votesByIds", "itemById", "devicesByNumbers"};
+
+	private final long[] mFirst = new long[STEPS.length];
+	private final long[] mSum = new long[STEPS.length];
+	private int mRuns;
+
+	void add(int run, long... millis) {
+	    for (int i = 0; i < STEPS.length; i++) {
+		if (run == 0) {
+		    mFirst[i] = millis[i];
+		} else {
+		    mSum[i] += millis[i];
+		}
+	    }
+	    if (run > 0) {
+		mRuns++;
+	    }
+	}
+
+	JSONObject toJson() throws JSONException {
+	    JSONObject json = new JSONObject();
+	    long firstTotal = 0;
+	    long avgTotal = 0;
+	    for (int i = 0; i < STEPS.length; i++) {
+		JSONObject step = new JSONObject();
+		long avg = mRuns > 0 ? mSum[i] / mRuns : mFirst[i];
+		step.put("firstMillis", mFirst[i]);
+		step.put("avgMillis", avg);
+		json.put(STEPS[i], step);
+		firstTotal += mFirst[i];
+		avgTotal += avg;
+	    }
+	    json.put("firstMillis", firstTotal);
+	    json.put("avgMillis", avgTotal);
+	    return json;
+	}
+    }
+}
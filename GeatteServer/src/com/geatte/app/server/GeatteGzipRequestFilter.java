@@ -0,0 +1,111 @@
+package com.geatte.app.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Inflate request bodies the client sent with Content-Encoding gzip, so
+ * servlets read them as usual. App Engine compresses responses itself for
+ * clients that ask for it.
+ */
+public class GeatteGzipRequestFilter implements Filter {
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String GZIP = "gzip";
+
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+    ServletException {
+	if (request instanceof HttpServletRequest
+		&& GZIP.equalsIgnoreCase(((HttpServletRequest) request).getHeader(CONTENT_ENCODING))) {
+	    chain.doFilter(new GzipRequest((HttpServletRequest) request), response);
+	    return;
+	}
+	chain.doFilter(request, response);
+    }
+
+    public void destroy() {
+    }
+
+    private static class GzipRequest extends HttpServletRequestWrapper {
+	private ServletInputStream mInputStream;
+	private BufferedReader mReader;
+
+	GzipRequest(HttpServletRequest request) {
+	    super(request);
+	}
+
+	@Override
+	public ServletInputStream getInputStream() throws IOException {
+	    if (mReader != null) {
+		throw new IllegalStateException("getReader() was called");
+	    }
+	    if (mInputStream == null) {
+		final GZIPInputStream gzip = new GZIPInputStream(super.getInputStream());
+		mInputStream = new ServletInputStream() {
+		    @Override
+		    public int read() throws IOException {
+			return gzip.read();
+		    }
+
+		    @Override
+		    public int read(byte[] b, int off, int len) throws IOException {
+			return gzip.read(b, off, len);
+		    }
+
+		    @Override
+		    public void close() throws IOException {
+			gzip.close();
+		    }
+		};
+	    }
+	    return mInputStream;
+	}
+
+	@Override
+	public BufferedReader getReader() throws IOException {
+	    if (mReader == null) {
+		if (mInputStream != null) {
+		    throw new IllegalStateException("getInputStream() was called");
+		}
+		String encoding = getCharacterEncoding();
+		mReader = new BufferedReader(new InputStreamReader(getInputStream(),
+			encoding != null ? encoding : Config.ENCODE_UTF8));
+	    }
+	    return mReader;
+	}
+
+	@Override
+	public int getContentLength() {
+	    return -1;
+	}
+
+	@Override
+	public String getHeader(String name) {
+	    return CONTENT_ENCODING.equalsIgnoreCase(name) ? null : super.getHeader(name);
+	}
+
+	@Override
+	public Enumeration getHeaders(String name) {
+	    if (CONTENT_ENCODING.equalsIgnoreCase(name)) {
+		return Collections.enumeration(Collections.emptyList());
+	    }
+	    return super.getHeaders(name);
+	}
+    }
+}
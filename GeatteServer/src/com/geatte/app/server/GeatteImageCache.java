@@ -0,0 +1,158 @@
+package com.geatte.app.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+
+/**
+ * Image bytes of items by geatte id, for the burst of downloads after an
+ * item is sent to a group.
+ *
+ * Loaded images stay in a per-instance LRU bounded by bytes for a short
+ * time, and in memcache so the other instances of the burst also skip the
+ * datastore. An item uploaded again with a new image is invalidated, other
+ * instances keep the old image in their LRU until it expires.
+ *
+ * Loads are not coalesced within an instance, the app is not threadsafe so
+ * an instance serves one request at a time and a burst spreads over
+ * instances, which share loads through memcache only.
+ */
+public class GeatteImageCache {
+    private static final Logger log = Logger.getLogger(GeatteImageCache.class.getName());
+
+    private static final String KEY_PREFIX = "GeatteImageCache.";
+    private static final long LOCAL_MAX_BYTES = 16 * 1024 * 1024;
+    private static final long LOCAL_MILLIS = 2 * 60 * 1000;
+    private static final int MEMCACHE_SECONDS = 10 * 60;
+    // memcache values are limited to 1MB
+    private static final int MEMCACHE_MAX_BYTES = 1000 * 1000;
+    private static final String LOCAL_CACHE_NAME = "images.local";
+    private static final String MEMCACHE_NAME = "images.memcache";
+
+    private static final GeatteImageCache sCache = new GeatteImageCache();
+
+    /**
+     * Reads the image of an item from the datastore, null if there is none.
+     */
+    public interface Loader {
+	byte[] load(Long geatteId) throws Exception;
+    }
+
+    private final LinkedHashMap<String, LocalEntry> mLocal = new LinkedHashMap<String, LocalEntry>(16, 0.75f, true);
+    private long mLocalBytes = 0;
+
+    private GeatteImageCache() {
+    }
+
+    public static GeatteImageCache get() {
+	return sCache;
+    }
+
+    /**
+     * Get the image of an item in a format.
+     *
+     * @param format GeatteImageCodec format the loader returns
+     * @return image bytes, null if the item has no image
+     */
+    public byte[] getImage(Long geatteId, String format, Loader loader) throws Exception {
+	String key = geatteId + "." + format;
+	synchronized (mLocal) {
+	    LocalEntry entry = mLocal.get(key);
+	    if (entry != null && entry.mExpires > System.currentTimeMillis()) {
+		InstanceMetrics.get().cacheHit(LOCAL_CACHE_NAME);
+		return entry.mBytes;
+	    }
+	    InstanceMetrics.get().cacheMiss(LOCAL_CACHE_NAME);
+	}
+
+	byte[] bytes = loadShared(geatteId, key, loader);
+	if (bytes != null) {
+	    synchronized (mLocal) {
+		putLocal(key, bytes);
+	    }
+	}
+	return bytes;
+    }
+
+    /**
+     * Drop the cached images of an item, called when its image is replaced.
+     */
+    public void invalidate(Long geatteId) {
+	String[] formats = { GeatteImageCodec.FORMAT_JPEG, GeatteImageCodec.FORMAT_WEBP };
+	List<String> cacheKeys = new ArrayList<String>();
+	synchronized (mLocal) {
+	    for (String format : formats) {
+		String key = geatteId + "." + format;
+		LocalEntry old = mLocal.remove(key);
+		if (old != null) {
+		    mLocalBytes -= old.mBytes.length;
+		}
+		cacheKeys.add(KEY_PREFIX + key);
+	    }
+	}
+	try {
+	    MemcacheServiceFactory.getMemcacheService().deleteAll(cacheKeys);
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "GeatteImageCache.invalidate() : memcache delete failed for id = " + geatteId, e);
+	}
+    }
+
+    private byte[] loadShared(Long geatteId, String key, Loader loader) throws Exception {
+	String cacheKey = KEY_PREFIX + key;
+	try {
+	    byte[] cached = (byte[]) MemcacheServiceFactory.getMemcacheService().get(cacheKey);
+	    if (cached != null) {
+		InstanceMetrics.get().cacheHit(MEMCACHE_NAME);
+		return cached;
+	    }
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "GeatteImageCache.loadShared() : memcache get failed for " + key, e);
+	}
+	InstanceMetrics.get().cacheMiss(MEMCACHE_NAME);
+
+	byte[] bytes = loader.load(geatteId);
+	if (bytes != null && bytes.length <= MEMCACHE_MAX_BYTES) {
+	    try {
+		MemcacheServiceFactory.getMemcacheService().put(cacheKey, bytes,
+			Expiration.byDeltaSeconds(MEMCACHE_SECONDS));
+	    } catch (Exception e) {
+		log.log(Level.WARNING, "GeatteImageCache.loadShared() : memcache put failed for " + key, e);
+	    }
+	}
+	return bytes;
+    }
+
+    // caller holds mLocal
+    private void putLocal(String key, byte[] bytes) {
+	if (bytes.length > LOCAL_MAX_BYTES / 4) {
+	    return;
+	}
+	LocalEntry old = mLocal.put(key, new LocalEntry(bytes, System.currentTimeMillis() + LOCAL_MILLIS));
+	if (old != null) {
+	    mLocalBytes -= old.mBytes.length;
+	}
+	mLocalBytes += bytes.length;
+	// least recently used first
+	Iterator<LocalEntry> it = mLocal.values().iterator();
+	while (mLocalBytes > LOCAL_MAX_BYTES && it.hasNext()) {
+	    mLocalBytes -= it.next().mBytes.length;
+	    it.remove();
+	}
+    }
+
+    private static class LocalEntry {
+	private final byte[] mBytes;
+	private final long mExpires;
+
+	LocalEntry(byte[] bytes, long expires) {
+	    mBytes = bytes;
+	    mExpires = expires;
+	}
+    }
+}
@@ -0,0 +1,117 @@
+package com.geatte.app.server;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.appengine.api.images.Image;
+import com.google.appengine.api.images.ImagesService;
+import com.google.appengine.api.images.ImagesService.OutputEncoding;
+import com.google.appengine.api.images.ImagesServiceFactory;
+import com.google.appengine.api.images.OutputSettings;
+import com.google.appengine.api.images.Transform;
+
+/**
+ * Re-encode uploaded images with the Images API.
+ *
+ * Clients upload quality 100 JPEGs. At upload the image is scaled down to
+ * MAX_DIMENSION and encoded again as JPEG at JPEG_QUALITY, which also drops
+ * EXIF and other metadata. The original is kept when encoding fails or does
+ * not make it smaller.
+ *
+ * WEBP is served to clients that accept it when the Images API of the
+ * runtime can encode it.
+ */
+public class GeatteImageCodec {
+    private static final Logger log = Logger.getLogger(GeatteImageCodec.class.getName());
+
+    public static final String CONTENT_TYPE_JPEG = "image/jpeg";
+    public static final String CONTENT_TYPE_WEBP = "image/webp";
+    public static final String FORMAT_JPEG = "jpeg";
+    public static final String FORMAT_WEBP = "webp";
+
+    private static final int MAX_DIMENSION = 1024;
+    private static final int JPEG_QUALITY = 80;
+    private static final int WEBP_QUALITY = 75;
+
+    // null when the runtime has no WEBP encoder
+    private static final OutputEncoding WEBP_ENCODING = webpEncoding();
+
+    /**
+     * Scale down and re-encode an uploaded image.
+     *
+     * @return the smaller of the re-encoded image and the original
+     */
+    public static byte[] recompress(byte[] original) {
+	if (original == null || original.length == 0) {
+	    return original;
+	}
+	try {
+	    ImagesService imagesService = ImagesServiceFactory.getImagesService();
+	    Image image = ImagesServiceFactory.makeImage(original);
+	    OutputSettings settings = new OutputSettings(OutputEncoding.JPEG);
+	    settings.setQuality(JPEG_QUALITY);
+	    byte[] encoded = imagesService.applyTransform(fitTransform(image), image, settings).getImageData();
+
+	    log.log(Level.INFO, "GeatteImageCodec.recompress() : " + image.getWidth() + "x" + image.getHeight()
+		    + ", bytes " + original.length + " -> " + encoded.length);
+	    return encoded.length < original.length ? encoded : original;
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "GeatteImageCodec.recompress() : keep original image, bytes = " + original.length, e);
+	    return original;
+	}
+    }
+
+    /**
+     * Pick the format to serve for an Accept header.
+     */
+    public static String negotiateFormat(String accept) {
+	if (WEBP_ENCODING != null && accept != null && accept.contains(CONTENT_TYPE_WEBP)) {
+	    return FORMAT_WEBP;
+	}
+	return FORMAT_JPEG;
+    }
+
+    public static String contentType(String format) {
+	return FORMAT_WEBP.equals(format) ? CONTENT_TYPE_WEBP : CONTENT_TYPE_JPEG;
+    }
+
+    /**
+     * Encode a stored JPEG as WEBP, null if it can not be done.
+     */
+    public static byte[] toWebp(byte[] jpeg) {
+	if (WEBP_ENCODING == null || jpeg == null) {
+	    return null;
+	}
+	try {
+	    Image image = ImagesServiceFactory.makeImage(jpeg);
+	    OutputSettings settings = new OutputSettings(WEBP_ENCODING);
+	    settings.setQuality(WEBP_QUALITY);
+	    byte[] encoded = ImagesServiceFactory.getImagesService().applyTransform(fitTransform(image), image,
+		    settings).getImageData();
+	    return encoded.length < jpeg.length ? encoded : null;
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "GeatteImageCodec.toWebp() : encoding failed", e);
+	    return null;
+	}
+    }
+
+    /**
+     * Resize to fit MAX_DIMENSION, or a crop of the whole image when it
+     * already fits, the Images API needs a transform to encode.
+     */
+    private static Transform fitTransform(Image image) {
+	if (image.getWidth() > MAX_DIMENSION || image.getHeight() > MAX_DIMENSION) {
+	    return ImagesServiceFactory.makeResize(MAX_DIMENSION, MAX_DIMENSION);
+	}
+	return ImagesServiceFactory.makeCrop(0.0, 0.0, 1.0, 1.0);
+    }
+
+    private static OutputEncoding webpEncoding() {
+	try {
+	    return OutputEncoding.valueOf("WEBP");
+	} catch (IllegalArgumentException e) {
+	    log.info("GeatteImageCodec : no WEBP output encoding, serve JPEG only");
+	    return null;
+	}
+    }
+}
@@ -3,8 +3,8 @@ package com.geatte.app.server;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
 
-import javax.jdo.JDOObjectNotFoundException;
 import javax.jdo.PersistenceManager;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -17,6 +17,7 @@ import com.google.appengine.api.datastore.Blob;
 public class GeatteImageGetServlet extends HttpServlet {
     private static final Logger log = Logger.getLogger(GeatteImageGetServlet.class.getName());
     private static final String ERROR_STATUS = "ERROR";
+    private static final long[] UNSATISFIABLE = new long[0];
 
     /**
      * For debug - and possibly show the info, allow device selection.
@@ -50,33 +51,186 @@ public class GeatteImageGetServlet extends HttpServlet {
 	    }
 	    //Key key = KeyFactory.createKey(GeatteInfo.class.getSimpleName(), geatteId);
 
-	    // Context-shared PMF.
-	    PersistenceManager pm = DBHelper.getPMF(getServletContext()).getPersistenceManager();
-	    //Object id = pm.newObjectIdInstance(GeatteInfo.class, geatteId);
-
-	    GeatteInfo geatte = null;
+	    final Long id;
 	    try {
-		Long id = Long.parseLong(geatteId);
-		geatte = pm.getObjectById(GeatteInfo.class, id);
-		log.info("GeatteImageGetServlet.doGet() : obtain geatte from db for id = " + geatteId);
-	    } catch (JDOObjectNotFoundException ex) {
-		log.warning("GeatteImageGetServlet.doGet() : can not obtain geatte from db for id = " + geatteId);
-		throw new ServletException(ex);
+		id = Long.parseLong(geatteId);
 	    } catch (NumberFormatException nfe) {
 		log.warning("GeatteImageGetServlet.doGet() : wrong format of geatteId = " + geatteId);
 		throw new ServletException(nfe);
-	    } finally {
-		pm.close();
 	    }
 
-	    Blob image = geatte.getImage();
+	    String format = GeatteImageCodec.negotiateFormat(req.getHeader("Accept"));
+	    final BlobStore store = BlobStore.get();
+	    // a streamed store tags the bytes without loading them, both paths send the same ETag
+	    String version = store.isStreamed() ? store.version(BlobStore.itemImageName(id)) : null;
+	    // ranges are cut from the bytes, they take the cached path
+	    if (version != null && GeatteImageCodec.FORMAT_JPEG.equals(format) && req.getHeader("Range") == null) {
+		res.setContentType(GeatteImageCodec.CONTENT_TYPE_JPEG);
+		res.setHeader("Vary", "Accept");
+		res.setHeader("Accept-Ranges", "bytes");
+		res.setHeader("ETag", etag(id, format, version));
+		if (store.serve(BlobStore.itemImageName(id), res)) {
+		    log.log(Level.INFO, "GeatteImageGetServlet.doGet() : END GeatteImageGetServlet.doGet()");
+		    return;
+		}
+		// replaced or deleted since the version was read
+		res.reset();
+		version = null;
+	    }
+
+	    // recipients of a group item ask for the same image at once, they share one load
+	    final GeatteImageCache.Loader jpegLoader = new GeatteImageCache.Loader() {
+		@Override
+		public byte[] load(Long geatteId) throws Exception {
+		    byte[] bytes = store.get(BlobStore.itemImageName(geatteId));
+		    if (bytes != null) {
+			return bytes;
+		    }
+		    // items uploaded before the BlobStore have the image on the entity
+		    // Context-shared PMF.
+		    PersistenceManager pm = DBHelper.getPMF(getServletContext()).getPersistenceManager();
+		    try {
+			GeatteInfo geatte = GeatteInfoRepository.getItemInfo(pm, geatteId);
+			if (geatte == null) {
+			    log.warning("GeatteImageGetServlet.doGet() : can not obtain geatte from db for id = " + geatteId);
+			    throw new ServletException("can not obtain geatte from db for id = " + geatteId);
+			}
+			log.info("GeatteImageGetServlet.doGet() : obtain geatte from db for id = " + geatteId);
+			Blob blob = geatte.getImage();
+			return blob != null ? blob.getBytes() : null;
+		    } finally {
+			pm.close();
+		    }
+		}
+	    };
+	    byte[] image = null;
+	    if (version != null && GeatteImageCodec.FORMAT_JPEG.equals(format)) {
+		// a range of the file the streamed path sends, not of an older copy another instance cached
+		image = store.get(BlobStore.itemImageName(id));
+		if (!version.equals(store.version(BlobStore.itemImageName(id)))) {
+		    version = null;
+		}
+	    } else {
+		version = null;
+	    }
+	    if (image == null) {
+		image = GeatteImageCache.get().getImage(id, GeatteImageCodec.FORMAT_JPEG, jpegLoader);
+	    }
+
+	    // smaller format when the client takes it, encoded once and cached like the original
+	    if (image != null && GeatteImageCodec.FORMAT_WEBP.equals(format)) {
+		byte[] webp = GeatteImageCache.get().getImage(id, format, new GeatteImageCache.Loader() {
+		    @Override
+		    public byte[] load(Long geatteId) throws Exception {
+			return GeatteImageCodec.toWebp(GeatteImageCache.get().getImage(geatteId,
+				GeatteImageCodec.FORMAT_JPEG, jpegLoader));
+		    }
+		});
+		if (webp != null) {
+		    image = webp;
+		} else {
+		    format = GeatteImageCodec.FORMAT_JPEG;
+		}
+	    } else {
+		format = GeatteImageCodec.FORMAT_JPEG;
+	    }
+	    if (image == null) {
+		log.warning("GeatteImageGetServlet.doGet() : no image for id = " + geatteId);
+		throw new ServletException("no image for id = " + geatteId);
+	    }
+
+	    // serve the first image, or the part a resumed download asks for
+	    String etag = etag(id, format, version != null ? version : crc(image));
+	    res.setContentType(GeatteImageCodec.contentType(format));
+	    res.setHeader("Vary", "Accept");
+	    res.setHeader("Accept-Ranges", "bytes");
+	    res.setHeader("ETag", etag);
 
-	    // serve the first image
-	    res.setContentType("image/jpeg");
-	    res.getOutputStream().write(image.getBytes());
+	    long[] range = null;
+	    String ifRange = req.getHeader("If-Range");
+	    if (ifRange == null || ifRange.equals(etag)) {
+		range = parseRange(req.getHeader("Range"), image.length);
+	    }
+	    if (range == UNSATISFIABLE) {
+		res.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+		res.setHeader("Content-Range", "bytes */" + image.length);
+		log.info("GeatteImageGetServlet.doGet() : unsatisfiable range " + req.getHeader("Range") + " for id = "
+			+ geatteId + ", length = " + image.length);
+		return;
+	    }
+	    if (range != null) {
+		int start = (int) range[0];
+		int length = (int) (range[1] - range[0] + 1);
+		res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		res.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + image.length);
+		res.setContentLength(length);
+		res.getOutputStream().write(image, start, length);
+		log.info("GeatteImageGetServlet.doGet() : served bytes " + range[0] + "-" + range[1] + " of id = " + geatteId);
+	    } else {
+		res.setContentLength(image.length);
+		res.getOutputStream().write(image);
+	    }
 	    log.log(Level.INFO, "GeatteImageGetServlet.doGet() : END GeatteImageGetServlet.doGet()");
 	} catch (Exception ex) {
 	    throw new ServletException(ex);
 	}
     }
+
+    private static String etag(Long id, String format, String version) {
+	return "\"" + id + "-" + format + "-" + version + "\"";
+    }
+
+    private static String crc(byte[] image) {
+	CRC32 crc = new CRC32();
+	crc.update(image);
+	return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Parse a single byte range, "bytes=first-last", "bytes=first-" or
+     * "bytes=-suffix".
+     *
+     * @return first and last byte, null to send the whole image for no range
+     *         or one that is not understood, UNSATISFIABLE if it starts past
+     *         the end
+     */
+    static long[] parseRange(String header, long length) {
+	if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+	    return null;
+	}
+	String spec = header.substring("bytes=".length()).trim();
+	int dash = spec.indexOf('-');
+	if (dash < 0) {
+	    return null;
+	}
+	try {
+	    String first = spec.substring(0, dash).trim();
+	    String last = spec.substring(dash + 1).trim();
+	    long start;
+	    long end;
+	    if (first.isEmpty()) {
+		if (last.isEmpty()) {
+		    return null;
+		}
+		long suffix = Long.parseLong(last);
+		if (suffix <= 0) {
+		    return UNSATISFIABLE;
+		}
+		start = Math.max(0, length - suffix);
+		end = length - 1;
+	    } else {
+		start = Long.parseLong(first);
+		end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+		if (end < start) {
+		    return start >= length ? UNSATISFIABLE : null;
+		}
+	    }
+	    if (start >= length) {
+		return UNSATISFIABLE;
+	    }
+	    return new long[] { start, end };
+	} catch (NumberFormatException e) {
+	    return null;
+	}
+    }
 }
\ No newline at end of file
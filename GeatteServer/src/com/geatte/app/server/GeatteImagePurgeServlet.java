@@ -11,6 +11,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.geatte.app.server.PushRateController.Priority;
+
 /**
  * The server side implementation of the RPC service.
  */
@@ -26,17 +28,28 @@ public class GeatteImagePurgeServlet extends HttpServlet {
     throws ServletException, IOException {
 
 	String imageId = req.getParameter(Config.GEATTE_IMAGE_RANDOM_ID_PARAM);
+	String queueName = GeatteMetrics.taskStarted(req);
+	try {
+	    // purges wait while pushes need the capacity, the queue tries again later
+	    long waitMillis = PushRateController.get().admit(Priority.LOW);
+	    if (waitMillis > 0) {
+		log.info("GeatteImagePurgeServlet:doPost() : pushes are busy, purge image = " + imageId + " later");
+		resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		return;
+	    }
 
-	log.info("GeatteImagePurgeServlet:doPost() : try to purge image = " + imageId);
-	boolean ret = purgeImage(imageId);
-	resp.setStatus(200);
-	if (ret) {
-	    resp.getOutputStream().write("OK".getBytes());
-	    log.info("GeatteImagePurgeServlet:doPost() : purge image SUCCEEDED");
-	} else {
-	    resp.setStatus(500);
-	    resp.getOutputStream().write(ERROR_STATUS.getBytes());
-	    log.log(Level.WARNING, "GeatteSendServlet:doPost() : purge image FAILED");
+	    log.info("GeatteImagePurgeServlet:doPost() : try to purge image = " + imageId);
+	    if (purgeImage(imageId)) {
+		resp.setStatus(200);
+		resp.getOutputStream().write("OK".getBytes());
+		log.info("GeatteImagePurgeServlet:doPost() : purge image SUCCEEDED");
+	    } else {
+		resp.setStatus(500);
+		resp.getOutputStream().write(ERROR_STATUS.getBytes());
+		log.log(Level.WARNING, "GeatteImagePurgeServlet:doPost() : purge image FAILED");
+	    }
+	} finally {
+	    GeatteMetrics.taskAttempted(req, queueName);
 	}
     }
 
@@ -44,9 +57,9 @@ public class GeatteImagePurgeServlet extends HttpServlet {
 	ServletContext ctx = this.getServletContext();
 	PersistenceManager pm = DBHelper.getPMF(ctx).getPersistenceManager();
 	try {
-	    GeatteTmpImageInfo imageInfo = GeatteTmpImageInfo.getImageInfoForImageId(pm, imageId);
-	    pm.deletePersistent(imageInfo);
-	    log.log(Level.INFO, "[DEBUG] GeatteImagePurgeServlet : deleted imageInfo for " + imageInfo.getId());
+	    GeatteTmpImageRepository.deleteImageInfo(pm, imageId);
+	    BlobStore.get().delete(BlobStore.tmpImageName(imageId));
+	    log.log(Level.INFO, "[DEBUG] GeatteImagePurgeServlet : deleted imageInfo for " + imageId);
 	    return true;
 	} catch (Exception e) {
 	    log.warning("GeatteImagePurgeServlet : Error : " + e.getMessage());
@@ -0,0 +1,100 @@
+package com.geatte.app.server;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+
+/**
+ * Task handler updating the search index for one item or vote.
+ *
+ * Indexing is idempotent, a retried task writes the same postings again.
+ */
+@SuppressWarnings("serial")
+public class GeatteIndexServlet extends HttpServlet {
+    private static final Logger log = Logger.getLogger(GeatteIndexServlet.class.getName());
+    public static final String URI = "/tasks/geatteindex";
+
+    private static final String TYPE_PARAM = "type";
+    private static final String ID_PARAM = "id";
+    private static final String TYPE_ITEM = "item";
+    private static final String TYPE_VOTE = "vote";
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	String queueName = GeatteMetrics.taskStarted(req);
+	String type = req.getParameter(TYPE_PARAM);
+	String idStr = req.getParameter(ID_PARAM);
+
+	Long id;
+	try {
+	    id = Long.parseLong(idStr);
+	} catch (NumberFormatException nfe) {
+	    // retrying does not help, drop the task
+	    log.severe("GeatteIndexServlet:doPost() : wrong format of id = " + idStr + ", drop index task");
+	    GeatteMetrics.taskFinished(queueName);
+	    resp.setStatus(200);
+	    return;
+	}
+
+	if (TYPE_ITEM.equals(type)) {
+	    GeatteInfo item = GeatteInfoRepository.getItemInfo(id);
+	    if (item != null) {
+		GeatteSearchIndex.indexItem(item);
+	    } else {
+		log.warning("GeatteIndexServlet:doPost() : can not obtain geatte from db for id = " + id);
+	    }
+	} else if (TYPE_VOTE.equals(type)) {
+	    List<GeatteVote> votes = GeatteVoteRepository.getVotesForIds(Collections.singletonList(id));
+	    if (!votes.isEmpty()) {
+		GeatteSearchIndex.indexVote(votes.get(0));
+	    } else {
+		log.warning("GeatteIndexServlet:doPost() : can not obtain vote from db for id = " + id);
+	    }
+	} else {
+	    log.severe("GeatteIndexServlet:doPost() : unknown type = " + type + ", drop index task");
+	}
+
+	GeatteMetrics.taskFinished(queueName);
+	resp.setStatus(200);
+	resp.getOutputStream().write("OK".getBytes());
+	log.log(Level.FINE, "GeatteIndexServlet:doPost() : indexed " + type + " id = " + id);
+    }
+
+    /**
+     * Schedule indexing of an item's title and description, call after the
+     * item or its recipients changed.
+     */
+    public static void submitIndexItemTask(String geatteId) {
+	submitIndexTask(TYPE_ITEM, geatteId);
+    }
+
+    /**
+     * Schedule indexing of a vote's feedback.
+     */
+    public static void submitIndexVoteTask(String voteId) {
+	submitIndexTask(TYPE_VOTE, voteId);
+    }
+
+    private static void submitIndexTask(String type, String id) {
+	TaskOptions url = TaskOptions.Builder.withUrl(URI).param(TYPE_PARAM, type).param(ID_PARAM, id);
+	try {
+	    GeatteMetrics.taskAdded(url, GeatteMetrics.QUEUE_INDEX, null);
+	    QueueFactory.getQueue(GeatteMetrics.QUEUE_INDEX).add(url);
+	} catch (Exception e) {
+	    // search misses this change, the upload or vote itself is saved
+	    GeatteMetrics.taskFinished(GeatteMetrics.QUEUE_INDEX);
+	    log.log(Level.WARNING, "GeatteIndexServlet.submitIndexTask() : can not schedule index of " + type
+		    + " id = " + id, e);
+	}
+    }
+}
@@ -28,6 +28,7 @@ import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
 @PersistenceCapable(identityType = IdentityType.APPLICATION, detachable = "true")
 public class GeatteInfo {
     private static final Logger log = Logger.getLogger(GeatteInfo.class.getName());
+    private static final int MAX_IDS_PER_QUERY = 30;
 
     @PrimaryKey
     @Persistent(valueStrategy = IdGeneratorStrategy.IDENTITY)
@@ -79,6 +80,10 @@ public class GeatteInfo {
 	return id;
     }
 
+    void setId(Long id) {
+	this.id = id;
+    }
+
     private void update() {
 	setUpdateDate(new Date () );
     }
@@ -119,6 +124,10 @@ public class GeatteInfo {
 	return createdDate;
     }
 
+    void setCreatedDate(Date createdDate) {
+	this.createdDate = createdDate;
+    }
+
     public String getCreatedDateStr() {
 	SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 	String str = dateFormat.format(createdDate);
@@ -300,4 +309,33 @@ public class GeatteInfo {
 	return result;
     }
 
+    /**
+     * Get the items for a list of ids, missing ids are skipped.
+     *
+     * @param pm persistence manager
+     * @param ids list of ids
+     * @return list of items
+     */
+    @SuppressWarnings("unchecked")
+    public static List<GeatteInfo> getItemInfoForIds(PersistenceManager pm, List<Long> ids) {
+	List<GeatteInfo> result = new ArrayList<GeatteInfo>();
+	if (ids.size() == 0) {
+	    return result;
+	}
+
+	Query query = pm.newQuery(GeatteInfo.class, ":p.contains(id)");
+	for (int i = 0; i < ids.size(); i += MAX_IDS_PER_QUERY) {
+	    List<Long> partialIds = ids.subList(i, Math.min(i + MAX_IDS_PER_QUERY, ids.size()));
+	    List<GeatteInfo> qresult = (List<GeatteInfo>) query.execute(partialIds);
+	    // copy to array - we need to close the query
+	    for (GeatteInfo di : qresult) {
+		result.add(di);
+	    }
+	}
+	query.closeAll();
+
+	log.log(Level.FINER, "GeatteInfo.getItemInfoForIds(): number of ids = " + ids.size() + ", result size = " + result.size());
+	return result;
+    }
+
 }
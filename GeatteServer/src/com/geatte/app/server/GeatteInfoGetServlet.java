@@ -6,7 +6,6 @@ import java.net.URLEncoder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.jdo.JDOObjectNotFoundException;
 import javax.jdo.PersistenceManager;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -67,10 +66,7 @@ public class GeatteInfoGetServlet extends HttpServlet {
 	    GeatteInfo geatte = null;
 	    try {
 		Long id = Long.parseLong(geatteId);
-		geatte = pm.getObjectById(GeatteInfo.class, id);
-	    } catch (JDOObjectNotFoundException ex) {
-		log.warning("GeatteInfoGetServlet.doGet() : can not obtain geatte from db for id = " + geatteId);
-		throw new ServletException(ex);
+		geatte = GeatteInfoRepository.getItemInfo(pm, id);
 	    } catch (NumberFormatException nfe) {
 		log.warning("GeatteInfoGetServlet.doGet() : wrong format of geatteId = " + geatteId);
 		throw new ServletException(nfe);
@@ -78,6 +74,10 @@ public class GeatteInfoGetServlet extends HttpServlet {
 	    finally {
 		pm.close();
 	    }
+	    if (geatte == null) {
+		log.warning("GeatteInfoGetServlet.doGet() : can not obtain geatte from db for id = " + geatteId);
+		throw new ServletException("can not obtain geatte from db for id = " + geatteId);
+	    }
 
 	    if (geatte != null) {
 		JSONObject geatteJson = new JSONObject();
@@ -0,0 +1,103 @@
+package com.geatte.app.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jdo.JDOObjectNotFoundException;
+import javax.jdo.PersistenceManager;
+
+import com.google.appengine.api.datastore.Blob;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.KeyFactory;
+
+/**
+ * Reads of GeatteInfo through the low-level datastore API.
+ *
+ * Items are returned as transient objects, they must not be handed to a
+ * PersistenceManager. Load items through JDO to change them.
+ */
+public class GeatteInfoRepository {
+    private static final Logger log = Logger.getLogger(GeatteInfoRepository.class.getName());
+    private static final String KIND = GeatteInfo.class.getSimpleName();
+
+    /**
+     * Get an item through the read layer in use.
+     *
+     * @param pm persistence manager, used when reads go through JDO
+     * @param id item id
+     * @return item, or null if it does not exist
+     */
+    public static GeatteInfo getItemInfo(PersistenceManager pm, Long id) {
+	if (!GeatteDatastore.isLowLevel()) {
+	    try {
+		return pm.getObjectById(GeatteInfo.class, id);
+	    } catch (JDOObjectNotFoundException e) {
+		return null;
+	    }
+	}
+	return getItemInfo(id);
+    }
+
+    /**
+     * Get an item with one datastore get.
+     *
+     * @return item, or null if it does not exist
+     */
+    public static GeatteInfo getItemInfo(Long id) {
+	try {
+	    return fromEntity(GeatteDatastore.datastore().get(KeyFactory.createKey(KIND, id)));
+	} catch (EntityNotFoundException e) {
+	    return null;
+	}
+    }
+
+    /**
+     * Get the items for a list of ids through the read layer in use, missing
+     * ids are skipped.
+     */
+    public static List<GeatteInfo> getItemInfoForIds(PersistenceManager pm, List<Long> ids) {
+	if (!GeatteDatastore.isLowLevel()) {
+	    return GeatteInfo.getItemInfoForIds(pm, ids);
+	}
+	return getItemInfoForIds(ids);
+    }
+
+    /**
+     * Get the items for a list of ids with one batch get, missing ids are
+     * skipped.
+     */
+    public static List<GeatteInfo> getItemInfoForIds(List<Long> ids) {
+	List<GeatteInfo> result = new ArrayList<GeatteInfo>();
+	for (Entity entity : GeatteDatastore.getByIds(KIND, ids)) {
+	    result.add(fromEntity(entity));
+	}
+	log.log(Level.FINER, "GeatteInfoRepository.getItemInfoForIds(): number of ids = " + ids.size()
+		+ ", result size = " + result.size());
+	return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    static GeatteInfo fromEntity(Entity entity) {
+	GeatteInfo info = new GeatteInfo((String) entity.getProperty("fromNumber"),
+		(String) entity.getProperty("countryCode"), (String) entity.getProperty("toNumber"),
+		(String) entity.getProperty("geatteTitile"), (String) entity.getProperty("geatteDesc"),
+		(Blob) entity.getProperty("image"));
+	info.setId(entity.getKey().getId());
+	Collection<String> toDeviceNumbers = (Collection<String>) entity.getProperty("toDeviceNumbers");
+	Set<String> numbers = new HashSet<String>();
+	if (toDeviceNumbers != null) {
+	    numbers.addAll(toDeviceNumbers);
+	}
+	info.setToDeviceKeys(numbers);
+	info.setCreatedDate((Date) entity.getProperty("createdDate"));
+	info.setUpdateDate((Date) entity.getProperty("updateDate"));
+	return info;
+    }
+}
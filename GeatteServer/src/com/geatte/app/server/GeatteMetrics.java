@@ -0,0 +1,199 @@
+package com.geatte.app.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.geatte.app.shared.MetricsSnapshot;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.appengine.repackaged.org.json.JSONException;
+import com.google.appengine.repackaged.org.json.JSONObject;
+
+/**
+ * Queue depth and wait time of push, purge and index tasks.
+ *
+ * Counters are kept in memcache so all instances add to the same numbers.
+ * Depth is tasks added minus tasks finished, wait is the time from adding a
+ * task to its handler starting, both can drift when memcache evicts them.
+ *
+ * Wait counters only grow. Each reader keeps its own mark of what it has
+ * read, so the console and the metrics task do not take samples from each
+ * other.
+ */
+public class GeatteMetrics {
+    private static final Logger log = Logger.getLogger(GeatteMetrics.class.getName());
+
+    public static final String QUEUE_SEND = "geatteSend";
+    public static final String QUEUE_VOTE = "geatteVote";
+    public static final String QUEUE_PURGE = "geatteImagePurge";
+    public static final String QUEUE_INDEX = "geatteIndex";
+    public static final String QUEUE_CHANGE = "geatteChange";
+    private static final String[] QUEUES = {QUEUE_SEND, QUEUE_VOTE, QUEUE_PURGE, QUEUE_INDEX, QUEUE_CHANGE};
+
+    public static final String QUEUE_NAME_HEADER = "X-AppEngine-QueueName";
+    public static final String RETRY_COUNT_HEADER = "X-AppEngine-TaskRetryCount";
+    private static final String KEY_PREFIX = "GeatteMetrics.";
+
+    public static final String READER_CONSOLE = "console";
+    public static final String READER_TASK = "task";
+
+    /**
+     * Add the enqueue timestamp to a task and count it in the queue depth.
+     *
+     * @param url task to add
+     * @param queueName queue the task goes to
+     * @param enqueuedAt original enqueue time of a deferred task, or null for a new task
+     */
+    public static void taskAdded(TaskOptions url, String queueName, Long enqueuedAt) {
+	url.param(Config.TASK_ENQUEUED_AT_PARAM,
+		Long.toString(enqueuedAt != null ? enqueuedAt : System.currentTimeMillis()));
+	increment(queueName, "depth", 1);
+    }
+
+    /**
+     * Record the wait time of a task, called when its handler starts.
+     *
+     * @return queue name of the task, or null when not called from a task
+     */
+    public static String taskStarted(HttpServletRequest req) {
+	String queueName = req.getHeader(QUEUE_NAME_HEADER);
+	Long enqueuedAt = getEnqueuedAt(req);
+	if (queueName != null && enqueuedAt != null) {
+	    long wait = Math.max(0, System.currentTimeMillis() - enqueuedAt);
+	    increment(queueName, "waitSum", wait);
+	    increment(queueName, "waitCount", 1);
+	    log.log(Level.FINE, "GeatteMetrics.taskStarted() : queue = " + queueName + ", wait = " + wait);
+	}
+	return queueName;
+    }
+
+    /**
+     * Take a task out of the queue depth, only for tasks that will not be
+     * retried by the queue.
+     */
+    public static void taskFinished(String queueName) {
+	if (queueName != null) {
+	    increment(queueName, "depth", -1);
+	}
+    }
+
+    /**
+     * Take a task out of the queue depth after its first attempt, whatever
+     * the outcome, for handlers the queue retries until they succeed. A
+     * retried task is not taken out again.
+     */
+    public static void taskAttempted(HttpServletRequest req, String queueName) {
+	String retryCount = req.getHeader(RETRY_COUNT_HEADER);
+	if (retryCount == null || "0".equals(retryCount)) {
+	    taskFinished(queueName);
+	}
+    }
+
+    public static Long getEnqueuedAt(HttpServletRequest req) {
+	String enqueuedAt = req.getParameter(Config.TASK_ENQUEUED_AT_PARAM);
+	if (enqueuedAt == null) {
+	    return null;
+	}
+	try {
+	    return Long.parseLong(enqueuedAt);
+	} catch (NumberFormatException e) {
+	    return null;
+	}
+    }
+
+    /**
+     * Get the queue and rate control numbers, the wait average is since the
+     * last call of this reader. Rate control and warmup numbers are of the
+     * serving instance.
+     */
+    public static JSONObject snapshot(String reader) throws JSONException {
+	JSONObject json = new JSONObject();
+	JSONObject queues = new JSONObject();
+	for (MetricsSnapshot.Queue queue : getQueues(reader)) {
+	    JSONObject jQueue = new JSONObject();
+	    jQueue.put("depth", queue.getDepth());
+	    jQueue.put("tasks", queue.getTasks());
+	    jQueue.put("avgWaitMillis", queue.getAvgWaitMillis());
+	    queues.put(queue.getName(), jQueue);
+	}
+	json.put("queues", queues);
+	json.put("transports", PushRateController.get().toJson());
+	JSONObject warmup = GeatteWarmupServlet.getLastReport();
+	if (warmup != null) {
+	    json.put("warmup", warmup);
+	}
+	return json;
+    }
+
+    /**
+     * Get depth and wait of each queue, the wait average is since the last
+     * call of the same reader. Reading does not change the counters.
+     *
+     * @param reader one of the READER_ names
+     */
+    public static List<MetricsSnapshot.Queue> getQueues(String reader) {
+	MemcacheService cache = MemcacheServiceFactory.getMemcacheService();
+	List<String> keys = new ArrayList<String>();
+	for (String queueName : QUEUES) {
+	    keys.add(key(queueName, "depth"));
+	    keys.add(key(queueName, "waitSum"));
+	    keys.add(key(queueName, "waitCount"));
+	    keys.add(markKey(reader, queueName, "waitSum"));
+	    keys.add(markKey(reader, queueName, "waitCount"));
+	}
+	Map<String, Object> values = cache.getAll(keys);
+
+	List<MetricsSnapshot.Queue> queues = new ArrayList<MetricsSnapshot.Queue>();
+	Map<String, Long> marks = new HashMap<String, Long>();
+	for (String queueName : QUEUES) {
+	    long waitSum = value(values, key(queueName, "waitSum"));
+	    long waitCount = value(values, key(queueName, "waitCount"));
+	    long sumDelta = delta(waitSum, value(values, markKey(reader, queueName, "waitSum")));
+	    long countDelta = delta(waitCount, value(values, markKey(reader, queueName, "waitCount")));
+	    marks.put(markKey(reader, queueName, "waitSum"), waitSum);
+	    marks.put(markKey(reader, queueName, "waitCount"), waitCount);
+
+	    MetricsSnapshot.Queue queue = new MetricsSnapshot.Queue();
+	    queue.setName(queueName);
+	    queue.setDepth(value(values, key(queueName, "depth")));
+	    queue.setTasks(countDelta);
+	    queue.setAvgWaitMillis(countDelta > 0 ? sumDelta / countDelta : 0L);
+	    queues.add(queue);
+	}
+	cache.putAll(marks);
+	return queues;
+    }
+
+    private static long value(Map<String, Object> values, String key) {
+	Object value = values.get(key);
+	return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    private static long delta(long current, long mark) {
+	// a counter evicted by memcache starts again from 0
+	return current >= mark ? current - mark : current;
+    }
+
+    private static void increment(String queueName, String counter, long delta) {
+	try {
+	    MemcacheServiceFactory.getMemcacheService().increment(key(queueName, counter), delta, 0L);
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "GeatteMetrics.increment() : can not update " + counter + " of " + queueName, e);
+	}
+    }
+
+    private static String key(String queueName, String counter) {
+	return KEY_PREFIX + queueName + "." + counter;
+    }
+
+    private static String markKey(String reader, String queueName, String counter) {
+	return KEY_PREFIX + reader + "." + queueName + "." + counter;
+    }
+}
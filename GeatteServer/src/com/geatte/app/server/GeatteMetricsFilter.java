@@ -0,0 +1,84 @@
+package com.geatte.app.server;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Record latency, errors and datastore calls of every request in
+ * InstanceMetrics.
+ */
+public class GeatteMetricsFilter implements Filter {
+
+    public void init(FilterConfig filterConfig) throws ServletException {
+	DatastoreRpcCounter.install();
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+    ServletException {
+	if (!(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse)) {
+	    chain.doFilter(request, response);
+	    return;
+	}
+	HttpServletRequest req = (HttpServletRequest) request;
+	StatusResponse resp = new StatusResponse((HttpServletResponse) response);
+
+	long start = System.currentTimeMillis();
+	DatastoreRpcCounter.start();
+	boolean failed = true;
+	try {
+	    chain.doFilter(req, resp);
+	    failed = resp.mStatus >= 500;
+	} finally {
+	    int rpcs = DatastoreRpcCounter.stop();
+	    InstanceMetrics.get().requestDone(req.getServletPath(), System.currentTimeMillis() - start, rpcs, failed);
+	}
+    }
+
+    public void destroy() {
+    }
+
+    /**
+     * Keeps the status set by the servlet, the servlet API has no getter.
+     */
+    private static class StatusResponse extends HttpServletResponseWrapper {
+	private int mStatus = SC_OK;
+
+	StatusResponse(HttpServletResponse response) {
+	    super(response);
+	}
+
+	@Override
+	public void setStatus(int sc) {
+	    mStatus = sc;
+	    super.setStatus(sc);
+	}
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public void setStatus(int sc, String sm) {
+	    mStatus = sc;
+	    super.setStatus(sc, sm);
+	}
+
+	@Override
+	public void sendError(int sc) throws IOException {
+	    mStatus = sc;
+	    super.sendError(sc);
+	}
+
+	@Override
+	public void sendError(int sc, String msg) throws IOException {
+	    mStatus = sc;
+	    super.sendError(sc, msg);
+	}
+    }
+}
@@ -0,0 +1,36 @@
+package com.geatte.app.server;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.appengine.repackaged.org.json.JSONObject;
+
+/**
+ * Report push queue depth, wait time and rate control state, admin only.
+ */
+@SuppressWarnings("serial")
+public class GeatteMetricsServlet extends HttpServlet {
+    private static final Logger log = Logger.getLogger(GeatteMetricsServlet.class.getName());
+    public static final String URI = "/tasks/geattemetrics";
+
+    @Override
+    public void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	try {
+	    JSONObject metrics = GeatteMetrics.snapshot(GeatteMetrics.READER_TASK);
+	    log.log(Level.INFO, "GeatteMetricsServlet.doGet() : metrics = " + metrics);
+
+	    resp.setContentType("application/json");
+	    PrintWriter out = resp.getWriter();
+	    metrics.write(out);
+	} catch (Exception ex) {
+	    throw new ServletException(ex);
+	}
+    }
+}
@@ -0,0 +1,245 @@
+package com.geatte.app.server;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.appengine.repackaged.org.json.JSONArray;
+
+/**
+ * Builds the data payload of item and vote pushes.
+ *
+ * The payload carries everything the client shows for a new item, so the
+ * client does not need to call back to /geatteinfoget. C2DM allows 1024 bytes
+ * of data, title and description are cut to fit and the payload is flagged as
+ * truncated when they are.
+ */
+public class GeattePushPayload {
+    private static final Logger log = Logger.getLogger(GeattePushPayload.class.getName());
+
+    public static final String DATA_GEATTE_ID = "data.geatteid";
+    public static final String DATA_GEATTE_TITLE = "data.geatte_title";
+    public static final String DATA_GEATTE_DESC = "data.geatte_desc";
+    public static final String DATA_GEATTE_FROM = "data.geatte_from";
+    public static final String DATA_GEATTE_CREATED = "data.geatte_created";
+    public static final String DATA_GEATTE_IMG_HASH = "data.geatte_img_hash";
+    public static final String DATA_GEATTE_TRUNCATED = "data.geatte_truncated";
+
+    // single vote, still filled from the latest vote of a digest for older clients
+    public static final String DATA_VOTE_GEATTE_ID = "data.geatteid_vote";
+    public static final String DATA_VOTE_VOTER = "data.geatte_voter";
+    public static final String DATA_VOTE_OWNER = "data.geatte_owner";
+    public static final String DATA_VOTE_RESP = "data.geatte_vote_resp";
+    public static final String DATA_VOTE_FEEDBACK = "data.geatte_vote_feedback";
+
+    // vote digest, votes buffered for one item of one owner
+    public static final String DATA_VOTE_DIGEST_ID = "data.geatteid_vote_digest";
+    public static final String DATA_VOTE_DIGEST = "data.geatte_vote_digest";
+    public static final String DATA_VOTE_COUNT = "data.geatte_vote_count";
+    public static final String DATA_VOTE_MORE = "data.geatte_vote_more";
+    public static final String DATA_VOTE_SEQ = "data.geatte_vote_seq";
+    public static final String DATA_VOTE_PREV_SEQ = "data.geatte_vote_prev";
+    public static final String DATA_VOTE_BATCH = "data.geatte_vote_batch";
+    public static final String DATA_VOTE_PREV_BATCH = "data.geatte_vote_prev_batch";
+    private static final int MAX_SINGLE_FEEDBACK_BYTES = 120;
+
+    /**
+     * C2DM limit is 1024 bytes of keys and values, keep some room for the
+     * collapse key and encoding differences between transports.
+     */
+    public static final int MAX_PAYLOAD_BYTES = 900;
+
+    /**
+     * Build the payload of a new item push.
+     *
+     * @param geatteId id of the item
+     * @param fromNumber sender number
+     * @param title item title
+     * @param desc item description
+     * @param createdDate created date, in 'yyyy-MM-dd HH:mm:ss'
+     * @param image image bytes, used for the thumbnail hash
+     * @return push params, values are not encoded
+     */
+    public static Map<String, String[]> newItemParams(String geatteId, String fromNumber, String title, String desc,
+	    String createdDate, byte[] image) {
+	Map<String, String[]> params = new HashMap<String, String[]>();
+	params.put(DATA_GEATTE_ID, new String[]{geatteId});
+	params.put(DATA_GEATTE_FROM, new String[]{fromNumber == null ? "" : fromNumber});
+	params.put(DATA_GEATTE_CREATED, new String[]{createdDate == null ? "" : createdDate});
+	String imageHash = imageHash(image);
+	if (imageHash != null) {
+	    params.put(DATA_GEATTE_IMG_HASH, new String[]{imageHash});
+	}
+	// reserve the flag, it is only sent when something was cut
+	params.put(DATA_GEATTE_TRUNCATED, new String[]{"1"});
+
+	title = (title == null ? "" : title);
+	desc = (desc == null ? "" : desc);
+	int room = MAX_PAYLOAD_BYTES - payloadSize(params) - encodedKeySize(DATA_GEATTE_TITLE)
+	- encodedKeySize(DATA_GEATTE_DESC);
+
+	String fitTitle = truncate(title, room);
+	String fitDesc = truncate(desc, room - encodedSize(fitTitle));
+	boolean truncated = fitTitle.length() < title.length() || fitDesc.length() < desc.length();
+	if (!truncated) {
+	    params.remove(DATA_GEATTE_TRUNCATED);
+	} else {
+	    log.log(Level.INFO, "GeattePushPayload.newItemParams() : payload truncated for geatteId = " + geatteId);
+	}
+	params.put(DATA_GEATTE_TITLE, new String[]{fitTitle});
+	params.put(DATA_GEATTE_DESC, new String[]{fitDesc});
+	return params;
+    }
+
+    /**
+     * Build the payload of a vote digest push for one item.
+     *
+     * Votes are inlined as [voter, resp, feedback] entries while they fit, the
+     * payload is flagged with more when some are left out. Sequence numbers
+     * let the client detect digests it missed, for example ones collapsed while
+     * the device was offline, and fetch those votes with sinceSeq.
+     *
+     * @param geatteId id of the item
+     * @param votes votes on the item, oldest first
+     * @param prevSeq owner's digest mark before this digest
+     * @param seq owner's digest mark after this digest
+     * @param prevBatch number of item pushes of the previous digest
+     * @param batch number of item pushes of this digest
+     * @return push params, values are not encoded
+     */
+    public static Map<String, String[]> voteDigestParams(String geatteId, List<GeatteVote> votes, long prevSeq,
+	    long seq, int prevBatch, int batch) {
+	Map<String, String[]> params = new HashMap<String, String[]>();
+	params.put(DATA_VOTE_DIGEST_ID, new String[]{geatteId});
+	params.put(DATA_VOTE_COUNT, new String[]{Integer.toString(votes.size())});
+	params.put(DATA_VOTE_SEQ, new String[]{Long.toString(seq)});
+	params.put(DATA_VOTE_PREV_SEQ, new String[]{Long.toString(prevSeq)});
+	params.put(DATA_VOTE_BATCH, new String[]{Integer.toString(batch)});
+	params.put(DATA_VOTE_PREV_BATCH, new String[]{Integer.toString(prevBatch)});
+
+	GeatteVote latest = votes.get(votes.size() - 1);
+	params.put(DATA_VOTE_GEATTE_ID, new String[]{geatteId});
+	params.put(DATA_VOTE_VOTER, new String[]{latest.getGeatteVoter()});
+	params.put(DATA_VOTE_OWNER, new String[]{latest.getGeatteOwner()});
+	params.put(DATA_VOTE_RESP, new String[]{latest.getGeatteVoteResp()});
+	params.put(DATA_VOTE_FEEDBACK, new String[]{truncate(latest.getGeatteFeedback(), MAX_SINGLE_FEEDBACK_BYTES)});
+	// reserve the flag, it is only sent when some votes are left out
+	params.put(DATA_VOTE_MORE, new String[]{"1"});
+
+	int room = MAX_PAYLOAD_BYTES - payloadSize(params) - encodedKeySize(DATA_VOTE_DIGEST);
+	JSONArray entries = new JSONArray();
+	// encoding is per character, so the array size is the sum of its parts
+	int size = encodedSize("[]");
+	boolean more = false;
+	for (GeatteVote vote : votes) {
+	    JSONArray entry = new JSONArray();
+	    entry.put(vote.getGeatteVoter());
+	    entry.put(vote.getGeatteVoteResp());
+	    entry.put(vote.getGeatteFeedback() == null ? "" : vote.getGeatteFeedback());
+	    int entrySize = encodedSize(entry.toString()) + (entries.length() > 0 ? encodedSize(",") : 0);
+	    if (size + entrySize > room) {
+		more = true;
+		break;
+	    }
+	    entries.put(entry);
+	    size += entrySize;
+	}
+
+	if (!more) {
+	    params.remove(DATA_VOTE_MORE);
+	} else {
+	    log.log(Level.INFO, "GeattePushPayload.voteDigestParams() : " + entries.length() + " of " + votes.size()
+		    + " votes inlined for geatteId = " + geatteId);
+	}
+	params.put(DATA_VOTE_DIGEST, new String[]{entries.toString()});
+	return params;
+    }
+
+    /**
+     * Whether the key is item content inlined for C2DM, other transports such
+     * as Urban Airship tags should not carry it.
+     */
+    public static boolean isInlineContent(String key) {
+	return DATA_GEATTE_TITLE.equals(key) || DATA_GEATTE_DESC.equals(key) || DATA_GEATTE_FROM.equals(key)
+	|| DATA_GEATTE_CREATED.equals(key) || DATA_GEATTE_IMG_HASH.equals(key) || DATA_GEATTE_TRUNCATED.equals(key)
+	|| DATA_VOTE_DIGEST.equals(key);
+    }
+
+    /**
+     * Get the size of the payload as delivered to the device.
+     */
+    public static int payloadSize(Map<String, String[]> params) {
+	int size = 0;
+	for (String key : params.keySet()) {
+	    if (key.startsWith("data.")) {
+		String[] values = params.get(key);
+		size += encodedKeySize(key) + encodedSize(values[0]);
+	    }
+	}
+	return size;
+    }
+
+    /**
+     * Cut a string at a code point boundary, so its encoded form fits maxBytes.
+     */
+    public static String truncate(String value, int maxBytes) {
+	if (value == null || maxBytes <= 0) {
+	    return "";
+	}
+	if (encodedSize(value) <= maxBytes) {
+	    return value;
+	}
+	int size = 0;
+	int end = 0;
+	while (end < value.length()) {
+	    int next = value.offsetByCodePoints(end, 1);
+	    size += encodedSize(value.substring(end, next));
+	    if (size > maxBytes) {
+		break;
+	    }
+	    end = next;
+	}
+	return value.substring(0, end);
+    }
+
+    /**
+     * Hex MD5 of the image bytes, lets the client skip images it already has.
+     */
+    public static String imageHash(byte[] image) {
+	if (image == null || image.length == 0) {
+	    return null;
+	}
+	try {
+	    MessageDigest md = MessageDigest.getInstance("MD5");
+	    byte[] digest = md.digest(image);
+	    StringBuilder hex = new StringBuilder();
+	    for (byte b : digest) {
+		hex.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+	    }
+	    return hex.toString();
+	} catch (NoSuchAlgorithmException e) {
+	    log.log(Level.WARNING, "GeattePushPayload.imageHash() : MD5 is not available", e);
+	}
+	return null;
+    }
+
+    private static int encodedKeySize(String key) {
+	// key is sent without the 'data.' prefix plus '='
+	return key.length() - "data.".length() + 1;
+    }
+
+    private static int encodedSize(String value) {
+	try {
+	    return URLEncoder.encode(value, Config.ENCODE_UTF8).length();
+	} catch (UnsupportedEncodingException e) {
+	    // Ignore - UTF8 should be supported
+	    return value.length();
+	}
+    }
+}
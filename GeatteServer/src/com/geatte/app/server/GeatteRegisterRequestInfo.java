@@ -214,6 +214,7 @@ public class GeatteRegisterRequestInfo {
 		DeviceInfo deviceInfo = registrations.get(i);
 		if (deviceInfo.getDeviceRegistrationID().equals(regId)) {
 		    pm.deletePersistent(deviceInfo);
+		    DeviceDirectory.get().invalidate(deviceInfo.getPhoneNumber(), deviceInfo.getCountryCode());
 		    // Keep looping in case of duplicates
 
 		    log.log(Level.INFO, "RequestInfo:deleteRegistration() : deleted deviceInfo for " + deviceInfo.getDeviceRegistrationID());
@@ -0,0 +1,261 @@
+package com.geatte.app.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.SortDirection;
+
+/**
+ * Inverted index over item titles, descriptions and vote feedback, scoped
+ * per user.
+ *
+ * Each posting is one entity keyed by user, term, item and source, so
+ * indexing the same item or vote again overwrites its postings. The source
+ * is "item" for title and description and "v" plus the vote id for feedback.
+ * A user finds the items they own, the items sent to them, and feedback they
+ * gave or got. A search reads only the postings of its terms, best score
+ * first.
+ */
+public class GeatteSearchIndex {
+    private static final Logger log = Logger.getLogger(GeatteSearchIndex.class.getName());
+
+    private static final String KIND = "GeatteSearchPosting";
+    private static final String SOURCE_ITEM = "item";
+    private static final String SOURCE_VOTE_PREFIX = "v";
+
+    private static final double TITLE_WEIGHT = 3.0;
+    private static final double DESC_WEIGHT = 1.0;
+    private static final double FEEDBACK_WEIGHT = 1.0;
+
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 30;
+    public static final int MAX_QUERY_TERMS = 5;
+
+    /**
+     * Postings read per term, hits past this are not found
+     */
+    private static final int MAX_POSTINGS_PER_TERM = 500;
+
+    private static final int MAX_ENTITIES_PER_CALL = 500;
+
+    private static final Set<String> STOP_WORDS = new HashSet<String>(Arrays.asList("a", "an", "and", "are",
+	    "as", "at", "be", "by", "for", "from", "in", "is", "it", "of", "on", "or", "that", "the", "this", "to",
+	    "was", "with"));
+
+    /**
+     * One ranked item of a search.
+     */
+    public static class Hit {
+	private final long mItemId;
+	private double mScore;
+
+	Hit(long itemId) {
+	    mItemId = itemId;
+	}
+
+	public long getItemId() {
+	    return mItemId;
+	}
+
+	public double getScore() {
+	    return mScore;
+	}
+    }
+
+    /**
+     * Index title and description of an item for its owner and recipients.
+     */
+    public static void indexItem(GeatteInfo item) {
+	Map<String, Double> terms = new HashMap<String, Double>();
+	addTerms(terms, item.getGeatteTitile(), TITLE_WEIGHT);
+	addTerms(terms, item.getGeatteDesc(), DESC_WEIGHT);
+
+	Set<String> users = new LinkedHashSet<String>();
+	users.add(item.getFromNumber());
+	users.addAll(item.getToDeviceNumbers());
+	users.remove(null);
+
+	// an edited item may have lost terms, drop its old postings first
+	DatastoreService datastore = GeatteDatastore.datastore();
+	Query query = new Query(KIND).setKeysOnly();
+	query.addFilter("itemId", FilterOperator.EQUAL, item.getId());
+	query.addFilter("source", FilterOperator.EQUAL, SOURCE_ITEM);
+	List<Key> oldKeys = new ArrayList<Key>();
+	for (Entity entity : datastore.prepare(query).asIterable()) {
+	    oldKeys.add(entity.getKey());
+	}
+
+	List<Entity> postings = createPostings(users, terms, item.getId(), SOURCE_ITEM, item.getCreatedDate());
+	for (Entity posting : postings) {
+	    oldKeys.remove(posting.getKey());
+	}
+	for (int i = 0; i < oldKeys.size(); i += MAX_ENTITIES_PER_CALL) {
+	    datastore.delete(oldKeys.subList(i, Math.min(i + MAX_ENTITIES_PER_CALL, oldKeys.size())));
+	}
+	put(datastore, postings);
+	log.log(Level.FINE, "GeatteSearchIndex.indexItem() : item = " + item.getId() + ", users = " + users.size()
+		+ ", terms = " + terms.size() + ", removed = " + oldKeys.size());
+    }
+
+    /**
+     * Index the feedback of a vote for the voter and the item owner.
+     */
+    public static void indexVote(GeatteVote vote) {
+	Map<String, Double> terms = new HashMap<String, Double>();
+	addTerms(terms, vote.getGeatteFeedback(), FEEDBACK_WEIGHT);
+	if (terms.isEmpty()) {
+	    return;
+	}
+	Long itemId;
+	try {
+	    itemId = Long.parseLong(vote.getGeatteId());
+	} catch (NumberFormatException nfe) {
+	    log.warning("GeatteSearchIndex.indexVote() : wrong format of geatteId = " + vote.getGeatteId());
+	    return;
+	}
+
+	Set<String> users = new LinkedHashSet<String>();
+	users.add(vote.getGeatteVoter());
+	users.add(vote.getGeatteOwner());
+	users.remove(null);
+
+	List<Entity> postings = createPostings(users, terms, itemId, SOURCE_VOTE_PREFIX + vote.getId(),
+		vote.getCreatedDate());
+	put(GeatteDatastore.datastore(), postings);
+	log.log(Level.FINE, "GeatteSearchIndex.indexVote() : vote = " + vote.getId() + ", users = " + users.size()
+		+ ", terms = " + terms.size());
+    }
+
+    /**
+     * Find the items of a user that have all terms of a query.
+     *
+     * @param userNumber canonical number of the user
+     * @param queryText words to find
+     * @return hits, best first, newer item first on equal score
+     */
+    public static List<Hit> search(String userNumber, String queryText) {
+	List<String> terms = new ArrayList<String>(new LinkedHashSet<String>(tokenize(queryText)));
+	if (terms.size() > MAX_QUERY_TERMS) {
+	    terms = terms.subList(0, MAX_QUERY_TERMS);
+	}
+	if (terms.isEmpty()) {
+	    return new ArrayList<Hit>();
+	}
+
+	// all term queries run at the same time
+	AsyncDatastoreService datastore = GeatteDatastore.asyncDatastore();
+	List<Iterable<Entity>> termResults = new ArrayList<Iterable<Entity>>();
+	for (String term : terms) {
+	    Query query = new Query(KIND);
+	    query.addFilter("token", FilterOperator.EQUAL, token(userNumber, term));
+	    query.addSort("score", SortDirection.DESCENDING);
+	    termResults.add(datastore.prepare(query).asList(FetchOptions.Builder.withLimit(MAX_POSTINGS_PER_TERM)));
+	}
+
+	Map<Long, Hit> hits = null;
+	for (Iterable<Entity> postings : termResults) {
+	    Map<Long, Hit> termHits = new HashMap<Long, Hit>();
+	    for (Entity posting : postings) {
+		Long itemId = (Long) posting.getProperty("itemId");
+		if (hits != null && !hits.containsKey(itemId)) {
+		    continue;
+		}
+		Hit hit = termHits.get(itemId);
+		if (hit == null) {
+		    hit = (hits != null ? hits.get(itemId) : new Hit(itemId));
+		    termHits.put(itemId, hit);
+		}
+		hit.mScore += ((Number) posting.getProperty("score")).doubleValue();
+	    }
+	    // an item must have every term
+	    hits = termHits;
+	}
+
+	List<Hit> result = new ArrayList<Hit>(hits.values());
+	Collections.sort(result, new Comparator<Hit>() {
+	    public int compare(Hit h1, Hit h2) {
+		if (h1.mScore != h2.mScore) {
+		    return h1.mScore > h2.mScore ? -1 : 1;
+		}
+		return h1.mItemId > h2.mItemId ? -1 : (h1.mItemId == h2.mItemId ? 0 : 1);
+	    }
+	});
+	log.log(Level.FINE, "GeatteSearchIndex.search() : user = " + userNumber + ", terms = " + terms + ", hits = "
+		+ result.size());
+	return result;
+    }
+
+    /**
+     * Split text into lower case terms, short words and stop words are left
+     * out.
+     *
+     * @return terms in text order, a term appears as often as in the text
+     */
+    static List<String> tokenize(String text) {
+	List<String> terms = new ArrayList<String>();
+	if (text == null) {
+	    return terms;
+	}
+	for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+	    if (word.length() >= MIN_TERM_LENGTH && !STOP_WORDS.contains(word)) {
+		terms.add(word.length() > MAX_TERM_LENGTH ? word.substring(0, MAX_TERM_LENGTH) : word);
+	    }
+	}
+	return terms;
+    }
+
+    private static void addTerms(Map<String, Double> terms, String text, double weight) {
+	for (String term : tokenize(text)) {
+	    Double score = terms.get(term);
+	    terms.put(term, (score != null ? score : 0.0) + weight);
+	}
+    }
+
+    private static List<Entity> createPostings(Collection<String> users, Map<String, Double> terms, Long itemId,
+	    String source, Date createdDate) {
+	List<Entity> postings = new ArrayList<Entity>();
+	for (String user : users) {
+	    for (Map.Entry<String, Double> term : terms.entrySet()) {
+		String token = token(user, term.getKey());
+		Entity posting = new Entity(KeyFactory.createKey(KIND, token + "|" + itemId + "|" + source));
+		posting.setProperty("token", token);
+		posting.setProperty("itemId", itemId);
+		posting.setProperty("source", source);
+		posting.setProperty("score", term.getValue());
+		posting.setUnindexedProperty("createdDate", createdDate);
+		postings.add(posting);
+	    }
+	}
+	return postings;
+    }
+
+    private static void put(DatastoreService datastore, List<Entity> postings) {
+	for (int i = 0; i < postings.size(); i += MAX_ENTITIES_PER_CALL) {
+	    datastore.put(postings.subList(i, Math.min(i + MAX_ENTITIES_PER_CALL, postings.size())));
+	}
+    }
+
+    private static String token(String userNumber, String term) {
+	return userNumber + "|" + term;
+    }
+}
@@ -0,0 +1,142 @@
+package com.geatte.app.server;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.appengine.repackaged.org.json.JSONArray;
+import com.google.appengine.repackaged.org.json.JSONException;
+import com.google.appengine.repackaged.org.json.JSONObject;
+
+/**
+ * Search the items of a user by words of title, description and feedback.
+ *
+ * phoneNumber : number of the caller.
+ * countryCode* : country code of the caller, default 'us'.
+ * q : words to find, an item must have all of them.
+ * offset*, limit* : page of the ranked hits, limit is at most MAX_LIMIT.
+ *
+ * Returns the items of the page best first, the total number of hits, and
+ * next_offset when there are more hits.
+ */
+@SuppressWarnings("serial")
+public class GeatteSearchServlet extends HttpServlet {
+    private static final Logger log = Logger.getLogger(GeatteSearchServlet.class.getName());
+    private static final String ERROR_STATUS = "ERROR";
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 50;
+
+    @Override
+    public void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+	log.log(Level.INFO, "GeatteSearchServlet.doGet() : START GeatteSearchServlet.doGet()");
+	try {
+	    res.setContentType("application/json");
+
+	    String phoneNumber = req.getParameter(Config.DEV_PHONE_NUMBER_PARAM);
+	    phoneNumber = URLDecoder.decode((phoneNumber==null ? "" : phoneNumber), Config.ENCODE_UTF8);
+	    String countryCode = req.getParameter(Config.DEV_PHONE_COUNTRY_ISO_PARAM);
+	    countryCode = URLDecoder.decode((countryCode==null ? "us" : countryCode), Config.ENCODE_UTF8);
+	    String queryText = req.getParameter(Config.QUERY_SEARCH_PARAM);
+	    queryText = URLDecoder.decode((queryText==null ? "" : queryText), Config.ENCODE_UTF8);
+
+	    if (phoneNumber.isEmpty()) {
+		res.setStatus(400);
+		res.getWriter().println(ERROR_STATUS + " ( " + Config.DEV_PHONE_NUMBER_PARAM + "  parameter missing)");
+		log.warning("GeatteSearchServlet.doGet() : can not obtain phoneNumber from request!!");
+		return;
+	    }
+
+	    int offset;
+	    int limit;
+	    try {
+		offset = getIntParameter(req, Config.QUERY_OFFSET_PARAM, 0);
+		limit = getIntParameter(req, Config.QUERY_LIMIT_PARAM, DEFAULT_LIMIT);
+	    } catch (NumberFormatException nfe) {
+		res.setStatus(400);
+		res.getWriter().println(ERROR_STATUS + " (wrong format of " + Config.QUERY_OFFSET_PARAM + " or "
+			+ Config.QUERY_LIMIT_PARAM + ")");
+		log.warning("GeatteSearchServlet.doGet() : wrong format of offset or limit");
+		return;
+	    }
+	    offset = Math.max(0, offset);
+	    limit = Math.max(1, Math.min(MAX_LIMIT, limit));
+
+	    String userNumber = DeviceInfo.canonicalNumber(phoneNumber, countryCode);
+	    List<GeatteSearchIndex.Hit> hits = GeatteSearchIndex.search(userNumber, queryText);
+	    List<GeatteSearchIndex.Hit> page = hits.subList(Math.min(offset, hits.size()),
+		    Math.min(offset + limit, hits.size()));
+
+	    // only the items of the page are loaded
+	    List<Long> pageIds = new ArrayList<Long>();
+	    for (GeatteSearchIndex.Hit hit : page) {
+		pageIds.add(hit.getItemId());
+	    }
+	    Map<Long, GeatteInfo> itemsById = new HashMap<Long, GeatteInfo>();
+	    for (GeatteInfo item : GeatteInfoRepository.getItemInfoForIds(pageIds)) {
+		itemsById.put(item.getId(), item);
+	    }
+
+	    JSONArray itemArray = new JSONArray();
+	    for (GeatteSearchIndex.Hit hit : page) {
+		GeatteInfo item = itemsById.get(hit.getItemId());
+		if (item == null) {
+		    continue;
+		}
+		JSONObject jObject = new JSONObject();
+		try {
+		    jObject.put(Config.GEATTE_ID_PARAM, URLEncoder.encode(item.getId().toString(), Config.ENCODE_UTF8));
+		    jObject.put(Config.GEATTE_FROM_NUMBER_PARAM, URLEncoder.encode(item.getFromNumber(),
+			    Config.ENCODE_UTF8));
+		    jObject.put(Config.GEATTE_TO_NUMBER_PARAM, URLEncoder.encode((item.getToNumber() == null ? ""
+			    : item.getToNumber()), Config.ENCODE_UTF8));
+		    jObject.put(Config.GEATTE_TITLE_PARAM, URLEncoder.encode((item.getGeatteTitile() == null ? ""
+			    : item.getGeatteTitile()), Config.ENCODE_UTF8));
+		    jObject.put(Config.GEATTE_DESC_PARAM, URLEncoder.encode((item.getGeatteDesc() == null ? ""
+			    : item.getGeatteDesc()), Config.ENCODE_UTF8));
+		    jObject.put(Config.GEATTE_CREATED_DATE_PARAM, URLEncoder.encode(item.getCreatedDateStr(),
+			    Config.ENCODE_UTF8));
+		    jObject.put("score", hit.getScore());
+		    itemArray.put(jObject);
+		} catch (JSONException e) {
+		    log.warning("GeatteSearchServlet.doGet() : json processing error for geatteId = " + item.getId());
+		}
+	    }
+
+	    JSONObject retObject = new JSONObject();
+	    retObject.put("items", itemArray);
+	    retObject.put("total", hits.size());
+	    if (offset + limit < hits.size()) {
+		retObject.put("next_offset", offset + limit);
+	    }
+
+	    log.log(Level.INFO, "GeatteSearchServlet.doGet() : user = " + userNumber + ", q = " + queryText
+		    + ", hits = " + hits.size() + ", returned = " + itemArray.length());
+
+	    PrintWriter out = res.getWriter();
+	    retObject.write(out);
+	    log.log(Level.INFO, "GeatteSearchServlet.doGet() : END GeatteSearchServlet.doGet()");
+	} catch (Exception ex) {
+	    throw new ServletException(ex);
+	}
+    }
+
+    private static int getIntParameter(HttpServletRequest req, String name, int defaultValue) {
+	String value = req.getParameter(name);
+	if (value == null || value.isEmpty()) {
+	    return defaultValue;
+	}
+	return Integer.parseInt(value);
+    }
+}
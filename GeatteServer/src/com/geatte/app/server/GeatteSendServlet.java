@@ -6,8 +6,11 @@ import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -21,8 +24,14 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.geatte.app.server.GeatteAllGetServlet.REQ_TYPE;
+import com.geatte.app.server.PushRateController.Priority;
+import com.geatte.app.server.PushRateController.Transport;
 import com.geatte.app.shared.CommonUtils;
 import com.google.android.c2dm.server.C2DMessaging;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
 import com.google.appengine.repackaged.com.google.common.util.Base64;
 import com.google.appengine.repackaged.org.json.JSONArray;
 import com.google.appengine.repackaged.org.json.JSONObject;
@@ -35,6 +44,19 @@ public class GeatteSendServlet extends HttpServlet {
 
     private static final Logger log = Logger.getLogger(GeatteSendServlet.class.getName());
     private static final int MAX_RETRY = 3;
+    private static final int MAX_DEFER = 20;
+    private static final long MIN_DEFER_MILLIS = 1000;
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final String ERR_NOT_REGISTERED = "NotRegistered";
+    private static final String ERR_INVALID_REGISTRATION = "InvalidRegistration";
+    private static final String ERR_URBAN_REJECTED = "UrbanRejected";
+    /**
+     * Errors sending again does not fix, the rest of C2DM errors and any
+     * network error are transient.
+     */
+    private static final Set<String> PERMANENT_ERRORS = new HashSet<String>(Arrays.asList(ERR_NOT_REGISTERED,
+	    ERR_INVALID_REGISTRATION, "MismatchSenderId", "MessageTooBig", "MissingCollapseKey", "MissingRegistration",
+	    ERR_URBAN_REJECTED));
     public static final String RETRY_COUNT = "X-AppEngine-TaskRetryCount";
     public static final String URI = "/tasks/geattesend";
     public static enum MSG_TYPE {NEW_ITEM, VOTE, MESSAGE}
@@ -43,9 +65,11 @@ public class GeatteSendServlet extends HttpServlet {
     protected void doPost(HttpServletRequest req, HttpServletResponse resp)
     throws ServletException, IOException {
 
+	String queueName = GeatteMetrics.taskStarted(req);
 	String geatteId = req.getParameter(Config.GEATTE_ID_PARAM);
 	String fromNumber = req.getParameter(Config.GEATTE_FROM_NUMBER_PARAM);
 	String toNumbers = req.getParameter(Config.GEATTE_TO_NUMBER_PARAM);
+	String toNumbersParam = (toNumbers == null ? "" : toNumbers);
 	String defaultCountryCode = req.getParameter(Config.GEATTE_COUNTRY_ISO_PARAM);
 	String collapse = req.getParameter(C2DMessaging.PARAM_COLLAPSE_KEY);
 	boolean delayWhenIdle = null != req.getParameter(C2DMessaging.PARAM_DELAY_WHILE_IDLE);
@@ -65,6 +89,7 @@ public class GeatteSendServlet extends HttpServlet {
 	    int retryCnt = Integer.parseInt(retryCount);
 	    if (retryCnt > MAX_RETRY) {
 		log.severe("GeatteSendServlet:doPost() : Too many retries, drop geatte for :" + toNumbers);
+		GeatteMetrics.taskFinished(queueName);
 		resp.setStatus(200);
 		return; // will not try again.
 	    }
@@ -72,6 +97,24 @@ public class GeatteSendServlet extends HttpServlet {
 
 	List<String> numberList = CommonUtils.splitStringBySemiColon(toNumbers);
 	List<DeviceInfo> allDevices = getDevices(numberList, defaultCountryCode);
+	String toDevices = req.getParameter(Config.GEATTE_TO_DEVICE_PARAM);
+	if (toDevices != null) {
+	    // a deferred send goes only to the devices it was deferred for
+	    allDevices = filterDevices(allDevices, toDevices);
+	}
+
+	// votes go before new items, take tokens for all devices so a task is sent whole or not at all
+	Priority priority = GeatteMetrics.QUEUE_VOTE.equals(queueName) ? Priority.HIGH : Priority.NORMAL;
+	long waitMillis = acquireTokens(allDevices, priority);
+	if (waitMillis > 0) {
+	    log.info("GeatteSendServlet:doPost() : push rate reached, defer geatte for " + waitMillis + "ms to numbers = "
+		    + toNumbers);
+	    deferTask(req, queueName, toNumbersParam, req.getParameter(Config.GEATTE_TO_DEVICE_PARAM), true, waitMillis);
+	    GeatteMetrics.taskFinished(queueName);
+	    resp.setStatus(200);
+	    return;
+	}
+
 	if (geatteId != null) {
 	    saveDevicesToItem(allDevices, geatteId);
 	}
@@ -79,6 +122,7 @@ public class GeatteSendServlet extends HttpServlet {
 	Map<String, String[]> params = req.getParameterMap();
 
 	StringBuilder errorMsg = new StringBuilder();
+	List<DeviceInfo> unsentDevices = new ArrayList<DeviceInfo>();
 	boolean sentOk = false;
 	for (DeviceInfo device : allDevices) {
 	    try {
@@ -89,38 +133,68 @@ public class GeatteSendServlet extends HttpServlet {
 		    sentOk = doSendC2DM(collapse, delayWhenIdle, params, device);
 		}
 
+		InstanceMetrics.get().pushDone(transportName(device), sentOk);
 		log.info("GeatteSendServlet:doPost() sendNoRetry's result : " + sentOk + ", deviceRegistrationID = "
 			+ device.getDeviceRegistrationID() + ", phoneNumber = " + device.getPhoneNumber());
-		// if (sentOk) {
-		// } else {
-		// resp.setStatus(500); // retry this task
-		// }
+		if (!sentOk) {
+		    // throttled or retriable error, send again later to this device only
+		    unsentDevices.add(device);
+		}
 	    } catch (IOException ex) {
+		InstanceMetrics.get().pushDone(transportName(device), false);
 		log.log(Level.WARNING, "GeatteSendServlet:doPost() : Error seding message to device", ex);
-		errorMsg.append("#").append(("Non-retriable error:" + ex.toString()).getBytes());
+		errorMsg.append("#").append(ex.toString());
+		String error = ex.getMessage();
+		if (ERR_NOT_REGISTERED.equals(error) || ERR_INVALID_REGISTRATION.equals(error)) {
+		    pruneDevice(device);
+		} else if (!PERMANENT_ERRORS.contains(error)) {
+		    // deferred with the throttled devices, a failed task would push again to the devices already sent
+		    unsentDevices.add(device);
+		}
 	    }
 	    //log.log(Level.INFO, "sending geatte to device", device.getDeviceRegistrationID() + ", sentOk = " + sentOk);
 	}
-	if (errorMsg.toString().isEmpty()) {
-	    resp.setStatus(200);
-	    resp.getOutputStream().write("OK".getBytes());
+	Set<String> unsentNumbers = new LinkedHashSet<String>();
+	if (!unsentDevices.isEmpty()) {
+	    Set<String> unsentRegIds = new LinkedHashSet<String>();
+	    for (DeviceInfo device : unsentDevices) {
+		unsentNumbers.add(device.getPhoneNumber());
+		unsentRegIds.add(device.getDeviceRegistrationID());
+	    }
+	    long retryMillis = Math.max(MIN_DEFER_MILLIS, PushRateController.get().admit(priority));
+	    deferTask(req, queueName, URLEncoder.encode(CommonUtils.joinStringBySemiColon(unsentNumbers),
+		    Config.ENCODE_UTF8), URLEncoder.encode(CommonUtils.joinStringBySemiColon(unsentRegIds),
+			    Config.ENCODE_UTF8), false, retryMillis);
+	}
+	GeatteMetrics.taskFinished(queueName);
+	resp.setStatus(200);
+	resp.getOutputStream().write("OK".getBytes());
+	if (errorMsg.length() == 0) {
 	    log.info("GeatteSendServlet:doPost() : send geatte to all numbers SUCCEEDED");
 	} else {
-	    resp.setStatus(500);
-	    resp.getOutputStream().write(errorMsg.toString().getBytes());
-	    log.log(Level.WARNING, "GeatteSendServlet:doPost() : send geatte to all numbers with error = " + errorMsg.toString());
+	    log.log(Level.WARNING, "GeatteSendServlet:doPost() : send geatte failed, deferred for numbers = " + unsentNumbers
+		    + ", error = " + errorMsg.toString());
 	}
     }
 
     private boolean doSendC2DM(String collapse, boolean delayWhenIdle, Map<String, String[]> params, DeviceInfo device)
     throws IOException {
 	boolean sentOk;
+	long start = System.currentTimeMillis();
 	sentOk = C2DMessaging.get(getServletContext()).sendNoRetry(device.getDeviceRegistrationID(),
 		collapse, params, delayWhenIdle);
+	if (sentOk) {
+	    PushRateController.get().onSuccess(Transport.C2DM, System.currentTimeMillis() - start);
+	}
 	return sentOk;
     }
 
-    private boolean doSendIOS(Map<String, String[]> params, DeviceInfo deviceInfo) {
+    /**
+     * @return false when Urban is throttling or can not be reached
+     * @throws IOException when Urban rejects the push, sending again does
+     *         not help
+     */
+    private boolean doSendIOS(Map<String, String[]> params, DeviceInfo deviceInfo) throws IOException {
 	try {
 	    MSG_TYPE msgType = MSG_TYPE.NEW_ITEM;
 	    URL url = new URL("https://go.urbanairship.com/api/push/");
@@ -150,7 +224,7 @@ public class GeatteSendServlet extends HttpServlet {
 
 	    for (Object keyObj : params.keySet()) {
 		String key = (String) keyObj;
-		if (key.startsWith("data.")) {
+		if (key.startsWith("data.") && !GeattePushPayload.isInlineContent(key)) {
 		    if (key.equals("data.geatteid")) {
 			msgType = MSG_TYPE.NEW_ITEM;
 		    } else if (key.equals("data.geatte_vote_resp")) {
@@ -178,26 +252,162 @@ public class GeatteSendServlet extends HttpServlet {
 	    osw.write(object.toString());
 	    osw.close();
 
+	    long start = System.currentTimeMillis();
 	    int responseCode = connection.getResponseCode();
+	    if (responseCode == HttpServletResponse.SC_SERVICE_UNAVAILABLE || responseCode == SC_TOO_MANY_REQUESTS) {
+		PushRateController.get().onThrottled(Transport.URBAN,
+			PushRateController.parseRetryAfter(connection.getHeaderField("Retry-After")));
+		log.log(Level.WARNING, "GeatteSendServlet.doSendIOS() : PUSH to Urban throttled, resp = " + responseCode);
+		return false;
+	    }
+	    if (responseCode >= 500) {
+		log.log(Level.WARNING, "GeatteSendServlet.doSendIOS() : PUSH to Urban failed, resp = " + responseCode);
+		return false;
+	    }
+	    if (responseCode >= 400) {
+		throw new IOException(ERR_URBAN_REJECTED);
+	    }
+	    PushRateController.get().onSuccess(Transport.URBAN, System.currentTimeMillis() - start);
 	    log.log(Level.INFO, "GeatteSendServlet.doSendIOS() : PUSH to Urban OK, resp = " + responseCode);
 	    return true;
-	} catch (Exception e) {
+	} catch (IOException e) {
+	    if (ERR_URBAN_REJECTED.equals(e.getMessage())) {
+		throw e;
+	    }
 	    log.log(Level.WARNING, "GeatteSendServlet.doSendIOS() : Error PUSH to Urban.", e);
+	    return false;
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "GeatteSendServlet.doSendIOS() : Error building PUSH to Urban.", e);
+	    throw new IOException(ERR_URBAN_REJECTED);
 	}
-	return false;
+    }
+
+    /**
+     * Remove a registration C2DM no longer knows, the same as SendServlet
+     * does, so later sends skip the device.
+     */
+    private void pruneDevice(DeviceInfo device) {
+	PersistenceManager pm = DBHelper.getPMF(getServletContext()).getPersistenceManager();
+	try {
+	    DeviceInfo deviceInfo = pm.getObjectById(DeviceInfo.class, device.getKey());
+	    // the device may have registered again since it was resolved
+	    if (device.getDeviceRegistrationID().equals(deviceInfo.getDeviceRegistrationID())) {
+		pm.deletePersistent(deviceInfo);
+		log.log(Level.INFO, "GeatteSendServlet.pruneDevice() : deleted deviceInfo for "
+			+ device.getDeviceRegistrationID());
+	    }
+	} catch (JDOObjectNotFoundException e) {
+	    log.info("GeatteSendServlet.pruneDevice() : deviceInfo already deleted for " + device.getDeviceRegistrationID());
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "GeatteSendServlet.pruneDevice() : Error deleting deviceInfo for "
+		    + device.getDeviceRegistrationID(), e);
+	} finally {
+	    pm.close();
+	}
+	DeviceDirectory.get().invalidate(device.getPhoneNumber(), device.getCountryCode());
+    }
+
+    private static List<DeviceInfo> filterDevices(List<DeviceInfo> devices, String toDevices) {
+	try {
+	    toDevices = URLDecoder.decode(toDevices, Config.ENCODE_UTF8);
+	} catch (UnsupportedEncodingException ex) {
+	    log.log(Level.WARNING, "GeatteSendServlet.filterDevices() : Error", ex);
+	}
+	Set<String> regIds = new HashSet<String>(CommonUtils.splitStringBySemiColon(toDevices));
+	List<DeviceInfo> filtered = new ArrayList<DeviceInfo>();
+	for (DeviceInfo device : devices) {
+	    if (regIds.contains(device.getDeviceRegistrationID())) {
+		filtered.add(device);
+	    }
+	}
+	return filtered;
+    }
+
+    private static String transportName(DeviceInfo device) {
+	Transport transport = device.getType().equalsIgnoreCase(DeviceInfo.TYPE_IOS) ? Transport.URBAN : Transport.C2DM;
+	return transport.toString().toLowerCase();
+    }
+
+    private long acquireTokens(List<DeviceInfo> devices, Priority priority) {
+	int iosCount = 0;
+	for (DeviceInfo device : devices) {
+	    if (device.getType().equalsIgnoreCase(DeviceInfo.TYPE_IOS)) {
+		iosCount++;
+	    }
+	}
+	int c2dmCount = devices.size() - iosCount;
+
+	PushRateController controller = PushRateController.get();
+	long waitMillis = controller.tryAcquire(Transport.C2DM, priority, c2dmCount);
+	if (waitMillis > 0) {
+	    return waitMillis;
+	}
+	waitMillis = controller.tryAcquire(Transport.URBAN, priority, iosCount);
+	if (waitMillis > 0) {
+	    controller.release(Transport.C2DM, c2dmCount);
+	}
+	return waitMillis;
+    }
+
+    /**
+     * Add a copy of this task to send later, the copy is not named so it
+     * does not clash with a named task.
+     *
+     * @param toNumbers numbers to send to, in the form of the task parameter
+     * @param toDevices registration ids of the devices to send to, null for
+     *        all devices of the numbers
+     * @param keepGeatteId false when devices are already saved to the item
+     */
+    private void deferTask(HttpServletRequest req, String queueName, String toNumbers, String toDevices,
+	    boolean keepGeatteId, long delayMillis) {
+	int deferCount = 0;
+	try {
+	    String deferCountStr = req.getParameter(Config.TASK_DEFER_COUNT_PARAM);
+	    deferCount = (deferCountStr == null ? 0 : Integer.parseInt(deferCountStr));
+	} catch (NumberFormatException nfe) {
+	    log.warning("GeatteSendServlet.deferTask() : wrong format of " + Config.TASK_DEFER_COUNT_PARAM);
+	}
+	if (deferCount >= MAX_DEFER) {
+	    log.severe("GeatteSendServlet.deferTask() : Too many defers, drop geatte for :" + toNumbers);
+	    return;
+	}
+
+	TaskOptions url = TaskOptions.Builder.withUrl(URI)
+	.param(Config.GEATTE_TO_NUMBER_PARAM, toNumbers)
+	.param(Config.TASK_DEFER_COUNT_PARAM, Integer.toString(deferCount + 1))
+	.countdownMillis(delayMillis);
+	if (toDevices != null) {
+	    url.param(Config.GEATTE_TO_DEVICE_PARAM, toDevices);
+	}
+	for (Object keyObj : req.getParameterMap().keySet()) {
+	    String key = (String) keyObj;
+	    if (key.equals(Config.GEATTE_TO_NUMBER_PARAM) || key.equals(Config.GEATTE_TO_DEVICE_PARAM)
+		    || key.equals(Config.TASK_DEFER_COUNT_PARAM)
+		    || key.equals(Config.TASK_ENQUEUED_AT_PARAM) || (!keepGeatteId && key.equals(Config.GEATTE_ID_PARAM))) {
+		continue;
+	    }
+	    url.param(key, req.getParameter(key));
+	}
+	String deferQueue = (queueName != null ? queueName : GeatteMetrics.QUEUE_SEND);
+	GeatteMetrics.taskAdded(url, deferQueue, GeatteMetrics.getEnqueuedAt(req));
+	QueueFactory.getQueue(deferQueue).add(url);
     }
 
     private List<DeviceInfo> getDevices(List<String> numberList, String defaultCountryCode) {
 	PersistenceManager pm = DBHelper.getPMF(getServletContext()).getPersistenceManager();
 	List<DeviceInfo> allDevices = new ArrayList<DeviceInfo>();
 	try {
+	    Map<String, List<DeviceInfo>> devicesByNumber = DeviceDirectory.get().resolve(pm, numberList, defaultCountryCode);
+	    // a device listed under two forms of the same number gets one push
+	    Set<Key> deviceKeys = new HashSet<Key>();
 	    for (String number : numberList) {
-		List<DeviceInfo> devicesForNumber = DeviceInfo.getDeviceInfoForNumber(pm, number, defaultCountryCode);
-		if (devicesForNumber != null) {
-		    allDevices.addAll(devicesForNumber);
+		for (DeviceInfo device : devicesByNumber.get(number)) {
+		    if (deviceKeys.add(device.getKey())) {
+			allDevices.add(device);
+		    }
 		}
-		log.info("GeatteSendServlet:getDevices() : get devices for number = " + number);
 	    }
+	    log.info("GeatteSendServlet:getDevices() : get " + allDevices.size() + " devices for numbers = " + numberList);
 	} catch (Exception e) {
 	    log.log(Level.WARNING, "GeatteSendServlet:getDevices() : Error loading devices ", e);
 	} finally {
@@ -219,6 +429,9 @@ public class GeatteSendServlet extends HttpServlet {
 	    GeatteInfo geatte = pm.getObjectById(GeatteInfo.class, id);
 	    geatte.setToDeviceKeys(phones);
 	    pm.makePersistent(geatte);
+	    GeatteChange.appendChanges(pm, phones, REQ_TYPE.FRIEND_ITEMS, geatteId);
+	    // recipients can now find the item
+	    GeatteIndexServlet.submitIndexItemTask(geatteId);
 	    log.info("GeatteSendServlet.saveDevicesToItem() : obtain geatte for id = " + geatteId + ", save device phone numbers to db");
 	} catch (JDOObjectNotFoundException ex) {
 	    log.warning("GeatteSendServlet.saveDevicesToItem() : can not obtain geatte from db for id = " + geatteId);
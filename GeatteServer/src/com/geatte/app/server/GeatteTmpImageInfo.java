@@ -43,6 +43,10 @@ public class GeatteTmpImageInfo {
 	return createdDate;
     }
 
+    void setCreatedDate(Date createdDate) {
+	this.createdDate = createdDate;
+    }
+
     public void setImage(Blob image) {
 	this.image = image;
     }
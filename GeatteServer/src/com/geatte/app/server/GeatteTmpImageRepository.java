@@ -0,0 +1,73 @@
+package com.geatte.app.server;
+
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jdo.PersistenceManager;
+
+import com.google.appengine.api.datastore.Blob;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+
+/**
+ * Reads and deletes of GeatteTmpImageInfo through the low-level datastore API.
+ *
+ * The image id is the key name, so both are a single datastore call instead
+ * of a JDO query on the id.
+ */
+public class GeatteTmpImageRepository {
+    private static final Logger log = Logger.getLogger(GeatteTmpImageRepository.class.getName());
+    private static final String KIND = GeatteTmpImageInfo.class.getSimpleName();
+
+    /**
+     * Get an uploaded image through the read layer in use.
+     *
+     * @return image, or null if it does not exist
+     */
+    public static GeatteTmpImageInfo getImageInfoForImageId(PersistenceManager pm, String imageId) {
+	if (!GeatteDatastore.isLowLevel()) {
+	    return GeatteTmpImageInfo.getImageInfoForImageId(pm, imageId);
+	}
+	return getImageInfoForImageId(imageId);
+    }
+
+    /**
+     * Get an uploaded image with one datastore get.
+     *
+     * @return image, or null if it does not exist
+     */
+    public static GeatteTmpImageInfo getImageInfoForImageId(String imageId) {
+	try {
+	    Entity entity = GeatteDatastore.datastore().get(createKey(imageId));
+	    GeatteTmpImageInfo imageInfo = new GeatteTmpImageInfo(imageId, (Blob) entity.getProperty("image"));
+	    imageInfo.setCreatedDate((Date) entity.getProperty("createdDate"));
+	    return imageInfo;
+	} catch (EntityNotFoundException e) {
+	    return null;
+	}
+    }
+
+    /**
+     * Delete an uploaded image through the layer in use, an image that does
+     * not exist is ignored.
+     */
+    public static void deleteImageInfo(PersistenceManager pm, String imageId) {
+	if (!GeatteDatastore.isLowLevel()) {
+	    GeatteTmpImageInfo imageInfo = GeatteTmpImageInfo.getImageInfoForImageId(pm, imageId);
+	    if (imageInfo != null) {
+		pm.deletePersistent(imageInfo);
+	    }
+	    return;
+	}
+	// a blind delete, no need to read the image first
+	GeatteDatastore.datastore().delete(createKey(imageId));
+	log.log(Level.FINE, "GeatteTmpImageRepository.deleteImageInfo() : deleted image id = " + imageId);
+    }
+
+    private static Key createKey(String imageId) {
+	return KeyFactory.createKey(KIND, imageId);
+    }
+}
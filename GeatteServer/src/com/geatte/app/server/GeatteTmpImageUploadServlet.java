@@ -71,7 +71,7 @@ public class GeatteTmpImageUploadServlet extends HttpServlet {
 		    }
 		    log.log(Level.INFO, "Got a form field: " + item.getFieldName());
 		} else {
-		    mImageBlobField = new Blob(IOUtils.toByteArray(stream));
+		    mImageBlobField = new Blob(GeatteImageCodec.recompress(IOUtils.toByteArray(stream)));
 		    log.log(Level.INFO, "GeatteTmpImageUpload.doPOST() : user sent an image file : " + item.getFieldName() + ", name : " + item.getName());
 		}
 	    }
@@ -125,7 +125,9 @@ public class GeatteTmpImageUploadServlet extends HttpServlet {
 	PersistenceManager pm = DBHelper.getPMF(getServletContext()).getPersistenceManager();
 
 	try {
-	    GeatteTmpImageInfo imageInfo =  new GeatteTmpImageInfo(mImageIdField, mImageBlobField);
+	    // bytes first, the entity tells GeatteUplaodTextOnlyServlet the image is there
+	    BlobStore.get().put(BlobStore.tmpImageName(mImageIdField), mImageBlobField.getBytes());
+	    GeatteTmpImageInfo imageInfo =  new GeatteTmpImageInfo(mImageIdField, null);
 
 	    log.log(Level.INFO, "GeatteTmpImageUpload.saveToDb() : create a new GeatteTmpImageInfo");
 
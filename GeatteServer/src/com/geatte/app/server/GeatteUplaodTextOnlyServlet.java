@@ -5,7 +5,6 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -23,10 +22,9 @@ import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.fileupload.util.Streams;
 
+import com.geatte.app.server.GeatteAllGetServlet.REQ_TYPE;
 import com.google.android.c2dm.server.C2DMessaging;
 import com.google.appengine.api.datastore.Blob;
-import com.google.appengine.api.datastore.Key;
-import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.taskqueue.Queue;
 import com.google.appengine.api.taskqueue.QueueFactory;
 import com.google.appengine.api.taskqueue.TaskHandle;
@@ -56,6 +54,7 @@ public class GeatteUplaodTextOnlyServlet extends HttpServlet {
     private String mGeatteDescField = null;
     private String mImageRandomId = null;
     private Blob mImageBlobField = null;
+    private String mGeatteCreatedDateField = null;
 
     @Override
     public void doPost(HttpServletRequest req, HttpServletResponse resp)
@@ -162,7 +161,9 @@ public class GeatteUplaodTextOnlyServlet extends HttpServlet {
 		log.severe("GeatteUplaodTextOnlyServlet.doPOST() : Missing image info, can not load from image table with mImageRandomId = " + mImageRandomId);
 		return;
 	    }
-	    mImageBlobField = imageInfo.getImage();
+	    byte[] imageBytes = BlobStore.get().get(BlobStore.tmpImageName(imageInfo.getId()));
+	    // images uploaded before the BlobStore are on the entity
+	    mImageBlobField = imageBytes != null ? new Blob(imageBytes) : imageInfo.getImage();
 
 	    if (mImageBlobField == null) {
 		resp.setStatus(400);
@@ -175,9 +176,9 @@ public class GeatteUplaodTextOnlyServlet extends HttpServlet {
 	    String geatteId = null;
 	    if ((geatteId = saveToDb(resp)) != null ) {
 		log.log(Level.INFO, "GeatteUplaodTextOnlyServlet.doPOST() : ready to send geatte '" + geatteId  + "' to phoneNumbers = " + mToNumberField);
-		// the message push to device
-		Map<String, String[]> params = new HashMap<String, String[]>();
-		params.put("data.geatteid", new String[]{geatteId});
+		// the message push to device, carries what the client shows so it needs no fetch
+		Map<String, String[]> params = GeattePushPayload.newItemParams(geatteId, mFromNumberField,
+			mGeatteTitleField, mGeatteDescField, mGeatteCreatedDateField, mImageBlobField.getBytes());
 
 		submitGeatteTask(geatteId, mFromNumberField, mToNumberField, params);
 		log.log(Level.INFO, "GeatteUplaodTextOnlyServlet.doPOST() : sent geatte '" + geatteId  + "' to phoneNumbers = " + mToNumberField);
@@ -212,7 +213,7 @@ public class GeatteUplaodTextOnlyServlet extends HttpServlet {
 	}
 	PersistenceManager pm = DBHelper.getPMF(ctx).getPersistenceManager();
 	try {
-	    GeatteTmpImageInfo imageInfo = GeatteTmpImageInfo.getImageInfoForImageId(pm, imageRandomId);
+	    GeatteTmpImageInfo imageInfo = GeatteTmpImageRepository.getImageInfoForImageId(pm, imageRandomId);
 
 	    //retries
 	    if (imageInfo == null) {
@@ -220,7 +221,7 @@ public class GeatteUplaodTextOnlyServlet extends HttpServlet {
 		while (retries < 2 && imageInfo == null) {
 		    try {
 			Thread.sleep(500);
-			imageInfo = GeatteTmpImageInfo.getImageInfoForImageId(pm, imageRandomId);
+			imageInfo = GeatteTmpImageRepository.getImageInfoForImageId(pm, imageRandomId);
 			retries++;
 		    } catch (InterruptedException e) {
 			// ignore
@@ -247,18 +248,20 @@ public class GeatteUplaodTextOnlyServlet extends HttpServlet {
 	    if (mGeatteIdField == null) {
 		log.log(Level.INFO, "GeatteUplaodTextOnlyServlet.saveToDb() : create a new GeatteInfo");
 
-		geatteInfo = new GeatteInfo(mImageBlobField);
+		// image bytes go to the BlobStore once the item has an id
+		geatteInfo = new GeatteInfo((Blob) null);
 	    } else {
 		log.log(Level.INFO, "GeatteUplaodTextOnlyServlet.saveToDb() : find a GeatteInfo by key = " + mGeatteIdField);
 
-		Key key = KeyFactory.createKey(GeatteInfo.class.getSimpleName(), mGeatteIdField);
 		try {
-		    geatteInfo = pm.getObjectById(GeatteInfo.class, key);
+		    geatteInfo = pm.getObjectById(GeatteInfo.class, Long.parseLong(mGeatteIdField));
 		} catch (JDOObjectNotFoundException e) {
 		    log.log(Level.SEVERE, "GeatteUplaodTextOnlyServlet.saveToDb() : failed to get GeatteInfo by key = " + mGeatteIdField);
 		}
-		// update image
-		geatteInfo.setImage(mImageBlobField);
+		// the id is known, bytes first so a failed put leaves the item and its old image as they were
+		BlobStore.get().put(BlobStore.itemImageName(geatteInfo.getId()), mImageBlobField.getBytes());
+		// update image, the copy on the entity from before the BlobStore goes away
+		geatteInfo.setImage(null);
 	    }
 
 	    geatteInfo.setFromNumber(this.mFromNumberField);
@@ -268,6 +271,37 @@ public class GeatteUplaodTextOnlyServlet extends HttpServlet {
 	    geatteInfo.setGeatteDesc(this.mGeatteDescField);
 
 	    pm.makePersistent(geatteInfo);
+	    mGeatteCreatedDateField = geatteInfo.getCreatedDateStr();
+	    if (mGeatteIdField == null) {
+		boolean imageSaved = false;
+		try {
+		    BlobStore.get().put(BlobStore.itemImageName(geatteInfo.getId()), mImageBlobField.getBytes());
+		    imageSaved = true;
+		} finally {
+		    if (!imageSaved) {
+			// a new item has no id before it is saved, remove it again rather than keep it without image,
+			// the put fails with IOException or with the datastore's runtime exceptions
+			try {
+			    pm.deletePersistent(geatteInfo);
+			    log.log(Level.SEVERE, "GeatteUplaodTextOnlyServlet.saveToDb() : can not store image, deleted new geatteInfo id = "
+				    + geatteInfo.getId());
+			} catch (RuntimeException e) {
+			    log.log(Level.SEVERE, "GeatteUplaodTextOnlyServlet.saveToDb() : can not store image nor delete new geatteInfo id = "
+				    + geatteInfo.getId(), e);
+			}
+		    }
+		}
+	    } else {
+		GeatteImageCache.get().invalidate(geatteInfo.getId());
+	    }
+
+	    // let owner and recipients who already got this item pick up the change on next sync
+	    String geatteId = geatteInfo.getId().toString();
+	    GeatteChange.appendChangeOrRetry(pm, geatteInfo.getFromNumber(), REQ_TYPE.MY_ITEMS, geatteId);
+	    if (mGeatteIdField != null) {
+		GeatteChange.appendChanges(pm, geatteInfo.getToDeviceNumbers(), REQ_TYPE.FRIEND_ITEMS, geatteId);
+	    }
+	    GeatteIndexServlet.submitIndexItemTask(geatteId);
 
 	    log.log(Level.INFO, "GeatteUplaodTextOnlyServlet.saveToDb() : Saved geatteInfo fromNumber = " + mFromNumberField
 		    + ", toNumber = " + mToNumberField + ", geatteTitile = " + mGeatteTitleField
@@ -290,7 +324,7 @@ public class GeatteUplaodTextOnlyServlet extends HttpServlet {
 	log.log(Level.INFO, "GeatteUplaodTextOnlyServlet.submitGeatteTask() : START submit geatte to " + toNumbers);
 	boolean delayWhileIdle = true;
 	String collapseKey = Integer.toString((int)(Math.random()*5000));
-	Queue dmQueue = QueueFactory.getQueue("geatteSend");
+	Queue dmQueue = QueueFactory.getQueue(GeatteMetrics.QUEUE_SEND);
 	//Queue dmQueue = QueueFactory.getDefaultQueue();
 	try {
 	    TaskOptions url = TaskOptions.Builder.withUrl(GeatteSendServlet.URI)
@@ -311,6 +345,7 @@ public class GeatteUplaodTextOnlyServlet extends HttpServlet {
 	    //long jitter = (int) Math.random() * DATAMESSAGING_MAX_JITTER_MSEC;
 	    //url.countdownMillis(jitter);
 
+	    GeatteMetrics.taskAdded(url, GeatteMetrics.QUEUE_SEND, null);
 	    TaskHandle add = dmQueue.add(url);
 	    log.log(Level.INFO, "GeatteUplaodTextOnlyServlet.submitGeatteTask() : add one task to queue, url = " + url.getUrl());
 	} catch (UnsupportedEncodingException e) {
@@ -323,7 +358,7 @@ public class GeatteUplaodTextOnlyServlet extends HttpServlet {
 
     private void purgeImageTask(String imageId) {
 	log.log(Level.INFO, "GeatteUplaodTextOnlyServlet.purgeImageTask() : START purge image " + imageId);
-	Queue dmQueue = QueueFactory.getQueue("geatteImagePurge");
+	Queue dmQueue = QueueFactory.getQueue(GeatteMetrics.QUEUE_PURGE);
 	try {
 	    TaskOptions url = TaskOptions.Builder.withUrl(GeatteImagePurgeServlet.URI)
 	    .param(Config.GEATTE_IMAGE_RANDOM_ID_PARAM, imageId);
@@ -332,6 +367,7 @@ public class GeatteUplaodTextOnlyServlet extends HttpServlet {
 	    //long jitter = (int) Math.random() * DATAMESSAGING_MAX_JITTER_MSEC;
 	    //url.countdownMillis(jitter);
 
+	    GeatteMetrics.taskAdded(url, GeatteMetrics.QUEUE_PURGE, null);
 	    TaskHandle add = dmQueue.add(url);
 	    log.log(Level.INFO, "GeatteUplaodTextOnlyServlet.purgeImageTask() : add one task to queue, url = " + url.getUrl());
 	} catch (Exception e) {
@@ -5,7 +5,6 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -23,10 +22,9 @@ import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.fileupload.util.Streams;
 import org.apache.commons.io.IOUtils;
 
+import com.geatte.app.server.GeatteAllGetServlet.REQ_TYPE;
 import com.google.android.c2dm.server.C2DMessaging;
 import com.google.appengine.api.datastore.Blob;
-import com.google.appengine.api.datastore.Key;
-import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.taskqueue.Queue;
 import com.google.appengine.api.taskqueue.QueueFactory;
 import com.google.appengine.api.taskqueue.TaskHandle;
@@ -54,6 +52,7 @@ public class GeatteUploadServlet extends HttpServlet {
     private String mGeatteTitleField = null;
     private String mGeatteDescField = null;
     private Blob mImageBlobField = null;
+    private String mGeatteCreatedDateField = null;
 
 
     @Deprecated
@@ -181,7 +180,7 @@ public class GeatteUploadServlet extends HttpServlet {
 		    }
 		    log.log(Level.INFO, "Got a form field: " + item.getFieldName());
 		} else {
-		    mImageBlobField = new Blob(IOUtils.toByteArray(stream));
+		    mImageBlobField = new Blob(GeatteImageCodec.recompress(IOUtils.toByteArray(stream)));
 		    log.log(Level.INFO, "GeatteUploadServlet.doPOST() : user sent an image file : " + item.getFieldName() + ", name : " + item.getName());
 		}
 	    }
@@ -234,9 +233,9 @@ public class GeatteUploadServlet extends HttpServlet {
 	    String geatteId = null;
 	    if ((geatteId = saveToDb(resp)) != null ) {
 		log.log(Level.INFO, "GeatteUploadServlet.doPOST() : ready to send geatte '" + geatteId  + "' to phoneNumbers = " + mToNumberField);
-		// the message push to device
-		Map<String, String[]> params = new HashMap<String, String[]>();
-		params.put("data.geatteid", new String[]{geatteId});
+		// the message push to device, carries what the client shows so it needs no fetch
+		Map<String, String[]> params = GeattePushPayload.newItemParams(geatteId, mFromNumberField,
+			mGeatteTitleField, mGeatteDescField, mGeatteCreatedDateField, mImageBlobField.getBytes());
 
 		submitGeatteTask(mFromNumberField, mToNumberField, params);
 		log.log(Level.INFO, "GeatteUploadServlet.doPOST() : sent geatte '" + geatteId  + "' to phoneNumbers = " + mToNumberField);
@@ -272,18 +271,20 @@ public class GeatteUploadServlet extends HttpServlet {
 	    if (mGeatteIdField == null) {
 		log.log(Level.INFO, "GeatteUploadServlet.doPOST() : create a new GeatteInfo");
 
-		geatteInfo = new GeatteInfo(mImageBlobField);
+		// image bytes go to the BlobStore once the item has an id
+		geatteInfo = new GeatteInfo((Blob) null);
 	    } else {
 		log.log(Level.INFO, "GeatteUploadServlet.doPOST() : find a GeatteInfo by key = " + mGeatteIdField);
 
-		Key key = KeyFactory.createKey(GeatteInfo.class.getSimpleName(), mGeatteIdField);
 		try {
-		    geatteInfo = pm.getObjectById(GeatteInfo.class, key);
+		    geatteInfo = pm.getObjectById(GeatteInfo.class, Long.parseLong(mGeatteIdField));
 		} catch (JDOObjectNotFoundException e) {
 		    log.log(Level.SEVERE, "GeatteUploadServlet.doPOST() : failed to get GeatteInfo by key = " + mGeatteIdField);
 		}
-		// update image
-		geatteInfo.setImage(mImageBlobField);
+		// the id is known, bytes first so a failed put leaves the item and its old image as they were
+		BlobStore.get().put(BlobStore.itemImageName(geatteInfo.getId()), mImageBlobField.getBytes());
+		// update image, the copy on the entity from before the BlobStore goes away
+		geatteInfo.setImage(null);
 	    }
 
 	    geatteInfo.setFromNumber(this.mFromNumberField);
@@ -293,6 +294,37 @@ public class GeatteUploadServlet extends HttpServlet {
 	    geatteInfo.setGeatteDesc(this.mGeatteDescField);
 
 	    pm.makePersistent(geatteInfo);
+	    mGeatteCreatedDateField = geatteInfo.getCreatedDateStr();
+	    if (mGeatteIdField == null) {
+		boolean imageSaved = false;
+		try {
+		    BlobStore.get().put(BlobStore.itemImageName(geatteInfo.getId()), mImageBlobField.getBytes());
+		    imageSaved = true;
+		} finally {
+		    if (!imageSaved) {
+			// a new item has no id before it is saved, remove it again rather than keep it without image,
+			// the put fails with IOException or with the datastore's runtime exceptions
+			try {
+			    pm.deletePersistent(geatteInfo);
+			    log.log(Level.SEVERE, "GeatteUploadServlet.doPOST() : can not store image, deleted new geatteInfo id = "
+				    + geatteInfo.getId());
+			} catch (RuntimeException e) {
+			    log.log(Level.SEVERE, "GeatteUploadServlet.doPOST() : can not store image nor delete new geatteInfo id = "
+				    + geatteInfo.getId(), e);
+			}
+		    }
+		}
+	    } else {
+		GeatteImageCache.get().invalidate(geatteInfo.getId());
+	    }
+
+	    // let owner and recipients who already got this item pick up the change on next sync
+	    String geatteId = geatteInfo.getId().toString();
+	    GeatteChange.appendChangeOrRetry(pm, geatteInfo.getFromNumber(), REQ_TYPE.MY_ITEMS, geatteId);
+	    if (mGeatteIdField != null) {
+		GeatteChange.appendChanges(pm, geatteInfo.getToDeviceNumbers(), REQ_TYPE.FRIEND_ITEMS, geatteId);
+	    }
+	    GeatteIndexServlet.submitIndexItemTask(geatteId);
 
 	    log.log(Level.INFO, "GeatteUploadServlet.doPOST() : Saved geatteInfo fromNumber = " + mFromNumberField
 		    + ", toNumber = " + mToNumberField + ", geatteTitile = " + mGeatteTitleField
@@ -315,7 +347,7 @@ public class GeatteUploadServlet extends HttpServlet {
 	log.log(Level.INFO, "GeatteUploadServlet.submitGeatteTask() : START submit geatte to " + toNumbers);
 	boolean delayWhileIdle = true;
 	String collapseKey = Integer.toString((int)(Math.random()*5000));
-	Queue dmQueue = QueueFactory.getQueue("geatteSend");
+	Queue dmQueue = QueueFactory.getQueue(GeatteMetrics.QUEUE_SEND);
 	//Queue dmQueue = QueueFactory.getDefaultQueue();
 	try {
 	    TaskOptions url = TaskOptions.Builder.withUrl(GeatteSendServlet.URI)
@@ -335,6 +367,7 @@ public class GeatteUploadServlet extends HttpServlet {
 	    //long jitter = (int) Math.random() * DATAMESSAGING_MAX_JITTER_MSEC;
 	    //url.countdownMillis(jitter);
 
+	    GeatteMetrics.taskAdded(url, GeatteMetrics.QUEUE_SEND, null);
 	    TaskHandle add = dmQueue.add(url);
 	    log.log(Level.INFO, "GeatteUploadServlet.submitGeatteTask() : add one task to queue, url = " + url.getUrl());
 	} catch (UnsupportedEncodingException e) {
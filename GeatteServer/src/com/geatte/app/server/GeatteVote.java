@@ -25,6 +25,7 @@ import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
 @PersistenceCapable(identityType = IdentityType.APPLICATION, detachable = "true")
 public class GeatteVote {
     private static final Logger log = Logger.getLogger(GeatteVote.class.getName());
+    private static final int MAX_IDS_PER_QUERY = 30;
 
     @PrimaryKey
     @Persistent(valueStrategy = IdGeneratorStrategy.IDENTITY)
@@ -64,6 +65,10 @@ public class GeatteVote {
 	return id;
     }
 
+    void setId(Long id) {
+	this.id = id;
+    }
+
     private void update() {
 	setUpdateDate(new Date ());
     }
@@ -113,6 +118,10 @@ public class GeatteVote {
 	return createdDate;
     }
 
+    void setCreatedDate(Date createdDate) {
+	this.createdDate = createdDate;
+    }
+
     public String getCreatedDateStr() {
 	SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 	String str = dateFormat.format(createdDate);
@@ -263,50 +272,67 @@ public class GeatteVote {
 	return result;
     }
 
+    /**
+     * Get the votes on the given items created after a date, newest first
+     * within each chunk of MAX_IDS_PER_QUERY items.
+     *
+     * @param pm persistence manager
+     * @param listOfIds ids of items
+     * @param lastSyncDate only votes created after this date
+     * @return list of votes
+     */
     @SuppressWarnings("unchecked")
     public static List<GeatteVote> getAllVoteToItems(PersistenceManager pm, List<String> listOfIds, Date lastSyncDate) {
+	List<GeatteVote> result = new ArrayList<GeatteVote>();
 	if (listOfIds.size() == 0 || lastSyncDate == null) {
-	    //return empty array
-	    return new ArrayList<GeatteVote>();
+	    return result;
 	}
-	Map<String, Object> map = new HashMap<String, Object>();
-	log.log(Level.INFO, "GeatteVote.getAllVoteToMe(): number of ids to retrieve : " + listOfIds.size());
-	Query query = pm.newQuery(GeatteVote.class, ":p.contains(geatteId)");
 
-	query.setFilter("geatteId == listOfIds && createdDate > lastSyncDateParam");
-	query.declareParameters("java.util.List listOfIds, java.util.Date lastSyncDateParam");
-	map.put("lastSyncDateParam", lastSyncDate);
+	Query query = pm.newQuery(GeatteVote.class);
+	query.setFilter("idsParam.contains(geatteId) && createdDate > lastSyncDateParam");
+	query.declareParameters("java.util.List idsParam, java.util.Date lastSyncDateParam");
 	query.setOrdering("createdDate desc");
-
-	List<GeatteVote> result = new ArrayList<GeatteVote>();
-	int s = listOfIds.size();
-	int q = s/20;
-	int r = s%20;
-	int j = 0;
-	List<String> partialIds;
-	for (int i = 1; i <= q; i++) {
-	    partialIds = listOfIds.subList(j, i*20);
-	    j = i*20;
-	    map.put("listOfIds", partialIds);
-	    List<GeatteVote> list = (List<GeatteVote>) query.executeWithMap(map);
-	    for (GeatteVote di : list) {
+	for (int i = 0; i < listOfIds.size(); i += MAX_IDS_PER_QUERY) {
+	    List<String> partialIds = listOfIds.subList(i, Math.min(i + MAX_IDS_PER_QUERY, listOfIds.size()));
+	    List<GeatteVote> qresult = (List<GeatteVote>) query.execute(partialIds, lastSyncDate);
+	    // copy to array - we need to close the query
+	    for (GeatteVote di : qresult) {
 		result.add(di);
 	    }
 	}
+	query.closeAll();
 
-	if (r > 0) {
-	    partialIds = listOfIds.subList(j, j+r);
-	    map.put("listOfIds", partialIds);
-	    List<GeatteVote> list = (List<GeatteVote>) query.executeWithMap(map);
-	    for (GeatteVote di : list) {
+	log.log(Level.INFO, "GeatteVote.getAllVoteToItems(): number of ids = " + listOfIds.size()
+		+ ", result size = " + result.size());
+	return result;
+    }
+
+    /**
+     * Get the votes for a list of ids, missing ids are skipped.
+     *
+     * @param pm persistence manager
+     * @param ids list of ids
+     * @return list of votes
+     */
+    @SuppressWarnings("unchecked")
+    public static List<GeatteVote> getVotesForIds(PersistenceManager pm, List<Long> ids) {
+	List<GeatteVote> result = new ArrayList<GeatteVote>();
+	if (ids.size() == 0) {
+	    return result;
+	}
+
+	Query query = pm.newQuery(GeatteVote.class, ":p.contains(id)");
+	for (int i = 0; i < ids.size(); i += MAX_IDS_PER_QUERY) {
+	    List<Long> partialIds = ids.subList(i, Math.min(i + MAX_IDS_PER_QUERY, ids.size()));
+	    List<GeatteVote> qresult = (List<GeatteVote>) query.execute(partialIds);
+	    // copy to array - we need to close the query
+	    for (GeatteVote di : qresult) {
 		result.add(di);
 	    }
 	}
-
 	query.closeAll();
 
-	log.log(Level.INFO, "GeatteVote.getAllVoteToMe(): number of vote has retrieved : " + result.size());
-
+	log.log(Level.FINER, "GeatteVote.getVotesForIds(): number of ids = " + ids.size() + ", result size = " + result.size());
 	return result;
     }
 
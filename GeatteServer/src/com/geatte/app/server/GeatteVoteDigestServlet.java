@@ -0,0 +1,196 @@
+package com.geatte.app.server;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jdo.JDOObjectNotFoundException;
+import javax.jdo.PersistenceManager;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.geatte.app.server.GeatteAllGetServlet.REQ_TYPE;
+import com.google.android.c2dm.server.C2DMessaging;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskAlreadyExistsException;
+import com.google.appengine.api.taskqueue.TaskOptions;
+
+/**
+ * Sends buffered votes of one owner as digest pushes.
+ *
+ * GeatteVoteServlet schedules one task per owner and window, named so that
+ * votes in the same window share it. When it runs, every vote on the owner's
+ * items since the last digest is pushed, one push per item with a stable
+ * collapse key for the item.
+ *
+ * The changes are read with an ancestor query, so the digest mark only
+ * moves past changes that were read. A FRIEND_VOTES change appended late by
+ * GeatteChangeServlet schedules its own digest.
+ */
+@SuppressWarnings("serial")
+public class GeatteVoteDigestServlet extends HttpServlet {
+
+    private static final Logger log = Logger.getLogger(GeatteVoteDigestServlet.class.getName());
+    public static final String URI = "/tasks/geattevotedigest";
+    public static final long WINDOW_MILLIS = 30 * 1000L;
+    private static final int MAX_CHANGES_PER_DIGEST = 500;
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+    throws ServletException, IOException {
+
+	String ownerNumber = req.getParameter(Config.GEATTE_TO_NUMBER_PARAM);
+	if (ownerNumber == null || ownerNumber.isEmpty()) {
+	    log.severe("GeatteVoteDigestServlet:doPost() : Missing owner number, drop vote digest");
+	    resp.setStatus(200);
+	    return; // will not try again.
+	}
+
+	PersistenceManager pm = DBHelper.getPMF(getServletContext()).getPersistenceManager();
+	try {
+	    GeatteChangeCounter counter = null;
+	    try {
+		counter = pm.getObjectById(GeatteChangeCounter.class, GeatteChangeCounter.createKey(ownerNumber));
+	    } catch (JDOObjectNotFoundException e) {
+		log.warning("GeatteVoteDigestServlet:doPost() : no changes for owner = " + ownerNumber);
+		resp.setStatus(200);
+		return;
+	    }
+	    long prevSeq = counter.getLastVoteDigestSeq();
+	    int prevBatch = counter.getLastVoteDigestItems();
+
+	    // strongly consistent, no change below the new mark can show up later
+	    List<GeatteChange> changes = GeatteChange.getChangesSince(ownerNumber, prevSeq, null, MAX_CHANGES_PER_DIGEST);
+	    List<Long> voteIds = new ArrayList<Long>();
+	    for (GeatteChange change : changes) {
+		if (REQ_TYPE.FRIEND_VOTES.toString().equals(change.getReqType())) {
+		    voteIds.add(Long.parseLong(change.getRefId()));
+		}
+	    }
+	    boolean hasMore = changes.size() >= MAX_CHANGES_PER_DIGEST;
+
+	    if (voteIds.isEmpty()) {
+		// keep the mark where it is unless it has to move past a full page of other changes
+		if (hasMore) {
+		    long seq = changes.get(changes.size() - 1).getSeq();
+		    GeatteChange.markVoteDigest(pm, ownerNumber, prevSeq, seq, prevBatch);
+		    submitGeatteVoteDigestTask(ownerNumber, null);
+		}
+		log.info("GeatteVoteDigestServlet:doPost() : no new votes for owner = " + ownerNumber);
+		resp.setStatus(200);
+		return;
+	    }
+	    long seq = changes.get(changes.size() - 1).getSeq();
+
+	    List<GeatteVote> votes = GeatteVoteRepository.getVotesForIds(pm, voteIds);
+	    Collections.sort(votes, new Comparator<GeatteVote>() {
+		@Override
+		public int compare(GeatteVote v1, GeatteVote v2) {
+		    return v1.getCreatedDate().compareTo(v2.getCreatedDate());
+		}
+	    });
+	    Map<String, List<GeatteVote>> votesByItem = new LinkedHashMap<String, List<GeatteVote>>();
+	    for (GeatteVote vote : votes) {
+		List<GeatteVote> itemVotes = votesByItem.get(vote.getGeatteId());
+		if (itemVotes == null) {
+		    itemVotes = new ArrayList<GeatteVote>();
+		    votesByItem.put(vote.getGeatteId(), itemVotes);
+		}
+		itemVotes.add(vote);
+	    }
+
+	    int batch = votesByItem.size();
+	    for (String geatteId : votesByItem.keySet()) {
+		Map<String, String[]> params = GeattePushPayload.voteDigestParams(geatteId, votesByItem.get(geatteId),
+			prevSeq, seq, prevBatch, batch);
+		submitDigestPushTask(ownerNumber, geatteId, seq, params);
+	    }
+
+	    // pushes are named by seq, so a retry after this point does not send them twice
+	    if (!GeatteChange.markVoteDigest(pm, ownerNumber, prevSeq, seq, batch)) {
+		log.warning("GeatteVoteDigestServlet:doPost() : can not mark vote digest for owner = " + ownerNumber);
+	    }
+	    if (hasMore) {
+		submitGeatteVoteDigestTask(ownerNumber, null);
+	    }
+
+	    log.info("GeatteVoteDigestServlet:doPost() : sent " + votes.size() + " votes on " + batch
+		    + " items to owner = " + ownerNumber + ", seq = " + seq);
+	    resp.setStatus(200);
+	    resp.getOutputStream().write("OK".getBytes());
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "GeatteVoteDigestServlet:doPost() : Error sending vote digest to owner = "
+		    + ownerNumber, e);
+	    resp.setStatus(500);
+	} finally {
+	    pm.close();
+	}
+    }
+
+    /**
+     * Schedule the digest of owner's current window, votes in the same
+     * window share one task.
+     *
+     * @param ownerNumber canonical number of item owner
+     * @param windowStart start of the window, or null to run right away
+     */
+    public static void submitGeatteVoteDigestTask(String ownerNumber, Long windowStart) {
+	Queue dmQueue = QueueFactory.getQueue(GeatteMetrics.QUEUE_VOTE);
+	TaskOptions url = TaskOptions.Builder.withUrl(URI)
+	.param(Config.GEATTE_TO_NUMBER_PARAM, ownerNumber);
+	if (windowStart != null) {
+	    long window = windowStart / WINDOW_MILLIS;
+	    url.taskName("vote-digest-" + toTaskNamePart(ownerNumber) + "-" + window);
+	    url.countdownMillis(Math.max(0L, (window + 1) * WINDOW_MILLIS - System.currentTimeMillis()));
+	}
+	try {
+	    dmQueue.add(url);
+	    log.log(Level.INFO, "GeatteVoteDigestServlet.submitGeatteVoteDigestTask() : scheduled vote digest for owner = "
+		    + ownerNumber);
+	} catch (TaskAlreadyExistsException e) {
+	    log.log(Level.FINE, "GeatteVoteDigestServlet.submitGeatteVoteDigestTask() : vote digest already scheduled for owner = "
+		    + ownerNumber);
+	}
+    }
+
+    private void submitDigestPushTask(String ownerNumber, String geatteId, long seq, Map<String, String[]> params)
+    throws UnsupportedEncodingException {
+	Queue dmQueue = QueueFactory.getQueue(GeatteMetrics.QUEUE_VOTE);
+	TaskOptions url = TaskOptions.Builder.withUrl(GeatteSendServlet.URI)
+	.taskName("vote-send-" + toTaskNamePart(ownerNumber) + "-" + seq + "-" + toTaskNamePart(geatteId))
+	.param(Config.GEATTE_TO_NUMBER_PARAM, URLEncoder.encode(ownerNumber, Config.ENCODE_UTF8))
+	// a newer digest of the same item replaces an undelivered one
+	.param(C2DMessaging.PARAM_COLLAPSE_KEY, "vote_" + geatteId)
+	.param(C2DMessaging.PARAM_DELAY_WHILE_IDLE, "1");
+	for (String key : params.keySet()) {
+	    String[] values = params.get(key);
+	    url.param(key, URLEncoder.encode(values[0], Config.ENCODE_UTF8));
+	}
+	GeatteMetrics.taskAdded(url, GeatteMetrics.QUEUE_VOTE, null);
+	try {
+	    dmQueue.add(url);
+	    log.log(Level.INFO, "GeatteVoteDigestServlet.submitDigestPushTask() : add one task to queue, geatteId = "
+		    + geatteId + ", owner = " + ownerNumber);
+	} catch (TaskAlreadyExistsException e) {
+	    GeatteMetrics.taskFinished(GeatteMetrics.QUEUE_VOTE);
+	    log.log(Level.INFO, "GeatteVoteDigestServlet.submitDigestPushTask() : push already queued, geatteId = "
+		    + geatteId + ", seq = " + seq);
+	}
+    }
+
+    private static String toTaskNamePart(String value) {
+	// task names only allow [a-zA-Z0-9_-]
+	return value.replaceAll("[^a-zA-Z0-9_-]", "");
+    }
+}
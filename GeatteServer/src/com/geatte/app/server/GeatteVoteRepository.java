@@ -0,0 +1,116 @@
+package com.geatte.app.server;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jdo.PersistenceManager;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.SortDirection;
+
+/**
+ * Reads of GeatteVote through the low-level datastore API.
+ *
+ * Votes are returned as transient objects, they must not be handed to a
+ * PersistenceManager.
+ */
+public class GeatteVoteRepository {
+    private static final Logger log = Logger.getLogger(GeatteVoteRepository.class.getName());
+    private static final String KIND = GeatteVote.class.getSimpleName();
+    private static final int MAX_IDS_PER_QUERY = 30;
+
+    /**
+     * Get the votes for a list of ids through the read layer in use, missing
+     * ids are skipped.
+     */
+    public static List<GeatteVote> getVotesForIds(PersistenceManager pm, List<Long> ids) {
+	if (!GeatteDatastore.isLowLevel()) {
+	    return GeatteVote.getVotesForIds(pm, ids);
+	}
+	return getVotesForIds(ids);
+    }
+
+    /**
+     * Get the votes for a list of ids with one batch get, missing ids are
+     * skipped.
+     */
+    public static List<GeatteVote> getVotesForIds(List<Long> ids) {
+	List<GeatteVote> result = new ArrayList<GeatteVote>();
+	for (Entity entity : GeatteDatastore.getByIds(KIND, ids)) {
+	    result.add(fromEntity(entity));
+	}
+	log.log(Level.FINER, "GeatteVoteRepository.getVotesForIds(): number of ids = " + ids.size()
+		+ ", result size = " + result.size());
+	return result;
+    }
+
+    /**
+     * Get the votes on the given items created after a date through the read
+     * layer in use.
+     */
+    public static List<GeatteVote> getAllVoteToItems(PersistenceManager pm, List<String> listOfIds, Date lastSyncDate) {
+	if (!GeatteDatastore.isLowLevel()) {
+	    return GeatteVote.getAllVoteToItems(pm, listOfIds, lastSyncDate);
+	}
+	return getAllVoteToItems(listOfIds, lastSyncDate);
+    }
+
+    /**
+     * Get the votes on the given items created after a date, newest first
+     * within each item.
+     *
+     * Ids are queried in chunks of MAX_IDS_PER_QUERY, all chunk queries are
+     * started before any result is read so they run at the same time.
+     *
+     * @param listOfIds ids of items
+     * @param lastSyncDate only votes created after this date
+     * @return votes
+     */
+    public static List<GeatteVote> getAllVoteToItems(List<String> listOfIds, Date lastSyncDate) {
+	if (listOfIds.size() == 0 || lastSyncDate == null) {
+	    //return empty array
+	    return new ArrayList<GeatteVote>();
+	}
+	log.log(Level.INFO, "GeatteVoteRepository.getAllVoteToItems(): number of ids to retrieve : " + listOfIds.size());
+
+	AsyncDatastoreService datastore = GeatteDatastore.asyncDatastore();
+	List<Iterable<Entity>> chunkResults = new ArrayList<Iterable<Entity>>();
+	for (int i = 0; i < listOfIds.size(); i += MAX_IDS_PER_QUERY) {
+	    List<String> partialIds = new ArrayList<String>(
+		    listOfIds.subList(i, Math.min(i + MAX_IDS_PER_QUERY, listOfIds.size())));
+	    Query query = new Query(KIND);
+	    query.addFilter("geatteId", FilterOperator.IN, partialIds);
+	    query.addFilter("createdDate", FilterOperator.GREATER_THAN, lastSyncDate);
+	    query.addSort("createdDate", SortDirection.DESCENDING);
+	    // the async service starts fetching as soon as the list is created
+	    chunkResults.add(datastore.prepare(query).asList(FetchOptions.Builder.withChunkSize(100)));
+	}
+
+	List<GeatteVote> result = new ArrayList<GeatteVote>();
+	for (Iterable<Entity> entities : chunkResults) {
+	    for (Entity entity : entities) {
+		result.add(fromEntity(entity));
+	    }
+	}
+
+	log.log(Level.INFO, "GeatteVoteRepository.getAllVoteToItems(): number of vote has retrieved : " + result.size());
+	return result;
+    }
+
+    static GeatteVote fromEntity(Entity entity) {
+	GeatteVote vote = new GeatteVote((String) entity.getProperty("geatteId"),
+		(String) entity.getProperty("geatteVoter"), (String) entity.getProperty("geatteOwner"),
+		(String) entity.getProperty("geatteVoteResp"), (String) entity.getProperty("geatteFeedback"));
+	vote.setId(entity.getKey().getId());
+	vote.setCreatedDate((Date) entity.getProperty("createdDate"));
+	vote.setUpdateDate((Date) entity.getProperty("updateDate"));
+	return vote;
+    }
+}
@@ -1,10 +1,6 @@
 package com.geatte.app.server;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,11 +11,7 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.google.android.c2dm.server.C2DMessaging;
-import com.google.appengine.api.taskqueue.Queue;
-import com.google.appengine.api.taskqueue.QueueFactory;
-import com.google.appengine.api.taskqueue.TaskHandle;
-import com.google.appengine.api.taskqueue.TaskOptions;
+import com.geatte.app.server.GeatteAllGetServlet.REQ_TYPE;
 import com.google.i18n.phonenumbers.NumberParseException;
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
 import com.google.i18n.phonenumbers.PhoneNumberUtil.PhoneNumberFormat;
@@ -124,16 +116,9 @@ public class GeatteVoteServlet extends HttpServlet {
 	    log.log(Level.INFO, "GeatteVoteServlet.doPOST() : ready to send geatte id = " + mGeatteIdField +
 		    ", geatte vote '" + geatteVoteId  + "' to owner phoneNumber = " + mGeatteOwnerField);
 
-	    // the message push to device
-	    Map<String, String[]> params = new HashMap<String, String[]>();
-	    params.put("data.geatteid_vote", new String[]{mGeatteIdField});
-	    params.put("data.geatte_voter", new String[]{mGeatteVoterField});
-	    params.put("data.geatte_owner", new String[]{mGeatteOwnerField});
-	    params.put("data.geatte_vote_resp", new String[]{mGeatteVoteRespField});
-	    params.put("data.geatte_vote_feedback", new String[]{mGeatteFeedbackField});
-
-	    submitGeatteVoteTask(mGeatteVoterField, mGeatteOwnerField, params);
-	    log.log(Level.INFO, "GeatteVoteServlet.doPOST() : sent geatte id = " + mGeatteIdField + ",  geatte vote '" +
+	    // votes of one window go out together as a digest
+	    GeatteVoteDigestServlet.submitGeatteVoteDigestTask(mGeatteOwnerField, System.currentTimeMillis());
+	    log.log(Level.INFO, "GeatteVoteServlet.doPOST() : scheduled geatte id = " + mGeatteIdField + ",  geatte vote '" +
 		    geatteVoteId  + "' to owner phoneNumber = " + mGeatteOwnerField);
 	}
 
@@ -155,6 +140,13 @@ public class GeatteVoteServlet extends HttpServlet {
 
 	    pm.makePersistent(geatteVote);
 
+	    String geatteVoteId = geatteVote.getId().toString();
+	    GeatteChange.appendChangeOrRetry(pm, mGeatteVoterField, REQ_TYPE.MY_VOTES, geatteVoteId);
+	    GeatteChange.appendChangeOrRetry(pm, mGeatteOwnerField, REQ_TYPE.FRIEND_VOTES, geatteVoteId);
+	    if (mGeatteFeedbackField != null && !mGeatteFeedbackField.trim().isEmpty()) {
+		GeatteIndexServlet.submitIndexVoteTask(geatteVoteId);
+	    }
+
 	    log.log(Level.INFO, "GeatteVoteServlet.saveToDb() : Saved GeatteVote geatteId = " + mGeatteIdField
 		    + ", geatteVoter = " + mGeatteVoterField + ", geatteOwner = " + mGeatteOwnerField
 		    + ", geatteVoteResp = " + mGeatteVoteRespField
@@ -199,37 +191,4 @@ public class GeatteVoteServlet extends HttpServlet {
 
     }
 
-    private void submitGeatteVoteTask(String fromNumber, String ownerNumber, Map<String, String[]> params) {
-	log.log(Level.INFO, "GeatteVoteServlet.submitGeatteVoteTask() : START submit geatte vote to " + ownerNumber);
-	boolean delayWhileIdle = true;
-	String collapseKey = Integer.toString((int)((Math.random()*5000) + 5001));
-	Queue dmQueue = QueueFactory.getQueue("geatteVote");
-	//Queue dmQueue = QueueFactory.getDefaultQueue();
-	try {
-	    TaskOptions url = TaskOptions.Builder.withUrl(GeatteSendServlet.URI)
-	    .param(Config.GEATTE_FROM_NUMBER_PARAM, fromNumber)
-	    .param(Config.GEATTE_TO_NUMBER_PARAM, ownerNumber)
-	    .param(C2DMessaging.PARAM_COLLAPSE_KEY, collapseKey);
-	    if (delayWhileIdle) {
-		url.param(C2DMessaging.PARAM_DELAY_WHILE_IDLE, "1");
-	    }
-	    for (String key : params.keySet()) {
-		String[] values = params.get(key);
-		url.param(key, URLEncoder.encode(values[0], Config.ENCODE_UTF8));
-	    }
-
-	    // Task queue implements the exponential backoff
-	    //long jitter = (int) Math.random() * DATAMESSAGING_MAX_JITTER_MSEC;
-	    //url.countdownMillis(jitter);
-
-	    TaskHandle add = dmQueue.add(url);
-	    log.log(Level.INFO, "GeatteVoteServlet.submitGeatteVoteTask() : add one task to queue, url = " + url.getUrl());
-	} catch (UnsupportedEncodingException e) {
-	    // Ignore - UTF8 should be supported
-	    log.log(Level.SEVERE, "GeatteVoteServlet.submitGeatteVoteTask : Unexpected error", e);
-	}
-	log.log(Level.INFO, "GeatteVoteServlet.submitGeatteVoteTask() : END submit geatte vote to " + ownerNumber);
-
-    }
-
 }
@@ -0,0 +1,132 @@
+package com.geatte.app.server;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jdo.PersistenceManager;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.geatte.app.shared.CommonUtils;
+import com.google.appengine.repackaged.org.json.JSONArray;
+import com.google.appengine.repackaged.org.json.JSONException;
+import com.google.appengine.repackaged.org.json.JSONObject;
+
+/**
+ * Get the votes of a list of items, grouped by item.
+ *
+ * Takes the item ids separated by ';' and an optional since marker in millis,
+ * returns the votes created after the marker and the marker to send next time.
+ *
+ * The vote query is eventually consistent, a vote may show up after newer
+ * ones. The next marker is the newest returned createdDate minus
+ * SINCE_OVERLAP_MILLIS, so such a vote is returned on a later call. Votes in
+ * the overlap are returned again, clients drop the ones they already have.
+ */
+@SuppressWarnings("serial")
+public class GeatteVotesServlet extends HttpServlet {
+    private static final Logger log = Logger.getLogger(GeatteVotesServlet.class.getName());
+    private static final String ERROR_STATUS = "ERROR";
+    private static final int MAX_IDS_PER_REQUEST = 300;
+    // longer than a vote takes to become visible to the query
+    private static final long SINCE_OVERLAP_MILLIS = 60 * 1000L;
+
+    @Override
+    public void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+	log.log(Level.INFO, "GeatteVotesServlet.doGet() : START GeatteVotesServlet.doGet()");
+	PersistenceManager pm = null;
+	try {
+	    res.setContentType("application/json");
+
+	    String idsStr = req.getParameter(Config.QUERY_GEATTE_IDS_PARAM);
+	    idsStr = URLDecoder.decode((idsStr == null ? "" : idsStr), Config.ENCODE_UTF8);
+	    List<String> ids = new ArrayList<String>(new LinkedHashSet<String>(CommonUtils.splitStringBySemiColon(idsStr)));
+	    ids.remove("");
+
+	    if (ids.isEmpty()) {
+		res.setStatus(400);
+		res.getWriter().println(ERROR_STATUS + " ( " + Config.QUERY_GEATTE_IDS_PARAM + "  parameter missing)");
+		log.warning("GeatteVotesServlet.doGet() : can not obtain geatteIds from request!!");
+		return;
+	    }
+	    if (ids.size() > MAX_IDS_PER_REQUEST) {
+		res.setStatus(400);
+		res.getWriter().println(ERROR_STATUS + " (too many " + Config.QUERY_GEATTE_IDS_PARAM + ", max is "
+			+ MAX_IDS_PER_REQUEST + ")");
+		log.warning("GeatteVotesServlet.doGet() : too many geatteIds = " + ids.size());
+		return;
+	    }
+
+	    String sinceStr = req.getParameter(Config.QUERY_SINCE_PARAM);
+	    Date since = new Date(0);
+	    if (sinceStr != null && !sinceStr.isEmpty()) {
+		try {
+		    since = new Date(Long.parseLong(URLDecoder.decode(sinceStr, Config.ENCODE_UTF8)));
+		} catch (NumberFormatException nfe) {
+		    res.setStatus(400);
+		    res.getWriter().println(ERROR_STATUS + " (wrong format of " + Config.QUERY_SINCE_PARAM + ")");
+		    log.warning("GeatteVotesServlet.doGet() : wrong format of since = " + sinceStr);
+		    return;
+		}
+	    }
+
+	    pm = DBHelper.getPMF(getServletContext()).getPersistenceManager();
+	    List<GeatteVote> votes = GeatteVoteRepository.getAllVoteToItems(pm, ids, since);
+	    // never past the newest vote seen, a vote not visible yet may be older than the query time
+	    long newest = since.getTime();
+	    for (GeatteVote vote : votes) {
+		if (vote.getCreatedDate() != null) {
+		    newest = Math.max(newest, vote.getCreatedDate().getTime());
+		}
+	    }
+	    long nextSince = Math.max(since.getTime(), newest - SINCE_OVERLAP_MILLIS);
+
+	    JSONObject votesByItem = new JSONObject();
+	    for (String id : ids) {
+		votesByItem.put(URLEncoder.encode(id, Config.ENCODE_UTF8), new JSONArray());
+	    }
+	    for (GeatteVote vote : votes) {
+		JSONObject jObject = new JSONObject();
+		try {
+		    jObject.put(Config.VOTE_VOTER, URLEncoder.encode(vote.getGeatteVoter(), Config.ENCODE_UTF8));
+		    jObject.put(Config.VOTE_TO, URLEncoder.encode(vote.getGeatteOwner(), Config.ENCODE_UTF8));
+		    jObject.put(Config.VOTE_RESP, URLEncoder.encode(vote.getGeatteVoteResp(), Config.ENCODE_UTF8));
+		    jObject.put(Config.VOTE_FEEDBACK, URLEncoder.encode((vote.getGeatteFeedback() == null ? ""
+			    : vote.getGeatteFeedback()), Config.ENCODE_UTF8));
+		    jObject.put(Config.VOTE_CREATED_DATE, URLEncoder.encode(vote.getCreatedDateStr(),
+			    Config.ENCODE_UTF8));
+		    votesByItem.getJSONArray(URLEncoder.encode(vote.getGeatteId(), Config.ENCODE_UTF8)).put(jObject);
+		} catch (JSONException e) {
+		    log.warning("GeatteVotesServlet.doGet() : json processing error for geatte vote geatteId = "
+			    + vote.getGeatteId());
+		}
+	    }
+
+	    JSONObject retObject = new JSONObject();
+	    retObject.put("votes", votesByItem);
+	    retObject.put(Config.QUERY_SINCE_PARAM, nextSince);
+
+	    log.log(Level.INFO, "GeatteVotesServlet.doGet() : items = " + ids.size() + ", votes = " + votes.size());
+
+	    PrintWriter out = res.getWriter();
+	    retObject.write(out);
+	    log.log(Level.INFO, "GeatteVotesServlet.doGet() : END GeatteVotesServlet.doGet()");
+	} catch (Exception ex) {
+	    throw new ServletException(ex);
+	} finally {
+	    if (pm != null) {
+		pm.close();
+	    }
+	}
+    }
+}
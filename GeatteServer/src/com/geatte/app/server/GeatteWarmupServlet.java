@@ -0,0 +1,145 @@
+package com.geatte.app.server;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.android.c2dm.server.C2DMConfig;
+import com.google.android.c2dm.server.C2DMessaging;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.repackaged.org.json.JSONException;
+import com.google.appengine.repackaged.org.json.JSONObject;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.PhoneNumberUtil.PhoneNumberFormat;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+
+/**
+ * Warmup request handler, loads what the first user request of a new
+ * instance would otherwise pay for.
+ *
+ * Each step is timed, the report is logged and kept for the metrics servlet.
+ * JDO steps and the lowLevel step give the startup cost of each read layer.
+ * A failed step is logged and the next step still runs.
+ */
+@SuppressWarnings("serial")
+public class GeatteWarmupServlet extends HttpServlet {
+    private static final Logger log = Logger.getLogger(GeatteWarmupServlet.class.getName());
+
+    /**
+     * Persistent classes to load JDO metadata for
+     */
+    private static final Class<?>[] PERSISTENT_CLASSES = {DeviceInfo.class, GeatteInfo.class, GeatteVote.class,
+	GeatteChange.class, GeatteChangeCounter.class, GeatteTmpImageInfo.class, C2DMConfig.class};
+
+    private static JSONObject sLastReport;
+
+    @Override
+    public void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	log.log(Level.INFO, "GeatteWarmupServlet.doGet() : START GeatteWarmupServlet.doGet()");
+	try {
+	    JSONObject report = new JSONObject();
+	    long start = System.currentTimeMillis();
+
+	    long stepStart = System.currentTimeMillis();
+	    PersistenceManager pm = null;
+	    try {
+		pm = DBHelper.getPMF(getServletContext()).getPersistenceManager();
+		endStep(report, "pmf", stepStart, null);
+	    } catch (Exception e) {
+		endStep(report, "pmf", stepStart, e);
+	    }
+
+	    if (pm != null) {
+		try {
+		    for (Class<?> persistentClass : PERSISTENT_CLASSES) {
+			stepStart = System.currentTimeMillis();
+			Query query = pm.newQuery(persistentClass);
+			try {
+			    query.setRange(0, 1);
+			    query.execute();
+			    endStep(report, "jdo." + persistentClass.getSimpleName(), stepStart, null);
+			} catch (Exception e) {
+			    endStep(report, "jdo." + persistentClass.getSimpleName(), stepStart, e);
+			} finally {
+			    query.closeAll();
+			}
+		    }
+		} finally {
+		    pm.close();
+		}
+	    }
+
+	    stepStart = System.currentTimeMillis();
+	    try {
+		com.google.appengine.api.datastore.Query query =
+		    new com.google.appengine.api.datastore.Query(GeatteInfo.class.getSimpleName()).setKeysOnly();
+		GeatteDatastore.datastore().prepare(query).asList(FetchOptions.Builder.withLimit(1)).size();
+		endStep(report, "lowLevel", stepStart, null);
+	    } catch (Exception e) {
+		endStep(report, "lowLevel", stepStart, e);
+	    }
+
+	    stepStart = System.currentTimeMillis();
+	    try {
+		PhoneNumberUtil phoneUtil = PhoneNumberUtil.getInstance();
+		// region metadata is loaded on first use of a region
+		PhoneNumber number = phoneUtil.parse("6502530000", "US");
+		phoneUtil.format(number, PhoneNumberFormat.E164);
+		endStep(report, "phoneNumberUtil", stepStart, null);
+	    } catch (Exception e) {
+		endStep(report, "phoneNumberUtil", stepStart, e);
+	    }
+
+	    stepStart = System.currentTimeMillis();
+	    try {
+		C2DMessaging.get(getServletContext()).preloadConfig();
+		endStep(report, "c2dmConfig", stepStart, null);
+	    } catch (Exception e) {
+		endStep(report, "c2dmConfig", stepStart, e);
+	    }
+
+	    report.put("total", System.currentTimeMillis() - start);
+	    report.put("at", start);
+	    synchronized (GeatteWarmupServlet.class) {
+		sLastReport = report;
+	    }
+	    log.log(Level.INFO, "GeatteWarmupServlet.doGet() : warmup report = " + report);
+
+	    resp.setContentType("application/json");
+	    PrintWriter out = resp.getWriter();
+	    report.write(out);
+	} catch (Exception ex) {
+	    throw new ServletException(ex);
+	}
+    }
+
+    /**
+     * Get the report of the last warmup of this instance.
+     *
+     * @return report, or null if this instance was not warmed up
+     */
+    public static synchronized JSONObject getLastReport() {
+	return sLastReport;
+    }
+
+    private static void endStep(JSONObject report, String step, long stepStart, Exception error)
+    throws JSONException {
+	long millis = System.currentTimeMillis() - stepStart;
+	if (error != null) {
+	    log.log(Level.WARNING, "GeatteWarmupServlet.endStep() : step " + step + " failed after " + millis + " ms",
+		    error);
+	    report.put(step, "failed after " + millis);
+	} else {
+	    log.log(Level.FINE, "GeatteWarmupServlet.endStep() : step " + step + " took " + millis + " ms");
+	    report.put(step, millis);
+	}
+    }
+}
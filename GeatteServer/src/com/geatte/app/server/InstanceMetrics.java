@@ -0,0 +1,230 @@
+package com.geatte.app.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.geatte.app.shared.MetricsSnapshot;
+
+/**
+ * Request, push and cache numbers of this instance over the last minute.
+ *
+ * Numbers are kept in slots of SLOT_MILLIS, a slot is reused once it is
+ * older than the window. Latencies go to fixed buckets, percentiles are the
+ * upper bound of the bucket they fall in.
+ */
+public class InstanceMetrics {
+    private static final long SLOT_MILLIS = 10 * 1000;
+    private static final int SLOTS = 6;
+    public static final long WINDOW_MILLIS = SLOT_MILLIS * SLOTS;
+
+    /**
+     * Most endpoint series kept, paths seen after that are counted as
+     * OTHER_ENDPOINT. Every url under /* is recorded, also unknown ones.
+     */
+    private static final int MAX_ENDPOINTS = 64;
+    public static final String OTHER_ENDPOINT = "(other)";
+
+    /**
+     * Upper bounds of the latency buckets in millis, the last bucket has no
+     * upper bound
+     */
+    private static final long[] LATENCY_BOUNDS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private static final InstanceMetrics sMetrics = new InstanceMetrics();
+
+    private final long mStartTime = System.currentTimeMillis();
+    private final Map<String, Series> mEndpoints = new TreeMap<String, Series>();
+    private final Map<String, Series> mPushes = new TreeMap<String, Series>();
+    private final Map<String, Series> mCaches = new TreeMap<String, Series>();
+
+    private InstanceMetrics() {
+    }
+
+    public static InstanceMetrics get() {
+	return sMetrics;
+    }
+
+    /**
+     * Record a finished request.
+     *
+     * @param endpoint servlet path of the request
+     * @param latencyMillis time spent in the request
+     * @param datastoreRpcs datastore calls made by the request
+     * @param failed true if the request ended with an error
+     */
+    public void requestDone(String endpoint, long latencyMillis, int datastoreRpcs, boolean failed) {
+	series(mEndpoints, endpointName(endpoint)).add(System.currentTimeMillis(), failed, latencyMillis, datastoreRpcs);
+    }
+
+    private String endpointName(String endpoint) {
+	synchronized (mEndpoints) {
+	    if (endpoint == null || (!mEndpoints.containsKey(endpoint) && mEndpoints.size() >= MAX_ENDPOINTS - 1)) {
+		return OTHER_ENDPOINT;
+	    }
+	    return endpoint;
+	}
+    }
+
+    /**
+     * Record a push given to a transport.
+     */
+    public void pushDone(String transport, boolean sentOk) {
+	series(mPushes, transport).add(System.currentTimeMillis(), !sentOk, -1, 0);
+    }
+
+    public void cacheHit(String cache) {
+	series(mCaches, cache).add(System.currentTimeMillis(), false, -1, 0);
+    }
+
+    public void cacheMiss(String cache) {
+	series(mCaches, cache).add(System.currentTimeMillis(), true, -1, 0);
+    }
+
+    /**
+     * Get the numbers of the last minute, queue numbers are left to the
+     * caller.
+     */
+    public MetricsSnapshot snapshot() {
+	long now = System.currentTimeMillis();
+	MetricsSnapshot snapshot = new MetricsSnapshot();
+	snapshot.setTime(now);
+	snapshot.setInstanceStartTime(mStartTime);
+	snapshot.setWindowMillis(WINDOW_MILLIS);
+
+	List<MetricsSnapshot.Endpoint> endpoints = new ArrayList<MetricsSnapshot.Endpoint>();
+	for (Map.Entry<String, Series> entry : copy(mEndpoints).entrySet()) {
+	    Totals totals = entry.getValue().totals(now);
+	    if (totals.mCount == 0) {
+		continue;
+	    }
+	    MetricsSnapshot.Endpoint endpoint = new MetricsSnapshot.Endpoint();
+	    endpoint.setName(entry.getKey());
+	    endpoint.setRequests(totals.mCount);
+	    endpoint.setErrors(totals.mFailed);
+	    endpoint.setP50Millis(totals.percentile(0.5));
+	    endpoint.setP90Millis(totals.percentile(0.9));
+	    endpoint.setP99Millis(totals.percentile(0.99));
+	    endpoint.setDatastoreRpcs(totals.mRpcs);
+	    endpoints.add(endpoint);
+	}
+	snapshot.setEndpoints(endpoints);
+	snapshot.setPushes(ratios(mPushes, now));
+	snapshot.setCaches(ratios(mCaches, now));
+	return snapshot;
+    }
+
+    private List<MetricsSnapshot.Ratio> ratios(Map<String, Series> seriesMap, long now) {
+	List<MetricsSnapshot.Ratio> ratios = new ArrayList<MetricsSnapshot.Ratio>();
+	for (Map.Entry<String, Series> entry : copy(seriesMap).entrySet()) {
+	    Totals totals = entry.getValue().totals(now);
+	    MetricsSnapshot.Ratio ratio = new MetricsSnapshot.Ratio();
+	    ratio.setName(entry.getKey());
+	    ratio.setOk(totals.mCount - totals.mFailed);
+	    ratio.setFailed(totals.mFailed);
+	    ratios.add(ratio);
+	}
+	return ratios;
+    }
+
+    private static Map<String, Series> copy(Map<String, Series> seriesMap) {
+	synchronized (seriesMap) {
+	    return new TreeMap<String, Series>(seriesMap);
+	}
+    }
+
+    private static Series series(Map<String, Series> seriesMap, String name) {
+	synchronized (seriesMap) {
+	    Series series = seriesMap.get(name);
+	    if (series == null) {
+		series = new Series();
+		seriesMap.put(name, series);
+	    }
+	    return series;
+	}
+    }
+
+    private static int latencyBucket(long latencyMillis) {
+	for (int i = 0; i < LATENCY_BOUNDS.length; i++) {
+	    if (latencyMillis <= LATENCY_BOUNDS[i]) {
+		return i;
+	    }
+	}
+	return LATENCY_BOUNDS.length;
+    }
+
+    /**
+     * Counts of one endpoint, transport or cache in time slots.
+     */
+    private static class Series {
+	private final long[] mSlotStart = new long[SLOTS];
+	private final long[] mCount = new long[SLOTS];
+	private final long[] mFailed = new long[SLOTS];
+	private final long[] mRpcs = new long[SLOTS];
+	private final long[][] mLatencies = new long[SLOTS][LATENCY_BOUNDS.length + 1];
+
+	synchronized void add(long now, boolean failed, long latencyMillis, int rpcs) {
+	    long slotStart = now - now % SLOT_MILLIS;
+	    int slot = (int) ((now / SLOT_MILLIS) % SLOTS);
+	    if (mSlotStart[slot] != slotStart) {
+		mSlotStart[slot] = slotStart;
+		mCount[slot] = 0;
+		mFailed[slot] = 0;
+		mRpcs[slot] = 0;
+		mLatencies[slot] = new long[LATENCY_BOUNDS.length + 1];
+	    }
+	    mCount[slot]++;
+	    if (failed) {
+		mFailed[slot]++;
+	    }
+	    mRpcs[slot] += rpcs;
+	    if (latencyMillis >= 0) {
+		mLatencies[slot][latencyBucket(latencyMillis)]++;
+	    }
+	}
+
+	synchronized Totals totals(long now) {
+	    Totals totals = new Totals();
+	    for (int slot = 0; slot < SLOTS; slot++) {
+		if (now - mSlotStart[slot] >= WINDOW_MILLIS) {
+		    continue;
+		}
+		totals.mCount += mCount[slot];
+		totals.mFailed += mFailed[slot];
+		totals.mRpcs += mRpcs[slot];
+		for (int i = 0; i < totals.mLatencies.length; i++) {
+		    totals.mLatencies[i] += mLatencies[slot][i];
+		}
+	    }
+	    return totals;
+	}
+    }
+
+    private static class Totals {
+	private long mCount;
+	private long mFailed;
+	private long mRpcs;
+	private final long[] mLatencies = new long[LATENCY_BOUNDS.length + 1];
+
+	long percentile(double p) {
+	    long total = 0;
+	    for (long n : mLatencies) {
+		total += n;
+	    }
+	    if (total == 0) {
+		return 0;
+	    }
+	    long rank = (long) Math.ceil(total * p);
+	    long seen = 0;
+	    for (int i = 0; i < mLatencies.length; i++) {
+		seen += mLatencies[i];
+		if (seen >= rank) {
+		    // the open last bucket is shown as its lower bound
+		    return LATENCY_BOUNDS[Math.min(i, LATENCY_BOUNDS.length - 1)];
+		}
+	    }
+	    return LATENCY_BOUNDS[LATENCY_BOUNDS.length - 1];
+	}
+    }
+}
@@ -0,0 +1,132 @@
+package com.geatte.app.server;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Images in files of a local directory, for load tests outside App Engine.
+ *
+ * serve() streams the file to the response through a small buffer, so a
+ * served image is never held on the heap whole. The servlet output stream
+ * has no channel to transfer to, so this is not zero-copy. Writes go to a
+ * temp file that is renamed over the target, readers never see half a file.
+ */
+public class LocalFileBlobStore extends BlobStore {
+    private static final Logger log = Logger.getLogger(LocalFileBlobStore.class.getName());
+
+    private static final int SERVE_BUFFER_SIZE = 8 * 1024;
+
+    private final File mRoot;
+
+    public LocalFileBlobStore(String dir) {
+	mRoot = new File(dir);
+	if (!mRoot.isDirectory() && !mRoot.mkdirs()) {
+	    log.warning("LocalFileBlobStore : can not create directory " + mRoot.getAbsolutePath());
+	}
+    }
+
+    @Override
+    public void put(String name, byte[] bytes) throws IOException {
+	File file = file(name);
+	File dir = file.getParentFile();
+	if (!dir.isDirectory() && !dir.mkdirs()) {
+	    throw new IOException("can not create directory " + dir.getAbsolutePath());
+	}
+	File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+	FileOutputStream out = new FileOutputStream(tmp);
+	try {
+	    FileChannel channel = out.getChannel();
+	    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+	    while (buffer.hasRemaining()) {
+		channel.write(buffer);
+	    }
+	    channel.force(false);
+	} finally {
+	    out.close();
+	}
+	if (!tmp.renameTo(file)) {
+	    // renameTo does not replace an existing file on every platform
+	    file.delete();
+	    if (!tmp.renameTo(file)) {
+		tmp.delete();
+		throw new IOException("can not move " + tmp.getAbsolutePath() + " to " + file.getAbsolutePath());
+	    }
+	}
+	log.log(Level.FINE, "LocalFileBlobStore.put() : " + name + ", bytes = " + bytes.length);
+    }
+
+    @Override
+    public byte[] get(String name) throws IOException {
+	File file = file(name);
+	if (!file.isFile()) {
+	    return null;
+	}
+	RandomAccessFile raf = new RandomAccessFile(file, "r");
+	try {
+	    // the caller wants the bytes on the heap anyway, mapping first only adds a copy
+	    byte[] bytes = new byte[(int) raf.length()];
+	    raf.readFully(bytes);
+	    return bytes;
+	} finally {
+	    raf.close();
+	}
+    }
+
+    @Override
+    public void delete(String name) {
+	File file = file(name);
+	if (file.exists() && !file.delete()) {
+	    log.warning("LocalFileBlobStore.delete() : can not delete " + file.getAbsolutePath());
+	}
+    }
+
+    @Override
+    public boolean isStreamed() {
+	return true;
+    }
+
+    @Override
+    public String version(String name) {
+	File file = file(name);
+	if (!file.isFile()) {
+	    return null;
+	}
+	// a put renames a new file over the old one, so the time changes with the bytes
+	return Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified());
+    }
+
+    @Override
+    public boolean serve(String name, HttpServletResponse res) throws IOException {
+	File file = file(name);
+	if (!file.isFile()) {
+	    return false;
+	}
+	FileInputStream in = new FileInputStream(file);
+	try {
+	    res.setContentLength((int) file.length());
+	    OutputStream out = res.getOutputStream();
+	    byte[] buffer = new byte[SERVE_BUFFER_SIZE];
+	    int count;
+	    while ((count = in.read(buffer)) != -1) {
+		out.write(buffer, 0, count);
+	    }
+	    return true;
+	} finally {
+	    in.close();
+	}
+    }
+
+    private File file(String name) {
+	return new File(mRoot, name);
+    }
+}
@@ -0,0 +1,43 @@
+package com.geatte.app.server;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.geatte.app.client.MetricsService;
+import com.geatte.app.server.PushRateController.Transport;
+import com.geatte.app.shared.MetricsSnapshot;
+import com.google.gwt.user.server.rpc.RemoteServiceServlet;
+
+/**
+ * The server side implementation of the admin console metrics, admin only.
+ */
+@SuppressWarnings("serial")
+public class MetricsServiceImpl extends RemoteServiceServlet implements MetricsService {
+    private static final Logger log = Logger.getLogger(MetricsServiceImpl.class.getName());
+
+    public MetricsSnapshot getMetrics() {
+	MetricsSnapshot snapshot = InstanceMetrics.get().snapshot();
+	try {
+	    snapshot.setQueues(GeatteMetrics.getQueues(GeatteMetrics.READER_CONSOLE));
+	} catch (Exception e) {
+	    log.log(Level.WARNING, "MetricsServiceImpl.getMetrics() : can not read queue metrics", e);
+	}
+	// every transport is shown, also without pushes in the window
+	for (Transport transport : Transport.values()) {
+	    String name = transport.toString().toLowerCase();
+	    MetricsSnapshot.Ratio push = null;
+	    for (MetricsSnapshot.Ratio ratio : snapshot.getPushes()) {
+		if (ratio.getName().equals(name)) {
+		    push = ratio;
+		}
+	    }
+	    if (push == null) {
+		push = new MetricsSnapshot.Ratio();
+		push.setName(name);
+		snapshot.getPushes().add(push);
+	    }
+	    push.setRate(PushRateController.get().getRate(transport));
+	}
+	return snapshot;
+    }
+}
@@ -0,0 +1,239 @@
+package com.geatte.app.server;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.appengine.repackaged.org.json.JSONException;
+import com.google.appengine.repackaged.org.json.JSONObject;
+
+/**
+ * Token bucket rate control of push transports.
+ *
+ * Each transport has a bucket refilled at its current rate. The rate grows by
+ * a small step per push while the provider answers fast, and is cut by half when the
+ * provider answers 503 or quota exceeded, or slows down. Lower priority work
+ * only gets a token while the bucket keeps a reserve for higher priorities.
+ *
+ * The state is per instance, task queue rates in queue.xml are only the
+ * upper bound across instances.
+ */
+public class PushRateController {
+    private static final Logger log = Logger.getLogger(PushRateController.class.getName());
+
+    public static enum Transport {C2DM, URBAN}
+    public static enum Priority {HIGH, NORMAL, LOW}
+
+    private static final double INITIAL_RATE = 20.0;
+    private static final double MIN_RATE = 1.0;
+    private static final double MAX_RATE = 200.0;
+    private static final double RATE_STEP = 2.0;
+    private static final double BURST_SECONDS = 2.0;
+
+    /**
+     * Provider latency above this counts as the provider slowing down
+     */
+    private static final long SLOW_LATENCY_MILLIS = 2000;
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 10 * 1000;
+
+    /**
+     * Share of the bucket NORMAL and LOW work must leave to higher priorities
+     */
+    private static final double NORMAL_RESERVE = 0.1;
+    private static final double LOW_RESERVE = 0.5;
+
+    private static final PushRateController sController = new PushRateController();
+
+    private final Map<Transport, Bucket> mBuckets = new EnumMap<Transport, Bucket>(Transport.class);
+
+    private PushRateController() {
+	for (Transport transport : Transport.values()) {
+	    mBuckets.put(transport, new Bucket(INITIAL_RATE));
+	}
+    }
+
+    public static PushRateController get() {
+	return sController;
+    }
+
+    /**
+     * Take tokens for sending count pushes.
+     *
+     * @return 0 if the tokens were taken, otherwise millis to wait before
+     *         trying again
+     */
+    public long tryAcquire(Transport transport, Priority priority, int count) {
+	if (count <= 0) {
+	    return 0;
+	}
+	return mBuckets.get(transport).tryAcquire(priority, count);
+    }
+
+    /**
+     * Give back tokens taken for pushes that were not sent.
+     */
+    public void release(Transport transport, int count) {
+	if (count > 0) {
+	    mBuckets.get(transport).release(count);
+	}
+    }
+
+    /**
+     * Check whether work of the given priority could run now without taking
+     * tokens, used by background work that competes with pushes.
+     *
+     * @return 0 if it can run, otherwise millis to wait before trying again
+     */
+    public long admit(Priority priority) {
+	long wait = 0;
+	for (Bucket bucket : mBuckets.values()) {
+	    wait = Math.max(wait, bucket.admit(priority));
+	}
+	return wait;
+    }
+
+    /**
+     * Record a push the provider accepted.
+     */
+    public void onSuccess(Transport transport, long latencyMillis) {
+	mBuckets.get(transport).onSuccess(latencyMillis);
+    }
+
+    /**
+     * Record a 503 or quota exceeded answer of the provider.
+     *
+     * @param retryAfterMillis provider's Retry-After, or -1 if it sent none
+     */
+    public void onThrottled(Transport transport, long retryAfterMillis) {
+	Bucket bucket = mBuckets.get(transport);
+	bucket.onThrottled(retryAfterMillis > 0 ? retryAfterMillis : DEFAULT_RETRY_AFTER_MILLIS);
+	log.log(Level.WARNING, "PushRateController.onThrottled() : transport = " + transport + " throttled, rate = "
+		+ bucket.getRate() + "/s, retryAfterMillis = " + retryAfterMillis);
+    }
+
+    /**
+     * Get the current send rate limit of a transport, in pushes per second.
+     */
+    public double getRate(Transport transport) {
+	return mBuckets.get(transport).getRate();
+    }
+
+    /**
+     * Parse a Retry-After header in seconds.
+     *
+     * @return millis, or -1 if the header is missing or an HTTP date
+     */
+    public static long parseRetryAfter(String retryAfter) {
+	if (retryAfter == null) {
+	    return -1;
+	}
+	try {
+	    return Long.parseLong(retryAfter.trim()) * 1000;
+	} catch (NumberFormatException e) {
+	    return -1;
+	}
+    }
+
+    public JSONObject toJson() throws JSONException {
+	JSONObject json = new JSONObject();
+	for (Transport transport : Transport.values()) {
+	    Bucket bucket = mBuckets.get(transport);
+	    JSONObject jBucket = new JSONObject();
+	    synchronized (bucket) {
+		bucket.refill(System.currentTimeMillis());
+		jBucket.put("rate", bucket.mRate);
+		jBucket.put("tokens", bucket.mTokens);
+		jBucket.put("pausedMillis", Math.max(0, bucket.mPausedUntil - System.currentTimeMillis()));
+		jBucket.put("throttled", bucket.mThrottledCount);
+	    }
+	    json.put(transport.toString().toLowerCase(), jBucket);
+	}
+	return json;
+    }
+
+    private static class Bucket {
+	private double mRate;
+	private double mTokens;
+	private long mLastRefill;
+	private long mPausedUntil;
+	private long mThrottledCount;
+
+	Bucket(double rate) {
+	    mRate = rate;
+	    mTokens = capacity();
+	    mLastRefill = System.currentTimeMillis();
+	}
+
+	synchronized double getRate() {
+	    return mRate;
+	}
+
+	synchronized long tryAcquire(Priority priority, int count) {
+	    long now = System.currentTimeMillis();
+	    if (now < mPausedUntil) {
+		return mPausedUntil - now;
+	    }
+	    refill(now);
+	    // a send bigger than the bucket goes when the bucket is full, and leaves it in debt
+	    double needed = Math.min(count + reserve(priority), capacity());
+	    if (mTokens >= needed) {
+		mTokens -= count;
+		return 0;
+	    }
+	    return (long) Math.ceil((needed - mTokens) / mRate * 1000);
+	}
+
+	synchronized void release(int count) {
+	    mTokens = Math.min(capacity(), mTokens + count);
+	}
+
+	synchronized long admit(Priority priority) {
+	    long now = System.currentTimeMillis();
+	    if (now < mPausedUntil) {
+		return mPausedUntil - now;
+	    }
+	    refill(now);
+	    double needed = 1 + reserve(priority);
+	    return mTokens >= needed ? 0 : (long) Math.ceil((needed - mTokens) / mRate * 1000);
+	}
+
+	synchronized void onSuccess(long latencyMillis) {
+	    if (latencyMillis > SLOW_LATENCY_MILLIS) {
+		mRate = Math.max(MIN_RATE, mRate * 0.9);
+	    } else {
+		// about RATE_STEP per second of pushes at the current rate
+		mRate = Math.min(MAX_RATE, mRate + RATE_STEP / mRate);
+	    }
+	}
+
+	synchronized void onThrottled(long retryAfterMillis) {
+	    mRate = Math.max(MIN_RATE, mRate / 2);
+	    mTokens = Math.min(mTokens, capacity());
+	    mPausedUntil = Math.max(mPausedUntil, System.currentTimeMillis() + retryAfterMillis);
+	    mThrottledCount++;
+	}
+
+	private void refill(long now) {
+	    if (now > mLastRefill) {
+		mTokens = Math.min(capacity(), mTokens + (now - mLastRefill) * mRate / 1000);
+		mLastRefill = now;
+	    }
+	}
+
+	private double capacity() {
+	    return Math.max(1.0, mRate * BURST_SECONDS);
+	}
+
+	private double reserve(Priority priority) {
+	    switch (priority) {
+	    case LOW:
+		return capacity() * LOW_RESERVE;
+	    case NORMAL:
+		return capacity() * NORMAL_RESERVE;
+	    default:
+		return 0;
+	    }
+	}
+    }
+}
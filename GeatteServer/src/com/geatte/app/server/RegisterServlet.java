@@ -203,6 +203,7 @@ public class RegisterServlet extends HttpServlet {
 			    + oldest.getDeviceRegistrationID());
 		    pm.deletePersistent(oldest);
 		}
+		DeviceDirectory.get().invalidate(oldest.getPhoneNumber(), oldest.getCountryCode());
 	    }
 
 	    // Get device if it already exists, else create
@@ -226,6 +227,7 @@ public class RegisterServlet extends HttpServlet {
 		    List<DeviceInfo> devicesForSameNumber = DeviceInfo.getDeviceInfoForNumber(pm, phoneNumber, phoneCountryIso);
 		    for (DeviceInfo deviceSameNumber : devicesForSameNumber) {
 			pm.deletePersistent(deviceSameNumber);
+			DeviceDirectory.get().invalidate(deviceSameNumber.getPhoneNumber(), deviceSameNumber.getCountryCode());
 		    }
 		} catch (JDOObjectNotFoundException e) {
 		}
@@ -239,6 +241,8 @@ public class RegisterServlet extends HttpServlet {
 		// update registration id
 		device.setDeviceRegistrationID(reqInfo.deviceRegistrationID);
 		device.setRegistrationTimestamp(new Date());
+		// device may move to another number
+		DeviceDirectory.get().invalidate(device.getPhoneNumber(), device.getCountryCode());
 	    }
 
 	    device.setPhoneNumber(phoneNumber); // update phoneNumber
@@ -248,6 +252,7 @@ public class RegisterServlet extends HttpServlet {
 	    // TODO: only need to write if something changed, for chrome nothing
 	    // changes, we just create a new channel
 	    pm.makePersistent(device);
+	    DeviceDirectory.get().invalidate(phoneNumber, phoneCountryIso);
 
 	    log.log(Level.INFO, "RegisterServlet.doPOST() : Registered device userEmail = " + reqInfo.getUserEmail()
 		    + ", deviceType = " + deviceType + ", deviceRegistrationID = " + reqInfo.deviceRegistrationID
@@ -1,6 +1,7 @@
 package com.geatte.app.shared;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public class CommonUtils {
@@ -17,4 +18,15 @@ public class CommonUtils {
 	}
 	return ret;
     }
-}
\ No newline at end of file
+
+    public static String joinStringBySemiColon(Collection<String> strs) {
+	StringBuilder ret = new StringBuilder();
+	for (String n: strs) {
+	    if (ret.length() > 0) {
+		ret.append(";");
+	    }
+	    ret.append(n);
+	}
+	return ret.toString();
+    }
+}
@@ -0,0 +1,241 @@
+package com.geatte.app.shared;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Server numbers shown by the admin console.
+ *
+ * Request, push and cache numbers are of the instance that answered, over
+ * the last windowMillis. Queue numbers are shared by all instances.
+ */
+public class MetricsSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long time;
+    private long instanceStartTime;
+    private long windowMillis;
+    private List<Endpoint> endpoints = new ArrayList<Endpoint>();
+    private List<Queue> queues = new ArrayList<Queue>();
+    private List<Ratio> pushes = new ArrayList<Ratio>();
+    private List<Ratio> caches = new ArrayList<Ratio>();
+
+    public long getTime() {
+	return time;
+    }
+
+    public void setTime(long time) {
+	this.time = time;
+    }
+
+    public long getInstanceStartTime() {
+	return instanceStartTime;
+    }
+
+    public void setInstanceStartTime(long instanceStartTime) {
+	this.instanceStartTime = instanceStartTime;
+    }
+
+    public long getWindowMillis() {
+	return windowMillis;
+    }
+
+    public void setWindowMillis(long windowMillis) {
+	this.windowMillis = windowMillis;
+    }
+
+    public List<Endpoint> getEndpoints() {
+	return endpoints;
+    }
+
+    public void setEndpoints(List<Endpoint> endpoints) {
+	this.endpoints = endpoints;
+    }
+
+    public List<Queue> getQueues() {
+	return queues;
+    }
+
+    public void setQueues(List<Queue> queues) {
+	this.queues = queues;
+    }
+
+    public List<Ratio> getPushes() {
+	return pushes;
+    }
+
+    public void setPushes(List<Ratio> pushes) {
+	this.pushes = pushes;
+    }
+
+    public List<Ratio> getCaches() {
+	return caches;
+    }
+
+    public void setCaches(List<Ratio> caches) {
+	this.caches = caches;
+    }
+
+    /**
+     * Requests of one servlet path
+     */
+    public static class Endpoint implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private String name;
+	private long requests;
+	private long errors;
+	private long p50Millis;
+	private long p90Millis;
+	private long p99Millis;
+	private long datastoreRpcs;
+
+	public String getName() {
+	    return name;
+	}
+
+	public void setName(String name) {
+	    this.name = name;
+	}
+
+	public long getRequests() {
+	    return requests;
+	}
+
+	public void setRequests(long requests) {
+	    this.requests = requests;
+	}
+
+	public long getErrors() {
+	    return errors;
+	}
+
+	public void setErrors(long errors) {
+	    this.errors = errors;
+	}
+
+	public long getP50Millis() {
+	    return p50Millis;
+	}
+
+	public void setP50Millis(long p50Millis) {
+	    this.p50Millis = p50Millis;
+	}
+
+	public long getP90Millis() {
+	    return p90Millis;
+	}
+
+	public void setP90Millis(long p90Millis) {
+	    this.p90Millis = p90Millis;
+	}
+
+	public long getP99Millis() {
+	    return p99Millis;
+	}
+
+	public void setP99Millis(long p99Millis) {
+	    this.p99Millis = p99Millis;
+	}
+
+	public long getDatastoreRpcs() {
+	    return datastoreRpcs;
+	}
+
+	public void setDatastoreRpcs(long datastoreRpcs) {
+	    this.datastoreRpcs = datastoreRpcs;
+	}
+    }
+
+    /**
+     * Depth and wait of one task queue
+     */
+    public static class Queue implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private String name;
+	private long depth;
+	private long tasks;
+	private long avgWaitMillis;
+
+	public String getName() {
+	    return name;
+	}
+
+	public void setName(String name) {
+	    this.name = name;
+	}
+
+	public long getDepth() {
+	    return depth;
+	}
+
+	public void setDepth(long depth) {
+	    this.depth = depth;
+	}
+
+	public long getTasks() {
+	    return tasks;
+	}
+
+	public void setTasks(long tasks) {
+	    this.tasks = tasks;
+	}
+
+	public long getAvgWaitMillis() {
+	    return avgWaitMillis;
+	}
+
+	public void setAvgWaitMillis(long avgWaitMillis) {
+	    this.avgWaitMillis = avgWaitMillis;
+	}
+    }
+
+    /**
+     * Successes and failures of a push transport, or hits and misses of a cache
+     */
+    public static class Ratio implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private String name;
+	private long ok;
+	private long failed;
+	/**
+	 * Current send rate limit per second, pushes only
+	 */
+	private double rate;
+
+	public String getName() {
+	    return name;
+	}
+
+	public void setName(String name) {
+	    this.name = name;
+	}
+
+	public long getOk() {
+	    return ok;
+	}
+
+	public void setOk(long ok) {
+	    this.ok = ok;
+	}
+
+	public long getFailed() {
+	    return failed;
+	}
+
+	public void setFailed(long failed) {
+	    this.failed = failed;
+	}
+
+	public double getRate() {
+	    return rate;
+	}
+
+	public void setRate(double rate) {
+	    this.rate = rate;
+	}
+    }
+}